@@ -0,0 +1,61 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import co.edu.escuelaing.webframe.examples.GreetingController;
+import co.edu.escuelaing.webframe.ioc.SimpleIoCContainer;
+
+/**
+ * Route lookup through the container and full dispatch of a request to the example controller.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+    private SimpleIoCContainer container;
+    private RequestDispatcher dispatcher;
+    private HttpRequestHandler handler;
+    private HttpRequest request;
+
+    @Setup
+    public void setUp() throws Exception {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        container = new SimpleIoCContainer();
+        container.registerController(GreetingController.class.getName());
+        dispatcher = new RequestDispatcher(container);
+        handler = new HttpRequestHandler(dispatcher, new ServerConfig());
+        request = new HttpRequest("GET", "/greeting?name=Ada", "HTTP/1.1");
+    }
+
+    @Benchmark
+    public Object[] findRouteHandler() {
+        return container.findRouteHandler("/greeting", "GET");
+    }
+
+    @Benchmark
+    public String processRequest() {
+        return dispatcher.processRequest("GET", "/greeting?name=Ada");
+    }
+
+    @Benchmark
+    public byte[] handleAndEncodeHead() {
+        return handler.handle(request).encodeHead();
+    }
+}
@@ -0,0 +1,312 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import co.edu.escuelaing.webframe.examples.GreetingController;
+import co.edu.escuelaing.webframe.ioc.SimpleIoCContainer;
+
+/**
+ * End-to-end load generator: starts a server on the loopback interface in this JVM and drives
+ * it from keep-alive client connections, reporting throughput and latency percentiles.
+ * <p>
+ * Options (all optional): {@code --engine BLOCKING|NIO}, {@code --connections 16},
+ * {@code --warmup 5} and {@code --duration 10} (seconds), {@code --path /greeting?name=Ada},
+ * {@code --acceptEncoding gzip}.
+ */
+public final class LoadGenerator {
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        EngineType engine = EngineType.valueOf(options.getOrDefault("engine", "BLOCKING").toUpperCase());
+        int connections = Integer.parseInt(options.getOrDefault("connections", "16"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "10"));
+        String path = options.getOrDefault("path", "/greeting?name=Ada");
+        String acceptEncoding = options.get("acceptEncoding");
+
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        ServerConfig config = ServerConfig.fromSystemProperties();
+        config.setEngine(engine);
+        config.setQueueCapacity(Math.max(config.getQueueCapacity(), connections * 2));
+        SimpleIoCContainer container = new SimpleIoCContainer();
+        container.registerController(GreetingController.class.getName());
+        ServerEngine server = startServer(container, config);
+
+        try {
+            String request = "GET " + path + " HTTP/1.1\r\nHost: localhost\r\n"
+                    + (acceptEncoding != null ? "Accept-Encoding: " + acceptEncoding + "\r\n" : "")
+                    + "\r\n";
+            console.printf("Engine %s, %d connections, %s, warmup %ds, measuring %ds%n",
+                    engine, connections, path, warmupSeconds, durationSeconds);
+
+            run(server.getLocalPort(), request, connections, warmupSeconds * 1000L);
+            Result result = run(server.getLocalPort(), request, connections, durationSeconds * 1000L);
+            result.print(console, durationSeconds);
+        } finally {
+            server.stop();
+            System.setOut(console);
+        }
+    }
+
+    private static ServerEngine startServer(SimpleIoCContainer container, ServerConfig config) throws Exception {
+        ServerEngine server = ServerEngine.create(0, container, config);
+        Thread serverThread = new Thread(() -> {
+            try {
+                server.start();
+            } catch (IOException e) {
+                System.err.println("Server failed: " + e.getMessage());
+            }
+        }, "load-server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!server.isRunning() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        if (!server.isRunning()) {
+            throw new IllegalStateException("Server did not start");
+        }
+        return server;
+    }
+
+    private static Result run(int port, String request, int connections, long durationMillis) throws Exception {
+        byte[] requestBytes = request.getBytes(StandardCharsets.ISO_8859_1);
+        long end = System.nanoTime() + durationMillis * 1_000_000L;
+        List<Client> clients = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(connections);
+        for (int i = 0; i < connections; i++) {
+            Client client = new Client(port, requestBytes, end, done);
+            clients.add(client);
+            Thread thread = new Thread(client, "load-client-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+
+        Result result = new Result();
+        for (Client client : clients) {
+            result.latencies.add(client.latencies);
+            result.errors += client.errors;
+        }
+        return result;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected --option value, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    /**
+     * One keep-alive connection sending requests back to back; reconnects after errors.
+     */
+    private static final class Client implements Runnable {
+        final int port;
+        final byte[] request;
+        final long end;
+        final CountDownLatch done;
+        final LatencyHistogram latencies = new LatencyHistogram();
+        long errors;
+
+        Client(int port, byte[] request, long end, CountDownLatch done) {
+            this.port = port;
+            this.request = request;
+            this.end = end;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (System.nanoTime() < end) {
+                    try (Socket socket = new Socket()) {
+                        socket.setTcpNoDelay(true);
+                        socket.connect(new InetSocketAddress("127.0.0.1", port));
+                        OutputStream out = socket.getOutputStream();
+                        InputStream in = new BufferedInputStream(socket.getInputStream());
+                        while (System.nanoTime() < end) {
+                            long start = System.nanoTime();
+                            out.write(request);
+                            out.flush();
+                            boolean keepAlive = readResponse(in);
+                            latencies.record(System.nanoTime() - start);
+                            if (!keepAlive) {
+                                break;
+                            }
+                        }
+                    } catch (IOException e) {
+                        errors++;
+                    }
+                }
+            } finally {
+                done.countDown();
+            }
+        }
+
+        /**
+         * Reads and discards one response, returning false when the server closes the connection.
+         */
+        private static boolean readResponse(InputStream in) throws IOException {
+            String statusLine = readLine(in);
+            if (statusLine.length() < 12 || statusLine.charAt(9) != '2' && statusLine.charAt(9) != '3') {
+                throw new IOException("Unexpected status: " + statusLine);
+            }
+            long length = 0;
+            boolean chunked = false;
+            boolean keepAlive = true;
+            String line;
+            while (!(line = readLine(in)).isEmpty()) {
+                String lower = line.toLowerCase();
+                if (lower.startsWith("content-length:")) {
+                    length = Long.parseLong(line.substring(15).trim());
+                } else if (lower.startsWith("transfer-encoding:") && lower.contains("chunked")) {
+                    chunked = true;
+                } else if (lower.startsWith("connection:") && lower.contains("close")) {
+                    keepAlive = false;
+                }
+            }
+            if (chunked) {
+                long size;
+                while ((size = Long.parseLong(readLine(in).trim(), 16)) > 0) {
+                    skip(in, size + 2);
+                }
+                readLine(in);
+            } else {
+                skip(in, length);
+            }
+            return keepAlive;
+        }
+
+        private static void skip(InputStream in, long count) throws IOException {
+            while (count > 0) {
+                long skipped = in.skip(count);
+                if (skipped <= 0) {
+                    if (in.read() < 0) {
+                        throw new EOFException();
+                    }
+                    skipped = 1;
+                }
+                count -= skipped;
+            }
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            StringBuilder line = new StringBuilder();
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b < 0) {
+                    throw new EOFException();
+                }
+                if (b != '\r') {
+                    line.append((char) b);
+                }
+            }
+            return line.toString();
+        }
+    }
+
+    private static final class Result {
+        final LatencyHistogram latencies = new LatencyHistogram();
+        long errors;
+
+        void print(PrintStream out, int durationSeconds) {
+            long count = latencies.getCount();
+            out.printf("Requests: %d (%d errors), throughput: %.0f req/s%n",
+                    count, errors, count / (double) durationSeconds);
+            out.printf("Latency  p50 %s  p90 %s  p99 %s  p99.9 %s  max %s%n",
+                    micros(latencies.percentile(50)), micros(latencies.percentile(90)),
+                    micros(latencies.percentile(99)), micros(latencies.percentile(99.9)),
+                    micros(latencies.getMax()));
+        }
+
+        private static String micros(long nanos) {
+            return String.format("%.1fus", nanos / 1000.0);
+        }
+    }
+
+    /**
+     * Log-linear histogram of nanosecond values with about 1.5% relative precision.
+     * Each bucket power of two is split in 64 linear sub-buckets.
+     */
+    static final class LatencyHistogram {
+        private static final int SUB_BUCKET_BITS = 6;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private final long[] counts = new long[64 * SUB_BUCKETS];
+        private long count;
+        private long max;
+
+        void record(long value) {
+            counts[index(Math.max(0, value))]++;
+            count++;
+            max = Math.max(max, value);
+        }
+
+        void add(LatencyHistogram other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            count += other.count;
+            max = Math.max(max, other.max);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        long getMax() {
+            return max;
+        }
+
+        long percentile(double percentile) {
+            long target = (long) Math.ceil(count * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target && seen > 0) {
+                    return Math.min(lowerBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        private static int index(long value) {
+            if (value < 2 * SUB_BUCKETS) {
+                return (int) value;
+            }
+            int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+            return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+        }
+
+        private static long lowerBound(int index) {
+            if (index < 2 * SUB_BUCKETS) {
+                return index;
+            }
+            int shift = index / SUB_BUCKETS - 1;
+            return (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Request head parsing shared by both engines and query string parsing of the dispatcher.
+ * {@code parseRequestHead} only records header offsets; {@code parseAndReadHeaders} also decodes
+ * the headers a typical request handler looks at.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestParsingBenchmark {
+
+    private static final String BROWSER_REQUEST = "GET /greeting?name=Ada&lang=es HTTP/1.1\r\n"
+            + "Host: localhost:35000\r\n"
+            + "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:120.0) Gecko/20100101 Firefox/120.0\r\n"
+            + "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n"
+            + "Accept-Language: es-CO,es;q=0.8,en-US;q=0.5,en;q=0.3\r\n"
+            + "Accept-Encoding: gzip, deflate\r\n"
+            + "Connection: keep-alive\r\n"
+            + "Upgrade-Insecure-Requests: 1\r\n"
+            + "Cache-Control: max-age=0\r\n"
+            + "\r\n";
+
+    private final HttpRequestParser parser = new HttpRequestParser(new ServerConfig());
+    private final HttpRequest pooled = new HttpRequest();
+    private byte[] request;
+
+    @Setup
+    public void setUp() {
+        request = BROWSER_REQUEST.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    @Benchmark
+    public HttpRequest parseRequestHead() throws Exception {
+        parser.parse(request, 0, request.length, pooled);
+        return pooled;
+    }
+
+    @Benchmark
+    public String parseAndReadHeaders() throws Exception {
+        parser.parse(request, 0, request.length, pooled);
+        pooled.isKeepAliveRequested();
+        pooled.getHeader("Accept-Encoding");
+        return pooled.getTarget();
+    }
+
+    @Benchmark
+    public Map<String, String> parseQueryParameters() {
+        return RequestDispatcher.parseQueryParameters("name=Ada&lang=es&page=3&sort=price");
+    }
+}
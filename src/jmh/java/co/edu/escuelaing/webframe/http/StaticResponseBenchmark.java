@@ -0,0 +1,109 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building and writing static file responses: cached identity and gzip bodies, a 304
+ * revalidation and a file too large for the cache, written to a discarding stream.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StaticResponseBenchmark {
+
+    @Param({ "4096", "65536" })
+    public int fileSize;
+
+    private Path root;
+    private HttpRequestHandler handler;
+    private HttpRequest identity;
+    private HttpRequest gzip;
+    private HttpRequest revalidation;
+    private HttpRequest uncached;
+    private final OutputStream sink = OutputStream.nullOutputStream();
+
+    @Setup
+    public void setUp() throws Exception {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        root = Files.createTempDirectory("static-benchmark");
+        StringBuilder css = new StringBuilder();
+        while (css.length() < fileSize) {
+            css.append(".rule").append(css.length()).append(" { padding: 4px; }\n");
+        }
+        Files.write(root.resolve("site.css"), css.substring(0, fileSize).getBytes());
+        Files.write(root.resolve("big.png"), new byte[fileSize * 4]);
+
+        ServerConfig config = new ServerConfig();
+        config.setStaticRoot(root.toString());
+        config.setStaticCacheMaxFileSize(fileSize);
+        handler = new HttpRequestHandler(null, config);
+
+        identity = new HttpRequest("GET", "/site.css", "HTTP/1.1");
+        gzip = new HttpRequest("GET", "/site.css", "HTTP/1.1");
+        gzip.addHeader("Accept-Encoding", "gzip, deflate");
+        handler.handle(identity);
+        StaticContentCache.Entry entry = handler.getStaticFiles().getCache()
+                .get(root.resolve("site.css").toAbsolutePath().normalize());
+        revalidation = new HttpRequest("GET", "/site.css", "HTTP/1.1");
+        revalidation.addHeader("If-None-Match", entry.etag());
+        uncached = new HttpRequest("GET", "/big.png", "HTTP/1.1");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        handler.close();
+        try (Stream<Path> files = Files.walk(root)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public HttpResponse cachedIdentity() throws IOException {
+        HttpResponse response = handler.handle(identity);
+        response.writeTo(sink);
+        return response;
+    }
+
+    @Benchmark
+    public HttpResponse cachedGzip() throws IOException {
+        HttpResponse response = handler.handle(gzip);
+        response.writeTo(sink);
+        return response;
+    }
+
+    @Benchmark
+    public HttpResponse notModified() throws IOException {
+        HttpResponse response = handler.handle(revalidation);
+        response.writeTo(sink);
+        return response;
+    }
+
+    @Benchmark
+    public HttpResponse uncachedFile() throws IOException {
+        HttpResponse response = handler.handle(uncached);
+        response.writeTo(sink);
+        return response;
+    }
+}
@@ -0,0 +1,98 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import co.edu.escuelaing.webframe.annotations.GetMapping;
+import co.edu.escuelaing.webframe.annotations.RestController;
+import co.edu.escuelaing.webframe.http.tls.TestKeyStores;
+
+/**
+ * HTTPS connections per second with one request each: every connection running a full
+ * handshake versus connections resuming the previous session, over a self-signed key store.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TlsHandshakeBenchmark {
+
+    @Param({ "BLOCKING", "NIO" })
+    public EngineType engine;
+
+    @Param({ "TLSv1.2", "TLSv1.3" })
+    public String protocol;
+
+    private ServerEngine server;
+    private SSLContext client;
+    private final String request = RawHttpClient.get("/hello", "Connection: close");
+
+    @Setup
+    public void setUp() throws Exception {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        ServerConfig config = new ServerConfig();
+        config.setEngine(engine);
+        TestKeyStores.configure(config);
+        server = TestServers.start(config, HelloController.class);
+        client = TestKeyStores.clientContext();
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Benchmark
+    public int fullHandshake() throws IOException {
+        return exchange(true);
+    }
+
+    @Benchmark
+    public int resumedSession() throws IOException {
+        return exchange(false);
+    }
+
+    private int exchange(boolean forgetSession) throws IOException {
+        try (SSLSocket socket = (SSLSocket) client.getSocketFactory().createSocket("localhost", server.getLocalPort())) {
+            socket.setEnabledProtocols(new String[] { protocol });
+            // otherwise Nagle holds the request back until the server acknowledges the handshake
+            socket.setTcpNoDelay(true);
+            RawHttpClient.write(socket, request);
+            int status = RawHttpClient.read(socket.getInputStream()).status;
+            if (forgetSession) {
+                // dropped from the client cache, so the next connection cannot offer it
+                socket.getSession().invalidate();
+            }
+            return status;
+        }
+    }
+
+    @RestController
+    public static class HelloController {
+
+        @GetMapping("/hello")
+        public String hello() {
+            return "hello";
+        }
+    }
+}
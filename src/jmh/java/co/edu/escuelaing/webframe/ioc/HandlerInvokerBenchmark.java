@@ -0,0 +1,91 @@
+package co.edu.escuelaing.webframe.ioc;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import co.edu.escuelaing.webframe.annotations.GetMapping;
+import co.edu.escuelaing.webframe.annotations.PathVariable;
+import co.edu.escuelaing.webframe.annotations.RequestParam;
+import co.edu.escuelaing.webframe.annotations.RestController;
+
+/**
+ * Handler invocation through the precompiled {@link HandlerInvoker} compared with the former
+ * per-request reflection: {@code getParameters()}, annotation lookups and {@code Method.invoke}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandlerInvokerBenchmark {
+
+    private GreetingHandler controller;
+    private Method method;
+    private Route route;
+    private RouteMatch match;
+    private Map<String, String> queryParams;
+
+    @Setup
+    public void setUp() throws Exception {
+        controller = new GreetingHandler();
+        method = GreetingHandler.class.getMethod("greet", String.class, String.class);
+        route = new Route("GET", "/greet/{lang}", controller, method);
+
+        RouteIndex index = new RouteIndex();
+        index.add(route);
+        match = index.newMatch();
+        index.find("GET", "/greet/es", match);
+
+        queryParams = new HashMap<>();
+        queryParams.put("name", "World");
+    }
+
+    @Benchmark
+    public Object methodHandle() throws Exception {
+        HandlerInvoker invoker = route.getInvoker();
+        return invoker.invoke(invoker.bindArguments(queryParams, match));
+    }
+
+    @Benchmark
+    public Object reflective() throws Exception {
+        Parameter[] parameters = method.getParameters();
+        Object[] args = new Object[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            RequestParam requestParam = parameters[i].getAnnotation(RequestParam.class);
+            if (requestParam != null) {
+                String value = queryParams.get(requestParam.value());
+                if (value == null || value.isEmpty()) {
+                    value = requestParam.defaultValue().isEmpty() ? null : requestParam.defaultValue();
+                }
+                args[i] = value;
+            } else if (parameters[i].getAnnotation(PathVariable.class) != null) {
+                args[i] = match.getVariable(parameters[i].getAnnotation(PathVariable.class).value());
+            }
+        }
+        return method.invoke(controller, args);
+    }
+
+    @RestController
+    public static class GreetingHandler {
+
+        @GetMapping("/greet/{lang}")
+        public String greet(@PathVariable("lang") String lang, @RequestParam("name") String name) {
+            return lang.equals("es") ? "Hola " + name : "Hello " + name;
+        }
+    }
+}
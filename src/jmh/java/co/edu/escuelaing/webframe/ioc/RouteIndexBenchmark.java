@@ -0,0 +1,85 @@
+package co.edu.escuelaing.webframe.ioc;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Route lookup cost as the number of registered routes grows, compared with the former
+ * {@code method + ":" + path} HashMap lookup. Run with {@code -prof gc} to see that trie
+ * lookups allocate nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteIndexBenchmark {
+
+    @Param({ "10", "100", "500", "1000" })
+    public int routeCount;
+
+    private RouteIndex index;
+    private RouteMatch match;
+    private Map<String, Route> legacyRoutes;
+    private String staticPath;
+    private String variablePath;
+    private String missingPath;
+
+    @Setup
+    public void setUp() throws Exception {
+        Method handler = Object.class.getMethod("toString");
+        index = new RouteIndex();
+        legacyRoutes = new HashMap<>();
+        for (int i = 0; i < routeCount; i++) {
+            Route list = new Route("GET", "/api/resource" + i, this, handler);
+            Route item = new Route("GET", "/api/resource" + i + "/{id}/details", this, handler);
+            index.add(list);
+            index.add(item);
+            legacyRoutes.put("GET:" + list.getPattern(), list);
+        }
+        match = index.newMatch();
+
+        int middle = routeCount / 2;
+        staticPath = "/api/resource" + middle;
+        variablePath = "/api/resource" + middle + "/12345/details";
+        missingPath = "/api/unknown/path";
+    }
+
+    @Benchmark
+    public Route trieStatic() {
+        index.find("GET", staticPath, match);
+        return match.getRoute();
+    }
+
+    @Benchmark
+    public Route trieVariable() {
+        index.find("GET", variablePath, match);
+        return match.getRoute();
+    }
+
+    @Benchmark
+    public Route trieMiss() {
+        index.find("GET", missingPath, match);
+        return match.getRoute();
+    }
+
+    @Benchmark
+    public Route legacyHashMapStatic() {
+        return legacyRoutes.get("GET" + ":" + staticPath);
+    }
+}
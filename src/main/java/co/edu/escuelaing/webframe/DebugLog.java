@@ -0,0 +1,29 @@
+package co.edu.escuelaing.webframe;
+
+/**
+ * Switch for the per-request diagnostic messages of the framework.
+ * They are off by default because {@code System.out} is synchronized and would serialize request
+ * threads; enable them with {@code -Dserver.debug=true} or {@link #setEnabled(boolean)}. Callers
+ * check {@link #isEnabled()} before building a message so a disabled log costs nothing.
+ */
+public final class DebugLog {
+
+    private static volatile boolean enabled = Boolean.getBoolean("server.debug");
+
+    private DebugLog() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        DebugLog.enabled = enabled;
+    }
+
+    public static void log(String message) {
+        if (enabled) {
+            System.out.println(message);
+        }
+    }
+}
@@ -2,7 +2,8 @@ package co.edu.escuelaing.webframe;
 
 import java.io.IOException;
 
-import co.edu.escuelaing.webframe.http.HttpServer;
+import co.edu.escuelaing.webframe.http.ServerConfig;
+import co.edu.escuelaing.webframe.http.ServerEngine;
 import co.edu.escuelaing.webframe.ioc.SimpleIoCContainer;
 
 /**
@@ -25,12 +26,15 @@ public class WebFrameworkApp {
                 System.out.println("Scanned and registered controllers from examples package");
             }
 
-            HttpServer server = new HttpServer(DEFAULT_PORT, container);
+            ServerConfig config = ServerConfig.fromSystemProperties();
+            ServerEngine server = ServerEngine.create(DEFAULT_PORT, container, config);
 
-            System.out.println("Starting Web Framework on port " + DEFAULT_PORT);
+            System.out.println("Starting Web Framework on port " + DEFAULT_PORT + " (" + config.getEngine()
+                    + " engine, " + config.getExecutionMode() + ", " + config.getWorkerThreads() + " workers)");
 
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-                System.out.println("\nShutting down server...");
+                System.out.println("\nShutting down server, draining for up to "
+                        + config.getDrainTimeoutMillis() + " ms...");
                 server.stop();
             }));
 
@@ -0,0 +1,23 @@
+package co.edu.escuelaing.webframe.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Caches the encoded response of a handler, keyed by the route and the arguments bound from the
+ * path and query string. Only handlers whose result depends on nothing else should be annotated:
+ * the handler is not called again until the entry expires or is evicted.
+ * Streaming and file results are never cached. Only GET handlers that do not bind the request
+ * body may be annotated; registering any other handler fails. HEAD requests, which those
+ * handlers also answer, share the entries of GET.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Cacheable {
+    /**
+     * Seconds an entry stays valid after it was computed.
+     */
+    long ttlSeconds() default 60;
+}
@@ -0,0 +1,23 @@
+package co.edu.escuelaing.webframe.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation to mark methods as DELETE request handlers.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface DeleteMapping {
+    /**
+     * The URL path that this handler should respond to.
+     */
+    String value();
+
+    /**
+     * Content-Type of the response; see {@link GetMapping#produces()}.
+     */
+    String produces() default "";
+}
@@ -0,0 +1,20 @@
+package co.edu.escuelaing.webframe.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Enables ETag generation for a handler method, or for every handler of a controller.
+ * The tag is computed from the response body, and requests whose If-None-Match
+ * matches it are answered with 304 Not Modified.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ETag {
+    /**
+     * Cache-Control header sent with tagged responses.
+     */
+    String cacheControl() default "no-cache";
+}
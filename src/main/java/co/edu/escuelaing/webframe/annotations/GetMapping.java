@@ -6,7 +6,8 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 /**
- * Annotation to mark methods as GET request handlers.
+ * Annotation to mark methods as GET request handlers. They also answer HEAD requests, whose
+ * response is sent without its body.
  */
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
@@ -15,4 +16,11 @@ public @interface GetMapping {
      * The URL path that this handler should respond to.
      */
     String value();
+
+    /**
+     * Content-Type of the response. When empty it follows from the return type: HTML for
+     * {@code String} and {@code StreamingTextBody}, the file type for files and
+     * {@code application/octet-stream} for bytes and {@code StreamingBody}.
+     */
+    String produces() default "";
 }
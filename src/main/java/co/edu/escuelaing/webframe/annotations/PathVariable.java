@@ -0,0 +1,18 @@
+package co.edu.escuelaing.webframe.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation to bind a method parameter to a {@code {name}} segment of the route path.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface PathVariable {
+    /**
+     * The name of the path variable, as written between braces in the mapping.
+     */
+    String value();
+}
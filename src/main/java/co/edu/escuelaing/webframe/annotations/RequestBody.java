@@ -0,0 +1,17 @@
+package co.edu.escuelaing.webframe.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation to bind a method parameter to the request body. {@code InputStream} and
+ * {@code Reader} parameters receive the body as it arrives; {@code byte[]} and {@code String}
+ * receive it whole; {@code Map} receives the fields of a form; and other types are read from
+ * JSON: {@code Map}, {@code List}, numbers, strings or objects with public fields.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RequestBody {
+}
@@ -0,0 +1,154 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.util.Arrays;
+
+/**
+ * Byte ranges of a {@code Range: bytes=...} header resolved against a representation length
+ * (RFC 7233). Overlapping and adjacent ranges are merged, so a client cannot make the server send
+ * the same bytes many times.
+ */
+public final class ByteRanges {
+
+    /**
+     * Headers asking for more ranges than this are ignored and the whole representation is sent.
+     */
+    static final int MAX_RANGES = 16;
+
+    private final long[] starts;
+    private final long[] ends;
+    private final long length;
+
+    private ByteRanges(long[] starts, long[] ends, long length) {
+        this.starts = starts;
+        this.ends = ends;
+        this.length = length;
+    }
+
+    /**
+     * Resolves a Range header value.
+     *
+     * @param length size of the selected representation
+     * @return the ranges, which are not {@linkplain #isSatisfiable() satisfiable} when none
+     *         overlaps the representation, or null when the header is missing, malformed,
+     *         not in bytes or asks for too many ranges, in which case it is ignored
+     */
+    public static ByteRanges parse(String header, long length) {
+        if (header == null || header.length() < 6 || !header.regionMatches(true, 0, "bytes=", 0, 6)) {
+            return null;
+        }
+        String[] specs = header.substring(6).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        long[][] ranges = new long[specs.length][];
+        int satisfiable = 0;
+        for (String rawSpec : specs) {
+            String spec = rawSpec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            long first = parseNumber(spec.substring(0, dash));
+            long last = parseNumber(spec.substring(dash + 1));
+            long start;
+            long end;
+            if (dash == 0) {
+                // suffix range: the last N bytes
+                if (last < 0) {
+                    return null;
+                }
+                if (last == 0 || length == 0) {
+                    continue;
+                }
+                start = Math.max(0, length - last);
+                end = length - 1;
+            } else {
+                if (first < 0 || dash < spec.length() - 1 && (last < 0 || last < first)) {
+                    return null;
+                }
+                if (first >= length) {
+                    continue;
+                }
+                start = first;
+                end = dash == spec.length() - 1 ? length - 1 : Math.min(last, length - 1);
+            }
+            ranges[satisfiable++] = new long[] { start, end };
+        }
+        if (satisfiable == 0) {
+            return new ByteRanges(new long[0], new long[0], length);
+        }
+        return merge(Arrays.copyOf(ranges, satisfiable), length);
+    }
+
+    private static ByteRanges merge(long[][] ranges, long length) {
+        Arrays.sort(ranges, (a, b) -> Long.compare(a[0], b[0]));
+        long[] starts = new long[ranges.length];
+        long[] ends = new long[ranges.length];
+        int count = 0;
+        for (long[] range : ranges) {
+            if (count > 0 && range[0] <= ends[count - 1] + 1) {
+                ends[count - 1] = Math.max(ends[count - 1], range[1]);
+            } else {
+                starts[count] = range[0];
+                ends[count] = range[1];
+                count++;
+            }
+        }
+        return new ByteRanges(Arrays.copyOf(starts, count), Arrays.copyOf(ends, count), length);
+    }
+
+    /**
+     * Parses a non-negative decimal, returning -1 for empty, invalid or overflowing values.
+     */
+    private static long parseNumber(String value) {
+        String digits = value.trim();
+        if (digits.isEmpty() || digits.length() > 18) {
+            return -1;
+        }
+        long number = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            char c = digits.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+
+    /**
+     * Returns false when no range overlaps the representation, which is answered with 416.
+     */
+    public boolean isSatisfiable() {
+        return starts.length > 0;
+    }
+
+    public int count() {
+        return starts.length;
+    }
+
+    public long start(int index) {
+        return starts[index];
+    }
+
+    /**
+     * Returns the number of bytes in a range.
+     */
+    public long count(int index) {
+        return ends[index] - starts[index] + 1;
+    }
+
+    /**
+     * Returns the Content-Range value of a range, such as {@code bytes 0-99/1000}.
+     */
+    public String contentRange(int index) {
+        return "bytes " + starts[index] + "-" + ends[index] + "/" + length;
+    }
+
+    /**
+     * Returns the Content-Range value of a 416 response.
+     */
+    public String unsatisfiedRange() {
+        return "bytes */" + length;
+    }
+}
@@ -0,0 +1,134 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import co.edu.escuelaing.webframe.http.buffer.BufferPool;
+
+/**
+ * Frames written bytes as HTTP/1.1 chunks.
+ * {@link #finish()} writes the terminating chunk without closing the underlying stream,
+ * so the connection can be reused. The chunk buffer comes from the shared {@link BufferPool}
+ * and goes back once the body is finished, or on {@link #release()} for a body that failed.
+ */
+public class ChunkedOutputStream extends OutputStream {
+
+    private static final byte[] CRLF = { '\r', '\n' };
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    private final OutputStream out;
+    private final int chunkSize;
+    private ByteBuffer pooled;
+    private byte[] buffer;
+    private int count;
+    private boolean finished;
+
+    public ChunkedOutputStream(OutputStream out) {
+        this(out, 8192);
+    }
+
+    public ChunkedOutputStream(OutputStream out, int chunkSize) {
+        this.out = out;
+        this.chunkSize = chunkSize;
+        this.pooled = BufferPool.shared().acquire(chunkSize);
+        this.buffer = pooled.array();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkOpen();
+        if (count == chunkSize) {
+            writeChunk(buffer, 0, count);
+            count = 0;
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        checkOpen();
+        if (length >= chunkSize) {
+            flushBuffer();
+            writeChunk(data, offset, length);
+            return;
+        }
+        if (length > chunkSize - count) {
+            flushBuffer();
+        }
+        System.arraycopy(data, offset, buffer, count, length);
+        count += length;
+    }
+
+    /**
+     * Sends buffered bytes as a chunk and flushes the underlying stream.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (!finished) {
+            flushBuffer();
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes any buffered bytes and the terminating zero-length chunk.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        flushBuffer();
+        out.write(LAST_CHUNK);
+        finished = true;
+        release();
+    }
+
+    /**
+     * Gives the chunk buffer back to the pool; buffered bytes not yet sent are dropped and
+     * further writes fail. Does nothing once released.
+     */
+    public void release() {
+        if (buffer != null) {
+            BufferPool.shared().release(pooled);
+            pooled = null;
+            buffer = null;
+            count = 0;
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (finished) {
+            throw new IOException("Chunked body already finished");
+        }
+        if (buffer == null) {
+            throw new IOException("Chunked body released");
+        }
+    }
+
+    /**
+     * Finishes the chunked body; the underlying stream stays open.
+     */
+    @Override
+    public void close() throws IOException {
+        finish();
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            writeChunk(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    private void writeChunk(byte[] data, int offset, int length) throws IOException {
+        if (finished) {
+            throw new IOException("Chunked body already finished");
+        }
+        out.write(Integer.toHexString(length).getBytes(StandardCharsets.ISO_8859_1));
+        out.write(CRLF);
+        out.write(data, offset, length);
+        out.write(CRLF);
+    }
+}
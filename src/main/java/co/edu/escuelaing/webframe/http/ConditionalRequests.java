@@ -0,0 +1,163 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * Validators (ETag, Last-Modified) and evaluation of If-None-Match / If-Modified-Since.
+ */
+public final class ConditionalRequests {
+
+    private static final DateTimeFormatter HTTP_DATE =
+            DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private ConditionalRequests() {
+    }
+
+    /**
+     * Returns a strong entity tag derived from the remaining bytes of a buffer.
+     * The buffer position is not changed.
+     */
+    public static String contentTag(ByteBuffer content) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        digest.update(content.duplicate());
+        byte[] hash = digest.digest();
+
+        // 64 bits of the hash are plenty to tell versions of one resource apart
+        char[] tag = new char[18];
+        tag[0] = '"';
+        for (int i = 0; i < 8; i++) {
+            tag[1 + i * 2] = HEX[(hash[i] >> 4) & 0xF];
+            tag[2 + i * 2] = HEX[hash[i] & 0xF];
+        }
+        tag[17] = '"';
+        return new String(tag);
+    }
+
+    /**
+     * Returns a strong entity tag for a file version identified by its size and modification time.
+     */
+    public static String fileTag(long size, long lastModified) {
+        return "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    /**
+     * Returns the tag of an encoded representation; strong tags must differ between codings.
+     */
+    public static String encodedTag(String etag, ContentEncoding encoding) {
+        if (encoding == ContentEncoding.IDENTITY || !etag.endsWith("\"")) {
+            return etag;
+        }
+        return etag.substring(0, etag.length() - 1) + "-" + encoding.token() + "\"";
+    }
+
+    /**
+     * Returns true when the client's cached copy is still valid, so a 304 can be sent.
+     * If-None-Match takes precedence over If-Modified-Since, as required by RFC 7232.
+     *
+     * @param etag         current entity tag, or null if the resource has none
+     * @param lastModified modification time in milliseconds, or -1 if unknown
+     */
+    public static boolean isNotModified(HttpRequest request, String etag, long lastModified) {
+        if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+            return false;
+        }
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            return etag != null && matches(ifNoneMatch, etag);
+        }
+        String ifModifiedSince = request.getHeader("If-Modified-Since");
+        if (ifModifiedSince != null && lastModified >= 0) {
+            long since = parseDate(ifModifiedSince);
+            return since >= 0 && lastModified / 1000 <= since / 1000;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true when a Range header may be honoured: there is no If-Range, or it still
+     * names the current representation. If-Range needs a strong match, so weak tags never match
+     * and a date must equal the modification time.
+     *
+     * @param etag         current entity tag, or null if the resource has none
+     * @param lastModified modification time in milliseconds, or -1 if unknown
+     */
+    public static boolean isRangeApplicable(HttpRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        String value = ifRange.trim();
+        if (value.startsWith("\"") || value.startsWith("W/")) {
+            return etag != null && !etag.startsWith("W/") && value.equals(etag);
+        }
+        long date = parseDate(value);
+        return date >= 0 && lastModified >= 0 && date / 1000 == lastModified / 1000;
+    }
+
+    /**
+     * Weak comparison of an If-None-Match list against a tag.
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        String opaque = stripWeak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || stripWeak(tag).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    /**
+     * Builds a bodiless 304 response carrying the validators and caching headers.
+     */
+    public static HttpResponse notModified(String etag, String lastModified, String cacheControl, boolean vary) {
+        HttpResponse response = new HttpResponse(304);
+        if (etag != null) {
+            response.setHeader("ETag", etag);
+        }
+        if (lastModified != null) {
+            response.setHeader("Last-Modified", lastModified);
+        }
+        if (cacheControl != null) {
+            response.setHeader("Cache-Control", cacheControl);
+        }
+        if (vary) {
+            response.setHeader("Vary", "Accept-Encoding");
+        }
+        return response;
+    }
+
+    public static String formatDate(long millis) {
+        return HTTP_DATE.format(Instant.ofEpochMilli(millis));
+    }
+
+    /**
+     * Parses an IMF-fixdate, returning -1 for missing or malformed values.
+     */
+    public static long parseDate(String value) {
+        try {
+            return ZonedDateTime.parse(value.trim(), HTTP_DATE).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
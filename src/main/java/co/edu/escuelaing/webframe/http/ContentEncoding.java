@@ -0,0 +1,142 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content codings supported for responses, with Accept-Encoding negotiation.
+ */
+public enum ContentEncoding {
+    GZIP("gzip"),
+    DEFLATE("deflate"),
+    IDENTITY("identity");
+
+    private final String token;
+
+    ContentEncoding(String token) {
+        this.token = token;
+    }
+
+    public String token() {
+        return token;
+    }
+
+    /**
+     * Picks the coding to use for an Accept-Encoding header value, honouring q-values.
+     * gzip wins ties because it is the most widely supported; identity is returned when the
+     * header is absent or no supported coding is acceptable.
+     */
+    public static ContentEncoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return IDENTITY;
+        }
+
+        double gzip = -1;
+        double deflate = -1;
+        double wildcard = -1;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.split(";");
+            String coding = tokens[0].trim().toLowerCase();
+            double quality = 1.0;
+            for (int i = 1; i < tokens.length; i++) {
+                String parameter = tokens[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = quality;
+            } else if (coding.equals("deflate")) {
+                deflate = quality;
+            } else if (coding.equals("*")) {
+                wildcard = quality;
+            }
+        }
+        if (gzip < 0) {
+            gzip = wildcard;
+        }
+        if (deflate < 0) {
+            deflate = wildcard;
+        }
+
+        if (gzip > 0 && gzip >= deflate) {
+            return GZIP;
+        }
+        if (deflate > 0) {
+            return DEFLATE;
+        }
+        return IDENTITY;
+    }
+
+    /**
+     * Returns true for media types worth compressing.
+     */
+    public static boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase();
+        return type.startsWith("text/") || type.startsWith("application/javascript")
+                || type.startsWith("application/json") || type.startsWith("image/svg+xml");
+    }
+
+    /**
+     * Wraps a stream so that bytes written to the result are compressed into it.
+     * Closing the returned stream finishes the compressed data and releases the native
+     * compressor, but leaves {@code out} open.
+     */
+    public OutputStream wrap(OutputStream out) throws IOException {
+        OutputStream target = new NonClosingOutputStream(out);
+        switch (this) {
+            case GZIP:
+                return new GZIPOutputStream(target, 8192);
+            case DEFLATE:
+                return new DeflaterOutputStream(target);
+            default:
+                return target;
+        }
+    }
+
+    /**
+     * Compresses the remaining bytes of a buffer without changing its position.
+     */
+    public byte[] compress(ByteBuffer content) throws IOException {
+        ByteBuffer source = content.duplicate();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, source.remaining() / 3));
+        byte[] chunk = new byte[8192];
+        try (OutputStream out = wrap(compressed)) {
+            while (source.hasRemaining()) {
+                int length = Math.min(chunk.length, source.remaining());
+                source.get(chunk, 0, length);
+                out.write(chunk, 0, length);
+            }
+        }
+        return compressed.toByteArray();
+    }
+
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException {
+            out.write(data, offset, length);
+        }
+
+        @Override
+        public void close() {
+            // the wrapped stream belongs to the caller
+        }
+    }
+}
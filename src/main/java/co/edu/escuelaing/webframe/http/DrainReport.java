@@ -0,0 +1,48 @@
+package co.edu.escuelaing.webframe.http;
+
+/**
+ * Outcome of a graceful shutdown: requests that finished while the server drained, and requests
+ * still in progress when the drain deadline passed, whose connections were closed.
+ */
+public final class DrainReport {
+
+    private final long completed;
+    private final long aborted;
+    private final long elapsedMillis;
+
+    public DrainReport(long completed, long aborted, long elapsedMillis) {
+        this.completed = completed;
+        this.aborted = aborted;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Returns the number of requests whose response was written during the drain.
+     */
+    public long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * Returns the number of requests cut off by the deadline, or by a connection failing while draining.
+     */
+    public long getAborted() {
+        return aborted;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Returns true when no request was aborted.
+     */
+    public boolean isClean() {
+        return aborted == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "drained in " + elapsedMillis + " ms, " + completed + " requests completed, " + aborted + " aborted";
+    }
+}
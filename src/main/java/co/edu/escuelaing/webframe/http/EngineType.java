@@ -0,0 +1,16 @@
+package co.edu.escuelaing.webframe.http;
+
+/**
+ * Connection engine used to serve HTTP traffic.
+ */
+public enum EngineType {
+    /**
+     * Blocking sockets, one worker thread per open connection ({@link HttpServer}).
+     */
+    BLOCKING,
+
+    /**
+     * Selector-based event loops with request processing on a worker pool.
+     */
+    NIO
+}
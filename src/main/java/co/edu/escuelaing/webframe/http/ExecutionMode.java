@@ -0,0 +1,16 @@
+package co.edu.escuelaing.webframe.http;
+
+/**
+ * Execution model used to process accepted connections.
+ */
+public enum ExecutionMode {
+    /**
+     * Bounded pool of platform threads with a bounded task queue.
+     */
+    POOL,
+
+    /**
+     * One virtual thread per connection. Falls back to POOL on JDKs without virtual threads.
+     */
+    VIRTUAL
+}
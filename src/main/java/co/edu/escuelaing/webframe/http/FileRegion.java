@@ -0,0 +1,90 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import co.edu.escuelaing.webframe.http.buffer.BufferPool;
+
+/**
+ * A byte range of a file used as a response body.
+ * The file is only opened while the body is written, so the region itself holds no resources.
+ */
+public final class FileRegion {
+
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    private final Path file;
+    private final long position;
+    private final long count;
+
+    public FileRegion(Path file, long position, long count) {
+        this.file = file;
+        this.position = position;
+        this.count = count;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Opens the file for reading; callers own the returned channel.
+     */
+    public FileChannel open() throws IOException {
+        return FileChannel.open(file, StandardOpenOption.READ);
+    }
+
+    /**
+     * Sends the region to a blocking channel with {@link FileChannel#transferTo}, which lets the
+     * kernel copy file pages straight to the socket (sendfile) without touching the heap.
+     */
+    public void transferTo(WritableByteChannel target) throws IOException {
+        try (FileChannel source = open()) {
+            long offset = position;
+            long end = position + count;
+            while (offset < end) {
+                long sent = source.transferTo(offset, end - offset, target);
+                if (sent <= 0 && offset >= source.size()) {
+                    throw new IOException("File truncated while sending: " + file);
+                }
+                offset += sent;
+            }
+        }
+    }
+
+    /**
+     * Copies the region through a small pooled buffer, for targets that are not channels.
+     */
+    public void copyTo(OutputStream out) throws IOException {
+        ByteBuffer buffer = BufferPool.shared().acquire(COPY_BUFFER_SIZE);
+        try (FileChannel source = open()) {
+            long offset = position;
+            long end = position + count;
+            while (offset < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - offset));
+                int read = source.read(buffer, offset);
+                if (read < 0) {
+                    throw new IOException("File truncated while sending: " + file);
+                }
+                out.write(buffer.array(), 0, read);
+                offset += read;
+            }
+        } finally {
+            BufferPool.shared().release(buffer);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package co.edu.escuelaing.webframe.http;
+
+/**
+ * Signals a request head that cannot be accepted, with the status code to answer it with.
+ */
+public class HttpParseException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    public HttpParseException(int statusCode, String message) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
@@ -0,0 +1,258 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import co.edu.escuelaing.webframe.http.metrics.RouteMetrics;
+
+/**
+ * Parsed HTTP request line and headers.
+ * Requests read from a connection are filled by {@link HttpRequestParser} and reused for the
+ * next request on that connection: the head bytes are copied into storage owned by the request
+ * and header values stay views into it, decoded only when asked for. A request must therefore
+ * not be kept after its response has been written.
+ */
+public class HttpRequest {
+
+    private static final byte[] NO_DATA = new byte[0];
+
+    private String method;
+    private String target;
+    private String version;
+
+    private byte[] data = NO_DATA;
+    private int targetStart;
+    private int targetEnd;
+    /**
+     * Four offsets per parsed header: name start, name end, value start, value end.
+     */
+    private int[] headerOffsets = new int[64];
+    private int headerCount;
+    private long contentLength = -1;
+    private boolean chunked;
+    private RequestBodyStream body;
+
+    private Map<String, String> addedHeaders;
+    private int headLength;
+    private RouteMetrics routeMetrics;
+
+    public HttpRequest(String method, String target, String version) {
+        this.method = method;
+        this.target = target;
+        this.version = version;
+    }
+
+    /**
+     * Creates an empty request to be filled, and refilled, by {@link HttpRequestParser}.
+     */
+    public HttpRequest() {
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * Returns the request target, including the query string if present.
+     */
+    public String getTarget() {
+        if (target == null) {
+            target = new String(data, targetStart, targetEnd - targetStart, StandardCharsets.ISO_8859_1);
+        }
+        return target;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Adds a header. Names are case-insensitive; repeated headers are joined with a comma.
+     */
+    public void addHeader(String name, String value) {
+        if (addedHeaders == null) {
+            addedHeaders = new HashMap<>();
+        }
+        addedHeaders.merge(name.toLowerCase(), value, (previous, next) -> previous + ", " + next);
+    }
+
+    public String getHeader(String name) {
+        String value = null;
+        for (int i = 0; i < headerCount; i++) {
+            int base = i * 4;
+            if (nameMatches(headerOffsets[base], headerOffsets[base + 1], name)) {
+                String next = new String(data, headerOffsets[base + 2],
+                        headerOffsets[base + 3] - headerOffsets[base + 2], StandardCharsets.ISO_8859_1);
+                value = value == null ? next : value + ", " + next;
+            }
+        }
+        if (addedHeaders != null) {
+            String added = addedHeaders.get(name.toLowerCase());
+            if (added != null) {
+                value = value == null ? added : value + ", " + added;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns the declared body length, or -1 when the request has no Content-Length.
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Returns true when the body is sent with chunked transfer encoding.
+     */
+    public boolean isChunked() {
+        return chunked;
+    }
+
+    /**
+     * Returns true when a body follows the head.
+     */
+    public boolean hasBody() {
+        return chunked || contentLength > 0;
+    }
+
+    /**
+     * Returns the body as it arrives from the connection; empty when the request has none.
+     */
+    public InputStream getBody() {
+        return body != null ? body : InputStream.nullInputStream();
+    }
+
+    /**
+     * Sets the stream the body is read from, done by the engine before the request is handled.
+     */
+    public void setBody(RequestBodyStream body) {
+        this.body = body;
+    }
+
+    /**
+     * Returns the body stream set by the engine, or null when the request has no body.
+     */
+    public RequestBodyStream getBodyStream() {
+        return body;
+    }
+
+    /**
+     * Returns true when the client asked to keep the connection open after this request.
+     * HTTP/1.1 connections are persistent unless the client sends {@code Connection: close};
+     * HTTP/1.0 connections are persistent only with {@code Connection: keep-alive}.
+     */
+    public boolean isKeepAliveRequested() {
+        String connection = getHeader("Connection");
+        if ("HTTP/1.1".equals(version)) {
+            return connection == null || !hasToken(connection, "close");
+        }
+        return connection != null && hasToken(connection, "keep-alive");
+    }
+
+    private boolean nameMatches(int start, int end, String name) {
+        if (end - start != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            int a = data[start + i];
+            int b = name.charAt(i);
+            if (a != b && toLower(a) != toLower(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int toLower(int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    private static boolean hasToken(String headerValue, String token) {
+        for (String part : headerValue.split(",")) {
+            if (part.trim().equalsIgnoreCase(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Clears the previous request before a new head is parsed into this one.
+     */
+    void reset() {
+        method = null;
+        target = null;
+        version = null;
+        headerCount = 0;
+        contentLength = -1;
+        chunked = false;
+        body = null;
+        addedHeaders = null;
+        headLength = 0;
+        routeMetrics = null;
+    }
+
+    /**
+     * Copies a complete head into the request's own storage; the offsets recorded while parsing
+     * are relative to {@code offset}.
+     */
+    void load(byte[] source, int offset, int length) {
+        if (data.length < length) {
+            data = new byte[Math.max(length, Math.min(data.length * 2, 64 * 1024))];
+        }
+        System.arraycopy(source, offset, data, 0, length);
+        headLength = length;
+    }
+
+    /**
+     * Number of bytes of the parsed head, 0 for requests built in code.
+     */
+    int getHeadLength() {
+        return headLength;
+    }
+
+    /**
+     * Metrics of the route that served the request, set by the dispatcher so the engine can
+     * record the write phase.
+     */
+    RouteMetrics getRouteMetrics() {
+        return routeMetrics;
+    }
+
+    void setRouteMetrics(RouteMetrics routeMetrics) {
+        this.routeMetrics = routeMetrics;
+    }
+
+    int getHeaderCount() {
+        return headerCount;
+    }
+
+    void setRequestLine(String method, int targetStart, int targetEnd, String version) {
+        this.method = method;
+        this.targetStart = targetStart;
+        this.targetEnd = targetEnd;
+        this.version = version;
+    }
+
+    void addHeaderView(int nameStart, int nameEnd, int valueStart, int valueEnd) {
+        int base = headerCount * 4;
+        if (base + 4 > headerOffsets.length) {
+            int[] grown = new int[headerOffsets.length * 2];
+            System.arraycopy(headerOffsets, 0, grown, 0, headerOffsets.length);
+            headerOffsets = grown;
+        }
+        headerOffsets[base] = nameStart;
+        headerOffsets[base + 1] = nameEnd;
+        headerOffsets[base + 2] = valueStart;
+        headerOffsets[base + 3] = valueEnd;
+        headerCount++;
+    }
+
+    void setBodyFraming(long contentLength, boolean chunked) {
+        this.contentLength = contentLength;
+        this.chunked = chunked;
+    }
+}
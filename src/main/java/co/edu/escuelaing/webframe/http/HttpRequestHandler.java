@@ -0,0 +1,314 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import co.edu.escuelaing.webframe.http.admission.AdmissionController;
+import co.edu.escuelaing.webframe.http.buffer.BufferPool;
+import co.edu.escuelaing.webframe.http.log.AccessLog;
+import co.edu.escuelaing.webframe.http.metrics.RouteMetrics;
+import co.edu.escuelaing.webframe.http.metrics.ServerMetrics;
+
+/**
+ * Turns parsed requests into responses, independently of the connection engine.
+ * Static files are served from the resources folder, everything else goes to the dispatcher.
+ */
+public class HttpRequestHandler implements Closeable {
+
+    /**
+     * Unread rest of a request body, once the response is written, that is skipped so the
+     * connection can be reused; larger or chunked rests close it after the response instead.
+     */
+    static final long MAX_DISCARDED_BODY_BYTES = 64 * 1024;
+
+    private final ServerConfig config;
+    private final StaticFileHandler staticFiles;
+    private final ResponseCompressor compressor;
+    private final ResponseCache responseCache;
+    private final HttpRequestParser parser;
+    private final AccessLog accessLog;
+    private final AdmissionController admission;
+    private final ServerMetrics metrics = new ServerMetrics();
+    private final String metricsPath;
+    private volatile RequestDispatcher dispatcher;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder drainCompleted = new LongAdder();
+    private final LongAdder drainAborted = new LongAdder();
+    private volatile boolean draining;
+
+    public HttpRequestHandler(RequestDispatcher dispatcher, ServerConfig config) {
+        this.dispatcher = dispatcher;
+        this.config = config;
+        this.metricsPath = config.getMetricsPath();
+        this.staticFiles = new StaticFileHandler(config);
+        this.compressor = new ResponseCompressor(config);
+        this.responseCache = ResponseCache.create(config, compressor);
+        dispatcher.setMetrics(metrics);
+        dispatcher.setResponseCache(responseCache);
+        this.parser = new HttpRequestParser(config);
+        this.accessLog = openAccessLog(config);
+        if (accessLog != null) {
+            metrics.registerGauge("webframe_access_log_dropped", "Access log entries dropped since start.", accessLog::getDroppedCount);
+        }
+        metrics.registerGauge("webframe_inflight_requests", "Requests being processed or written.", inFlight::get);
+        BufferPool buffers = BufferPool.shared();
+        metrics.registerGauge("webframe_buffer_pool_acquired", "Buffers taken from the shared buffer pool since start.", buffers::getAcquireCount);
+        metrics.registerGauge("webframe_buffer_pool_allocated", "Buffer pool acquires that had to allocate a new buffer.", buffers::getAllocationCount);
+        metrics.registerGauge("webframe_buffer_pool_discarded", "Released buffers dropped because their size class was full.", buffers::getDiscardCount);
+        metrics.registerGauge("webframe_buffer_pool_outstanding", "Buffers acquired from the pool and not released yet.", buffers::getOutstandingCount);
+        metrics.registerGauge("webframe_buffer_pool_pooled_bytes", "Bytes of free buffers held by the shared pool.", buffers::getPooledBytes);
+        this.admission = new AdmissionController(config);
+        metrics.registerGauge("webframe_requests_rate_limited", "Requests refused with 429 by the per-client rate limit.", admission::getRateLimitedCount);
+        metrics.registerGauge("webframe_requests_shed", "Requests refused with 503 by the concurrency or queue time limit.", admission::getShedCount);
+        metrics.registerGauge("webframe_rate_limited_clients", "Clients with a rate limit bucket.", admission::getTrackedClients);
+        if (responseCache != null) {
+            metrics.registerGauge("webframe_response_cache_hits", "Responses served from the response cache.", responseCache::getHitCount);
+            metrics.registerGauge("webframe_response_cache_misses", "Cacheable requests that called the handler.", responseCache::getMissCount);
+            metrics.registerGauge("webframe_response_cache_coalesced", "Misses that waited for a concurrent load.", responseCache::getCoalescedCount);
+            metrics.registerGauge("webframe_response_cache_bytes", "Bytes held by the response cache.", responseCache::getCurrentBytes);
+        }
+    }
+
+    private static AccessLog openAccessLog(ServerConfig config) {
+        try {
+            return AccessLog.create(config);
+        } catch (IOException e) {
+            System.err.println("Access log disabled, cannot open " + config.getAccessLogPath() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Applies admission control to a request marked with {@link #requestStarted()}. The metrics
+     * endpoint is always admitted so the server can be observed while it sheds load.
+     *
+     * @param queuedNanos time the request waited for a worker
+     * @return the response refusing the request, or null when it should be handled
+     */
+    public HttpResponse admit(HttpRequest request, String remoteAddress, long queuedNanos) {
+        if (metricsPath != null && request.getTarget().equals(metricsPath)) {
+            return null;
+        }
+        return admission.admit(remoteAddress, inFlight.get(), queuedNanos);
+    }
+
+    public HttpResponse handle(HttpRequest request) {
+        String path = request.getTarget();
+        if (metricsPath != null && path.equals(metricsPath)) {
+            return metricsResponse();
+        }
+        if (staticFiles.isStaticFile(path)) {
+            long start = System.nanoTime();
+            HttpResponse response = staticFiles.handle(request);
+            metrics.staticFiles().getHandler().record(System.nanoTime() - start);
+            request.setRouteMetrics(metrics.staticFiles());
+            return response;
+        }
+
+        HttpResponse response = dispatcher.dispatch(request);
+        compressor.apply(request, response);
+        String etag = response.getHeader("ETag");
+        if (etag != null && ConditionalRequests.isNotModified(request, etag, -1)) {
+            return ConditionalRequests.notModified(etag, null, response.getHeader("Cache-Control"),
+                    response.getHeader("Vary") != null);
+        }
+        return response;
+    }
+
+    private HttpResponse metricsResponse() {
+        HttpResponse response = new HttpResponse(200);
+        response.setHeader("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        response.setHeader("Cache-Control", "no-store");
+        response.setBody(metrics.toPrometheusText().getBytes(StandardCharsets.UTF_8));
+        return response;
+    }
+
+    /**
+     * Records a written response: its status, the bytes exchanged and, for routed requests,
+     * the time spent writing it.
+     *
+     * @param request the request, or null when it could not be parsed
+     */
+    public void recordResponse(HttpRequest request, HttpResponse response, long writeNanos) {
+        long received = 0;
+        if (request != null) {
+            RequestBodyStream body = request.getBodyStream();
+            received = request.getHeadLength() + Math.max(Math.max(0, request.getContentLength()),
+                    body != null ? body.getReceivedLength() : 0);
+            RouteMetrics route = request.getRouteMetrics();
+            if (route != null) {
+                route.getWrite().record(writeNanos);
+            }
+        }
+        boolean noBody = response.getStatusCode() == 304 || (request != null && "HEAD".equals(request.getMethod()));
+        long body = noBody ? 0 : Math.max(0, response.getContentLength());
+        metrics.requestCompleted(response.getStatusCode(), received, response.getEncodedHeadLength() + body);
+    }
+
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the Connection and Keep-Alive headers for a response.
+     *
+     * @param served number of requests served on the connection, including this one
+     */
+    public void applyConnectionHeaders(HttpResponse response, boolean keepAlive, int served) {
+        if (keepAlive) {
+            response.setHeader("Connection", "keep-alive");
+            response.setHeader("Keep-Alive", "timeout=" + (config.getKeepAliveTimeoutMillis() / 1000)
+                    + ", max=" + (config.getMaxKeepAliveRequests() - served));
+        } else {
+            response.setHeader("Connection", "close");
+        }
+    }
+
+    /**
+     * Returns true when the connection may stay open after answering the request. It is called
+     * with the final response ready, so a client still waiting for 100 Continue is not sent one
+     * any more, and whatever the handler left of the body must be small enough to skip.
+     */
+    public boolean shouldKeepAlive(HttpRequest request, int served) {
+        RequestBodyStream body = request.getBodyStream();
+        if (body != null) {
+            body.declineContinue();
+        }
+        return !draining && request.isKeepAliveRequested() && served < config.getMaxKeepAliveRequests()
+                && (body == null || isSkippable(body));
+    }
+
+    /**
+     * Returns true when the unread rest of a body is small enough to read and drop.
+     */
+    public static boolean isSkippable(RequestBodyStream body) {
+        long unread = body.getUnreadLength();
+        return unread >= 0 && unread <= MAX_DISCARDED_BODY_BYTES;
+    }
+
+    /**
+     * Returns true when the declared body exceeds the configured limit, to be answered with 413
+     * before anything is read.
+     */
+    public boolean isBodyTooLarge(HttpRequest request) {
+        return config.getMaxBodySize() > 0 && request.getContentLength() > config.getMaxBodySize();
+    }
+
+    /**
+     * Attaches the body of an HTTP/1.x request, read from {@code source} as the handler consumes it.
+     *
+     * @param continuation sends 100 Continue, used only when the client expects it
+     * @return the body, or null when the request has none
+     */
+    public RequestBodyStream openBody(HttpRequest request, InputStream source,
+            RequestBodyStream.Continuation continuation) {
+        if (!request.hasBody()) {
+            return null;
+        }
+        boolean expectsContinue = "HTTP/1.1".equals(request.getVersion())
+                && "100-continue".equalsIgnoreCase(request.getHeader("Expect"));
+        RequestBodyStream body = new RequestBodyStream(source, request.getContentLength(), request.isChunked(),
+                config.getMaxBodySize(), expectsContinue ? continuation : null);
+        request.setBody(body);
+        return body;
+    }
+
+    /**
+     * Marks a parsed request as in progress until {@link #requestFinished} is called for it.
+     */
+    public void requestStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * @param completed true when the response was written, false when the connection closed first
+     */
+    public void requestFinished(boolean completed) {
+        inFlight.decrementAndGet();
+        if (draining) {
+            (completed ? drainCompleted : drainAborted).increment();
+        }
+    }
+
+    /**
+     * Starts a graceful shutdown: responses from now on close their connection, and finished
+     * requests are counted for the {@link DrainReport}.
+     */
+    public void startDraining() {
+        draining = true;
+    }
+
+    public boolean isDraining() {
+        return draining;
+    }
+
+    public int getInFlightRequests() {
+        return inFlight.get();
+    }
+
+    /**
+     * Summarizes the drain; requests still in flight count as aborted.
+     */
+    public DrainReport drainReport(long elapsedMillis) {
+        return new DrainReport(drainCompleted.sum(), drainAborted.sum() + inFlight.get(), elapsedMillis);
+    }
+
+    /**
+     * Records a response in the access log, if one is configured.
+     *
+     * @param request the request, or null when it could not be parsed
+     */
+    public void logAccess(String remoteAddress, HttpRequest request, HttpResponse response) {
+        if (accessLog != null) {
+            accessLog.log(remoteAddress, request, response);
+        }
+    }
+
+    public AccessLog getAccessLog() {
+        return accessLog;
+    }
+
+    /**
+     * Parser configured with the request limits, shared by all connections.
+     */
+    public HttpRequestParser getParser() {
+        return parser;
+    }
+
+    /**
+     * Returns the cache of {@code @Cacheable} responses, or null when it is disabled.
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    public StaticFileHandler getStaticFiles() {
+        return staticFiles;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (accessLog != null) {
+            accessLog.close();
+        }
+        staticFiles.close();
+    }
+
+    public RequestDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    public void setDispatcher(RequestDispatcher dispatcher) {
+        dispatcher.setMetrics(metrics);
+        dispatcher.setResponseCache(responseCache);
+        if (responseCache != null) {
+            responseCache.clear();
+        }
+        this.dispatcher = dispatcher;
+    }
+}
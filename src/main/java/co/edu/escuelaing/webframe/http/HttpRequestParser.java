@@ -0,0 +1,281 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Byte-level parser for HTTP/1.x request heads.
+ * It scans the raw bytes once, recording the request line and header boundaries as offsets,
+ * and copies the head into a reusable {@link HttpRequest}; no strings are created for headers
+ * unless they are read later. Oversized request lines are rejected with 414, oversized or too
+ * many headers with 431 and malformed heads with 400. The parser holds no per-request state and
+ * can be shared between threads.
+ */
+public final class HttpRequestParser {
+
+    private static final String[] KNOWN_METHODS = { "GET", "HEAD", "POST", "PUT", "DELETE", "PATCH", "OPTIONS" };
+    private static final String HTTP_1_1 = "HTTP/1.1";
+    private static final String HTTP_1_0 = "HTTP/1.0";
+    private static final byte[] CONTENT_LENGTH = "content-length".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] TRANSFER_ENCODING = "transfer-encoding".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] CHUNKED = "chunked".getBytes(StandardCharsets.ISO_8859_1);
+
+    private final int maxRequestLineLength;
+    private final int maxHeaderSize;
+    private final int maxHeaderCount;
+
+    public HttpRequestParser(ServerConfig config) {
+        this(config.getMaxRequestLineLength(), config.getMaxHeaderSize(), config.getMaxHeaderCount());
+    }
+
+    public HttpRequestParser(int maxRequestLineLength, int maxHeaderSize, int maxHeaderCount) {
+        this.maxRequestLineLength = maxRequestLineLength;
+        this.maxHeaderSize = maxHeaderSize;
+        this.maxHeaderCount = maxHeaderCount;
+    }
+
+    public int getMaxHeaderSize() {
+        return maxHeaderSize;
+    }
+
+    /**
+     * Parses the head starting at {@code offset} into {@code request}.
+     * Empty lines before the request line are skipped, as RFC 7230 allows.
+     *
+     * @return the number of bytes consumed, or -1 if the head is not complete yet
+     * @throws HttpParseException if the head is malformed or exceeds a limit
+     */
+    public int parse(byte[] buffer, int offset, int length, HttpRequest request) throws HttpParseException {
+        int end = offset + length;
+        int position = offset;
+        while (position < end && (buffer[position] == '\r' || buffer[position] == '\n')) {
+            position++;
+        }
+        int headStart = position;
+        request.reset();
+
+        int lineEnd = indexOfLineFeed(buffer, position, end);
+        if (lineEnd < 0) {
+            if (end - headStart > maxRequestLineLength) {
+                throw new HttpParseException(414, "Request line too long");
+            }
+            return -1;
+        }
+        int contentEnd = trimCarriageReturn(buffer, position, lineEnd);
+        if (contentEnd - headStart > maxRequestLineLength) {
+            throw new HttpParseException(414, "Request line too long");
+        }
+        parseRequestLine(buffer, headStart, contentEnd, request);
+        position = lineEnd + 1;
+
+        long contentLength = -1;
+        boolean chunked = false;
+        while (true) {
+            lineEnd = indexOfLineFeed(buffer, position, end);
+            if (lineEnd < 0) {
+                if (end - headStart > maxHeaderSize) {
+                    throw new HttpParseException(431, "Request header fields too large");
+                }
+                return -1;
+            }
+            if (lineEnd + 1 - headStart > maxHeaderSize) {
+                throw new HttpParseException(431, "Request header fields too large");
+            }
+            contentEnd = trimCarriageReturn(buffer, position, lineEnd);
+            if (contentEnd == position) {
+                break;
+            }
+            if (request.getHeaderCount() >= maxHeaderCount) {
+                throw new HttpParseException(431, "Too many header fields");
+            }
+
+            int colon = parseHeaderLine(buffer, position, contentEnd, headStart, request);
+            if (equalsIgnoreCase(buffer, position, colon, CONTENT_LENGTH)) {
+                long value = parseContentLength(buffer, colon + 1, contentEnd);
+                if (contentLength >= 0 && contentLength != value) {
+                    throw new HttpParseException(400, "Conflicting Content-Length headers");
+                }
+                contentLength = value;
+            } else if (equalsIgnoreCase(buffer, position, colon, TRANSFER_ENCODING)) {
+                int valueStart = skipWhitespace(buffer, colon + 1, contentEnd);
+                int valueEnd = trimWhitespace(buffer, valueStart, contentEnd);
+                if (!equalsIgnoreCase(buffer, valueStart, valueEnd, CHUNKED)) {
+                    throw new HttpParseException(501, "Unsupported transfer coding");
+                }
+                chunked = true;
+            }
+            position = lineEnd + 1;
+        }
+
+        if (chunked && contentLength >= 0) {
+            throw new HttpParseException(400, "Both Content-Length and Transfer-Encoding present");
+        }
+        int headEnd = lineEnd + 1;
+        request.load(buffer, headStart, headEnd - headStart);
+        request.setBodyFraming(contentLength, chunked);
+        return headEnd - offset;
+    }
+
+    private static void parseRequestLine(byte[] buffer, int start, int end, HttpRequest request)
+            throws HttpParseException {
+        int methodEnd = indexOf(buffer, start, end, (byte) ' ');
+        if (methodEnd <= start) {
+            throw new HttpParseException(400, "Malformed request line");
+        }
+        for (int i = start; i < methodEnd; i++) {
+            if (!isTokenChar(buffer[i])) {
+                throw new HttpParseException(400, "Malformed method");
+            }
+        }
+        int targetStart = methodEnd + 1;
+        int targetEnd = indexOf(buffer, targetStart, end, (byte) ' ');
+        if (targetEnd <= targetStart) {
+            throw new HttpParseException(400, "Malformed request line");
+        }
+        for (int i = targetStart; i < targetEnd; i++) {
+            if (buffer[i] <= ' ' || buffer[i] == 0x7F) {
+                throw new HttpParseException(400, "Malformed request target");
+            }
+        }
+        int versionStart = targetEnd + 1;
+        if (end - versionStart != 8 || buffer[versionStart] != 'H' || buffer[versionStart + 1] != 'T'
+                || buffer[versionStart + 2] != 'T' || buffer[versionStart + 3] != 'P' || buffer[versionStart + 4] != '/') {
+            throw new HttpParseException(400, "Malformed HTTP version");
+        }
+
+        request.setRequestLine(method(buffer, start, methodEnd), targetStart - start, targetEnd - start,
+                version(buffer, versionStart, end));
+    }
+
+    /**
+     * Records one header line and returns the index of its colon.
+     */
+    private static int parseHeaderLine(byte[] buffer, int start, int end, int headStart, HttpRequest request)
+            throws HttpParseException {
+        if (buffer[start] == ' ' || buffer[start] == '\t') {
+            throw new HttpParseException(400, "Obsolete header line folding");
+        }
+        int colon = indexOf(buffer, start, end, (byte) ':');
+        if (colon <= start) {
+            throw new HttpParseException(400, "Malformed header line");
+        }
+        for (int i = start; i < colon; i++) {
+            if (!isTokenChar(buffer[i])) {
+                throw new HttpParseException(400, "Malformed header name");
+            }
+        }
+        int valueStart = skipWhitespace(buffer, colon + 1, end);
+        int valueEnd = trimWhitespace(buffer, valueStart, end);
+        request.addHeaderView(start - headStart, colon - headStart, valueStart - headStart, valueEnd - headStart);
+        return colon;
+    }
+
+    private static long parseContentLength(byte[] buffer, int start, int end) throws HttpParseException {
+        int valueStart = skipWhitespace(buffer, start, end);
+        int valueEnd = trimWhitespace(buffer, valueStart, end);
+        if (valueStart == valueEnd || valueEnd - valueStart > 18) {
+            throw new HttpParseException(400, "Invalid Content-Length");
+        }
+        long value = 0;
+        for (int i = valueStart; i < valueEnd; i++) {
+            if (buffer[i] < '0' || buffer[i] > '9') {
+                throw new HttpParseException(400, "Invalid Content-Length");
+            }
+            value = value * 10 + (buffer[i] - '0');
+        }
+        return value;
+    }
+
+    private static String method(byte[] buffer, int start, int end) {
+        for (String known : KNOWN_METHODS) {
+            if (equals(buffer, start, end, known)) {
+                return known;
+            }
+        }
+        return new String(buffer, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    private static String version(byte[] buffer, int start, int end) {
+        if (equals(buffer, start, end, HTTP_1_1)) {
+            return HTTP_1_1;
+        }
+        if (equals(buffer, start, end, HTTP_1_0)) {
+            return HTTP_1_0;
+        }
+        return new String(buffer, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    private static boolean equals(byte[] buffer, int start, int end, String text) {
+        if (end - start != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (buffer[start + i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares against a lowercase ASCII name.
+     */
+    private static boolean equalsIgnoreCase(byte[] buffer, int start, int end, byte[] lowercase) {
+        if (end - start != lowercase.length) {
+            return false;
+        }
+        for (int i = 0; i < lowercase.length; i++) {
+            int c = buffer[start + i];
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            if (c != lowercase[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isTokenChar(byte b) {
+        if (b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z' || b >= '0' && b <= '9') {
+            return true;
+        }
+        switch (b) {
+            case '!': case '#': case '$': case '%': case '&': case '\'': case '*':
+            case '+': case '-': case '.': case '^': case '_': case '`': case '|': case '~':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static int indexOfLineFeed(byte[] buffer, int start, int end) {
+        return indexOf(buffer, start, end, (byte) '\n');
+    }
+
+    private static int indexOf(byte[] buffer, int start, int end, byte value) {
+        for (int i = start; i < end; i++) {
+            if (buffer[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int trimCarriageReturn(byte[] buffer, int start, int lineFeed) {
+        return lineFeed > start && buffer[lineFeed - 1] == '\r' ? lineFeed - 1 : lineFeed;
+    }
+
+    private static int skipWhitespace(byte[] buffer, int start, int end) {
+        while (start < end && (buffer[start] == ' ' || buffer[start] == '\t')) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimWhitespace(byte[] buffer, int start, int end) {
+        while (end > start && (buffer[end - 1] == ' ' || buffer[end - 1] == '\t')) {
+            end--;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,347 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import co.edu.escuelaing.webframe.http.buffer.BufferPool;
+
+/**
+ * HTTP response whose body is a byte array, a (possibly direct) buffer, a file region or a
+ * streaming body. Framing headers are always derived from the body: Content-Length for bodies
+ * of known size and chunked transfer encoding for streaming ones, so the response can be
+ * sent on a persistent connection.
+ */
+public class HttpResponse {
+
+    private static final byte[] EMPTY_BODY = new byte[0];
+    private static final int COPY_BUFFER_SIZE = 8192;
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    private final int statusCode;
+    private final Map<String, String> headers = new LinkedHashMap<>();
+    private byte[] body = EMPTY_BODY;
+    private ByteBuffer bufferBody;
+    private FileRegion fileBody;
+    private StreamingBody streamingBody;
+    private byte[] precomputedHeaders;
+    private int encodedHeadLength;
+
+    public HttpResponse(int statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * Creates a UTF-8 HTML response.
+     */
+    public static HttpResponse html(int statusCode, String html) {
+        HttpResponse response = new HttpResponse(statusCode);
+        response.setHeader("Content-Type", "text/html; charset=UTF-8");
+        response.setBody(html.getBytes(StandardCharsets.UTF_8));
+        return response;
+    }
+
+    /**
+     * Creates the standard HTML error page for a status code.
+     */
+    public static HttpResponse error(int statusCode) {
+        String status = statusCode + " " + reasonPhrase(statusCode);
+        return html(statusCode, "<html><head><title>" + status + "</title></head>"
+                + "<body><h1>" + status + "</h1></body></html>");
+    }
+
+    /**
+     * Encodes the interim response that tells a client sending {@code Expect: 100-continue}
+     * to go on with its body.
+     */
+    public static byte[] encodeContinue() {
+        return CONTINUE.clone();
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public void setHeader(String name, String value) {
+        headers.put(name, value);
+    }
+
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    /**
+     * Headers set with {@link #setHeader}, in insertion order; precomputed lines are not included.
+     */
+    Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Passes every header to {@code action}: precomputed lines first, then those set with
+     * {@link #setHeader}. Framing headers derived from the body are not included.
+     */
+    public void forEachHeader(BiConsumer<String, String> action) {
+        if (precomputedHeaders != null) {
+            int lineStart = 0;
+            for (int i = 0; i + 1 < precomputedHeaders.length; i++) {
+                if (precomputedHeaders[i] == '\r' && precomputedHeaders[i + 1] == '\n') {
+                    String line = new String(precomputedHeaders, lineStart, i - lineStart, StandardCharsets.ISO_8859_1);
+                    int colon = line.indexOf(':');
+                    if (colon > 0) {
+                        action.accept(line.substring(0, colon), line.substring(colon + 1).trim());
+                    }
+                    lineStart = i + 2;
+                    i++;
+                }
+            }
+        }
+        headers.forEach(action);
+    }
+
+    /**
+     * Adds already encoded header lines (each ending in CRLF), written after the status line.
+     */
+    public void setPrecomputedHeaders(byte[] precomputedHeaders) {
+        this.precomputedHeaders = precomputedHeaders;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public void setBody(byte[] body) {
+        this.body = body != null ? body : EMPTY_BODY;
+        this.bufferBody = null;
+        this.fileBody = null;
+        this.streamingBody = null;
+    }
+
+    /**
+     * Uses the remaining bytes of a buffer as body. Each write works on a duplicate,
+     * so a shared read-only buffer can back many concurrent responses.
+     */
+    public void setBody(ByteBuffer body) {
+        setBody((byte[]) null);
+        this.bufferBody = body;
+    }
+
+    /**
+     * Uses a file region as body; it is sent with {@link FileRegion#transferTo} when possible.
+     */
+    public void setBody(FileRegion body) {
+        setBody((byte[]) null);
+        this.fileBody = body;
+    }
+
+    /**
+     * Uses a body that is produced while it is written; it is sent with chunked transfer encoding.
+     */
+    public void setBody(StreamingBody body) {
+        setBody((byte[]) null);
+        this.streamingBody = body;
+    }
+
+    public ByteBuffer getBufferBody() {
+        return bufferBody;
+    }
+
+    public FileRegion getFileBody() {
+        return fileBody;
+    }
+
+    public StreamingBody getStreamingBody() {
+        return streamingBody;
+    }
+
+    /**
+     * Returns true when the body length is unknown and the response is sent chunked.
+     */
+    public boolean isChunked() {
+        return streamingBody != null;
+    }
+
+    /**
+     * Returns the body length, or -1 for streaming bodies.
+     */
+    public long getContentLength() {
+        if (streamingBody != null) {
+            return -1;
+        }
+        if (bufferBody != null) {
+            return bufferBody.remaining();
+        }
+        if (fileBody != null) {
+            return fileBody.getCount();
+        }
+        return body.length;
+    }
+
+    /**
+     * Writes the status line, headers and body. The stream is not flushed.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        writeTo(out, null);
+    }
+
+    /**
+     * Writes the response, sending buffer and file bodies directly to the channel when one is given.
+     * The channel must be the one underlying {@code out}; the stream is flushed before the channel is used.
+     */
+    public void writeTo(OutputStream out, WritableByteChannel channel) throws IOException {
+        writeTo(out, channel, true);
+    }
+
+    /**
+     * Writes the response, or only its head when {@code includeBody} is false, as the answer to
+     * HEAD: the head keeps the Content-Length or Transfer-Encoding of the body, and a streaming
+     * body is not run.
+     */
+    public void writeTo(OutputStream out, WritableByteChannel channel, boolean includeBody) throws IOException {
+        out.write(encodeHead());
+        if (!includeBody) {
+            return;
+        }
+        if (streamingBody != null) {
+            ChunkedOutputStream chunked = new ChunkedOutputStream(out);
+            try {
+                streamingBody.writeTo(chunked);
+                chunked.finish();
+            } finally {
+                chunked.release();
+            }
+        } else {
+            writeFixedBody(out, channel, body, bufferBody, fileBody);
+        }
+    }
+
+    /**
+     * Returns the current body as a streaming body, capturing it so later body changes do not affect it.
+     */
+    public StreamingBody asStreamingBody() {
+        if (streamingBody != null) {
+            return streamingBody;
+        }
+        byte[] bytes = body;
+        ByteBuffer buffer = bufferBody;
+        FileRegion file = fileBody;
+        return out -> writeFixedBody(out, null, bytes, buffer, file);
+    }
+
+    private static void writeFixedBody(OutputStream out, WritableByteChannel channel,
+            byte[] bytes, ByteBuffer buffer, FileRegion file) throws IOException {
+        if (buffer != null) {
+            ByteBuffer data = buffer.duplicate();
+            if (channel != null) {
+                out.flush();
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+            } else {
+                ByteBuffer chunk = BufferPool.shared().acquire(Math.min(data.remaining(), COPY_BUFFER_SIZE));
+                try {
+                    byte[] copy = chunk.array();
+                    while (data.hasRemaining()) {
+                        int length = Math.min(copy.length, data.remaining());
+                        data.get(copy, 0, length);
+                        out.write(copy, 0, length);
+                    }
+                } finally {
+                    BufferPool.shared().release(chunk);
+                }
+            }
+        } else if (file != null) {
+            if (channel != null) {
+                out.flush();
+                file.transferTo(channel);
+            } else {
+                file.copyTo(out);
+            }
+        } else {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Encodes the status line and headers, including the blank line that ends them.
+     */
+    public byte[] encodeHead() {
+        byte[] statusLine = ("HTTP/1.1 " + statusCode + " " + reasonPhrase(statusCode) + "\r\n")
+                .getBytes(StandardCharsets.ISO_8859_1);
+
+        StringBuilder head = new StringBuilder(128);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        }
+        if (isChunked()) {
+            head.append("Transfer-Encoding: chunked\r\n\r\n");
+        } else if (statusCode == 304) {
+            // a 304 never has a body, and its Content-Length would describe the selected representation
+            head.append("\r\n");
+        } else {
+            head.append("Content-Length: ").append(getContentLength()).append("\r\n\r\n");
+        }
+        byte[] dynamicHeaders = head.toString().getBytes(StandardCharsets.ISO_8859_1);
+
+        int precomputedLength = precomputedHeaders != null ? precomputedHeaders.length : 0;
+        byte[] encoded = new byte[statusLine.length + precomputedLength + dynamicHeaders.length];
+        System.arraycopy(statusLine, 0, encoded, 0, statusLine.length);
+        if (precomputedLength > 0) {
+            System.arraycopy(precomputedHeaders, 0, encoded, statusLine.length, precomputedLength);
+        }
+        System.arraycopy(dynamicHeaders, 0, encoded, statusLine.length + precomputedLength, dynamicHeaders.length);
+        encodedHeadLength = encoded.length;
+        return encoded;
+    }
+
+    /**
+     * Length of the head produced by the last {@link #encodeHead()} call, 0 before the first one.
+     */
+    public int getEncodedHeadLength() {
+        return encodedHeadLength;
+    }
+
+    public static String reasonPhrase(int statusCode) {
+        switch (statusCode) {
+            case 100:
+                return "Continue";
+            case 200:
+                return "OK";
+            case 206:
+                return "Partial Content";
+            case 304:
+                return "Not Modified";
+            case 400:
+                return "Bad Request";
+            case 404:
+                return "Not Found";
+            case 405:
+                return "Method Not Allowed";
+            case 408:
+                return "Request Timeout";
+            case 414:
+                return "URI Too Long";
+            case 413:
+                return "Content Too Large";
+            case 416:
+                return "Range Not Satisfiable";
+            case 429:
+                return "Too Many Requests";
+            case 431:
+                return "Request Header Fields Too Large";
+            case 500:
+                return "Internal Server Error";
+            case 501:
+                return "Not Implemented";
+            case 503:
+                return "Service Unavailable";
+            default:
+                return "Unknown";
+        }
+    }
+}
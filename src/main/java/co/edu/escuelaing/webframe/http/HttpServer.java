@@ -1,49 +1,102 @@
 package co.edu.escuelaing.webframe.http;
 
-import java.io.BufferedOutputStream;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.ServerSocket;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.net.SocketTimeoutException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
+import co.edu.escuelaing.webframe.DebugLog;
+import co.edu.escuelaing.webframe.http.buffer.BufferPool;
+import co.edu.escuelaing.webframe.http.buffer.PooledOutputStream;
+import co.edu.escuelaing.webframe.http.h2.Http2Connection;
+import co.edu.escuelaing.webframe.http.tls.TlsChannel;
+import co.edu.escuelaing.webframe.http.tls.TlsContext;
 import co.edu.escuelaing.webframe.ioc.SimpleIoCContainer;
 
 /**
  * HTTP server implementation.
  */
-public class HttpServer {
+public class HttpServer implements ServerEngine {
 
     private final int port;
     @SuppressWarnings("unused")
     private final SimpleIoCContainer container;
-    private ServerSocket serverSocket;
-    private RequestDispatcher dispatcher;
+    private final ServerConfig config;
+    private ServerSocketChannel serverChannel;
+    private ExecutorService workers;
+    /** Answers HTTP/2 streams; null when HTTP/2 is disabled. */
+    private ExecutorService streamWorkers;
+    private TlsContext tls;
+    private final HttpRequestHandler requestHandler;
+    private final Set<Connection> openConnections = ConcurrentHashMap.newKeySet();
     private volatile boolean running = false;
+    private DrainReport drainReport;
 
-    private static final String STATIC_RESOURCES_PATH = "src/main/resources/static";
+    private static final int LINGER_MILLIS = 2000;
+    private static final int OUTPUT_BUFFER_SIZE = 8192;
+    private static final long DRAIN_POLL_MILLIS = 10;
+
+    /**
+     * An open connection and whether a request on it is being processed.
+     */
+    private static final class Connection {
+        final Socket socket;
+        volatile boolean busy;
+        boolean inputShut;
+        /** Set once the connection speaks HTTP/2, which drains with GOAWAY instead. */
+        volatile Http2Connection http2;
+
+        Connection(Socket socket) {
+            this.socket = socket;
+        }
+    }
 
     public HttpServer(int port, SimpleIoCContainer container) {
+        this(port, container, new ServerConfig());
+    }
+
+    public HttpServer(int port, SimpleIoCContainer container, ServerConfig config) {
         this.port = port;
         this.container = container;
-        this.dispatcher = new RequestDispatcher(container);
+        this.config = config;
+        this.requestHandler = new HttpRequestHandler(new RequestDispatcher(container), config);
     }
 
+    @Override
     public void start() throws IOException {
-        serverSocket = new ServerSocket(port);
+        // A blocking channel keeps the stream API while giving each socket a channel for transferTo.
+        tls = config.isHttp2Enabled()
+                ? TlsContext.create(config, "h2", "http/1.1")
+                : TlsContext.create(config, "http/1.1");
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        workers = WorkerExecutors.create(config);
+        WorkerExecutors.registerGauges(workers, requestHandler.getMetrics());
+        if (config.isHttp2Enabled()) {
+            streamWorkers = WorkerExecutors.createStreamExecutor(config);
+        }
         running = true;
 
-        System.out.println("Server started on port: " + port);
-        System.out.println("Server running on: http://localhost:" + port);
+        System.out.println("Server started on port: " + getLocalPort());
+        System.out.println("Server running on: " + (tls != null ? "https" : "http") + "://localhost:" + getLocalPort());
 
         while (running) {
             try {
-                Socket clientSocket = serverSocket.accept();
-                handleConnection(clientSocket);
+                SocketChannel clientChannel = serverChannel.accept();
+                // head and body may go out in separate writes; Nagle would hold the second one back
+                clientChannel.socket().setTcpNoDelay(true);
+                submitConnection(clientChannel.socket());
             } catch (IOException e) {
                 if (running) {
                     System.err.println("Error accepting connection: " + e.getMessage());
@@ -52,136 +105,326 @@ public class HttpServer {
         }
     }
 
-    private void handleConnection(Socket clientSocket) {
-        try (BufferedReader in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-                PrintWriter out = new PrintWriter(clientSocket.getOutputStream(), true);
-                BufferedOutputStream dataOut = new BufferedOutputStream(clientSocket.getOutputStream())) {
+    /**
+     * Hands the connection to the worker executor so the accept loop never waits on request processing.
+     */
+    private void submitConnection(Socket clientSocket) {
+        try {
+            long submitted = System.nanoTime();
+            workers.execute(() -> handleConnection(clientSocket, submitted));
+        } catch (RejectedExecutionException e) {
+            rejectConnection(clientSocket);
+        }
+    }
 
-            String requestLine = in.readLine();
-            if (requestLine == null || requestLine.trim().isEmpty()) {
-                return;
+    private void rejectConnection(Socket clientSocket) {
+        try {
+            if (running && config.getRejectionPolicy() == RejectionPolicy.SERVICE_UNAVAILABLE) {
+                OutputStream out = clientSocket.getOutputStream();
+                HttpResponse response = HttpResponse.error(503);
+                response.setHeader("Connection", "close");
+                response.setHeader("Retry-After", String.valueOf(config.getRetryAfterSeconds()));
+                response.writeTo(out);
+                out.flush();
             }
+        } catch (IOException e) {
+            System.err.println("Error rejecting connection: " + e.getMessage());
+        } finally {
+            closeQuietly(clientSocket);
+        }
+    }
 
-            System.out.println("Request: " + requestLine);
-
-            String[] requestParts = requestLine.split(" ");
-            if (requestParts.length != 3) {
-                sendErrorResponse(out, 400, "Bad Request");
+    /**
+     * Serves requests on one connection until the client closes it, asks for close, stays idle
+     * longer than the keep-alive timeout or reaches the per-connection request limit.
+     * Pipelined requests are read from the same buffer, so they are answered in order, and one
+     * request object is reused for all of them. With TLS the handshake runs here too, on the
+     * worker, so a slow or expensive handshake never holds up the accept loop.
+     *
+     * @param submitted when the connection was handed to the executor; the first request is
+     *                  shed if it waited too long for a worker
+     */
+    private void handleConnection(Socket clientSocket, long submitted) {
+        long queuedNanos = System.nanoTime() - submitted;
+        Connection connection = new Connection(clientSocket);
+        openConnections.add(connection);
+        requestHandler.getMetrics().connectionOpened();
+        TlsChannel tlsChannel = null;
+        PooledOutputStream out = null;
+        RequestReader in = null;
+        try {
+            InputStream rawIn = clientSocket.getInputStream();
+            OutputStream rawOut = clientSocket.getOutputStream();
+            WritableByteChannel channel = clientSocket.getChannel();
+            if (tls != null) {
+                // reading through the socket's stream keeps SO_TIMEOUT, which the channel ignores
+                tlsChannel = new TlsChannel(tls.newEngine(), Channels.newChannel(rawIn), channel);
+                clientSocket.setSoTimeout(config.getHeaderTimeoutMillis() > 0
+                        ? config.getHeaderTimeoutMillis() : config.getKeepAliveTimeoutMillis());
+                tlsChannel.handshake();
+                rawIn = Channels.newInputStream(tlsChannel);
+                rawOut = Channels.newOutputStream(tlsChannel);
+                channel = tlsChannel;
+            }
+            out = new PooledOutputStream(rawOut, BufferPool.shared(), OUTPUT_BUFFER_SIZE);
+            if (tlsChannel != null && "h2".equals(tlsChannel.getApplicationProtocol())) {
+                serveHttp2(connection, rawIn, out, null, null, Http2Connection.PREFACE);
                 return;
             }
+            in = new RequestReader(rawIn, requestHandler.getParser(), BufferPool.shared());
+            HttpRequest request = new HttpRequest();
+            String remoteAddress = clientSocket.getInetAddress().getHostAddress();
 
-            String method = requestParts[0];
-            String path = requestParts[1];
+            in.setTimeouts(clientSocket, config.getKeepAliveTimeoutMillis(), config.getHeaderTimeoutMillis());
+            int served = 0;
+            boolean keepAlive = true;
+            OutputStream connectionOut = out;
+            RequestBodyStream.Continuation sendContinue = () -> {
+                connectionOut.write(HttpResponse.encodeContinue());
+                connectionOut.flush();
+            };
 
-            String headerLine;
-            while ((headerLine = in.readLine()) != null && !headerLine.trim().isEmpty()) {
-            }
+            while (keepAlive) {
+                try {
+                    if (in.readRequest(request) == null) {
+                        break;
+                    }
+                } catch (SocketTimeoutException e) {
+                    break;
+                } catch (HttpParseException e) {
+                    HttpResponse response = HttpResponse.error(e.getStatusCode());
+                    requestHandler.applyConnectionHeaders(response, false, served);
+                    requestHandler.logAccess(remoteAddress, null, response);
+                    response.writeTo(out);
+                    out.flush();
+                    requestHandler.recordResponse(null, response, 0);
+                    if (e.getStatusCode() != 408) {
+                        // a client too slow to send its head is not waited for again
+                        lingeringClose(clientSocket, tlsChannel, in);
+                    }
+                    break;
+                }
 
-            if (isStaticFile(path)) {
-                handleStaticFile(path, out, dataOut);
-                return;
-            }
+                if (DebugLog.isEnabled()) {
+                    DebugLog.log("Request: " + request.getMethod() + " " + request.getTarget() + " " + request.getVersion());
+                }
+                if (config.isHttp2Enabled()) {
+                    if (Http2Connection.isPriorKnowledge(request)) {
+                        serveHttp2(connection, in.remainingInput(), out, null, null, Http2Connection.PREFACE_TAIL);
+                        break;
+                    }
+                    // h2c is only for cleartext; over TLS, HTTP/2 is negotiated with ALPN
+                    byte[] http2Settings = tlsChannel == null ? Http2Connection.upgradeSettings(request) : null;
+                    if (http2Settings != null) {
+                        Http2Connection.writeSwitchingProtocols(out);
+                        out.flush();
+                        serveHttp2(connection, in.remainingInput(), out, request, http2Settings, Http2Connection.PREFACE);
+                        break;
+                    }
+                }
 
-            String response = dispatcher.processRequest(method, path);
+                connection.busy = true;
+                requestHandler.requestStarted();
+                served++;
+                HttpResponse response = requestHandler.admit(request, remoteAddress, queuedNanos);
+                queuedNanos = 0;
+                RequestBodyStream body = null;
+                if (response == null && requestHandler.isBodyTooLarge(request)) {
+                    // refused before reading, so a client expecting 100-continue never sends it
+                    response = HttpResponse.error(413);
+                } else {
+                    body = requestHandler.openBody(request, in.bodyInput(), sendContinue);
+                }
+                if (response == null) {
+                    response = requestHandler.handle(request);
+                    keepAlive = requestHandler.shouldKeepAlive(request, served);
+                } else {
+                    // shedding closes the connection so the load actually goes away
+                    keepAlive = response.getStatusCode() == 429 && requestHandler.shouldKeepAlive(request, served);
+                    if (body != null) {
+                        body.declineContinue();
+                    }
+                }
 
-            out.println("HTTP/1.1 200 OK");
-            out.println("Content-Type: text/html; charset=UTF-8");
-            out.println("Connection: close");
-            out.println();
-            out.println(response);
-            out.flush();
+                requestHandler.applyConnectionHeaders(response, keepAlive, served);
+                // logged before writing, like the NIO engine, so entries follow the order clients see
+                requestHandler.logAccess(remoteAddress, request, response);
+                long writeStart = System.nanoTime();
+                response.writeTo(out, channel, !"HEAD".equals(request.getMethod()));
+                // Pipelined requests already buffered are answered before flushing.
+                if (!keepAlive || (body != null && !body.isComplete()) || !in.hasBufferedData()) {
+                    out.flush();
+                }
+                connection.busy = false;
+                requestHandler.requestFinished(true);
+                requestHandler.recordResponse(request, response, System.nanoTime() - writeStart);
 
-        } catch (IOException e) {
-            System.err.println("Error handling connection: " + e.getMessage());
+                if (keepAlive && body != null) {
+                    // flushed above, so a client that paused before the rest of its body has the answer
+                    body.discardRemaining();
+                }
+                if (!keepAlive && request.hasBody() && (body == null || !body.isComplete())) {
+                    lingeringClose(clientSocket, tlsChannel, in);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // a streaming body failing half way leaves no way to answer but closing the connection
+            if (running) {
+                System.err.println("Error handling connection: " + e.getMessage());
+            }
         } finally {
-            try {
-                clientSocket.close();
-            } catch (IOException e) {
-                System.err.println("Error closing socket: " + e.getMessage());
+            if (connection.busy) {
+                requestHandler.requestFinished(false);
+            }
+            openConnections.remove(connection);
+            requestHandler.getMetrics().connectionClosed();
+            if (tlsChannel != null) {
+                // sends close_notify so the client can tell a complete response from a truncated one
+                tlsChannel.close();
+            }
+            closeQuietly(clientSocket);
+            // after the socket is closed, so HTTP/2 workers still answering streams fail to write
+            if (out != null) {
+                out.release();
+            }
+            if (in != null) {
+                in.release();
             }
         }
     }
 
-    private boolean isStaticFile(String path) {
-        return path.contains(".") &&
-                (path.endsWith(".html") || path.endsWith(".css") || path.endsWith(".js") ||
-                        path.endsWith(".png") || path.endsWith(".jpg"));
+    /**
+     * Serves the rest of the connection as HTTP/2, with its streams dispatched to the stream workers.
+     */
+    private void serveHttp2(Connection connection, InputStream in, OutputStream out,
+            HttpRequest upgraded, byte[] http2Settings, byte[] preface) throws IOException {
+        Http2Connection http2 = new Http2Connection(requestHandler, config, connection.socket, in, out, streamWorkers);
+        connection.http2 = http2;
+        http2.serve(upgraded, http2Settings, preface);
     }
 
-    private void handleStaticFile(String path, PrintWriter out, BufferedOutputStream dataOut) {
+    /**
+     * Closes our side first and reads what the client is still sending for a short while.
+     * Closing with unread bytes would reset the connection and could destroy the response
+     * before the client has read it.
+     */
+    private static void lingeringClose(Socket clientSocket, TlsChannel tlsChannel, RequestReader in) {
         try {
-            String filePath = path.startsWith("/") ? path.substring(1) : path;
-            Path resourcePath = Paths.get(STATIC_RESOURCES_PATH, filePath);
-
-            if (Files.exists(resourcePath) && Files.isRegularFile(resourcePath)) {
-                byte[] fileContent = Files.readAllBytes(resourcePath);
-                String mimeType = getMimeType(filePath);
-
-                out.println("HTTP/1.1 200 OK");
-                out.println("Content-Type: " + mimeType);
-                out.println("Content-Length: " + fileContent.length);
-                out.println("Connection: close");
-                out.println();
-                out.flush();
-
-                dataOut.write(fileContent);
-                dataOut.flush();
-
-                System.out.println("Served static file: " + filePath);
-            } else {
-                sendErrorResponse(out, 404, "Not Found");
+            if (tlsChannel != null) {
+                tlsChannel.close();
             }
+            clientSocket.shutdownOutput();
+            clientSocket.setSoTimeout(LINGER_MILLIS);
+            in.drain();
         } catch (IOException e) {
-            System.err.println("Error serving static file: " + e.getMessage());
-            sendErrorResponse(out, 500, "Internal Server Error");
+            // the client closed or stayed silent, either way we are done
         }
     }
 
-    private String getMimeType(String filename) {
-        String extension = filename.substring(filename.lastIndexOf('.') + 1).toLowerCase();
-        switch (extension) {
-            case "html":
-                return "text/html";
-            case "css":
-                return "text/css";
-            case "js":
-                return "application/javascript";
-            case "png":
-                return "image/png";
-            case "jpg":
-                return "image/jpeg";
-            default:
-                return "application/octet-stream";
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            System.err.println("Error closing socket: " + e.getMessage());
         }
     }
 
-    private void sendErrorResponse(PrintWriter out, int statusCode, String statusMessage) {
-        out.println("HTTP/1.1 " + statusCode + " " + statusMessage);
-        out.println("Content-Type: text/html");
-        out.println("Connection: close");
-        out.println();
-        out.println("<html><head><title>" + statusCode + " " + statusMessage + "</title></head>");
-        out.println("<body><h1>" + statusCode + " " + statusMessage + "</h1></body></html>");
-        out.flush();
+    @Override
+    public void stop() {
+        shutdown(config.getDrainTimeoutMillis());
     }
 
-    public void stop() {
+    @Override
+    public synchronized DrainReport shutdown(long drainTimeoutMillis) {
+        if (drainReport != null) {
+            return drainReport;
+        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMillis);
         running = false;
-        if (serverSocket != null && !serverSocket.isClosed()) {
+        requestHandler.startDraining();
+        if (serverChannel != null && serverChannel.isOpen()) {
             try {
-                serverSocket.close();
-                System.out.println("Server stopped");
+                serverChannel.close();
             } catch (IOException e) {
                 System.err.println("Error stopping server: " + e.getMessage());
             }
         }
+
+        // Idle connections wait in a read: shutting their input ends it as if the client had
+        // closed, while busy ones finish their response and then close because of draining.
+        while (!openConnections.isEmpty() && System.nanoTime() < deadline) {
+            for (Connection connection : openConnections) {
+                if (connection.http2 != null) {
+                    if (!connection.inputShut) {
+                        connection.inputShut = true;
+                        connection.http2.startDraining();
+                    }
+                } else if (!connection.busy && !connection.inputShut) {
+                    connection.inputShut = true;
+                    shutdownInputQuietly(connection.socket);
+                }
+            }
+            try {
+                Thread.sleep(DRAIN_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        for (Connection connection : openConnections) {
+            closeQuietly(connection.socket);
+        }
+        shutdownExecutor(workers);
+        shutdownExecutor(streamWorkers);
+
+        drainReport = requestHandler.drainReport(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        try {
+            requestHandler.close();
+        } catch (IOException e) {
+            System.err.println("Error releasing request handler: " + e.getMessage());
+        }
+        System.out.println("Server stopped: " + drainReport);
+        return drainReport;
+    }
+
+    private static void shutdownExecutor(ExecutorService executor) {
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void shutdownInputQuietly(Socket socket) {
+        try {
+            socket.shutdownInput();
+        } catch (IOException e) {
+            // already closed by the worker
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Returns the port the server is bound to, which differs from the configured one when it was 0.
+     */
+    @Override
+    public int getLocalPort() {
+        return serverChannel != null ? serverChannel.socket().getLocalPort() : port;
     }
 
     public RequestDispatcher getDispatcher() {
-        return dispatcher;
+        return requestHandler.getDispatcher();
     }
 
     public void setDispatcher(RequestDispatcher dispatcher) {
-        this.dispatcher = dispatcher;
+        requestHandler.setDispatcher(dispatcher);
     }
 }
@@ -0,0 +1,16 @@
+package co.edu.escuelaing.webframe.http;
+
+/**
+ * What the accept loop does with a connection when the worker queue is full.
+ */
+public enum RejectionPolicy {
+    /**
+     * Answer with 503 Service Unavailable and close the connection.
+     */
+    SERVICE_UNAVAILABLE,
+
+    /**
+     * Close the connection without writing anything.
+     */
+    CLOSE
+}
@@ -0,0 +1,23 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.IOException;
+
+/**
+ * Signals a request body that cannot be accepted while it is read, such as one exceeding the
+ * size limit or with broken chunked framing, with the status code to answer it with.
+ */
+public class RequestBodyException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    public RequestBodyException(int statusCode, String message) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
@@ -0,0 +1,264 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import co.edu.escuelaing.webframe.http.buffer.BufferPool;
+
+/**
+ * A request body read from the connection as the handler consumes it, so uploads are never
+ * held in memory whole. The body is framed by a Content-Length, by chunked transfer encoding
+ * or, for protocols that frame it themselves, by the end of the source; the stream never reads
+ * past its end, so bytes of a pipelined request stay with the connection.
+ * <p>
+ * A client that sent {@code Expect: 100-continue} is told to go on when the body is first read;
+ * a handler that never reads it lets the engine answer without receiving it.
+ */
+public class RequestBodyStream extends InputStream {
+
+    /**
+     * Sends the interim 100 Continue response.
+     */
+    public interface Continuation {
+        void send() throws IOException;
+    }
+
+    private static final int MAX_CHUNK_LINE = 1024;
+    private static final int MAX_TRAILER_BYTES = 8192;
+    private static final int DISCARD_BUFFER_SIZE = 8192;
+
+    private final InputStream source;
+    private final boolean chunked;
+    private final boolean untilEnd;
+    private final long maxLength;
+    private Continuation continuation;
+    /** Bytes left in the body, or in the current chunk when chunked. */
+    private long remaining;
+    private long received;
+    private boolean complete;
+    private boolean failed;
+    private boolean continueDeclined;
+
+    /**
+     * @param contentLength declared length, or -1 when the body is chunked or ends with the source
+     * @param maxLength     most bytes accepted before failing with 413, or 0 for no limit
+     * @param continuation  sends 100 Continue before the first read, or null when not expected
+     */
+    public RequestBodyStream(InputStream source, long contentLength, boolean chunked, long maxLength,
+            Continuation continuation) {
+        this.source = source;
+        this.chunked = chunked;
+        this.untilEnd = !chunked && contentLength < 0;
+        this.maxLength = maxLength;
+        this.continuation = continuation;
+        this.remaining = chunked || untilEnd ? 0 : contentLength;
+        this.complete = !chunked && contentLength == 0;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        int read = read(one, 0, 1);
+        return read < 0 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (complete) {
+            return -1;
+        }
+        if (failed) {
+            throw new IOException("Request body could not be read");
+        }
+        try {
+            if (continuation != null) {
+                Continuation pending = continuation;
+                continuation = null;
+                pending.send();
+            }
+            if (chunked && remaining == 0 && !nextChunk()) {
+                complete = true;
+                return -1;
+            }
+            int wanted = untilEnd ? len : (int) Math.min(len, remaining);
+            int read = source.read(b, off, wanted);
+            if (read < 0) {
+                if (untilEnd) {
+                    complete = true;
+                    return -1;
+                }
+                throw new EOFException("Connection closed inside a request body");
+            }
+            received += read;
+            if (maxLength > 0 && received > maxLength) {
+                throw tooLarge();
+            }
+            if (!untilEnd) {
+                remaining -= read;
+                if (remaining == 0) {
+                    if (chunked) {
+                        readChunkEnd();
+                    } else {
+                        complete = true;
+                    }
+                }
+            }
+            return read;
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (complete || failed || continuation != null) {
+            return 0;
+        }
+        int available = source.available();
+        return untilEnd ? available : (int) Math.min(available, remaining);
+    }
+
+    /**
+     * Reads the size line of the next chunk.
+     *
+     * @return false when it is the last chunk; its trailers are read and dropped
+     */
+    private boolean nextChunk() throws IOException {
+        String line = readLine(MAX_CHUNK_LINE);
+        int extension = line.indexOf(';');
+        String size = (extension >= 0 ? line.substring(0, extension) : line).trim();
+        long length;
+        try {
+            length = size.isEmpty() || size.length() > 15 ? -1 : Long.parseLong(size, 16);
+        } catch (NumberFormatException e) {
+            length = -1;
+        }
+        if (length < 0) {
+            throw new RequestBodyException(400, "Malformed chunk size: " + line);
+        }
+        if (length == 0) {
+            int trailerBytes = 0;
+            String trailer;
+            while (!(trailer = readLine(MAX_CHUNK_LINE)).isEmpty()) {
+                trailerBytes += trailer.length();
+                if (trailerBytes > MAX_TRAILER_BYTES) {
+                    throw new RequestBodyException(400, "Request trailers too large");
+                }
+            }
+            return false;
+        }
+        if (maxLength > 0 && received + length > maxLength) {
+            throw tooLarge();
+        }
+        remaining = length;
+        return true;
+    }
+
+    private void readChunkEnd() throws IOException {
+        if (!readLine(2).isEmpty()) {
+            throw new RequestBodyException(400, "Chunk data longer than its size");
+        }
+    }
+
+    /**
+     * Reads a line ended by CRLF, or a bare LF, without its terminator.
+     */
+    private String readLine(int limit) throws IOException {
+        StringBuilder line = new StringBuilder();
+        while (true) {
+            int c = source.read();
+            if (c < 0) {
+                throw new EOFException("Connection closed inside a request body");
+            }
+            if (c == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                return line.toString();
+            }
+            if (line.length() > limit) {
+                throw new RequestBodyException(400, "Chunk line too long");
+            }
+            line.append((char) c);
+        }
+    }
+
+    private RequestBodyException tooLarge() {
+        return new RequestBodyException(413, "Request body larger than " + maxLength + " bytes");
+    }
+
+    /**
+     * Returns true once the whole body has been read.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Returns true when reading failed, leaving the connection somewhere inside the body.
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Returns true while the client waits for 100 Continue before sending the body.
+     */
+    public boolean isContinuePending() {
+        return continuation != null;
+    }
+
+    /**
+     * Gives up on sending 100 Continue, for when the final response goes out first.
+     * The client may then send the body or not, so it can no longer be skipped.
+     */
+    public void declineContinue() {
+        if (continuation != null) {
+            continuation = null;
+            continueDeclined = true;
+        }
+    }
+
+    /**
+     * Returns the bytes of the body not read yet, or -1 when they cannot be known: the body is
+     * chunked, reading it failed, or the client was refused 100 Continue and may never send it.
+     */
+    public long getUnreadLength() {
+        if (complete) {
+            return 0;
+        }
+        return chunked || untilEnd || failed || continueDeclined ? -1 : remaining;
+    }
+
+    /**
+     * Returns the bytes of body received so far.
+     */
+    public long getReceivedLength() {
+        return received;
+    }
+
+    /**
+     * Reads and drops the rest of the body, so the connection can go on with the next request.
+     */
+    public void discardRemaining() throws IOException {
+        if (complete) {
+            return;
+        }
+        ByteBuffer scratch = BufferPool.shared().acquire(DISCARD_BUFFER_SIZE);
+        try {
+            byte[] bytes = scratch.array();
+            while (read(bytes, 0, bytes.length) >= 0) {
+                // discarded
+            }
+        } finally {
+            BufferPool.shared().release(scratch);
+        }
+    }
+}
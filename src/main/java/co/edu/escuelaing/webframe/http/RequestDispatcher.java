@@ -1,15 +1,32 @@
 package co.edu.escuelaing.webframe.http;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import co.edu.escuelaing.webframe.annotations.RequestParam;
+import co.edu.escuelaing.webframe.DebugLog;
+import co.edu.escuelaing.webframe.annotations.Cacheable;
+import co.edu.escuelaing.webframe.annotations.ETag;
+import co.edu.escuelaing.webframe.http.metrics.RouteMetrics;
+import co.edu.escuelaing.webframe.http.metrics.ServerMetrics;
+import co.edu.escuelaing.webframe.ioc.Route;
+import co.edu.escuelaing.webframe.ioc.RouteMatch;
 import co.edu.escuelaing.webframe.ioc.SimpleIoCContainer;
+import co.edu.escuelaing.webframe.template.View;
 
 /**
  * Simple request dispatcher for handling HTTP requests.
@@ -17,13 +34,57 @@ import co.edu.escuelaing.webframe.ioc.SimpleIoCContainer;
 public class RequestDispatcher {
     
     private final SimpleIoCContainer container;
+    private final ThreadLocal<RouteMatch> routeMatch;
+    private volatile ServerMetrics metrics;
+    private volatile ResponseCache responseCache;
     private static final Pattern QUERY_PARAM_PATTERN = Pattern.compile("[?&]([^=&]+)=([^&]*)");
     
     public RequestDispatcher(SimpleIoCContainer container) {
         this.container = container;
+        this.routeMatch = ThreadLocal.withInitial(container::newRouteMatch);
     }
     
+    /**
+     * Dispatches a request and returns the whole body as text, including streamed bodies.
+     */
     public String processRequest(String method, String fullPath) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try {
+            dispatch(method, fullPath, null).asStreamingBody().writeTo(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Routes a request to its controller and builds the HTML response. HEAD requests are answered
+     * by the GET handler of the path; a path that is routed only for other methods gets 405 with
+     * an Allow header, and one that is not routed at all gets 404. A body that cannot be
+     * read or bound is answered with 400, or 413 when it exceeds the size limit.
+     * Handlers annotated with {@link ETag}, directly or through their controller, get an
+     * ETag computed from the body and the Cache-Control value of the annotation; handlers
+     * annotated with {@link Cacheable} are answered from the response cache when one is set.
+     */
+    public HttpResponse dispatch(HttpRequest request) {
+        return dispatch(request.getMethod(), request.getTarget(), request);
+    }
+    
+    /**
+     * Records routing and handler time into the given metrics; null disables recording.
+     */
+    public void setMetrics(ServerMetrics metrics) {
+        this.metrics = metrics;
+    }
+    
+    /**
+     * Caches the responses of {@link Cacheable} handlers in the given cache; null disables caching.
+     */
+    public void setResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+    
+    private HttpResponse dispatch(String method, String fullPath, HttpRequest request) {
         try {
             String path = fullPath;
             String queryString = "";
@@ -34,35 +95,179 @@ public class RequestDispatcher {
                 queryString = fullPath.substring(queryIndex + 1);
             }
             
-            System.out.println("Processing route: " + path);
+            if (DebugLog.isEnabled()) {
+                DebugLog.log("Processing route: " + path);
+            }
             
             Map<String, String> queryParams = parseQueryParameters(queryString);
             
-            Object[] handlerInfo = container.findRouteHandler(path, method);
-            if (handlerInfo == null) {
-                return generateNotFoundResponse(path);
+            ServerMetrics metrics = this.metrics;
+            RouteMatch match = routeMatch.get();
+            long start = System.nanoTime();
+            boolean found = container.findRoute(method, path, match);
+            long routed = System.nanoTime();
+            if (!found) {
+                if (metrics != null) {
+                    record(request, metrics.unmatched(), routed - start, 0);
+                }
+                String allowed = container.findAllowedMethods(path);
+                if (allowed != null) {
+                    HttpResponse response = HttpResponse.error(405);
+                    response.setHeader("Allow", allowed);
+                    return response;
+                }
+                return HttpResponse.html(404, generateNotFoundResponse(path));
             }
             
-            Object controllerInstance = handlerInfo[0];
-            Method handlerMethod = (Method) handlerInfo[1];
-            
-            Object[] methodArgs = prepareMethodArguments(handlerMethod, queryParams);
-            
-            Object result = handlerMethod.invoke(controllerInstance, methodArgs);
-            
-            if (result instanceof String) {
-                return (String) result;
-            } else {
-                return "Response generated";
+            Route route = match.getRoute();
+            Object[] arguments;
+            try {
+                arguments = request != null
+                        ? route.getInvoker().bindArguments(queryParams, match, request.getBody(),
+                                request.getHeader("Content-Type"))
+                        : route.getInvoker().bindArguments(queryParams, match);
+            } catch (IOException e) {
+                return bodyError(e);
+            }
+            ResponseCache cache = this.responseCache;
+            HttpResponse response = cache != null && route.getCacheable() != null && isCacheableMethod(method)
+                    ? cache.get(route, arguments, request, () -> invoke(route, arguments))
+                    : invoke(route, arguments);
+            if (metrics != null) {
+                // keyed by method and pattern, so a re-registered controller keeps its series
+                record(request, metrics.route(route.toString(), route.getHttpMethod(), route.getPattern()),
+                        routed - start, System.nanoTime() - routed);
             }
+            return response;
             
-        } catch (IllegalAccessException | InvocationTargetException e) {
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RequestBodyException) {
+                // the handler read a body the server refused, which is the client's error
+                return bodyError((RequestBodyException) e.getCause());
+            }
             System.err.println("Error processing request: " + e.getMessage());
-            return generateErrorResponse(e);
+            return HttpResponse.html(200, generateErrorResponse(e));
+        }
+    }
+    
+    /**
+     * Returns true for the methods whose responses may come from the response cache. HEAD is
+     * routed to the GET handler, so it shares the GET entries and only the body is left out.
+     */
+    private static boolean isCacheableMethod(String method) {
+        return "GET".equals(method) || "HEAD".equals(method);
+    }
+
+    private static HttpResponse bodyError(IOException e) {
+        if (DebugLog.isEnabled()) {
+            DebugLog.log("Rejected request body: " + e.getMessage());
+        }
+        return HttpResponse.error(e instanceof RequestBodyException ? ((RequestBodyException) e).getStatusCode() : 400);
+    }
+    
+    private static HttpResponse invoke(Route route, Object[] arguments) throws InvocationTargetException {
+        HttpResponse response = toResponse(route.getInvoker().invoke(arguments), route.getProduces());
+        ETag etag = route.getETag();
+        if (etag != null && response.getStatusCode() == 200 && !response.isChunked()) {
+            String tag = response.getBufferBody() != null
+                    ? ConditionalRequests.contentTag(response.getBufferBody())
+                    : response.getFileBody() != null ? response.getHeader("ETag")
+                    : ConditionalRequests.contentTag(ByteBuffer.wrap(response.getBody()));
+            if (tag != null) {
+                response.setHeader("ETag", tag);
+                response.setHeader("Cache-Control", etag.cacheControl());
+            }
+        }
+        return response;
+    }
+    
+    /**
+     * Turns a handler result into a response. Results whose length is known are sent with a
+     * Content-Length; streaming bodies and views with variables are produced while they are
+     * written and sent chunked, so they are never held in memory whole.
+     */
+    static HttpResponse toResponse(Object result, String produces) throws InvocationTargetException {
+        HttpResponse response;
+        if (result instanceof HttpResponse) {
+            return (HttpResponse) result;
+        } else if (result instanceof String || result == null) {
+            response = HttpResponse.html(200, result != null ? (String) result : "Response generated");
+        } else if (result instanceof View) {
+            View view = (View) result;
+            response = new HttpResponse(200);
+            response.setHeader("Content-Type", "text/html; charset=UTF-8");
+            if (view.getTemplate().isStatic()) {
+                response.setBody(view.getTemplate().staticContent());
+            } else {
+                response.setBody(view::renderTo);
+            }
+        } else if (result instanceof StreamingBody) {
+            response = binary(200);
+            response.setBody((StreamingBody) result);
+        } else if (result instanceof StreamingTextBody) {
+            StreamingTextBody text = (StreamingTextBody) result;
+            response = new HttpResponse(200);
+            response.setHeader("Content-Type", "text/html; charset=UTF-8");
+            response.setBody(out -> {
+                Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                text.writeTo(writer);
+                writer.flush();
+            });
+        } else if (result instanceof byte[]) {
+            response = binary(200);
+            response.setBody((byte[]) result);
+        } else if (result instanceof ByteBuffer) {
+            response = binary(200);
+            response.setBody(((ByteBuffer) result).slice());
+        } else if (result instanceof Path || result instanceof File) {
+            response = fileResponse(result instanceof File ? ((File) result).toPath() : (Path) result);
+        } else {
+            response = HttpResponse.html(200, result.toString());
+        }
+        if (produces != null && response.getStatusCode() == 200) {
+            response.setHeader("Content-Type", produces);
+        }
+        return response;
+    }
+
+    private static HttpResponse binary(int statusCode) {
+        HttpResponse response = new HttpResponse(statusCode);
+        response.setHeader("Content-Type", "application/octet-stream");
+        return response;
+    }
+
+    private static HttpResponse fileResponse(Path file) throws InvocationTargetException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return HttpResponse.error(404);
+        } catch (IOException e) {
+            throw new InvocationTargetException(e, "Cannot read " + file);
+        }
+        if (!attributes.isRegularFile()) {
+            return HttpResponse.error(404);
         }
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        HttpResponse response = new HttpResponse(200);
+        response.setHeader("Content-Type", StaticFileHandler.getMimeType(file.getFileName().toString()));
+        response.setHeader("Last-Modified", ConditionalRequests.formatDate(lastModified));
+        response.setHeader("ETag", ConditionalRequests.fileTag(attributes.size(), lastModified));
+        response.setBody(new FileRegion(file, 0, attributes.size()));
+        return response;
     }
     
-    private Map<String, String> parseQueryParameters(String queryString) {
+    private static void record(HttpRequest request, RouteMetrics route, long routingNanos, long handlerNanos) {
+        route.getRouting().record(routingNanos);
+        if (handlerNanos > 0) {
+            route.getHandler().record(handlerNanos);
+        }
+        if (request != null) {
+            request.setRouteMetrics(route);
+        }
+    }
+    
+    static Map<String, String> parseQueryParameters(String queryString) {
         Map<String, String> params = new HashMap<>();
         
         if (queryString == null || queryString.trim().isEmpty()) {
@@ -83,32 +288,6 @@ public class RequestDispatcher {
         return params;
     }
     
-    private Object[] prepareMethodArguments(Method method, Map<String, String> queryParams) {
-        Parameter[] parameters = method.getParameters();
-        Object[] args = new Object[parameters.length];
-        
-        for (int i = 0; i < parameters.length; i++) {
-            Parameter param = parameters[i];
-            RequestParam requestParam = param.getAnnotation(RequestParam.class);
-            
-            if (requestParam != null) {
-                String paramName = requestParam.value();
-                String paramValue = queryParams.get(paramName);
-                
-                if (paramValue == null || paramValue.isEmpty()) {
-                    String defaultValue = requestParam.defaultValue();
-                    paramValue = defaultValue.isEmpty() ? null : defaultValue;
-                }
-                
-                args[i] = paramValue;
-            } else {
-                args[i] = null;
-            }
-        }
-        
-        return args;
-    }
-    
     private String generateNotFoundResponse(String path) {
         return "<!DOCTYPE html>" +
                "<html>" +
@@ -0,0 +1,204 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import co.edu.escuelaing.webframe.http.buffer.BufferPool;
+
+/**
+ * Reads request heads from a blocking connection into a pooled byte buffer, held until
+ * {@link #release()}. Bytes after a head, such as pipelined requests or a body, stay buffered
+ * for the next call; bodies are read through {@link #bodyInput()}, which takes the buffered
+ * bytes first.
+ */
+final class RequestReader {
+
+    private final InputStream in;
+    private final HttpRequestParser parser;
+    private final BufferPool pool;
+    private final ByteBuffer pooled;
+    private final byte[] buffer;
+    private final InputStream bodyInput = new BodyInput();
+    private int start;
+    private int end;
+    private Socket socket;
+    private int idleTimeoutMillis;
+    private int headerTimeoutMillis;
+
+    RequestReader(InputStream in, HttpRequestParser parser, BufferPool pool) {
+        this.in = in;
+        this.parser = parser;
+        this.pool = pool;
+        // may be larger than the head limit, which the parser enforces
+        this.pooled = pool.acquire(parser.getMaxHeaderSize());
+        this.buffer = pooled.array();
+    }
+
+    /**
+     * Bounds the time a client may take to send a whole head once it has started it, so a client
+     * trickling bytes cannot hold the connection for longer than that. Waiting for the first byte
+     * of a head is still bounded by the idle timeout.
+     *
+     * @param headerTimeoutMillis time allowed for a head, or 0 for no limit
+     */
+    void setTimeouts(Socket socket, int idleTimeoutMillis, int headerTimeoutMillis) throws IOException {
+        this.socket = socket;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.headerTimeoutMillis = headerTimeoutMillis;
+        socket.setSoTimeout(idleTimeoutMillis);
+    }
+
+    /**
+     * Reads the next request head into {@code request}.
+     *
+     * @return the request, or null when the client closed the connection
+     * @throws HttpParseException if the head is malformed, exceeds a limit or is not complete in time
+     */
+    HttpRequest readRequest(HttpRequest request) throws IOException, HttpParseException {
+        long headerDeadline = 0;
+        try {
+            while (true) {
+                if (end > start) {
+                    int consumed = parser.parse(buffer, start, end - start, request);
+                    if (consumed >= 0) {
+                        start += consumed;
+                        return request;
+                    }
+                }
+                if (start > 0) {
+                    System.arraycopy(buffer, start, buffer, 0, end - start);
+                    end -= start;
+                    start = 0;
+                }
+                if (end == buffer.length) {
+                    throw new HttpParseException(431, "Request header fields too large");
+                }
+                if (end > 0 && headerTimeoutMillis > 0) {
+                    long now = System.nanoTime();
+                    if (headerDeadline == 0) {
+                        headerDeadline = now + TimeUnit.MILLISECONDS.toNanos(headerTimeoutMillis);
+                    }
+                    long remaining = TimeUnit.NANOSECONDS.toMillis(headerDeadline - now);
+                    if (remaining <= 0) {
+                        throw new HttpParseException(408, "Request header timeout");
+                    }
+                    socket.setSoTimeout((int) remaining);
+                }
+                int read;
+                try {
+                    read = in.read(buffer, end, buffer.length - end);
+                } catch (SocketTimeoutException e) {
+                    if (headerDeadline != 0) {
+                        throw new HttpParseException(408, "Request header timeout");
+                    }
+                    throw e;
+                }
+                if (read < 0) {
+                    return null;
+                }
+                end += read;
+            }
+        } finally {
+            if (headerDeadline != 0 && !socket.isClosed()) {
+                socket.setSoTimeout(idleTimeoutMillis);
+            }
+        }
+    }
+
+    /**
+     * Returns true when more request bytes can be read without blocking.
+     */
+    boolean hasBufferedData() throws IOException {
+        return end > start || in.available() > 0;
+    }
+
+    /**
+     * Returns the stream request bodies are read from. Bytes it reads ahead of what the body
+     * asks for stay buffered for the next head, so the body framing decides where it ends.
+     */
+    InputStream bodyInput() {
+        return bodyInput;
+    }
+
+    private final class BodyInput extends InputStream {
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return buffer[start++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (start == end && len >= buffer.length) {
+                // large reads go straight to the caller, skipping the copy through the buffer
+                return in.read(b, off, len);
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(len, end - start);
+            System.arraycopy(buffer, start, b, off, count);
+            start += count;
+            return count;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return end - start + in.available();
+        }
+
+        private boolean fill() throws IOException {
+            if (start < end) {
+                return true;
+            }
+            start = 0;
+            end = 0;
+            int read = in.read(buffer, 0, buffer.length);
+            if (read < 0) {
+                return false;
+            }
+            end = read;
+            return true;
+        }
+    }
+
+    /**
+     * Returns the bytes buffered after the last head followed by the rest of the connection,
+     * for handing the connection over to another protocol. The reader must not be used afterwards.
+     */
+    InputStream remainingInput() {
+        InputStream buffered = new ByteArrayInputStream(buffer, start, end - start);
+        return new SequenceInputStream(buffered, in);
+    }
+
+    /**
+     * Gives the buffer back to the pool once the connection is done; the reader, and any stream
+     * it returned, must not be used afterwards.
+     */
+    void release() {
+        pool.release(pooled);
+    }
+
+    /**
+     * Reads and drops whatever the client still sends, until it closes or the socket times out.
+     */
+    void drain() throws IOException {
+        start = 0;
+        end = 0;
+        while (in.read(buffer) >= 0) {
+            // discarded
+        }
+    }
+}
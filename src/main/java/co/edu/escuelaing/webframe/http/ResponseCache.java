@@ -0,0 +1,381 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import co.edu.escuelaing.webframe.annotations.Cacheable;
+import co.edu.escuelaing.webframe.ioc.Route;
+
+/**
+ * LRU cache of handler responses for routes annotated with {@link Cacheable}, bounded by an entry
+ * count and a byte budget. Entries are keyed by the route and the arguments bound to the handler,
+ * so query parameters the handler ignores, their order and empty values replaced by defaults all
+ * map to the same entry. Each entry keeps the body and its encoded header lines, plus compressed
+ * variants built on first use, so a hit is written without calling the handler, formatting headers
+ * or compressing. Concurrent misses on one key are coalesced: one thread calls the handler and the
+ * others wait for its entry.
+ */
+public class ResponseCache {
+
+    /**
+     * Produces the response for a miss.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        HttpResponse load() throws InvocationTargetException;
+    }
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final ResponseCompressor compressor;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final ConcurrentHashMap<Key, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+    private long currentBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private static final class Key {
+        private final Route route;
+        private final Object[] arguments;
+        private final int hash;
+
+        Key(Route route, Object[] arguments) {
+            this.route = route;
+            this.arguments = arguments;
+            this.hash = 31 * System.identityHashCode(route) + Arrays.hashCode(arguments);
+        }
+
+        long estimatedBytes() {
+            long bytes = 64;
+            for (Object argument : arguments) {
+                bytes += argument instanceof String ? 40 + 2L * ((String) argument).length() : 16;
+            }
+            return bytes;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return route == key.route && Arrays.equals(arguments, key.arguments);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+        private final Key key;
+        private final ByteBuffer content;
+        private final byte[] baseHeaders;
+        private final byte[] headers;
+        private final String etag;
+        private final String cacheControl;
+        private final boolean compressible;
+        private final long expiresAt;
+        private volatile Variant gzip;
+        private volatile Variant deflate;
+
+        /**
+         * Key, headers, content and compressed variants counted against the budget; guarded by the cache lock.
+         */
+        private long accountedBytes;
+
+        Entry(Key key, ByteBuffer content, byte[] baseHeaders, String etag, String cacheControl,
+                boolean compressible, long expiresAt) {
+            this.key = key;
+            this.content = content;
+            this.baseHeaders = baseHeaders;
+            this.headers = etag != null ? append(baseHeaders, "ETag: " + etag) : baseHeaders;
+            this.etag = etag;
+            this.cacheControl = cacheControl;
+            this.compressible = compressible;
+            this.expiresAt = expiresAt;
+            this.accountedBytes = key.estimatedBytes() + headers.length + content.capacity();
+        }
+
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+
+        private Variant variant(ContentEncoding encoding) {
+            return encoding == ContentEncoding.GZIP ? gzip : deflate;
+        }
+
+        private void setVariant(ContentEncoding encoding, Variant variant) {
+            if (encoding == ContentEncoding.GZIP) {
+                gzip = variant;
+            } else {
+                deflate = variant;
+            }
+        }
+    }
+
+    private static final class Variant {
+        private static final Variant NO_GAIN = new Variant(ByteBuffer.allocate(0), new byte[0], null);
+
+        private final ByteBuffer content;
+        private final byte[] headers;
+        private final String etag;
+
+        Variant(ByteBuffer content, byte[] headers, String etag) {
+            this.content = content;
+            this.headers = headers;
+            this.etag = etag;
+        }
+    }
+
+    /**
+     * @param maxEntries most entries held at once
+     * @param maxBytes   total bytes the entries may take; larger responses are not cached
+     * @param compressor decides which responses get compressed variants
+     */
+    public ResponseCache(int maxEntries, long maxBytes, ResponseCompressor compressor) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.compressor = compressor;
+    }
+
+    /**
+     * Returns a cache sized by the configuration, or null when response caching is disabled.
+     */
+    public static ResponseCache create(ServerConfig config, ResponseCompressor compressor) {
+        if (config.getResponseCacheEntries() <= 0 || config.getResponseCacheBytes() <= 0) {
+            return null;
+        }
+        return new ResponseCache(config.getResponseCacheEntries(), config.getResponseCacheBytes(), compressor);
+    }
+
+    /**
+     * Returns the cached response for a route and its bound arguments, calling the loader on a miss.
+     * Responses that cannot be cached (errors, streaming and file bodies) are returned as loaded.
+     *
+     * @param request the request, used for content negotiation and conditional requests; may be null
+     */
+    public HttpResponse get(Route route, Object[] arguments, HttpRequest request, Loader loader)
+            throws InvocationTargetException {
+        Key key = new Key(route, arguments);
+        Entry entry = lookup(key);
+        if (entry != null) {
+            hits.increment();
+            return respond(entry, request);
+        }
+
+        CompletableFuture<Entry> pending = new CompletableFuture<>();
+        CompletableFuture<Entry> inFlight = loading.putIfAbsent(key, pending);
+        if (inFlight != null) {
+            coalesced.increment();
+            Entry shared = inFlight.join();
+            // Without an entry the other thread's response could not be shared, so this one is computed here.
+            return shared != null ? respond(shared, request) : loader.load();
+        }
+
+        misses.increment();
+        try {
+            // Another thread may have stored the entry between the lookup and the registration.
+            entry = lookup(key);
+            if (entry == null) {
+                HttpResponse response = loader.load();
+                entry = store(key, response, TimeUnit.SECONDS.toNanos(route.getCacheable().ttlSeconds()));
+                if (entry == null) {
+                    return response;
+                }
+            }
+            return respond(entry, request);
+        } finally {
+            pending.complete(entry);
+            loading.remove(key, pending);
+        }
+    }
+
+    private synchronized Entry lookup(Key key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.isExpired(System.nanoTime())) {
+            entries.remove(key);
+            currentBytes -= entry.accountedBytes;
+            return null;
+        }
+        return entry;
+    }
+
+    private Entry store(Key key, HttpResponse response, long ttlNanos) {
+        if (response.getStatusCode() != 200 || response.isChunked() || response.getFileBody() != null) {
+            return null;
+        }
+        ByteBuffer body = response.getBufferBody();
+        byte[] bytes;
+        if (body != null) {
+            bytes = new byte[body.remaining()];
+            body.duplicate().get(bytes);
+        } else {
+            bytes = response.getBody().clone();
+        }
+
+        String contentType = response.getHeader("Content-Type");
+        boolean compressible = compressor.shouldCompress(contentType, bytes.length);
+        StringBuilder headerLines = new StringBuilder(128);
+        for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+            if (!header.getKey().equals("ETag") && !header.getKey().equals("Vary")) {
+                headerLines.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+            }
+        }
+        if (compressible) {
+            headerLines.append("Vary: Accept-Encoding\r\n");
+        }
+
+        Entry entry = new Entry(key, ByteBuffer.wrap(bytes).asReadOnlyBuffer(),
+                headerLines.toString().getBytes(StandardCharsets.ISO_8859_1), response.getHeader("ETag"),
+                response.getHeader("Cache-Control"), compressible, System.nanoTime() + ttlNanos);
+        if (entry.accountedBytes > maxBytes) {
+            return entry;
+        }
+        synchronized (this) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                currentBytes -= previous.accountedBytes;
+            }
+            currentBytes += entry.accountedBytes;
+            evictOverBudget();
+        }
+        return entry;
+    }
+
+    private HttpResponse respond(Entry entry, HttpRequest request) {
+        Variant variant = request != null && entry.compressible
+                ? variant(entry, ContentEncoding.negotiate(request.getHeader("Accept-Encoding")))
+                : null;
+        String etag = variant != null ? variant.etag : entry.etag;
+        if (etag != null && request != null && ConditionalRequests.isNotModified(request, etag, -1)) {
+            return ConditionalRequests.notModified(etag, null, entry.cacheControl, entry.compressible);
+        }
+
+        HttpResponse response = new HttpResponse(200);
+        if (variant != null) {
+            response.setPrecomputedHeaders(variant.headers);
+            response.setBody(variant.content);
+        } else {
+            response.setPrecomputedHeaders(entry.headers);
+            response.setBody(entry.content);
+        }
+        return response;
+    }
+
+    /**
+     * Returns the compressed variant of an entry, compressing it on first use only, or null when
+     * the identity content should be sent.
+     */
+    private Variant variant(Entry entry, ContentEncoding encoding) {
+        if (encoding == ContentEncoding.IDENTITY) {
+            return null;
+        }
+        Variant variant = entry.variant(encoding);
+        if (variant == null) {
+            synchronized (entry) {
+                variant = entry.variant(encoding);
+                if (variant == null) {
+                    variant = compress(entry, encoding);
+                    entry.setVariant(encoding, variant);
+                    account(entry, variant.content.capacity() + variant.headers.length);
+                }
+            }
+        }
+        return variant == Variant.NO_GAIN ? null : variant;
+    }
+
+    private static Variant compress(Entry entry, ContentEncoding encoding) {
+        byte[] compressed;
+        try {
+            compressed = encoding.compress(entry.content);
+        } catch (IOException e) {
+            System.err.println("Could not compress cached response: " + e.getMessage());
+            return Variant.NO_GAIN;
+        }
+        if (compressed.length >= entry.content.capacity()) {
+            return Variant.NO_GAIN;
+        }
+
+        String etag = entry.etag != null ? ConditionalRequests.encodedTag(entry.etag, encoding) : null;
+        byte[] headers = append(entry.baseHeaders, "Content-Encoding: " + encoding.token());
+        if (etag != null) {
+            headers = append(headers, "ETag: " + etag);
+        }
+        return new Variant(ByteBuffer.wrap(compressed).asReadOnlyBuffer(), headers, etag);
+    }
+
+    private static byte[] append(byte[] headers, String line) {
+        byte[] encodedLine = (line + "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        byte[] combined = new byte[headers.length + encodedLine.length];
+        System.arraycopy(headers, 0, combined, 0, headers.length);
+        System.arraycopy(encodedLine, 0, combined, headers.length, encodedLine.length);
+        return combined;
+    }
+
+    /**
+     * Counts variant bytes against the budget if the entry is still cached.
+     */
+    private synchronized void account(Entry entry, long bytes) {
+        if (bytes > 0 && entries.get(entry.key) == entry) {
+            entry.accountedBytes += bytes;
+            currentBytes += bytes;
+            evictOverBudget();
+        }
+    }
+
+    private void evictOverBudget() {
+        Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+        while ((currentBytes > maxBytes || entries.size() > maxEntries) && eldest.hasNext()) {
+            currentBytes -= eldest.next().getValue().accountedBytes;
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of misses that waited for another thread's load instead of calling the handler.
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+}
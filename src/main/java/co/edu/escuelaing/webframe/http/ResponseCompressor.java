@@ -0,0 +1,62 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.OutputStream;
+
+/**
+ * Compresses dynamic responses on the fly when the client accepts it.
+ * The body is compressed while it is written to the connection, as a chunked stream,
+ * so the compressed payload is never materialized in memory.
+ */
+public class ResponseCompressor {
+
+    private final boolean enabled;
+    private final int minSize;
+
+    public ResponseCompressor(ServerConfig config) {
+        this.enabled = config.isCompressionEnabled();
+        this.minSize = config.getCompressionMinSize();
+    }
+
+    /**
+     * Returns true when a body of this type and known length is worth compressing.
+     */
+    public boolean shouldCompress(String contentType, long length) {
+        return enabled && length >= minSize && ContentEncoding.isCompressible(contentType);
+    }
+
+    /**
+     * Replaces the body of a compressible response with a compressing stream if the request allows it.
+     */
+    public void apply(HttpRequest request, HttpResponse response) {
+        if (!enabled || response.getHeader("Content-Encoding") != null
+                || !ContentEncoding.isCompressible(response.getHeader("Content-Type"))) {
+            return;
+        }
+        // Chunked framing, needed for the unknown compressed length, requires HTTP/1.1.
+        if (!"HTTP/1.1".equals(request.getVersion())) {
+            return;
+        }
+        long length = response.getContentLength();
+        if (!response.isChunked() && length < minSize) {
+            return;
+        }
+
+        response.setHeader("Vary", "Accept-Encoding");
+        ContentEncoding encoding = ContentEncoding.negotiate(request.getHeader("Accept-Encoding"));
+        if (encoding == ContentEncoding.IDENTITY) {
+            return;
+        }
+
+        StreamingBody original = response.asStreamingBody();
+        response.setHeader("Content-Encoding", encoding.token());
+        String etag = response.getHeader("ETag");
+        if (etag != null) {
+            response.setHeader("ETag", ConditionalRequests.encodedTag(etag, encoding));
+        }
+        response.setBody(out -> {
+            try (OutputStream compressed = encoding.wrap(out)) {
+                original.writeTo(compressed);
+            }
+        });
+    }
+}
@@ -0,0 +1,608 @@
+package co.edu.escuelaing.webframe.http;
+
+import co.edu.escuelaing.webframe.http.log.AccessLogFormat;
+
+/**
+ * Tunable settings for the HTTP server.
+ * Defaults can be overridden through system properties with {@link #fromSystemProperties()}.
+ */
+public class ServerConfig {
+
+    private EngineType engine = EngineType.BLOCKING;
+    private int ioThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private ExecutionMode executionMode = ExecutionMode.POOL;
+    private int workerThreads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    private int queueCapacity = 256;
+    private RejectionPolicy rejectionPolicy = RejectionPolicy.SERVICE_UNAVAILABLE;
+    private int keepAliveTimeoutMillis = 5000;
+    private int maxKeepAliveRequests = 100;
+    private String staticRoot = "src/main/resources/static";
+    private long staticCacheBytes = 32L * 1024 * 1024;
+    private long staticCacheMaxFileSize = 1024 * 1024;
+    private int staticMaxAgeSeconds = 0;
+    private boolean compressionEnabled = true;
+    private int compressionMinSize = 1024;
+    private int maxRequestLineLength = 4096;
+    private int maxHeaderSize = 8192;
+    private int maxHeaderCount = 100;
+    private long maxBodySize = 10L * 1024 * 1024;
+    private String accessLogPath;
+    private AccessLogFormat accessLogFormat = AccessLogFormat.COMBINED;
+    private long accessLogMaxBytes = 10L * 1024 * 1024;
+    private int accessLogMaxFiles = 5;
+    private String metricsPath = "/metrics";
+    private int responseCacheEntries = 1024;
+    private long responseCacheBytes = 16L * 1024 * 1024;
+    private long drainTimeoutMillis = 10000;
+    private double rateLimit = 0;
+    private int rateLimitBurst = 20;
+    private int maxConcurrentRequests = 0;
+    private long maxQueueTimeMillis = 0;
+    private int retryAfterSeconds = 1;
+    private int headerTimeoutMillis = 10000;
+    private String keyStore;
+    private String keyStorePassword;
+    private String keyStoreType = "PKCS12";
+    private int tlsSessionCacheSize = 20480;
+    private int tlsSessionTimeoutSeconds = 86400;
+    private boolean tlsSessionTickets = true;
+    private boolean http2Enabled = true;
+    private int http2MaxConcurrentStreams = 100;
+
+    /**
+     * Builds a configuration from {@code server.*} system properties, using defaults for missing ones.
+     */
+    public static ServerConfig fromSystemProperties() {
+        ServerConfig config = new ServerConfig();
+        config.setEngine(EngineType.valueOf(
+                System.getProperty("server.engine", config.engine.name()).toUpperCase()));
+        config.setIoThreads(Integer.getInteger("server.ioThreads", config.ioThreads));
+        config.setExecutionMode(ExecutionMode.valueOf(
+                System.getProperty("server.execution", config.executionMode.name()).toUpperCase()));
+        config.setWorkerThreads(Integer.getInteger("server.workers", config.workerThreads));
+        config.setQueueCapacity(Integer.getInteger("server.queue", config.queueCapacity));
+        config.setRejectionPolicy(RejectionPolicy.valueOf(
+                System.getProperty("server.rejection", config.rejectionPolicy.name()).toUpperCase()));
+        config.setKeepAliveTimeoutMillis(Integer.getInteger("server.keepAliveTimeout", config.keepAliveTimeoutMillis));
+        config.setMaxKeepAliveRequests(Integer.getInteger("server.maxKeepAliveRequests", config.maxKeepAliveRequests));
+        config.setStaticRoot(System.getProperty("server.staticRoot", config.staticRoot));
+        config.setStaticCacheBytes(Long.getLong("server.staticCacheBytes", config.staticCacheBytes));
+        config.setStaticCacheMaxFileSize(Long.getLong("server.staticCacheMaxFileSize", config.staticCacheMaxFileSize));
+        config.setStaticMaxAgeSeconds(Integer.getInteger("server.staticMaxAge", config.staticMaxAgeSeconds));
+        config.setCompressionEnabled(Boolean.parseBoolean(
+                System.getProperty("server.compression", String.valueOf(config.compressionEnabled))));
+        config.setCompressionMinSize(Integer.getInteger("server.compressionMinSize", config.compressionMinSize));
+        config.setMaxRequestLineLength(Integer.getInteger("server.maxRequestLine", config.maxRequestLineLength));
+        config.setMaxHeaderSize(Integer.getInteger("server.maxHeaderSize", config.maxHeaderSize));
+        config.setMaxHeaderCount(Integer.getInteger("server.maxHeaderCount", config.maxHeaderCount));
+        config.setMaxBodySize(Long.getLong("server.maxBodySize", config.maxBodySize));
+        config.setAccessLogPath(System.getProperty("server.accessLog", config.accessLogPath));
+        config.setAccessLogFormat(AccessLogFormat.valueOf(
+                System.getProperty("server.accessLogFormat", config.accessLogFormat.name()).toUpperCase()));
+        config.setAccessLogMaxBytes(Long.getLong("server.accessLogMaxBytes", config.accessLogMaxBytes));
+        config.setAccessLogMaxFiles(Integer.getInteger("server.accessLogFiles", config.accessLogMaxFiles));
+        config.setMetricsPath(System.getProperty("server.metricsPath", config.metricsPath));
+        config.setResponseCacheEntries(Integer.getInteger("server.responseCacheEntries", config.responseCacheEntries));
+        config.setResponseCacheBytes(Long.getLong("server.responseCacheBytes", config.responseCacheBytes));
+        config.setDrainTimeoutMillis(Long.getLong("server.drainTimeout", config.drainTimeoutMillis));
+        config.setRateLimit(Double.parseDouble(System.getProperty("server.rateLimit", String.valueOf(config.rateLimit))));
+        config.setRateLimitBurst(Integer.getInteger("server.rateLimitBurst", config.rateLimitBurst));
+        config.setMaxConcurrentRequests(Integer.getInteger("server.maxConcurrentRequests", config.maxConcurrentRequests));
+        config.setMaxQueueTimeMillis(Long.getLong("server.maxQueueTime", config.maxQueueTimeMillis));
+        config.setRetryAfterSeconds(Integer.getInteger("server.retryAfter", config.retryAfterSeconds));
+        config.setHeaderTimeoutMillis(Integer.getInteger("server.headerTimeout", config.headerTimeoutMillis));
+        config.setKeyStore(System.getProperty("server.keyStore", config.keyStore));
+        config.setKeyStorePassword(System.getProperty("server.keyStorePassword", config.keyStorePassword));
+        config.setKeyStoreType(System.getProperty("server.keyStoreType", config.keyStoreType));
+        config.setTlsSessionCacheSize(Integer.getInteger("server.tlsSessionCacheSize", config.tlsSessionCacheSize));
+        config.setTlsSessionTimeoutSeconds(Integer.getInteger("server.tlsSessionTimeout", config.tlsSessionTimeoutSeconds));
+        config.setTlsSessionTickets(Boolean.parseBoolean(
+                System.getProperty("server.tlsSessionTickets", String.valueOf(config.tlsSessionTickets))));
+        config.setHttp2Enabled(Boolean.parseBoolean(
+                System.getProperty("server.http2", String.valueOf(config.http2Enabled))));
+        config.setHttp2MaxConcurrentStreams(Integer.getInteger("server.http2MaxStreams", config.http2MaxConcurrentStreams));
+        return config;
+    }
+
+    public EngineType getEngine() {
+        return engine;
+    }
+
+    public void setEngine(EngineType engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Number of selector event-loop threads used by the NIO engine.
+     */
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    public void setIoThreads(int ioThreads) {
+        if (ioThreads < 1) {
+            throw new IllegalArgumentException("ioThreads must be positive: " + ioThreads);
+        }
+        this.ioThreads = ioThreads;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public void setExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public void setWorkerThreads(int workerThreads) {
+        if (workerThreads < 1) {
+            throw new IllegalArgumentException("workerThreads must be positive: " + workerThreads);
+        }
+        this.workerThreads = workerThreads;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be positive: " + queueCapacity);
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    public RejectionPolicy getRejectionPolicy() {
+        return rejectionPolicy;
+    }
+
+    public void setRejectionPolicy(RejectionPolicy rejectionPolicy) {
+        this.rejectionPolicy = rejectionPolicy;
+    }
+
+    /**
+     * How long an idle persistent connection waits for its next request.
+     */
+    public int getKeepAliveTimeoutMillis() {
+        return keepAliveTimeoutMillis;
+    }
+
+    public void setKeepAliveTimeoutMillis(int keepAliveTimeoutMillis) {
+        if (keepAliveTimeoutMillis < 1) {
+            throw new IllegalArgumentException("keepAliveTimeoutMillis must be positive: " + keepAliveTimeoutMillis);
+        }
+        this.keepAliveTimeoutMillis = keepAliveTimeoutMillis;
+    }
+
+    /**
+     * Maximum number of requests served on one connection before it is closed.
+     */
+    public int getMaxKeepAliveRequests() {
+        return maxKeepAliveRequests;
+    }
+
+    public void setMaxKeepAliveRequests(int maxKeepAliveRequests) {
+        if (maxKeepAliveRequests < 1) {
+            throw new IllegalArgumentException("maxKeepAliveRequests must be positive: " + maxKeepAliveRequests);
+        }
+        this.maxKeepAliveRequests = maxKeepAliveRequests;
+    }
+
+    /**
+     * Folder static files are served from.
+     */
+    public String getStaticRoot() {
+        return staticRoot;
+    }
+
+    public void setStaticRoot(String staticRoot) {
+        this.staticRoot = staticRoot;
+    }
+
+    /**
+     * Byte budget of the off-heap static content cache; 0 disables it.
+     */
+    public long getStaticCacheBytes() {
+        return staticCacheBytes;
+    }
+
+    public void setStaticCacheBytes(long staticCacheBytes) {
+        if (staticCacheBytes < 0) {
+            throw new IllegalArgumentException("staticCacheBytes must not be negative: " + staticCacheBytes);
+        }
+        this.staticCacheBytes = staticCacheBytes;
+    }
+
+    /**
+     * Files up to this size are cached; larger ones are sent with transferTo.
+     */
+    public long getStaticCacheMaxFileSize() {
+        return staticCacheMaxFileSize;
+    }
+
+    public void setStaticCacheMaxFileSize(long staticCacheMaxFileSize) {
+        if (staticCacheMaxFileSize < 0) {
+            throw new IllegalArgumentException("staticCacheMaxFileSize must not be negative: " + staticCacheMaxFileSize);
+        }
+        this.staticCacheMaxFileSize = staticCacheMaxFileSize;
+    }
+
+    /**
+     * max-age sent in Cache-Control for static files; 0 sends no-cache so browsers always revalidate.
+     */
+    public int getStaticMaxAgeSeconds() {
+        return staticMaxAgeSeconds;
+    }
+
+    public void setStaticMaxAgeSeconds(int staticMaxAgeSeconds) {
+        if (staticMaxAgeSeconds < 0) {
+            throw new IllegalArgumentException("staticMaxAgeSeconds must not be negative: " + staticMaxAgeSeconds);
+        }
+        this.staticMaxAgeSeconds = staticMaxAgeSeconds;
+    }
+
+    /**
+     * Whether responses are gzip/deflate encoded for clients that accept it.
+     */
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    public void setCompressionEnabled(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+
+    /**
+     * Dynamic responses smaller than this many bytes are sent uncompressed.
+     */
+    public int getCompressionMinSize() {
+        return compressionMinSize;
+    }
+
+    public void setCompressionMinSize(int compressionMinSize) {
+        if (compressionMinSize < 0) {
+            throw new IllegalArgumentException("compressionMinSize must not be negative: " + compressionMinSize);
+        }
+        this.compressionMinSize = compressionMinSize;
+    }
+
+    /**
+     * Longest request line accepted; longer ones are answered with 414.
+     */
+    public int getMaxRequestLineLength() {
+        return maxRequestLineLength;
+    }
+
+    public void setMaxRequestLineLength(int maxRequestLineLength) {
+        if (maxRequestLineLength < 16) {
+            throw new IllegalArgumentException("maxRequestLineLength must be at least 16: " + maxRequestLineLength);
+        }
+        this.maxRequestLineLength = maxRequestLineLength;
+    }
+
+    /**
+     * Largest request head (request line and headers) accepted; larger ones are answered with 431.
+     * It is also the size of the per-connection read buffer.
+     */
+    public int getMaxHeaderSize() {
+        return maxHeaderSize;
+    }
+
+    public void setMaxHeaderSize(int maxHeaderSize) {
+        if (maxHeaderSize < 256) {
+            throw new IllegalArgumentException("maxHeaderSize must be at least 256: " + maxHeaderSize);
+        }
+        this.maxHeaderSize = maxHeaderSize;
+    }
+
+    /**
+     * Maximum number of header fields in a request; more are answered with 431.
+     */
+    public int getMaxHeaderCount() {
+        return maxHeaderCount;
+    }
+
+    public void setMaxHeaderCount(int maxHeaderCount) {
+        if (maxHeaderCount < 1) {
+            throw new IllegalArgumentException("maxHeaderCount must be positive: " + maxHeaderCount);
+        }
+        this.maxHeaderCount = maxHeaderCount;
+    }
+
+    /**
+     * Maximum size of a request body in bytes; larger ones are answered with 413. 0 means no limit.
+     */
+    public long getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    public void setMaxBodySize(long maxBodySize) {
+        if (maxBodySize < 0) {
+            throw new IllegalArgumentException("maxBodySize must not be negative: " + maxBodySize);
+        }
+        this.maxBodySize = maxBodySize;
+    }
+
+    /**
+     * File the access log is written to; null disables it.
+     */
+    public String getAccessLogPath() {
+        return accessLogPath;
+    }
+
+    public void setAccessLogPath(String accessLogPath) {
+        this.accessLogPath = accessLogPath;
+    }
+
+    public AccessLogFormat getAccessLogFormat() {
+        return accessLogFormat;
+    }
+
+    public void setAccessLogFormat(AccessLogFormat accessLogFormat) {
+        this.accessLogFormat = accessLogFormat;
+    }
+
+    /**
+     * Size at which the access log is rotated; 0 never rotates.
+     */
+    public long getAccessLogMaxBytes() {
+        return accessLogMaxBytes;
+    }
+
+    public void setAccessLogMaxBytes(long accessLogMaxBytes) {
+        if (accessLogMaxBytes < 0) {
+            throw new IllegalArgumentException("accessLogMaxBytes must not be negative: " + accessLogMaxBytes);
+        }
+        this.accessLogMaxBytes = accessLogMaxBytes;
+    }
+
+    /**
+     * Number of rotated access log files kept next to the current one.
+     */
+    public int getAccessLogMaxFiles() {
+        return accessLogMaxFiles;
+    }
+
+    public void setAccessLogMaxFiles(int accessLogMaxFiles) {
+        if (accessLogMaxFiles < 0) {
+            throw new IllegalArgumentException("accessLogMaxFiles must not be negative: " + accessLogMaxFiles);
+        }
+        this.accessLogMaxFiles = accessLogMaxFiles;
+    }
+
+    /**
+     * Path of the built-in Prometheus metrics endpoint; null or empty disables it.
+     */
+    public String getMetricsPath() {
+        return metricsPath;
+    }
+
+    public void setMetricsPath(String metricsPath) {
+        this.metricsPath = metricsPath == null || metricsPath.isEmpty() ? null : metricsPath;
+    }
+
+    /**
+     * Most responses held by the cache of {@code @Cacheable} handlers; 0 disables it.
+     */
+    public int getResponseCacheEntries() {
+        return responseCacheEntries;
+    }
+
+    public void setResponseCacheEntries(int responseCacheEntries) {
+        if (responseCacheEntries < 0) {
+            throw new IllegalArgumentException("responseCacheEntries must not be negative: " + responseCacheEntries);
+        }
+        this.responseCacheEntries = responseCacheEntries;
+    }
+
+    /**
+     * Byte budget of the response cache, including compressed variants; 0 disables it.
+     */
+    public long getResponseCacheBytes() {
+        return responseCacheBytes;
+    }
+
+    public void setResponseCacheBytes(long responseCacheBytes) {
+        if (responseCacheBytes < 0) {
+            throw new IllegalArgumentException("responseCacheBytes must not be negative: " + responseCacheBytes);
+        }
+        this.responseCacheBytes = responseCacheBytes;
+    }
+
+    /**
+     * Milliseconds {@link ServerEngine#stop()} waits for in-flight requests before closing their connections.
+     */
+    public long getDrainTimeoutMillis() {
+        return drainTimeoutMillis;
+    }
+
+    public void setDrainTimeoutMillis(long drainTimeoutMillis) {
+        if (drainTimeoutMillis < 0) {
+            throw new IllegalArgumentException("drainTimeoutMillis must not be negative: " + drainTimeoutMillis);
+        }
+        this.drainTimeoutMillis = drainTimeoutMillis;
+    }
+
+    /**
+     * Requests per second allowed for each client address; 0 disables rate limiting.
+     */
+    public double getRateLimit() {
+        return rateLimit;
+    }
+
+    public void setRateLimit(double rateLimit) {
+        if (rateLimit < 0) {
+            throw new IllegalArgumentException("rateLimit must not be negative: " + rateLimit);
+        }
+        this.rateLimit = rateLimit;
+    }
+
+    /**
+     * Requests a client may send at once, above its rate, after being idle.
+     */
+    public int getRateLimitBurst() {
+        return rateLimitBurst;
+    }
+
+    public void setRateLimitBurst(int rateLimitBurst) {
+        if (rateLimitBurst < 1) {
+            throw new IllegalArgumentException("rateLimitBurst must be at least 1: " + rateLimitBurst);
+        }
+        this.rateLimitBurst = rateLimitBurst;
+    }
+
+    /**
+     * Most requests processed at the same time before new ones are shed with 503; 0 means no limit.
+     */
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        if (maxConcurrentRequests < 0) {
+            throw new IllegalArgumentException("maxConcurrentRequests must not be negative: " + maxConcurrentRequests);
+        }
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    /**
+     * Milliseconds a request may wait for a worker before it is shed with 503; 0 means no limit.
+     */
+    public long getMaxQueueTimeMillis() {
+        return maxQueueTimeMillis;
+    }
+
+    public void setMaxQueueTimeMillis(long maxQueueTimeMillis) {
+        if (maxQueueTimeMillis < 0) {
+            throw new IllegalArgumentException("maxQueueTimeMillis must not be negative: " + maxQueueTimeMillis);
+        }
+        this.maxQueueTimeMillis = maxQueueTimeMillis;
+    }
+
+    /**
+     * Seconds sent in the Retry-After header of shed requests.
+     */
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public void setRetryAfterSeconds(int retryAfterSeconds) {
+        if (retryAfterSeconds < 0) {
+            throw new IllegalArgumentException("retryAfterSeconds must not be negative: " + retryAfterSeconds);
+        }
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Milliseconds a client may take to send a whole request head once it has started it;
+     * slower clients get 408. 0 means no limit.
+     */
+    public int getHeaderTimeoutMillis() {
+        return headerTimeoutMillis;
+    }
+
+    public void setHeaderTimeoutMillis(int headerTimeoutMillis) {
+        if (headerTimeoutMillis < 0) {
+            throw new IllegalArgumentException("headerTimeoutMillis must not be negative: " + headerTimeoutMillis);
+        }
+        this.headerTimeoutMillis = headerTimeoutMillis;
+    }
+
+    /**
+     * Key store holding the server certificate and private key; null serves plain HTTP.
+     */
+    public String getKeyStore() {
+        return keyStore;
+    }
+
+    public void setKeyStore(String keyStore) {
+        this.keyStore = keyStore == null || keyStore.isEmpty() ? null : keyStore;
+    }
+
+    public String getKeyStorePassword() {
+        return keyStorePassword;
+    }
+
+    public void setKeyStorePassword(String keyStorePassword) {
+        this.keyStorePassword = keyStorePassword;
+    }
+
+    public String getKeyStoreType() {
+        return keyStoreType;
+    }
+
+    public void setKeyStoreType(String keyStoreType) {
+        this.keyStoreType = keyStoreType;
+    }
+
+    /**
+     * Most TLS sessions kept for resumption; 0 means no limit.
+     */
+    public int getTlsSessionCacheSize() {
+        return tlsSessionCacheSize;
+    }
+
+    public void setTlsSessionCacheSize(int tlsSessionCacheSize) {
+        if (tlsSessionCacheSize < 0) {
+            throw new IllegalArgumentException("tlsSessionCacheSize must not be negative: " + tlsSessionCacheSize);
+        }
+        this.tlsSessionCacheSize = tlsSessionCacheSize;
+    }
+
+    /**
+     * Seconds a TLS session can be resumed after its full handshake; 0 means no limit.
+     */
+    public int getTlsSessionTimeoutSeconds() {
+        return tlsSessionTimeoutSeconds;
+    }
+
+    public void setTlsSessionTimeoutSeconds(int tlsSessionTimeoutSeconds) {
+        if (tlsSessionTimeoutSeconds < 0) {
+            throw new IllegalArgumentException("tlsSessionTimeoutSeconds must not be negative: " + tlsSessionTimeoutSeconds);
+        }
+        this.tlsSessionTimeoutSeconds = tlsSessionTimeoutSeconds;
+    }
+
+    /**
+     * Whether sessions are also resumed from tickets the client keeps, so resumption works
+     * without server side state. The JDK only offers this as a JVM-wide switch, so the first
+     * server started with TLS decides it for the whole process and later values are ignored.
+     */
+    public boolean isTlsSessionTickets() {
+        return tlsSessionTickets;
+    }
+
+    public void setTlsSessionTickets(boolean tlsSessionTickets) {
+        this.tlsSessionTickets = tlsSessionTickets;
+    }
+
+    /**
+     * Whether the blocking engine speaks HTTP/2: h2c by prior knowledge or Upgrade, and h2
+     * negotiated with ALPN over TLS.
+     */
+    public boolean isHttp2Enabled() {
+        return http2Enabled;
+    }
+
+    public void setHttp2Enabled(boolean http2Enabled) {
+        this.http2Enabled = http2Enabled;
+    }
+
+    /**
+     * Most streams a client may have open at once on one HTTP/2 connection; further ones are refused.
+     */
+    public int getHttp2MaxConcurrentStreams() {
+        return http2MaxConcurrentStreams;
+    }
+
+    public void setHttp2MaxConcurrentStreams(int http2MaxConcurrentStreams) {
+        if (http2MaxConcurrentStreams < 0) {
+            throw new IllegalArgumentException("http2MaxConcurrentStreams must not be negative: " + http2MaxConcurrentStreams);
+        }
+        this.http2MaxConcurrentStreams = http2MaxConcurrentStreams;
+    }
+}
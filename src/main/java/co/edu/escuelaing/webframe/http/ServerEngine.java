@@ -0,0 +1,46 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.IOException;
+
+import co.edu.escuelaing.webframe.http.nio.NioHttpServer;
+import co.edu.escuelaing.webframe.ioc.SimpleIoCContainer;
+
+/**
+ * Common lifecycle of the HTTP connection engines.
+ */
+public interface ServerEngine {
+
+    /**
+     * Creates the engine selected by {@link ServerConfig#getEngine()}.
+     */
+    static ServerEngine create(int port, SimpleIoCContainer container, ServerConfig config) {
+        if (config.getEngine() == EngineType.NIO) {
+            return new NioHttpServer(port, container, config);
+        }
+        return new HttpServer(port, container, config);
+    }
+
+    /**
+     * Binds the port and serves connections until {@link #stop()} is called.
+     */
+    void start() throws IOException;
+
+    /**
+     * Shuts down gracefully, draining for at most {@link ServerConfig#getDrainTimeoutMillis()}.
+     */
+    void stop();
+
+    /**
+     * Stops accepting connections and lets requests in progress finish, closing each connection
+     * after its current response; idle keep-alive connections are closed right away. Connections
+     * still busy after the timeout are closed. Calling it again returns the first report.
+     */
+    DrainReport shutdown(long drainTimeoutMillis);
+
+    boolean isRunning();
+
+    /**
+     * Returns the port the engine is bound to.
+     */
+    int getLocalPort();
+}
@@ -0,0 +1,406 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded LRU cache of static file contents held in direct (off-heap) buffers.
+ * Each entry also keeps its encoded response headers, including a strong ETag hashed from
+ * the content when the file is loaded, so a hit needs no file system access and no header
+ * formatting, and lazily built compressed variants, so a file version is compressed at most
+ * once per coding. Entries are invalidated by a
+ * {@link WatchService} watching the static folder, so edits show up without a restart.
+ */
+public class StaticContentCache implements Closeable {
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long currentBytes;
+
+    /**
+     * Bumped on every file system event so loads that raced with a change are not stored.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private WatchService watchService;
+    private Thread watcherThread;
+
+    /**
+     * Cached file with its precomputed headers.
+     */
+    public static final class Entry {
+        private final Path file;
+        private final ByteBuffer content;
+        private final byte[] baseHeaders;
+        private final byte[] headers;
+        private final String etag;
+        private final long lastModified;
+        private final boolean compressible;
+        private volatile Variant gzip;
+        private volatile Variant deflate;
+
+        /**
+         * Content plus compressed variants counted against the budget; guarded by the cache lock.
+         */
+        private long accountedBytes;
+
+        Entry(Path file, ByteBuffer content, byte[] baseHeaders, long lastModified, boolean compressible) {
+            this.file = file;
+            this.content = content;
+            this.baseHeaders = baseHeaders;
+            this.etag = ConditionalRequests.contentTag(content);
+            this.headers = withETag(baseHeaders, etag);
+            this.lastModified = lastModified;
+            this.compressible = compressible;
+            this.accountedBytes = content.capacity();
+        }
+
+        /**
+         * Returns a read-only view of the content with its own position.
+         */
+        public ByteBuffer content() {
+            return content.duplicate();
+        }
+
+        /**
+         * Returns the encoded header lines, each terminated by CRLF.
+         */
+        public byte[] headers() {
+            return headers;
+        }
+
+        /**
+         * Returns the strong entity tag of the identity content.
+         */
+        public String etag() {
+            return etag;
+        }
+
+        public long size() {
+            return content.capacity();
+        }
+
+        public long lastModified() {
+            return lastModified;
+        }
+
+        public boolean isCompressible() {
+            return compressible;
+        }
+
+        private Variant variant(ContentEncoding encoding) {
+            return encoding == ContentEncoding.GZIP ? gzip : deflate;
+        }
+
+        private void setVariant(ContentEncoding encoding, Variant variant) {
+            if (encoding == ContentEncoding.GZIP) {
+                gzip = variant;
+            } else {
+                deflate = variant;
+            }
+        }
+    }
+
+    /**
+     * Compressed copy of an entry with its own headers.
+     */
+    public static final class Variant {
+        private static final Variant NO_GAIN = new Variant(ByteBuffer.allocate(0), new byte[0], null);
+
+        private final ByteBuffer content;
+        private final byte[] headers;
+        private final String etag;
+
+        Variant(ByteBuffer content, byte[] headers, String etag) {
+            this.content = content;
+            this.headers = headers;
+            this.etag = etag;
+        }
+
+        public ByteBuffer content() {
+            return content.duplicate();
+        }
+
+        public byte[] headers() {
+            return headers;
+        }
+
+        public String etag() {
+            return etag;
+        }
+    }
+
+    /**
+     * @param maxBytes      total content bytes the cache may hold; 0 disables caching
+     * @param maxEntryBytes largest file that is cached
+     */
+    public StaticContentCache(long maxBytes, long maxEntryBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+    }
+
+    /**
+     * Returns true when a file of this size would be cached.
+     */
+    public boolean accepts(long size) {
+        return maxBytes > 0 && size <= maxEntryBytes && size <= Integer.MAX_VALUE;
+    }
+
+    public Entry get(Path file) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(file);
+        }
+        if (entry != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return entry;
+    }
+
+    /**
+     * Reads a file into a direct buffer and caches it, evicting least recently used entries
+     * to stay within the byte budget.
+     *
+     * @param compressible whether compressed variants may be built for the entry
+     * @param headerLines  header lines for the entry, without the trailing CRLF; the ETag is added
+     */
+    public Entry load(Path file, BasicFileAttributes attributes, boolean compressible, String... headerLines)
+            throws IOException {
+        long loadGeneration = generation.get();
+
+        ByteBuffer content = ByteBuffer.allocateDirect((int) attributes.size());
+        try (FileChannel channel = FileChannel.open(file)) {
+            while (content.hasRemaining() && channel.read(content) >= 0) {
+                // keep reading until the buffer is full or the file ends early
+            }
+        }
+        content.flip();
+
+        StringBuilder headers = new StringBuilder();
+        for (String line : headerLines) {
+            headers.append(line).append("\r\n");
+        }
+        Entry entry = new Entry(file, content.asReadOnlyBuffer(), headers.toString().getBytes(StandardCharsets.ISO_8859_1),
+                attributes.lastModifiedTime().toMillis(), compressible);
+
+        synchronized (this) {
+            if (generation.get() == loadGeneration) {
+                Entry previous = entries.put(file, entry);
+                if (previous != null) {
+                    currentBytes -= previous.accountedBytes;
+                }
+                currentBytes += entry.accountedBytes;
+                evictOverBudget();
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the compressed variant of an entry, compressing it on first use only.
+     * Returns null when the entry is not compressible or compression does not make it smaller,
+     * in which case the identity content should be sent.
+     */
+    public Variant variant(Entry entry, ContentEncoding encoding) {
+        if (!entry.compressible || encoding == ContentEncoding.IDENTITY) {
+            return null;
+        }
+        Variant variant = entry.variant(encoding);
+        if (variant == null) {
+            synchronized (entry) {
+                variant = entry.variant(encoding);
+                if (variant == null) {
+                    variant = compress(entry, encoding);
+                    entry.setVariant(encoding, variant);
+                    account(entry, variant.content.capacity());
+                }
+            }
+        }
+        return variant == Variant.NO_GAIN ? null : variant;
+    }
+
+    private static Variant compress(Entry entry, ContentEncoding encoding) {
+        byte[] compressed;
+        try {
+            compressed = encoding.compress(entry.content);
+        } catch (IOException e) {
+            System.err.println("Could not compress " + entry.file + ": " + e.getMessage());
+            return Variant.NO_GAIN;
+        }
+        if (compressed.length >= entry.size()) {
+            return Variant.NO_GAIN;
+        }
+
+        ByteBuffer content = ByteBuffer.allocateDirect(compressed.length);
+        content.put(compressed).flip();
+        String etag = ConditionalRequests.encodedTag(entry.etag, encoding);
+        byte[] headers = withETag(append(entry.baseHeaders, "Content-Encoding: " + encoding.token() + "\r\n"), etag);
+        return new Variant(content.asReadOnlyBuffer(), headers, etag);
+    }
+
+    private static byte[] withETag(byte[] headers, String etag) {
+        return append(headers, "ETag: " + etag + "\r\n");
+    }
+
+    private static byte[] append(byte[] headers, String line) {
+        byte[] encodedLine = line.getBytes(StandardCharsets.ISO_8859_1);
+        byte[] combined = new byte[headers.length + encodedLine.length];
+        System.arraycopy(headers, 0, combined, 0, headers.length);
+        System.arraycopy(encodedLine, 0, combined, headers.length, encodedLine.length);
+        return combined;
+    }
+
+    /**
+     * Counts variant bytes against the budget if the entry is still cached.
+     */
+    private synchronized void account(Entry entry, long bytes) {
+        if (bytes > 0 && entries.get(entry.file) == entry) {
+            entry.accountedBytes += bytes;
+            currentBytes += bytes;
+            evictOverBudget();
+        }
+    }
+
+    public void invalidate(Path file) {
+        generation.incrementAndGet();
+        synchronized (this) {
+            Entry removed = entries.remove(file);
+            if (removed != null) {
+                currentBytes -= removed.accountedBytes;
+                invalidations.increment();
+            }
+        }
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        synchronized (this) {
+            invalidations.add(entries.size());
+            entries.clear();
+            currentBytes = 0;
+        }
+    }
+
+    private void evictOverBudget() {
+        Iterator<Map.Entry<Path, Entry>> eldest = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && eldest.hasNext()) {
+            currentBytes -= eldest.next().getValue().accountedBytes;
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Starts a daemon thread that invalidates entries when files below the root change.
+     */
+    public void startWatching(Path root) throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        registerTree(root);
+
+        watcherThread = new Thread(this::watchLoop, "static-cache-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+
+    private void registerTree(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            Path dir = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    clear();
+                    continue;
+                }
+                Path changed = dir.resolve((Path) event.context());
+                invalidate(changed);
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+                    try {
+                        registerTree(changed);
+                    } catch (IOException e) {
+                        System.err.println("Could not watch directory " + changed + ": " + e.getMessage());
+                    }
+                }
+            }
+            key.reset();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
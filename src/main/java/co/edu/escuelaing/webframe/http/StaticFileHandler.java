@@ -0,0 +1,308 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ThreadLocalRandom;
+
+import co.edu.escuelaing.webframe.DebugLog;
+import co.edu.escuelaing.webframe.http.buffer.BufferPool;
+
+/**
+ * Serves files below the static resources folder without copying them onto the heap.
+ * Files that fit the {@link StaticContentCache} are kept in direct buffers together with their
+ * headers and compressed variants; larger ones are sent uncompressed with {@link FileChannel#transferTo}.
+ * Every response carries ETag, Last-Modified and Cache-Control, and conditional requests that
+ * still match are answered with 304 without touching the body. Range requests are answered with
+ * 206 from the cached buffer or from the file at the requested offset.
+ */
+public class StaticFileHandler implements Closeable {
+
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    private final Path root;
+    private final StaticContentCache cache;
+    private final boolean compression;
+    private final String cacheControl;
+
+    public StaticFileHandler(ServerConfig config) {
+        this.root = Paths.get(config.getStaticRoot()).toAbsolutePath().normalize();
+        this.compression = config.isCompressionEnabled();
+        this.cacheControl = config.getStaticMaxAgeSeconds() > 0
+                ? "public, max-age=" + config.getStaticMaxAgeSeconds()
+                : "no-cache";
+
+        StaticContentCache contentCache =
+                new StaticContentCache(config.getStaticCacheBytes(), config.getStaticCacheMaxFileSize());
+        if (config.getStaticCacheBytes() > 0 && Files.isDirectory(root)) {
+            try {
+                contentCache.startWatching(root);
+            } catch (IOException e) {
+                // Without change notifications cached entries could go stale, so caching is turned off.
+                System.err.println("Static cache disabled, could not watch " + root + ": " + e.getMessage());
+                closeQuietly(contentCache);
+                contentCache = new StaticContentCache(0, 0);
+            }
+        }
+        this.cache = contentCache;
+    }
+
+    /**
+     * Returns true when the path names a static asset type served by this handler.
+     */
+    public boolean isStaticFile(String path) {
+        return path.contains(".") &&
+                (path.endsWith(".html") || path.endsWith(".css") || path.endsWith(".js") ||
+                        path.endsWith(".png") || path.endsWith(".jpg"));
+    }
+
+    /**
+     * Serves a static file, choosing a compressed variant for compressible cached files
+     * when the Accept-Encoding header allows one.
+     */
+    public HttpResponse handle(HttpRequest request) {
+        String path = request.getTarget();
+        Path resourcePath = resolve(path);
+        if (resourcePath == null) {
+            return HttpResponse.error(404);
+        }
+
+        String contentType = getMimeType(resourcePath.getFileName().toString());
+        StaticContentCache.Entry cached = cache.get(resourcePath);
+        if (cached != null) {
+            if (DebugLog.isEnabled()) {
+                DebugLog.log("Served static file: " + path);
+            }
+            return cachedResponse(cached, request, contentType);
+        }
+
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(resourcePath, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return HttpResponse.error(404);
+            }
+
+            long lastModified = attributes.lastModifiedTime().toMillis();
+            String lastModifiedDate = ConditionalRequests.formatDate(lastModified);
+            HttpResponse response;
+            if (cache.accepts(attributes.size())) {
+                boolean compressible = compression && ContentEncoding.isCompressible(contentType);
+                StaticContentCache.Entry entry = compressible
+                        ? cache.load(resourcePath, attributes, true, "Content-Type: " + contentType,
+                                "Vary: Accept-Encoding", "Last-Modified: " + lastModifiedDate,
+                                "Cache-Control: " + cacheControl, "Accept-Ranges: bytes")
+                        : cache.load(resourcePath, attributes, false, "Content-Type: " + contentType,
+                                "Last-Modified: " + lastModifiedDate, "Cache-Control: " + cacheControl,
+                                "Accept-Ranges: bytes");
+                response = cachedResponse(entry, request, contentType);
+            } else {
+                // Hashing large files would mean reading them; size and mtime identify the version instead.
+                String etag = ConditionalRequests.fileTag(attributes.size(), lastModified);
+                if (ConditionalRequests.isNotModified(request, etag, lastModified)) {
+                    return ConditionalRequests.notModified(etag, lastModifiedDate, cacheControl, false);
+                }
+                ByteRanges ranges = requestedRanges(request, etag, lastModified, attributes.size());
+                if (ranges != null) {
+                    return partialResponse(ranges, contentType, etag, lastModified, false, null, resourcePath);
+                }
+                response = new HttpResponse(200);
+                response.setHeader("Content-Type", contentType);
+                response.setHeader("Last-Modified", lastModifiedDate);
+                response.setHeader("Cache-Control", cacheControl);
+                response.setHeader("ETag", etag);
+                response.setHeader("Accept-Ranges", "bytes");
+                response.setBody(new FileRegion(resourcePath, 0, attributes.size()));
+            }
+
+            if (DebugLog.isEnabled()) {
+                DebugLog.log("Served static file: " + path);
+            }
+            return response;
+        } catch (NoSuchFileException e) {
+            return HttpResponse.error(404);
+        } catch (IOException e) {
+            System.err.println("Error serving static file: " + e.getMessage());
+            return HttpResponse.error(500);
+        }
+    }
+
+    private HttpResponse cachedResponse(StaticContentCache.Entry entry, HttpRequest request, String contentType) {
+        StaticContentCache.Variant variant = entry.isCompressible()
+                ? cache.variant(entry, ContentEncoding.negotiate(request.getHeader("Accept-Encoding")))
+                : null;
+        String etag = variant != null ? variant.etag() : entry.etag();
+        if (ConditionalRequests.isNotModified(request, etag, entry.lastModified())) {
+            return ConditionalRequests.notModified(etag, ConditionalRequests.formatDate(entry.lastModified()),
+                    cacheControl, entry.isCompressible());
+        }
+        // ranges always refer to the identity content
+        ByteRanges ranges = requestedRanges(request, entry.etag(), entry.lastModified(), entry.size());
+        if (ranges != null) {
+            return partialResponse(ranges, contentType, entry.etag(), entry.lastModified(), entry.isCompressible(),
+                    entry.content(), null);
+        }
+
+        HttpResponse response = new HttpResponse(200);
+        if (variant != null) {
+            response.setPrecomputedHeaders(variant.headers());
+            response.setBody(variant.content());
+        } else {
+            response.setPrecomputedHeaders(entry.headers());
+            response.setBody(entry.content());
+        }
+        return response;
+    }
+
+    /**
+     * Returns the ranges a GET asks for, or null when the whole file should be sent because
+     * there is no usable Range header or If-Range names another version.
+     */
+    private static ByteRanges requestedRanges(HttpRequest request, String etag, long lastModified, long length) {
+        if (!"GET".equals(request.getMethod())) {
+            return null;
+        }
+        ByteRanges ranges = ByteRanges.parse(request.getHeader("Range"), length);
+        if (ranges == null || !ConditionalRequests.isRangeApplicable(request, etag, lastModified)) {
+            return null;
+        }
+        return ranges;
+    }
+
+    /**
+     * Builds a 206 response for the ranges, or 416 when none can be satisfied. A single range is
+     * sent as a slice of the cached buffer or a region of the file; several ranges are streamed
+     * as multipart/byteranges.
+     *
+     * @param content cached identity content, or null to read from {@code file}
+     */
+    private HttpResponse partialResponse(ByteRanges ranges, String contentType, String etag, long lastModified,
+            boolean vary, ByteBuffer content, Path file) {
+        if (!ranges.isSatisfiable()) {
+            HttpResponse response = HttpResponse.error(416);
+            response.setHeader("Content-Range", ranges.unsatisfiedRange());
+            return response;
+        }
+
+        HttpResponse response = new HttpResponse(206);
+        if (ranges.count() == 1) {
+            response.setHeader("Content-Type", contentType);
+            response.setHeader("Content-Range", ranges.contentRange(0));
+        } else {
+            String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong());
+            response.setHeader("Content-Type", "multipart/byteranges; boundary=" + boundary);
+            response.setBody(out -> writeParts(out, ranges, boundary, contentType, content, file));
+        }
+        response.setHeader("Last-Modified", ConditionalRequests.formatDate(lastModified));
+        response.setHeader("Cache-Control", cacheControl);
+        response.setHeader("ETag", etag);
+        response.setHeader("Accept-Ranges", "bytes");
+        if (vary) {
+            response.setHeader("Vary", "Accept-Encoding");
+        }
+        if (ranges.count() == 1) {
+            if (content != null) {
+                response.setBody(slice(content, ranges.start(0), ranges.count(0)));
+            } else {
+                response.setBody(new FileRegion(file, ranges.start(0), ranges.count(0)));
+            }
+        }
+        return response;
+    }
+
+    private static void writeParts(OutputStream out, ByteRanges ranges, String boundary, String contentType,
+            ByteBuffer content, Path file) throws IOException {
+        ByteBuffer pooled = content != null ? BufferPool.shared().acquire(COPY_BUFFER_SIZE) : null;
+        try {
+            writeParts(out, ranges, boundary, contentType, content, file, pooled != null ? pooled.array() : null);
+        } finally {
+            if (pooled != null) {
+                BufferPool.shared().release(pooled);
+            }
+        }
+    }
+
+    private static void writeParts(OutputStream out, ByteRanges ranges, String boundary, String contentType,
+            ByteBuffer content, Path file, byte[] copyBuffer) throws IOException {
+        for (int i = 0; i < ranges.count(); i++) {
+            String partHead = (i == 0 ? "" : "\r\n") + "--" + boundary + "\r\nContent-Type: " + contentType
+                    + "\r\nContent-Range: " + ranges.contentRange(i) + "\r\n\r\n";
+            out.write(partHead.getBytes(StandardCharsets.ISO_8859_1));
+            if (content != null) {
+                ByteBuffer part = slice(content, ranges.start(i), ranges.count(i));
+                while (part.hasRemaining()) {
+                    int length = Math.min(copyBuffer.length, part.remaining());
+                    part.get(copyBuffer, 0, length);
+                    out.write(copyBuffer, 0, length);
+                }
+            } else {
+                new FileRegion(file, ranges.start(i), ranges.count(i)).copyTo(out);
+            }
+        }
+        out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static ByteBuffer slice(ByteBuffer content, long start, long count) {
+        ByteBuffer slice = content.duplicate();
+        slice.position(slice.position() + (int) start);
+        slice.limit(slice.position() + (int) count);
+        return slice;
+    }
+
+    /**
+     * Resolves a request path inside the root folder, rejecting paths that escape it.
+     */
+    Path resolve(String path) {
+        String filePath = path.startsWith("/") ? path.substring(1) : path;
+        Path resolved = root.resolve(filePath).normalize();
+        return resolved.startsWith(root) ? resolved : null;
+    }
+
+    public StaticContentCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public void close() throws IOException {
+        cache.close();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            System.err.println("Error closing static cache: " + e.getMessage());
+        }
+    }
+
+    static String getMimeType(String filename) {
+        String extension = filename.substring(filename.lastIndexOf('.') + 1).toLowerCase();
+        switch (extension) {
+            case "html":
+                return "text/html";
+            case "css":
+                return "text/css";
+            case "js":
+                return "application/javascript";
+            case "png":
+                return "image/png";
+            case "jpg":
+                return "image/jpeg";
+            case "txt":
+                return "text/plain";
+            case "csv":
+                return "text/csv";
+            case "json":
+                return "application/json";
+            default:
+                return "application/octet-stream";
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Response body produced while it is written, for content whose length is not known up front.
+ * Streaming bodies are sent with chunked transfer encoding.
+ */
+@FunctionalInterface
+public interface StreamingBody {
+
+    /**
+     * Writes the body. The stream must not be closed by the implementation.
+     */
+    void writeTo(OutputStream out) throws IOException;
+}
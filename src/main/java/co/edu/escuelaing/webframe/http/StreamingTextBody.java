@@ -0,0 +1,17 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Text response body produced while it is written. The text is encoded as UTF-8 and, like a
+ * {@link StreamingBody}, sent with chunked transfer encoding.
+ */
+@FunctionalInterface
+public interface StreamingTextBody {
+
+    /**
+     * Writes the body. The writer must not be closed by the implementation.
+     */
+    void writeTo(Writer out) throws IOException;
+}
@@ -0,0 +1,121 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import co.edu.escuelaing.webframe.http.metrics.ServerMetrics;
+
+/**
+ * Factory for the executors that process accepted connections.
+ */
+public final class WorkerExecutors {
+
+    private WorkerExecutors() {
+    }
+
+    /**
+     * Creates the executor described by the configuration.
+     * Rejected tasks surface as {@link java.util.concurrent.RejectedExecutionException} so the
+     * caller can apply its {@link RejectionPolicy} without blocking.
+     */
+    public static ExecutorService create(ServerConfig config) {
+        if (config.getExecutionMode() == ExecutionMode.VIRTUAL) {
+            ExecutorService virtual = newVirtualThreadExecutor();
+            if (virtual != null) {
+                return virtual;
+            }
+            System.err.println("Virtual threads are not available on this JDK, using a worker pool");
+        }
+        return newBoundedPool(config.getWorkerThreads(), config.getQueueCapacity(), "http-worker");
+    }
+
+    /**
+     * Creates the executor that answers HTTP/2 streams. It is kept apart from the connection
+     * workers, which hold each HTTP/2 connection's reading thread: sharing them, as many open
+     * connections as workers would leave no thread to answer any stream. The pool has as many
+     * threads as the connection pool, started on demand and stopped after a minute idle.
+     */
+    public static ExecutorService createStreamExecutor(ServerConfig config) {
+        if (config.getExecutionMode() == ExecutionMode.VIRTUAL) {
+            ExecutorService virtual = newVirtualThreadExecutor();
+            if (virtual != null) {
+                return virtual;
+            }
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(config.getWorkerThreads(), config.getWorkerThreads(),
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(config.getQueueCapacity()),
+                namedThreadFactory("h2-stream"),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Creates a fixed-size pool of daemon threads backed by a bounded queue.
+     */
+    public static ThreadPoolExecutor newBoundedPool(int threads, int queueCapacity, String namePrefix) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                namedThreadFactory(namePrefix),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.prestartAllCoreThreads();
+        return executor;
+    }
+
+    /**
+     * Publishes the queue depth and busy threads of a worker pool; virtual thread executors
+     * have neither.
+     */
+    public static void registerGauges(ExecutorService executor, ServerMetrics metrics) {
+        if (executor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            metrics.registerGauge("webframe_worker_queue_depth", "Tasks waiting for a worker.", () -> pool.getQueue().size());
+            metrics.registerGauge("webframe_worker_active_threads", "Workers running a task.", pool::getActiveCount);
+        }
+    }
+
+    /**
+     * Returns true when the running JDK supports virtual threads.
+     */
+    public static boolean virtualThreadsAvailable() {
+        return findVirtualFactoryMethod() != null;
+    }
+
+    static ThreadFactory namedThreadFactory(String namePrefix) {
+        AtomicInteger sequence = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + "-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        Method factory = findVirtualFactoryMethod();
+        if (factory == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Could not create virtual thread executor: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static Method findVirtualFactoryMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
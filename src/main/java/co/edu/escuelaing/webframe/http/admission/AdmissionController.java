@@ -0,0 +1,77 @@
+package co.edu.escuelaing.webframe.http.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import co.edu.escuelaing.webframe.http.HttpResponse;
+import co.edu.escuelaing.webframe.http.ServerConfig;
+
+/**
+ * Decides whether a parsed request is processed, before it reaches the dispatcher.
+ * Requests are refused with {@code 429} when their client exceeds its rate limit, and shed with
+ * {@code 503} when too many requests are in progress or the request waited in the worker queue
+ * longer than the configured bound: answering them later would only add latency for everyone.
+ */
+public final class AdmissionController {
+
+    private final ClientRateLimiter rateLimiter;
+    private final int maxConcurrentRequests;
+    private final long maxQueueNanos;
+    private final String retryAfterSeconds;
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+
+    public AdmissionController(ServerConfig config) {
+        this.rateLimiter = config.getRateLimit() > 0
+                ? new ClientRateLimiter(config.getRateLimit(), Math.max(1, config.getRateLimitBurst()))
+                : null;
+        this.maxConcurrentRequests = config.getMaxConcurrentRequests();
+        this.maxQueueNanos = TimeUnit.MILLISECONDS.toNanos(config.getMaxQueueTimeMillis());
+        this.retryAfterSeconds = String.valueOf(config.getRetryAfterSeconds());
+    }
+
+    /**
+     * Returns the response refusing the request, or null when it may be processed.
+     *
+     * @param inFlight requests in progress, including this one
+     * @param queuedNanos time the request waited for a worker
+     */
+    public HttpResponse admit(String clientAddress, int inFlight, long queuedNanos) {
+        if (maxQueueNanos > 0 && queuedNanos > maxQueueNanos
+                || maxConcurrentRequests > 0 && inFlight > maxConcurrentRequests) {
+            shed.increment();
+            return refuse(503, retryAfterSeconds);
+        }
+        if (rateLimiter != null) {
+            long waitNanos = rateLimiter.tryAcquire(clientAddress);
+            if (waitNanos > 0) {
+                rateLimited.increment();
+                long seconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+                return refuse(429, String.valueOf(seconds));
+            }
+        }
+        return null;
+    }
+
+    private static HttpResponse refuse(int statusCode, String retryAfter) {
+        HttpResponse response = HttpResponse.error(statusCode);
+        response.setHeader("Retry-After", retryAfter);
+        response.setHeader("Cache-Control", "no-store");
+        return response;
+    }
+
+    public long getRateLimitedCount() {
+        return rateLimited.sum();
+    }
+
+    public long getShedCount() {
+        return shed.sum();
+    }
+
+    /**
+     * Returns the number of clients with a rate limit bucket, or 0 when rate limiting is off.
+     */
+    public int getTrackedClients() {
+        return rateLimiter != null ? rateLimiter.size() : 0;
+    }
+}
@@ -0,0 +1,84 @@
+package co.edu.escuelaing.webframe.http.admission;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket per client, kept as a single "theoretical arrival time" per key (the generic cell
+ * rate algorithm): a request is allowed when the bucket would still hold a token at that time,
+ * and taking it is one compare-and-set, so clients never share a lock.
+ * <p>
+ * A bucket whose arrival time is in the past is full, which is exactly the state of a new
+ * bucket, so idle clients are evicted from the map without changing any decision.
+ */
+public final class ClientRateLimiter {
+
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong nextSweep;
+
+    /**
+     * @param requestsPerSecond sustained rate allowed per client
+     * @param burst requests a client may send at once after being idle
+     */
+    public ClientRateLimiter(double requestsPerSecond, int burst) {
+        if (requestsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate must be positive and burst at least 1");
+        }
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+        this.toleranceNanos = intervalNanos * (burst - 1);
+        this.nextSweep = new AtomicLong(System.nanoTime() + SWEEP_INTERVAL_NANOS);
+    }
+
+    /**
+     * Takes a token for the client.
+     *
+     * @return 0 when the request is allowed, otherwise the nanoseconds until a token is available
+     */
+    public long tryAcquire(String client) {
+        return tryAcquire(client, System.nanoTime());
+    }
+
+    long tryAcquire(String client, long now) {
+        sweepIfDue(now);
+        AtomicLong bucket = buckets.computeIfAbsent(client, key -> new AtomicLong(now));
+        while (true) {
+            long arrival = bucket.get();
+            long base = Math.max(arrival, now);
+            long wait = base - toleranceNanos - now;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(arrival, base + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Drops the buckets of clients that have been idle long enough to refill.
+     * A request racing with the removal of its bucket may get one extra token.
+     */
+    private void sweepIfDue(long now) {
+        long due = nextSweep.get();
+        if (now - due < 0 || !nextSweep.compareAndSet(due, now + SWEEP_INTERVAL_NANOS)) {
+            return;
+        }
+        sweep(now);
+    }
+
+    void sweep(long now) {
+        buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+    }
+
+    /**
+     * Returns the number of clients currently tracked.
+     */
+    public int size() {
+        return buckets.size();
+    }
+}
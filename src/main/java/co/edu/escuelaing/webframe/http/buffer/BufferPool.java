@@ -0,0 +1,295 @@
+package co.edu.escuelaing.webframe.http.buffer;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of heap and direct byte buffers in power-of-two size classes from 1 KiB to 64 KiB.
+ * Each platform thread keeps a couple of buffers per class, so a thread that releases what it
+ * acquired touches no shared state; beyond that, buffers go to a stack per class shared by all
+ * threads and bounded to 1 MiB, and past that bound they are left to the garbage collector.
+ * Virtual threads, one per request, would take their cache with them when they end, so they use
+ * the shared stacks only. Requests above the largest class are allocated exactly and not pooled.
+ * <p>
+ * A buffer comes back cleared but with the contents of its previous use, and must be released
+ * exactly once, as the same object that was acquired (not a slice or duplicate). Heap buffers
+ * are backed by an array starting at offset 0.
+ * <p>
+ * With leak detection, enabled by {@code -Dserver.bufferLeakDetection=true} as the test build
+ * does, the pool records where each outstanding buffer was acquired and fails the release of a
+ * buffer it did not hand out, such as one released twice. It costs a stack trace per acquire.
+ * <p>
+ * {@link #shared()} is the pool used by the servers of the process: thread caches belong to
+ * threads rather than servers, and the body encoding helpers have no server at hand.
+ */
+public final class BufferPool {
+
+    public static final int MIN_CLASS_SIZE = 1024;
+    public static final int MAX_CLASS_SIZE = 64 * 1024;
+
+    private static final int CLASS_COUNT = Integer.numberOfTrailingZeros(MAX_CLASS_SIZE / MIN_CLASS_SIZE) + 1;
+    private static final int SHARED_BYTES_PER_CLASS = 1024 * 1024;
+    private static final int THREAD_CACHE_PER_CLASS = 2;
+    private static final int THREAD_CACHE_BYTES = 64 * 1024;
+
+    private static final BufferPool SHARED = new BufferPool(Boolean.getBoolean("server.bufferLeakDetection"));
+    /** {@code Thread.isVirtual()}, or null before Java 21; looked up reflectively as the build targets Java 11. */
+    private static final MethodHandle IS_VIRTUAL = findIsVirtual();
+
+    /** Heap classes first, then direct ones. */
+    private final SizeClass[] shared = new SizeClass[2 * CLASS_COUNT];
+    private final ThreadLocal<ThreadCache> threadCache = ThreadLocal.withInitial(ThreadCache::new);
+    private final boolean leakDetection;
+    private final Map<ByteBuffer, Throwable> outstanding = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder allocated = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+
+    public BufferPool(boolean leakDetection) {
+        this.leakDetection = leakDetection;
+        for (int slot = 0; slot < shared.length; slot++) {
+            shared[slot] = new SizeClass(SHARED_BYTES_PER_CLASS / classSize(slot % CLASS_COUNT));
+        }
+    }
+
+    public static BufferPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Stack of free buffers of one size and kind, shared by all threads.
+     */
+    private static final class SizeClass {
+        private final ByteBuffer[] free;
+        private int count;
+
+        SizeClass(int capacity) {
+            this.free = new ByteBuffer[capacity];
+        }
+
+        synchronized ByteBuffer poll() {
+            if (count == 0) {
+                return null;
+            }
+            ByteBuffer buffer = free[--count];
+            free[count] = null;
+            return buffer;
+        }
+
+        synchronized boolean offer(ByteBuffer buffer) {
+            if (count == free.length) {
+                return false;
+            }
+            free[count++] = buffer;
+            return true;
+        }
+
+        synchronized long bytes() {
+            return count == 0 ? 0 : (long) count * free[0].capacity();
+        }
+    }
+
+    /**
+     * Buffers kept by one thread, indexed like {@link #shared}; used by its owner only.
+     */
+    private static final class ThreadCache {
+        private final ByteBuffer[][] free = new ByteBuffer[2 * CLASS_COUNT][THREAD_CACHE_PER_CLASS];
+        private final int[] counts = new int[2 * CLASS_COUNT];
+        private int bytes;
+
+        ByteBuffer poll(int slot) {
+            if (counts[slot] == 0) {
+                return null;
+            }
+            int index = --counts[slot];
+            ByteBuffer buffer = free[slot][index];
+            free[slot][index] = null;
+            bytes -= buffer.capacity();
+            return buffer;
+        }
+
+        boolean offer(int slot, ByteBuffer buffer) {
+            if (counts[slot] == THREAD_CACHE_PER_CLASS || bytes + buffer.capacity() > THREAD_CACHE_BYTES) {
+                return false;
+            }
+            free[slot][counts[slot]++] = buffer;
+            bytes += buffer.capacity();
+            return true;
+        }
+    }
+
+    /**
+     * Returns a heap buffer of at least {@code minCapacity} bytes, in write mode.
+     */
+    public ByteBuffer acquire(int minCapacity) {
+        return acquire(minCapacity, false);
+    }
+
+    /**
+     * Returns a direct buffer of at least {@code minCapacity} bytes, in write mode. Channels
+     * write direct buffers without first copying them into one of their own.
+     */
+    public ByteBuffer acquireDirect(int minCapacity) {
+        return acquire(minCapacity, true);
+    }
+
+    private ByteBuffer acquire(int minCapacity, boolean direct) {
+        if (minCapacity < 0) {
+            throw new IllegalArgumentException("Negative buffer size: " + minCapacity);
+        }
+        acquired.increment();
+        int index = classIndex(minCapacity);
+        ByteBuffer buffer = null;
+        if (index >= 0) {
+            int slot = direct ? CLASS_COUNT + index : index;
+            ThreadCache cache = threadCache();
+            buffer = cache != null ? cache.poll(slot) : null;
+            if (buffer == null) {
+                buffer = shared[slot].poll();
+            }
+            if (buffer != null) {
+                buffer.clear();
+            }
+        }
+        if (buffer == null) {
+            int capacity = index >= 0 ? classSize(index) : minCapacity;
+            buffer = direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+            allocated.increment();
+        }
+        if (leakDetection) {
+            outstanding.put(buffer, new Throwable("Buffer of " + buffer.capacity() + " bytes acquired here"));
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. The caller must not use it afterwards.
+     *
+     * @throws IllegalStateException with leak detection, if the buffer is not outstanding
+     */
+    public void release(ByteBuffer buffer) {
+        if (leakDetection && outstanding.remove(buffer) == null) {
+            throw new IllegalStateException("Buffer released twice or not acquired from this pool");
+        }
+        released.increment();
+        int index = classIndex(buffer.capacity());
+        if (index < 0 || classSize(index) != buffer.capacity()) {
+            // allocated above the largest class
+            return;
+        }
+        int slot = buffer.isDirect() ? CLASS_COUNT + index : index;
+        ThreadCache cache = threadCache();
+        if ((cache == null || !cache.offer(slot, buffer)) && !shared[slot].offer(buffer)) {
+            discarded.increment();
+        }
+    }
+
+    /**
+     * Returns the calling thread's cache, or null on a virtual thread.
+     */
+    private ThreadCache threadCache() {
+        if (IS_VIRTUAL != null) {
+            try {
+                if ((boolean) IS_VIRTUAL.invokeExact(Thread.currentThread())) {
+                    return null;
+                }
+            } catch (Throwable e) {
+                throw new IllegalStateException("Thread.isVirtual failed", e);
+            }
+        }
+        return threadCache.get();
+    }
+
+    private static MethodHandle findIsVirtual() {
+        try {
+            return MethodHandles.publicLookup()
+                    .findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the class holding buffers of {@code size} bytes, or -1 when it is above the largest.
+     */
+    private static int classIndex(int size) {
+        if (size > MAX_CLASS_SIZE) {
+            return -1;
+        }
+        if (size <= MIN_CLASS_SIZE) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - Integer.numberOfTrailingZeros(MIN_CLASS_SIZE);
+    }
+
+    private static int classSize(int index) {
+        return MIN_CLASS_SIZE << index;
+    }
+
+    public boolean isLeakDetectionEnabled() {
+        return leakDetection;
+    }
+
+    /**
+     * Returns the buffers handed out, whether reused or allocated.
+     */
+    public long getAcquireCount() {
+        return acquired.sum();
+    }
+
+    /**
+     * Returns the acquires that had to allocate, because no pooled buffer was free or the size
+     * was above the largest class.
+     */
+    public long getAllocationCount() {
+        return allocated.sum();
+    }
+
+    public long getReleaseCount() {
+        return released.sum();
+    }
+
+    /**
+     * Returns the released buffers dropped because their class was full.
+     */
+    public long getDiscardCount() {
+        return discarded.sum();
+    }
+
+    /**
+     * Returns the buffers acquired and not released yet.
+     */
+    public long getOutstandingCount() {
+        return acquired.sum() - released.sum();
+    }
+
+    /**
+     * Returns the bytes of the free buffers in the shared stacks; thread caches are not counted.
+     */
+    public long getPooledBytes() {
+        long bytes = 0;
+        for (SizeClass sizeClass : shared) {
+            bytes += sizeClass.bytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns where the outstanding buffers were acquired; empty without leak detection.
+     */
+    public List<Throwable> getOutstandingAcquisitions() {
+        synchronized (outstanding) {
+            return new ArrayList<>(outstanding.values());
+        }
+    }
+}
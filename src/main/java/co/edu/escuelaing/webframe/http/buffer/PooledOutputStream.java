@@ -0,0 +1,101 @@
+package co.edu.escuelaing.webframe.http.buffer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Buffered output stream whose buffer comes from a {@link BufferPool}, for the lifetime of a
+ * connection. {@link #release()} gives the buffer back; the stream fails any use after that,
+ * so a thread still writing to a connection that has ended cannot write into a buffer that is
+ * already someone else's. Methods are synchronized, like those of {@code BufferedOutputStream}.
+ */
+public final class PooledOutputStream extends OutputStream {
+
+    private final OutputStream out;
+    private final BufferPool pool;
+    private ByteBuffer pooled;
+    private byte[] buffer;
+    private int count;
+
+    public PooledOutputStream(OutputStream out, BufferPool pool, int size) {
+        this.out = out;
+        this.pool = pool;
+        this.pooled = pool.acquire(size);
+        this.buffer = pooled.array();
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        checkOpen();
+        if (count == buffer.length) {
+            flushBuffer();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public synchronized void write(byte[] data, int offset, int length) throws IOException {
+        checkOpen();
+        if (length >= buffer.length) {
+            // larger than the buffer: no point copying it through
+            flushBuffer();
+            out.write(data, offset, length);
+            return;
+        }
+        if (length > buffer.length - count) {
+            flushBuffer();
+        }
+        System.arraycopy(data, offset, buffer, count, length);
+        count += length;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        checkOpen();
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * Flushes, releases the buffer and closes the underlying stream.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            release();
+            out.close();
+        }
+    }
+
+    /**
+     * Gives the buffer back to the pool without flushing; unflushed bytes are dropped. Does
+     * nothing if it was already released.
+     */
+    public synchronized void release() {
+        if (buffer != null) {
+            pool.release(pooled);
+            pooled = null;
+            buffer = null;
+            count = 0;
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (buffer == null) {
+            throw new IOException("Stream released");
+        }
+    }
+}
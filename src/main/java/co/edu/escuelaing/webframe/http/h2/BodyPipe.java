@@ -0,0 +1,132 @@
+package co.edu.escuelaing.webframe.http.h2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+
+/**
+ * The DATA of one stream on its way from the thread reading frames to the worker handling the
+ * request. It holds at most one stream window of bytes: the client cannot send more until the
+ * worker has read some and the window is given back, so a slow handler slows the upload down
+ * instead of having it buffered.
+ */
+final class BodyPipe extends InputStream {
+
+    /**
+     * Gives window back to the client for bytes the worker has read.
+     */
+    interface WindowUpdater {
+        void update(int increment) throws IOException;
+    }
+
+    private final byte[] buffer;
+    private final WindowUpdater windowUpdater;
+    private final long timeoutMillis;
+    private int head;
+    private int count;
+    private boolean finished;
+    private IOException failure;
+    private int unacknowledged;
+
+    BodyPipe(int capacity, long timeoutMillis, WindowUpdater windowUpdater) {
+        this.buffer = new byte[capacity];
+        this.timeoutMillis = timeoutMillis;
+        this.windowUpdater = windowUpdater;
+    }
+
+    /**
+     * Adds received DATA.
+     *
+     * @return false when it does not fit, meaning the client ignored flow control
+     */
+    synchronized boolean offer(byte[] data, int offset, int length) {
+        if (length > buffer.length - count) {
+            return false;
+        }
+        int tail = (head + count) % buffer.length;
+        int first = Math.min(length, buffer.length - tail);
+        System.arraycopy(data, offset, buffer, tail, first);
+        System.arraycopy(data, offset + first, buffer, 0, length - first);
+        count += length;
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Marks the end of the body; the worker reads what is buffered and then the end of the stream.
+     */
+    synchronized void finish() {
+        finished = true;
+        notifyAll();
+    }
+
+    /**
+     * Makes reads fail, for a stream reset or a connection gone before the body ended.
+     */
+    synchronized void fail(IOException cause) {
+        if (!finished && failure == null) {
+            failure = cause;
+            notifyAll();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int read;
+        int increment = 0;
+        synchronized (this) {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            while (count == 0) {
+                if (failure != null) {
+                    throw failure;
+                }
+                if (finished) {
+                    return -1;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new SocketTimeoutException("Timed out reading the request body");
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while reading the request body");
+                }
+            }
+            read = Math.min(len, count);
+            int first = Math.min(read, buffer.length - head);
+            System.arraycopy(buffer, head, b, off, first);
+            System.arraycopy(buffer, 0, b, off + first, read - first);
+            head = (head + read) % buffer.length;
+            count -= read;
+            if (!finished) {
+                // given back in batches, so a body read in small pieces does not cost a frame each
+                unacknowledged += read;
+                if (unacknowledged >= buffer.length / 2) {
+                    increment = unacknowledged;
+                    unacknowledged = 0;
+                }
+            }
+        }
+        if (increment > 0) {
+            windowUpdater.update(increment);
+        }
+        return read;
+    }
+
+    @Override
+    public synchronized int available() {
+        return count;
+    }
+}
@@ -0,0 +1,201 @@
+package co.edu.escuelaing.webframe.http.h2;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * HPACK index space (RFC 7541, section 2.3): the 61 static entries followed by the dynamic
+ * table, newest entry first. Each side of a connection keeps its own table per direction.
+ */
+final class HeaderTable {
+
+    static final String[][] STATIC = {
+            { ":authority", "" },
+            { ":method", "GET" },
+            { ":method", "POST" },
+            { ":path", "/" },
+            { ":path", "/index.html" },
+            { ":scheme", "http" },
+            { ":scheme", "https" },
+            { ":status", "200" },
+            { ":status", "204" },
+            { ":status", "206" },
+            { ":status", "304" },
+            { ":status", "400" },
+            { ":status", "404" },
+            { ":status", "500" },
+            { "accept-charset", "" },
+            { "accept-encoding", "gzip, deflate" },
+            { "accept-language", "" },
+            { "accept-ranges", "" },
+            { "accept", "" },
+            { "access-control-allow-origin", "" },
+            { "age", "" },
+            { "allow", "" },
+            { "authorization", "" },
+            { "cache-control", "" },
+            { "content-disposition", "" },
+            { "content-encoding", "" },
+            { "content-language", "" },
+            { "content-length", "" },
+            { "content-location", "" },
+            { "content-range", "" },
+            { "content-type", "" },
+            { "cookie", "" },
+            { "date", "" },
+            { "etag", "" },
+            { "expect", "" },
+            { "expires", "" },
+            { "from", "" },
+            { "host", "" },
+            { "if-match", "" },
+            { "if-modified-since", "" },
+            { "if-none-match", "" },
+            { "if-range", "" },
+            { "if-unmodified-since", "" },
+            { "last-modified", "" },
+            { "link", "" },
+            { "location", "" },
+            { "max-forwards", "" },
+            { "proxy-authenticate", "" },
+            { "proxy-authorization", "" },
+            { "range", "" },
+            { "referer", "" },
+            { "refresh", "" },
+            { "retry-after", "" },
+            { "server", "" },
+            { "set-cookie", "" },
+            { "strict-transport-security", "" },
+            { "transfer-encoding", "" },
+            { "user-agent", "" },
+            { "vary", "" },
+            { "via", "" },
+            { "www-authenticate", "" },
+    };
+
+    /** Static index of each name and of each name and value pair, for the encoder. */
+    private static final Map<String, Integer> STATIC_NAMES = new HashMap<>();
+    private static final Map<String, Integer> STATIC_PAIRS = new HashMap<>();
+
+    static {
+        for (int i = STATIC.length - 1; i >= 0; i--) {
+            STATIC_NAMES.put(STATIC[i][0], i + 1);
+            if (!STATIC[i][1].isEmpty()) {
+                STATIC_PAIRS.put(STATIC[i][0] + '\0' + STATIC[i][1], i + 1);
+            }
+        }
+    }
+
+    /** Bytes an entry is accounted for on top of its name and value. */
+    private static final int ENTRY_OVERHEAD = 32;
+
+    private String[] names = new String[16];
+    private String[] values = new String[16];
+    /** Slot of the newest entry; older entries follow it, wrapping around. */
+    private int head;
+    private int count;
+    private int size;
+    private int maxSize;
+
+    HeaderTable(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Changes the table capacity, evicting the oldest entries that no longer fit.
+     */
+    void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        evict(0);
+    }
+
+    /**
+     * Returns the name and value at a 1-based index.
+     */
+    String[] get(int index) throws Http2Exception {
+        if (index >= 1 && index <= STATIC.length) {
+            return STATIC[index - 1];
+        }
+        int dynamic = index - STATIC.length - 1;
+        if (index < 1 || dynamic >= count) {
+            throw new Http2Exception(Http2Frames.COMPRESSION_ERROR, "Invalid header index " + index);
+        }
+        int slot = (head + dynamic) % names.length;
+        return new String[] { names[slot], values[slot] };
+    }
+
+    void add(String name, String value) {
+        int entrySize = name.length() + value.length() + ENTRY_OVERHEAD;
+        if (entrySize > maxSize) {
+            // an entry larger than the table empties it and is not stored
+            evict(maxSize);
+            return;
+        }
+        evict(entrySize);
+        if (count == names.length) {
+            grow();
+        }
+        head = (head - 1 + names.length) % names.length;
+        names[head] = name;
+        values[head] = value;
+        count++;
+        size += entrySize;
+    }
+
+    /**
+     * Finds an entry for the encoder.
+     *
+     * @return the index of an entry with this name and value, minus the index of an entry with
+     *         only this name, or 0 when there is neither
+     */
+    int find(String name, String value) {
+        Integer pair = STATIC_PAIRS.get(name + '\0' + value);
+        if (pair != null) {
+            return pair;
+        }
+        int nameOnly = 0;
+        for (int i = 0; i < count; i++) {
+            int slot = (head + i) % names.length;
+            if (names[slot].equals(name)) {
+                if (values[slot].equals(value)) {
+                    return STATIC.length + 1 + i;
+                }
+                if (nameOnly == 0) {
+                    nameOnly = STATIC.length + 1 + i;
+                }
+            }
+        }
+        Integer staticName = STATIC_NAMES.get(name);
+        if (staticName != null) {
+            return -staticName;
+        }
+        return -nameOnly;
+    }
+
+    private void evict(int needed) {
+        while (count > 0 && size + needed > maxSize) {
+            int oldest = (head + count - 1) % names.length;
+            size -= names[oldest].length() + values[oldest].length() + ENTRY_OVERHEAD;
+            names[oldest] = null;
+            values[oldest] = null;
+            count--;
+        }
+    }
+
+    private void grow() {
+        String[] newNames = new String[names.length * 2];
+        String[] newValues = new String[values.length * 2];
+        for (int i = 0; i < count; i++) {
+            int slot = (head + i) % names.length;
+            newNames[i] = names[slot];
+            newValues[i] = values[slot];
+        }
+        names = newNames;
+        values = newValues;
+        head = 0;
+    }
+}
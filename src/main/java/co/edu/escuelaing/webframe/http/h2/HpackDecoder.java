@@ -0,0 +1,106 @@
+package co.edu.escuelaing.webframe.http.h2;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.BiConsumer;
+
+/**
+ * Decodes HPACK header blocks (RFC 7541). Blocks must be decoded in the order they arrive on
+ * the connection, as each may change the dynamic table the next one refers to.
+ */
+final class HpackDecoder {
+
+    private final HeaderTable table;
+    private final int maxTableSize;
+
+    /**
+     * @param maxTableSize the table size we announced in SETTINGS_HEADER_TABLE_SIZE
+     */
+    HpackDecoder(int maxTableSize) {
+        this.table = new HeaderTable(maxTableSize);
+        this.maxTableSize = maxTableSize;
+    }
+
+    /**
+     * Decodes a complete header block, passing each field to {@code listener} in order.
+     *
+     * @throws Http2Exception with COMPRESSION_ERROR if the block is malformed
+     */
+    void decode(byte[] block, int offset, int length, BiConsumer<String, String> listener) throws Http2Exception {
+        int[] position = { offset };
+        int end = offset + length;
+        boolean fieldSeen = false;
+        while (position[0] < end) {
+            int first = block[position[0]] & 0xFF;
+            if ((first & 0x80) != 0) {
+                // indexed field
+                String[] field = table.get(readInteger(block, position, end, 7));
+                listener.accept(field[0], field[1]);
+                fieldSeen = true;
+            } else if ((first & 0xC0) == 0x40) {
+                // literal with incremental indexing
+                String[] field = readLiteral(block, position, end, 6);
+                table.add(field[0], field[1]);
+                listener.accept(field[0], field[1]);
+                fieldSeen = true;
+            } else if ((first & 0xE0) == 0x20) {
+                // dynamic table size update, only allowed before the first field
+                int size = readInteger(block, position, end, 5);
+                if (fieldSeen || size > maxTableSize) {
+                    throw new Http2Exception(Http2Frames.COMPRESSION_ERROR, "Invalid table size update");
+                }
+                table.setMaxSize(size);
+            } else {
+                // literal without indexing (0000) or never indexed (0001)
+                String[] field = readLiteral(block, position, end, 4);
+                listener.accept(field[0], field[1]);
+                fieldSeen = true;
+            }
+        }
+    }
+
+    private String[] readLiteral(byte[] block, int[] position, int end, int prefixBits) throws Http2Exception {
+        int nameIndex = readInteger(block, position, end, prefixBits);
+        String name = nameIndex == 0 ? readString(block, position, end) : table.get(nameIndex)[0];
+        String value = readString(block, position, end);
+        return new String[] { name, value };
+    }
+
+    private static String readString(byte[] block, int[] position, int end) throws Http2Exception {
+        if (position[0] >= end) {
+            throw new Http2Exception(Http2Frames.COMPRESSION_ERROR, "Truncated header block");
+        }
+        boolean huffman = (block[position[0]] & 0x80) != 0;
+        int length = readInteger(block, position, end, 7);
+        if (length > end - position[0]) {
+            throw new Http2Exception(Http2Frames.COMPRESSION_ERROR, "Truncated header block");
+        }
+        int start = position[0];
+        position[0] += length;
+        return huffman ? Huffman.decode(block, start, length)
+                : new String(block, start, length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Reads an integer with an N-bit prefix (RFC 7541, section 5.1).
+     */
+    static int readInteger(byte[] block, int[] position, int end, int prefixBits) throws Http2Exception {
+        int max = (1 << prefixBits) - 1;
+        int value = block[position[0]++] & max;
+        if (value < max) {
+            return value;
+        }
+        int shift = 0;
+        while (true) {
+            if (position[0] >= end || shift > 21) {
+                // more than 28 bits is far beyond any size this server accepts
+                throw new Http2Exception(Http2Frames.COMPRESSION_ERROR, "Invalid integer in header block");
+            }
+            int octet = block[position[0]++] & 0xFF;
+            value += (octet & 0x7F) << shift;
+            if ((octet & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package co.edu.escuelaing.webframe.http.h2;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Encodes response headers with HPACK (RFC 7541). Fields repeated across responses, such as
+ * content types and cache headers, are added to the dynamic table so later responses send
+ * them as a single index; strings are Huffman coded when that is shorter.
+ */
+final class HpackEncoder {
+
+    /** Values that change with almost every response, which would only churn the table. */
+    private static final Set<String> NOT_INDEXED = new HashSet<>(Arrays.asList(
+            "content-length", "date", "etag", "last-modified", "content-range", "age", "expires"));
+    /** Values that must not be compressed together with others, as CRIME style attacks could read them. */
+    private static final Set<String> NEVER_INDEXED = new HashSet<>(Arrays.asList(
+            "set-cookie", "authorization", "proxy-authorization"));
+
+    private final HeaderTable table = new HeaderTable(Http2Frames.DEFAULT_HEADER_TABLE_SIZE);
+    private int pendingTableSize = -1;
+
+    /**
+     * Applies the peer's SETTINGS_HEADER_TABLE_SIZE. The table never grows beyond the default
+     * size, and the change is announced at the start of the next block.
+     */
+    void setMaxTableSize(int peerMaxSize) {
+        int size = Math.min(peerMaxSize, Http2Frames.DEFAULT_HEADER_TABLE_SIZE);
+        if (size != table.getMaxSize()) {
+            table.setMaxSize(size);
+            pendingTableSize = size;
+        }
+    }
+
+    /**
+     * Starts a header block, writing a pending table size update.
+     */
+    void beginBlock(ByteArrayOutputStream out) {
+        if (pendingTableSize >= 0) {
+            writeInteger(out, 0x20, 5, pendingTableSize);
+            pendingTableSize = -1;
+        }
+    }
+
+    /**
+     * Encodes one field; {@code name} must be lower case.
+     */
+    void encode(String name, String value, ByteArrayOutputStream out) {
+        int index = table.find(name, value);
+        if (index > 0) {
+            writeInteger(out, 0x80, 7, index);
+            return;
+        }
+        int nameIndex = -index;
+        if (NEVER_INDEXED.contains(name)) {
+            writeInteger(out, 0x10, 4, nameIndex);
+        } else if (NOT_INDEXED.contains(name)) {
+            writeInteger(out, 0x00, 4, nameIndex);
+        } else {
+            writeInteger(out, 0x40, 6, nameIndex);
+            table.add(name, value);
+        }
+        if (nameIndex == 0) {
+            writeString(out, name);
+        }
+        writeString(out, value);
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        int huffmanLength = Huffman.encodedLength(value);
+        if (huffmanLength < value.length()) {
+            writeInteger(out, 0x80, 7, huffmanLength);
+            Huffman.encode(value, out);
+        } else {
+            writeInteger(out, 0x00, 7, value.length());
+            byte[] bytes = value.getBytes(StandardCharsets.ISO_8859_1);
+            out.write(bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Writes an integer with an N-bit prefix after the given high bits (RFC 7541, section 5.1).
+     */
+    static void writeInteger(ByteArrayOutputStream out, int highBits, int prefixBits, int value) {
+        int max = (1 << prefixBits) - 1;
+        if (value < max) {
+            out.write(highBits | value);
+            return;
+        }
+        out.write(highBits | max);
+        value -= max;
+        while (value >= 0x80) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
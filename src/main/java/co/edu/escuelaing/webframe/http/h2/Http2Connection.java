@@ -0,0 +1,1076 @@
+package co.edu.escuelaing.webframe.http.h2;
+
+import static co.edu.escuelaing.webframe.http.h2.Http2Frames.*;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+import co.edu.escuelaing.webframe.http.HttpRequest;
+import co.edu.escuelaing.webframe.http.HttpRequestHandler;
+import co.edu.escuelaing.webframe.http.HttpResponse;
+import co.edu.escuelaing.webframe.http.RequestBodyStream;
+import co.edu.escuelaing.webframe.http.ServerConfig;
+import co.edu.escuelaing.webframe.http.buffer.BufferPool;
+
+/**
+ * One HTTP/2 connection (RFC 7540) served over blocking streams. The thread calling
+ * {@link #serve} reads frames and hands every complete request to the worker executor, so
+ * the streams of a connection are processed concurrently. Workers write their responses as
+ * frames within the flow control windows the client grants; each frame is written under a
+ * fair lock, so a large response is interleaved frame by frame with the others instead of
+ * holding the connection until it is done. A request is handed over as soon as its headers
+ * are complete and its body follows through a {@link BodyPipe}, which the handler reads while
+ * the client is still sending.
+ */
+public final class Http2Connection {
+
+    /** Client connection preface (RFC 7540, section 3.5). */
+    public static final byte[] PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    /** What remains of the preface after an HTTP/1.1 parser has read it as a PRI request. */
+    public static final byte[] PREFACE_TAIL = "SM\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    private static final byte[] SWITCHING_PROTOCOLS =
+            "HTTP/1.1 101 Switching Protocols\r\nConnection: Upgrade\r\nUpgrade: h2c\r\n\r\n"
+                    .getBytes(StandardCharsets.ISO_8859_1);
+    /** HTTP/1.1 headers that have no meaning in HTTP/2 and make a request malformed. */
+    private static final Set<String> CONNECTION_HEADERS = new HashSet<>(Arrays.asList(
+            "connection", "keep-alive", "proxy-connection", "transfer-encoding", "upgrade"));
+    private static final byte[] EMPTY = new byte[0];
+
+    private final HttpRequestHandler handler;
+    private final ServerConfig config;
+    private final Socket socket;
+    private final DataInputStream in;
+    private final OutputStream out;
+    private final Executor workers;
+    private final String remoteAddress;
+    private final HpackDecoder decoder = new HpackDecoder(DEFAULT_HEADER_TABLE_SIZE);
+    /** Guarded by {@link #writeLock}, as header blocks must reach the client in encoding order. */
+    private final HpackEncoder encoder = new HpackEncoder();
+    /** Frame scheduler: fair, so writers take turns frame by frame. */
+    private final ReentrantLock writeLock = new ReentrantLock(true);
+    private final Map<Integer, Http2Stream> streams = new ConcurrentHashMap<>();
+
+    // guarded by this
+    private int connectionWindow = DEFAULT_WINDOW_SIZE;
+    private int initialWindow = DEFAULT_WINDOW_SIZE;
+
+    private volatile int peerMaxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+    private volatile int lastStreamId;
+    private volatile boolean goingAway;
+    private volatile boolean closed;
+    private boolean goAwaySent;
+
+    // header block being continued, used by the reading thread only
+    private Http2Stream continuing;
+    private boolean continuingEndStream;
+    private ByteArrayOutputStream headerBlock;
+
+    public Http2Connection(HttpRequestHandler handler, ServerConfig config, Socket socket,
+            InputStream in, OutputStream out, Executor workers) {
+        this.handler = handler;
+        this.config = config;
+        this.socket = socket;
+        this.in = new DataInputStream(new BufferedInputStream(in, HEADER_LENGTH + DEFAULT_MAX_FRAME_SIZE));
+        this.out = out;
+        this.workers = workers;
+        this.remoteAddress = socket.getInetAddress().getHostAddress();
+    }
+
+    /**
+     * Returns true for the request an HTTP/1.1 parser makes of the connection preface.
+     */
+    public static boolean isPriorKnowledge(HttpRequest request) {
+        return "PRI".equals(request.getMethod()) && "*".equals(request.getTarget())
+                && "HTTP/2.0".equals(request.getVersion());
+    }
+
+    /**
+     * Returns the decoded HTTP2-Settings of a request asking to upgrade to h2c, or null when the
+     * request does not ask for it or cannot be upgraded. Requests with a body are served as
+     * HTTP/1.1, since the body would have to be read before switching.
+     */
+    public static byte[] upgradeSettings(HttpRequest request) {
+        String upgrade = request.getHeader("Upgrade");
+        String settings = request.getHeader("HTTP2-Settings");
+        if (upgrade == null || settings == null || request.hasBody() || !hasToken(upgrade, "h2c")) {
+            return null;
+        }
+        try {
+            byte[] decoded = Base64.getUrlDecoder().decode(settings.trim());
+            return decoded.length % 6 == 0 ? decoded : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean hasToken(String header, String token) {
+        for (String value : header.split(",")) {
+            if (value.trim().equalsIgnoreCase(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes the 101 response that accepts an upgrade to h2c. The stream is not flushed.
+     */
+    public static void writeSwitchingProtocols(OutputStream out) throws IOException {
+        out.write(SWITCHING_PROTOCOLS);
+    }
+
+    /**
+     * Serves the connection until the client closes it, it stays idle past the keep-alive
+     * timeout, the server drains or a connection error occurs.
+     *
+     * @param upgraded      request received as HTTP/1.1 with Upgrade: h2c, answered on stream 1; or null
+     * @param http2Settings the decoded HTTP2-Settings of that request, or null
+     * @param preface       the part of the client preface not read yet
+     */
+    public void serve(HttpRequest upgraded, byte[] http2Settings, byte[] preface) throws IOException {
+        socket.setSoTimeout(config.getKeepAliveTimeoutMillis());
+        try {
+            if (http2Settings != null) {
+                // acknowledged by the 101, not by a SETTINGS frame
+                applySettings(http2Settings);
+            }
+            writeSettings();
+            if (upgraded != null) {
+                Http2Stream stream = new Http2Stream(1, initialWindow());
+                stream.request = upgraded;
+                stream.endStreamReceived = true;
+                streams.put(1, stream);
+                lastStreamId = 1;
+                dispatch(stream);
+            }
+            readPreface(preface);
+            readFrames();
+        } catch (Http2Exception e) {
+            if (!closed) {
+                goAway(e.getErrorCode(), e.getMessage());
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Stops accepting streams: tells the client with GOAWAY which streams will still be answered,
+     * and ends the connection once they are.
+     */
+    public void startDraining() {
+        try {
+            goAway(NO_ERROR, null);
+        } catch (IOException e) {
+            // the connection is already gone
+        }
+        if (streams.isEmpty()) {
+            shutdownInput();
+        }
+    }
+
+    private void readPreface(byte[] preface) throws IOException {
+        byte[] received = new byte[preface.length];
+        in.readFully(received);
+        if (!Arrays.equals(received, preface)) {
+            throw new Http2Exception(PROTOCOL_ERROR, "Invalid connection preface");
+        }
+    }
+
+    /**
+     * Reads frames until the connection ends. DATA payloads, the bulk of what clients send, are
+     * read into one pooled buffer and copied out by their stream; other frames are small and get
+     * an array of their own.
+     */
+    private void readFrames() throws IOException {
+        byte[] header = new byte[HEADER_LENGTH];
+        ByteBuffer pooled = BufferPool.shared().acquire(DEFAULT_MAX_FRAME_SIZE);
+        try {
+            readFrames(header, pooled.array());
+        } finally {
+            BufferPool.shared().release(pooled);
+        }
+    }
+
+    private void readFrames(byte[] header, byte[] dataBuffer) throws IOException {
+        while (!(goingAway && streams.isEmpty())) {
+            if (!readFrameHeader(header)) {
+                return;
+            }
+            int length = (header[0] & 0xFF) << 16 | (header[1] & 0xFF) << 8 | (header[2] & 0xFF);
+            int type = header[3] & 0xFF;
+            int flags = header[4] & 0xFF;
+            int streamId = readInt(header, 5) & 0x7FFFFFFF;
+            if (length > DEFAULT_MAX_FRAME_SIZE) {
+                throw new Http2Exception(FRAME_SIZE_ERROR, "Frame of " + length + " bytes");
+            }
+            byte[] payload = type == DATA ? dataBuffer : length == 0 ? EMPTY : new byte[length];
+            in.readFully(payload, 0, length);
+            if (continuing != null && (type != CONTINUATION || streamId != continuing.id)) {
+                throw new Http2Exception(PROTOCOL_ERROR, "Header block interrupted");
+            }
+            try {
+                if (type == DATA) {
+                    onData(flags, streamId, payload, length);
+                } else {
+                    onFrame(type, flags, streamId, payload);
+                }
+            } catch (Http2Exception e) {
+                if (e.isConnectionError()) {
+                    throw e;
+                }
+                resetStream(e.getStreamId(), e.getErrorCode());
+            }
+            if (handler.isDraining() && !goingAway) {
+                goAway(NO_ERROR, null);
+            }
+        }
+    }
+
+    /**
+     * Reads a frame header, returning false when the client closed the connection or left it
+     * idle past the keep-alive timeout with no request being answered. While requests are being
+     * answered the client may well stay silent, but the reading thread waits for them no longer
+     * than the drain timeout after the last frame, so a handler that never returns cannot hold its worker forever.
+     */
+    private boolean readFrameHeader(byte[] header) throws IOException {
+        long waitingSince = System.nanoTime();
+        while (true) {
+            int first;
+            try {
+                first = in.read();
+            } catch (SocketTimeoutException e) {
+                long waited = System.nanoTime() - waitingSince;
+                if (!hasDispatchedStreams() || waited >= TimeUnit.MILLISECONDS.toNanos(config.getDrainTimeoutMillis())) {
+                    goAway(NO_ERROR, null);
+                    return false;
+                }
+                continue;
+            }
+            if (first < 0) {
+                return false;
+            }
+            header[0] = (byte) first;
+            in.readFully(header, 1, HEADER_LENGTH - 1);
+            return true;
+        }
+    }
+
+    private boolean hasDispatchedStreams() {
+        for (Http2Stream stream : streams.values()) {
+            if (stream.dispatched) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Handles a frame other than DATA.
+     */
+    private void onFrame(int type, int flags, int streamId, byte[] payload) throws IOException {
+        switch (type) {
+            case HEADERS:
+                onHeaders(flags, streamId, payload);
+                break;
+            case PRIORITY:
+                if (streamId == 0) {
+                    throw new Http2Exception(PROTOCOL_ERROR, "PRIORITY on stream 0");
+                }
+                if (payload.length != 5) {
+                    throw new Http2Exception(FRAME_SIZE_ERROR, streamId, "Invalid PRIORITY frame");
+                }
+                // scheduling is fair between streams, priorities are not used
+                break;
+            case RST_STREAM:
+                onRstStream(streamId, payload);
+                break;
+            case SETTINGS:
+                onSettings(flags, streamId, payload);
+                break;
+            case PUSH_PROMISE:
+                throw new Http2Exception(PROTOCOL_ERROR, "PUSH_PROMISE from a client");
+            case PING:
+                if (streamId != 0) {
+                    throw new Http2Exception(PROTOCOL_ERROR, "PING on a stream");
+                }
+                if (payload.length != 8) {
+                    throw new Http2Exception(FRAME_SIZE_ERROR, "Invalid PING frame");
+                }
+                if ((flags & FLAG_ACK) == 0) {
+                    writeFrame(PING, FLAG_ACK, 0, payload);
+                }
+                break;
+            case GOAWAY:
+                if (streamId != 0) {
+                    throw new Http2Exception(PROTOCOL_ERROR, "GOAWAY on a stream");
+                }
+                // no new streams will come; the open ones are still answered
+                goingAway = true;
+                break;
+            case WINDOW_UPDATE:
+                onWindowUpdate(streamId, payload);
+                break;
+            case CONTINUATION:
+                onContinuation(flags, payload);
+                break;
+            default:
+                // unknown frame types are ignored
+                break;
+        }
+    }
+
+    private void onHeaders(int flags, int streamId, byte[] payload) throws IOException {
+        if (streamId == 0) {
+            throw new Http2Exception(PROTOCOL_ERROR, "HEADERS on stream 0");
+        }
+        int offset = 0;
+        int length = payload.length;
+        if ((flags & FLAG_PADDED) != 0) {
+            if (length == 0) {
+                throw new Http2Exception(PROTOCOL_ERROR, "Invalid padding");
+            }
+            offset = 1;
+            length -= 1 + (payload[0] & 0xFF);
+        }
+        if ((flags & FLAG_PRIORITY) != 0) {
+            offset += 5;
+            length -= 5;
+        }
+        if (length < 0) {
+            throw new Http2Exception(PROTOCOL_ERROR, "Invalid padding");
+        }
+        Http2Stream stream = streams.get(streamId);
+        if (stream == null) {
+            if (streamId % 2 == 0) {
+                throw new Http2Exception(PROTOCOL_ERROR, "Stream " + streamId + " is not client initiated");
+            }
+            if (streamId <= lastStreamId) {
+                throw new Http2Exception(STREAM_CLOSED, "Stream " + streamId + " is closed");
+            }
+            lastStreamId = streamId;
+            stream = new Http2Stream(streamId, initialWindow());
+        }
+        continuing = stream;
+        continuingEndStream = (flags & FLAG_END_STREAM) != 0;
+        headerBlock = new ByteArrayOutputStream(length);
+        appendHeaderBlock(payload, offset, length);
+        if ((flags & FLAG_END_HEADERS) != 0) {
+            completeHeaders();
+        }
+    }
+
+    private void onContinuation(int flags, byte[] payload) throws IOException {
+        if (continuing == null) {
+            throw new Http2Exception(PROTOCOL_ERROR, "CONTINUATION without HEADERS");
+        }
+        appendHeaderBlock(payload, 0, payload.length);
+        if ((flags & FLAG_END_HEADERS) != 0) {
+            completeHeaders();
+        }
+    }
+
+    private void appendHeaderBlock(byte[] payload, int offset, int length) throws Http2Exception {
+        // compressed size is bounded too, so endless CONTINUATION frames cannot exhaust memory
+        if (headerBlock.size() + length > 2 * config.getMaxHeaderSize() + DEFAULT_MAX_FRAME_SIZE) {
+            throw new Http2Exception(ENHANCE_YOUR_CALM, "Header block too large");
+        }
+        headerBlock.write(payload, offset, length);
+    }
+
+    private void completeHeaders() throws IOException {
+        Http2Stream stream = continuing;
+        boolean endStream = continuingEndStream;
+        byte[] block = headerBlock.toByteArray();
+        continuing = null;
+        headerBlock = null;
+
+        // always decoded, even for refused streams, to keep the dynamic table in sync
+        RequestHeaders headers = new RequestHeaders();
+        decoder.decode(block, 0, block.length, headers);
+
+        if (streams.containsKey(stream.id)) {
+            // trailers, which end the request body
+            if (stream.endStreamReceived) {
+                throw new Http2Exception(STREAM_CLOSED, stream.id, "HEADERS after the end of the stream");
+            }
+            if (!endStream) {
+                throw new Http2Exception(PROTOCOL_ERROR, stream.id, "Trailers without END_STREAM");
+            }
+            endOfBody(stream);
+            return;
+        }
+        if (goingAway || streams.size() >= config.getHttp2MaxConcurrentStreams()) {
+            writeRstStream(stream.id, REFUSED_STREAM);
+            return;
+        }
+        if (headers.size > config.getMaxHeaderSize()) {
+            stream.rejectStatus = 431;
+        } else if (!headers.isValid()) {
+            throw new Http2Exception(PROTOCOL_ERROR, stream.id, "Malformed request: " + headers.error);
+        } else {
+            stream.request = headers.toRequest();
+            if (handler.isBodyTooLarge(stream.request)) {
+                stream.rejectStatus = 413;
+            } else if (!endStream) {
+                BodyPipe pipe = new BodyPipe(DEFAULT_WINDOW_SIZE, config.getKeepAliveTimeoutMillis(),
+                        increment -> writeWindowUpdate(stream.id, increment));
+                stream.body = pipe;
+                stream.request.setBody(new RequestBodyStream(pipe, -1, false, config.getMaxBodySize(), null));
+            }
+        }
+        stream.endStreamReceived = endStream;
+        streams.put(stream.id, stream);
+        dispatch(stream);
+    }
+
+    private static void endOfBody(Http2Stream stream) {
+        stream.endStreamReceived = true;
+        if (stream.body != null) {
+            stream.body.finish();
+        }
+    }
+
+    /**
+     * @param payload holds the frame's {@code frameLength} bytes; it is reused for the next frame
+     */
+    private void onData(int flags, int streamId, byte[] payload, int frameLength) throws IOException {
+        if (streamId == 0) {
+            throw new Http2Exception(PROTOCOL_ERROR, "DATA on stream 0");
+        }
+        if ((flags & FLAG_PADDED) != 0 && (frameLength == 0 || (payload[0] & 0xFF) >= frameLength)) {
+            throw new Http2Exception(PROTOCOL_ERROR, "Invalid padding");
+        }
+        // the connection window is given back at once: each stream's window bounds what is buffered
+        if (frameLength > 0) {
+            writeWindowUpdate(0, frameLength);
+        }
+        Http2Stream stream = streams.get(streamId);
+        if (stream == null || stream.endStreamReceived) {
+            if (streamId > lastStreamId) {
+                throw new Http2Exception(PROTOCOL_ERROR, "DATA on idle stream " + streamId);
+            }
+            throw new Http2Exception(STREAM_CLOSED, streamId, "DATA on a closed stream");
+        }
+        int offset = 0;
+        int length = frameLength;
+        if ((flags & FLAG_PADDED) != 0) {
+            offset = 1;
+            length -= 1 + (payload[0] & 0xFF);
+        }
+        boolean endStream = (flags & FLAG_END_STREAM) != 0;
+        if (stream.body != null) {
+            if (!stream.body.offer(payload, offset, length)) {
+                throw new Http2Exception(FLOW_CONTROL_ERROR, streamId, "DATA beyond the stream window");
+            }
+            // padding is flow controlled too, but never reaches the handler
+            if (!endStream && frameLength > length) {
+                writeWindowUpdate(streamId, frameLength - length);
+            }
+        } else if (!endStream && frameLength > 0) {
+            // a refused request's body is dropped as it arrives
+            writeWindowUpdate(streamId, frameLength);
+        }
+        if (endStream) {
+            endOfBody(stream);
+        }
+    }
+
+    private void onRstStream(int streamId, byte[] payload) throws IOException {
+        if (streamId == 0 || streamId > lastStreamId) {
+            throw new Http2Exception(PROTOCOL_ERROR, "RST_STREAM on idle stream " + streamId);
+        }
+        if (payload.length != 4) {
+            throw new Http2Exception(FRAME_SIZE_ERROR, "Invalid RST_STREAM frame");
+        }
+        Http2Stream stream = streams.remove(streamId);
+        if (stream != null) {
+            markReset(stream);
+        }
+    }
+
+    private void markReset(Http2Stream stream) {
+        stream.reset = true;
+        if (stream.body != null) {
+            stream.body.fail(new IOException("Stream " + stream.id + " was reset"));
+        }
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    private void onSettings(int flags, int streamId, byte[] payload) throws IOException {
+        if (streamId != 0) {
+            throw new Http2Exception(PROTOCOL_ERROR, "SETTINGS on a stream");
+        }
+        if ((flags & FLAG_ACK) != 0) {
+            if (payload.length != 0) {
+                throw new Http2Exception(FRAME_SIZE_ERROR, "SETTINGS acknowledgement with a payload");
+            }
+            return;
+        }
+        if (payload.length % 6 != 0) {
+            throw new Http2Exception(FRAME_SIZE_ERROR, "Invalid SETTINGS frame");
+        }
+        applySettings(payload);
+        writeFrame(SETTINGS, FLAG_ACK, 0, EMPTY);
+    }
+
+    private void applySettings(byte[] payload) throws IOException {
+        for (int i = 0; i + 6 <= payload.length; i += 6) {
+            int id = (payload[i] & 0xFF) << 8 | (payload[i + 1] & 0xFF);
+            int value = readInt(payload, i + 2);
+            switch (id) {
+                case SETTINGS_HEADER_TABLE_SIZE:
+                    writeLock.lock();
+                    try {
+                        encoder.setMaxTableSize(value < 0 ? Integer.MAX_VALUE : value);
+                    } finally {
+                        writeLock.unlock();
+                    }
+                    break;
+                case SETTINGS_ENABLE_PUSH:
+                    if (value != 0 && value != 1) {
+                        throw new Http2Exception(PROTOCOL_ERROR, "Invalid SETTINGS_ENABLE_PUSH");
+                    }
+                    break;
+                case SETTINGS_INITIAL_WINDOW_SIZE:
+                    if (value < 0) {
+                        throw new Http2Exception(FLOW_CONTROL_ERROR, "Invalid SETTINGS_INITIAL_WINDOW_SIZE");
+                    }
+                    updateInitialWindow(value);
+                    break;
+                case SETTINGS_MAX_FRAME_SIZE:
+                    if (value < DEFAULT_MAX_FRAME_SIZE || value > 0xFFFFFF) {
+                        throw new Http2Exception(PROTOCOL_ERROR, "Invalid SETTINGS_MAX_FRAME_SIZE");
+                    }
+                    peerMaxFrameSize = value;
+                    break;
+                default:
+                    // limits on what we send that we already respect, or unknown settings
+                    break;
+            }
+        }
+    }
+
+    private synchronized void updateInitialWindow(int value) throws Http2Exception {
+        int delta = value - initialWindow;
+        initialWindow = value;
+        for (Http2Stream stream : streams.values()) {
+            if ((long) stream.sendWindow + delta > MAX_WINDOW_SIZE) {
+                throw new Http2Exception(FLOW_CONTROL_ERROR, "Stream window overflow");
+            }
+            stream.sendWindow += delta;
+        }
+        notifyAll();
+    }
+
+    private synchronized int initialWindow() {
+        return initialWindow;
+    }
+
+    private void onWindowUpdate(int streamId, byte[] payload) throws IOException {
+        if (payload.length != 4) {
+            throw new Http2Exception(FRAME_SIZE_ERROR, "Invalid WINDOW_UPDATE frame");
+        }
+        int increment = readInt(payload, 0) & 0x7FFFFFFF;
+        if (increment == 0) {
+            throw new Http2Exception(PROTOCOL_ERROR, streamId, "WINDOW_UPDATE of 0");
+        }
+        if (streamId > lastStreamId) {
+            throw new Http2Exception(PROTOCOL_ERROR, "WINDOW_UPDATE on idle stream " + streamId);
+        }
+        synchronized (this) {
+            if (streamId == 0) {
+                if ((long) connectionWindow + increment > MAX_WINDOW_SIZE) {
+                    throw new Http2Exception(FLOW_CONTROL_ERROR, "Connection window overflow");
+                }
+                connectionWindow += increment;
+            } else {
+                Http2Stream stream = streams.get(streamId);
+                if (stream == null) {
+                    // the stream closed while the update was on its way
+                    return;
+                }
+                if ((long) stream.sendWindow + increment > MAX_WINDOW_SIZE) {
+                    throw new Http2Exception(FLOW_CONTROL_ERROR, streamId, "Stream window overflow");
+                }
+                stream.sendWindow += increment;
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Hands a complete request to a worker. Counted as in flight from here, so draining waits for it.
+     */
+    private void dispatch(Http2Stream stream) {
+        stream.dispatched = true;
+        long queuedAt = System.nanoTime();
+        handler.requestStarted();
+        try {
+            workers.execute(() -> respond(stream, queuedAt));
+        } catch (RejectedExecutionException e) {
+            stream.rejectStatus = 503;
+            respond(stream, queuedAt);
+        }
+    }
+
+    private void respond(Http2Stream stream, long queuedAt) {
+        HttpRequest request = stream.request;
+        HttpResponse response;
+        if (stream.rejectStatus != 0) {
+            response = HttpResponse.error(stream.rejectStatus);
+            if (stream.rejectStatus == 503) {
+                response.setHeader("Retry-After", String.valueOf(config.getRetryAfterSeconds()));
+            }
+        } else {
+            // shed or rate limited requests only answer their own stream
+            response = handler.admit(request, remoteAddress, System.nanoTime() - queuedAt);
+            if (response == null) {
+                try {
+                    response = handler.handle(request);
+                } catch (RuntimeException e) {
+                    System.err.println("Error handling HTTP/2 request: " + e.getMessage());
+                    response = HttpResponse.error(500);
+                }
+            }
+        }
+        handler.logAccess(remoteAddress, request, response);
+        long writeStart = System.nanoTime();
+        boolean completed = false;
+        try {
+            writeResponse(stream, request, response);
+            completed = true;
+        } catch (IOException | RuntimeException e) {
+            if (!closed && !stream.reset) {
+                System.err.println("Error writing HTTP/2 response: " + e.getMessage());
+                try {
+                    writeRstStream(stream.id, INTERNAL_ERROR);
+                } catch (IOException ignored) {
+                    // the connection failed as well
+                }
+            }
+        } finally {
+            streams.remove(stream.id);
+            if (completed && !stream.endStreamReceived && !stream.reset) {
+                // answered before the client finished sending: the rest of the body is not wanted
+                try {
+                    writeRstStream(stream.id, NO_ERROR);
+                } catch (IOException e) {
+                    // the connection is gone, which stops the upload as well
+                }
+            }
+            handler.requestFinished(completed);
+            if (completed) {
+                handler.recordResponse(request, response, System.nanoTime() - writeStart);
+            }
+            if (goingAway && streams.isEmpty()) {
+                // wakes the reading thread so the connection ends
+                shutdownInput();
+            }
+        }
+    }
+
+    private void writeResponse(Http2Stream stream, HttpRequest request, HttpResponse response) throws IOException {
+        int status = response.getStatusCode();
+        boolean noBody = status == 204 || status == 304
+                || (request != null && "HEAD".equals(request.getMethod()));
+        ByteArrayOutputStream block = new ByteArrayOutputStream(256);
+        writeLock.lock();
+        try {
+            checkOpen(stream);
+            encoder.beginBlock(block);
+            encoder.encode(":status", String.valueOf(status), block);
+            response.forEachHeader((name, value) -> {
+                String lowerName = name.toLowerCase(Locale.ROOT);
+                if (!CONNECTION_HEADERS.contains(lowerName)) {
+                    encoder.encode(lowerName, value, block);
+                }
+            });
+            if (!response.isChunked() && status != 204 && status != 304) {
+                encoder.encode("content-length", String.valueOf(response.getContentLength()), block);
+            }
+            writeHeaderBlock(stream.id, block.toByteArray(), noBody);
+            flushIfIdle();
+        } finally {
+            writeLock.unlock();
+        }
+        if (!noBody) {
+            DataFrameOutputStream body = new DataFrameOutputStream(stream);
+            try {
+                response.asStreamingBody().writeTo(body);
+                body.finish();
+            } finally {
+                body.release();
+            }
+        }
+    }
+
+    /**
+     * Writes a header block as a HEADERS frame followed by as many CONTINUATION frames as the
+     * client's maximum frame size requires. Called with the write lock held, so no other frame
+     * can come in between.
+     */
+    private void writeHeaderBlock(int streamId, byte[] block, boolean endStream) throws IOException {
+        int maxFrame = peerMaxFrameSize;
+        int offset = 0;
+        int type = HEADERS;
+        int flags = endStream ? FLAG_END_STREAM : 0;
+        do {
+            int length = Math.min(maxFrame, block.length - offset);
+            boolean last = offset + length == block.length;
+            writeHeader(out, length, type, last ? flags | FLAG_END_HEADERS : flags, streamId);
+            out.write(block, offset, length);
+            offset += length;
+            type = CONTINUATION;
+            flags = 0;
+        } while (offset < block.length);
+    }
+
+    /**
+     * Writes DATA frames, waiting for window when the client has not granted enough.
+     */
+    private void writeData(Http2Stream stream, byte[] data, int offset, int length, boolean endStream)
+            throws IOException {
+        do {
+            int granted = length == 0 ? 0 : reserveWindow(stream, length);
+            writeLock.lock();
+            try {
+                checkOpen(stream);
+                boolean last = endStream && granted == length;
+                writeHeader(out, granted, DATA, last ? FLAG_END_STREAM : 0, stream.id);
+                out.write(data, offset, granted);
+                flushIfIdle();
+            } finally {
+                writeLock.unlock();
+            }
+            offset += granted;
+            length -= granted;
+        } while (length > 0);
+    }
+
+    /**
+     * Takes up to {@code wanted} bytes from the connection and stream windows, waiting up to the
+     * keep-alive timeout for the client to open them.
+     */
+    private synchronized int reserveWindow(Http2Stream stream, int wanted) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getKeepAliveTimeoutMillis());
+        while (true) {
+            checkOpen(stream);
+            if (connectionWindow > 0 && stream.sendWindow > 0) {
+                int granted = Math.min(wanted, Math.min(connectionWindow, stream.sendWindow));
+                connectionWindow -= granted;
+                stream.sendWindow -= granted;
+                return granted;
+            }
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                throw new IOException("Flow control window not opened in time on stream " + stream.id);
+            }
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for flow control window");
+            }
+        }
+    }
+
+    private void checkOpen(Http2Stream stream) throws IOException {
+        if (closed) {
+            throw new IOException("Connection closed");
+        }
+        if (stream.reset) {
+            throw new IOException("Stream " + stream.id + " was reset");
+        }
+    }
+
+    /**
+     * Flushes unless another frame is waiting to be written, which will flush in turn.
+     */
+    private void flushIfIdle() throws IOException {
+        if (!writeLock.hasQueuedThreads()) {
+            out.flush();
+        }
+    }
+
+    private void writeSettings() throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(12);
+        writeSetting(payload, SETTINGS_MAX_CONCURRENT_STREAMS, config.getHttp2MaxConcurrentStreams());
+        writeSetting(payload, SETTINGS_MAX_HEADER_LIST_SIZE, config.getMaxHeaderSize());
+        writeFrame(SETTINGS, 0, 0, payload.toByteArray());
+    }
+
+    private static void writeSetting(ByteArrayOutputStream payload, int id, int value) throws IOException {
+        payload.write(id >>> 8);
+        payload.write(id);
+        writeInt(payload, value);
+    }
+
+    private void writeWindowUpdate(int streamId, int increment) throws IOException {
+        byte[] payload = new byte[4];
+        payload[0] = (byte) (increment >>> 24);
+        payload[1] = (byte) (increment >>> 16);
+        payload[2] = (byte) (increment >>> 8);
+        payload[3] = (byte) increment;
+        writeFrame(WINDOW_UPDATE, 0, streamId, payload);
+    }
+
+    private void resetStream(int streamId, int errorCode) throws IOException {
+        Http2Stream stream = streams.remove(streamId);
+        if (stream != null) {
+            markReset(stream);
+        }
+        writeRstStream(streamId, errorCode);
+    }
+
+    private void writeRstStream(int streamId, int errorCode) throws IOException {
+        byte[] payload = new byte[4];
+        payload[3] = (byte) errorCode;
+        writeFrame(RST_STREAM, 0, streamId, payload);
+    }
+
+    private void goAway(int errorCode, String debugData) throws IOException {
+        byte[] debug = debugData != null ? debugData.getBytes(StandardCharsets.UTF_8) : EMPTY;
+        writeLock.lock();
+        try {
+            goingAway = true;
+            if (goAwaySent || closed) {
+                return;
+            }
+            goAwaySent = true;
+            writeHeader(out, 8 + debug.length, GOAWAY, 0, 0);
+            writeInt(out, lastStreamId);
+            writeInt(out, errorCode);
+            out.write(debug);
+            out.flush();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void writeFrame(int type, int flags, int streamId, byte[] payload) throws IOException {
+        writeLock.lock();
+        try {
+            if (closed) {
+                throw new IOException("Connection closed");
+            }
+            writeHeader(out, payload.length, type, flags, streamId);
+            out.write(payload);
+            flushIfIdle();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void shutdownInput() {
+        try {
+            socket.shutdownInput();
+        } catch (IOException e) {
+            // already closed
+        }
+    }
+
+    /**
+     * Marks the connection closed, failing the writes of streams still being answered.
+     */
+    private void close() {
+        writeLock.lock();
+        try {
+            if (!closed) {
+                out.flush();
+            }
+        } catch (IOException e) {
+            // the client is gone
+        } finally {
+            closed = true;
+            writeLock.unlock();
+        }
+        for (Http2Stream stream : streams.values()) {
+            if (stream.body != null) {
+                stream.body.fail(new IOException("Connection closed"));
+            }
+        }
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Writes a response body as DATA frames of at most the default frame size, which every
+     * client accepts. The frame buffer is pooled and given back with {@link #release()}.
+     */
+    private final class DataFrameOutputStream extends OutputStream {
+
+        private final Http2Stream stream;
+        private final ByteBuffer pooled = BufferPool.shared().acquire(DEFAULT_MAX_FRAME_SIZE);
+        private final byte[] buffer = pooled.array();
+        private int count;
+
+        DataFrameOutputStream(Http2Stream stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == DEFAULT_MAX_FRAME_SIZE) {
+                flush();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (count == DEFAULT_MAX_FRAME_SIZE) {
+                    flush();
+                }
+                int copied = Math.min(length, DEFAULT_MAX_FRAME_SIZE - count);
+                System.arraycopy(data, offset, buffer, count, copied);
+                count += copied;
+                offset += copied;
+                length -= copied;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (count > 0) {
+                writeData(stream, buffer, 0, count, false);
+                count = 0;
+            }
+        }
+
+        /**
+         * Sends what is buffered with END_STREAM.
+         */
+        void finish() throws IOException {
+            writeData(stream, buffer, 0, count, true);
+            count = 0;
+        }
+
+        void release() {
+            BufferPool.shared().release(pooled);
+        }
+    }
+
+    /**
+     * Collects and validates a decoded request header list (RFC 7540, section 8.1.2).
+     */
+    private static final class RequestHeaders implements BiConsumer<String, String> {
+
+        private String method;
+        private String scheme;
+        private String authority;
+        private String path;
+        private final List<String[]> fields = new ArrayList<>();
+        private StringBuilder cookie;
+        private boolean regularSeen;
+        private String error;
+        /** Size as defined for SETTINGS_MAX_HEADER_LIST_SIZE. */
+        private int size;
+
+        @Override
+        public void accept(String name, String value) {
+            size += name.length() + value.length() + 32;
+            if (error != null) {
+                return;
+            }
+            if (name.startsWith(":")) {
+                if (regularSeen) {
+                    error = "pseudo-header after regular headers";
+                    return;
+                }
+                switch (name) {
+                    case ":method":
+                        method = pseudoHeader(method, value, name);
+                        break;
+                    case ":scheme":
+                        scheme = pseudoHeader(scheme, value, name);
+                        break;
+                    case ":authority":
+                        authority = pseudoHeader(authority, value, name);
+                        break;
+                    case ":path":
+                        path = pseudoHeader(path, value, name);
+                        break;
+                    default:
+                        error = "unknown pseudo-header " + name;
+                        break;
+                }
+                return;
+            }
+            regularSeen = true;
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                if (c >= 'A' && c <= 'Z') {
+                    error = "upper case header name " + name;
+                    return;
+                }
+            }
+            if (CONNECTION_HEADERS.contains(name) || ("te".equals(name) && !"trailers".equals(value))) {
+                error = "connection-specific header " + name;
+            } else if ("cookie".equals(name)) {
+                // crumbs of one cookie header may arrive as separate fields (section 8.1.2.5)
+                cookie = cookie == null ? new StringBuilder(value) : cookie.append("; ").append(value);
+            } else {
+                fields.add(new String[] { name, value });
+            }
+        }
+
+        private String pseudoHeader(String current, String value, String name) {
+            if (current != null) {
+                error = "repeated " + name;
+            }
+            return value;
+        }
+
+        boolean isValid() {
+            if (error == null && (method == null || scheme == null || path == null || path.isEmpty())) {
+                error = "missing :method, :scheme or :path";
+            }
+            return error == null;
+        }
+
+        HttpRequest toRequest() {
+            HttpRequest request = new HttpRequest(method, path, "HTTP/2.0");
+            if (authority != null) {
+                request.addHeader("Host", authority);
+            }
+            for (String[] field : fields) {
+                if (!("host".equals(field[0]) && authority != null)) {
+                    request.addHeader(field[0], field[1]);
+                }
+            }
+            if (cookie != null) {
+                request.addHeader("Cookie", cookie.toString());
+            }
+            return request;
+        }
+    }
+}
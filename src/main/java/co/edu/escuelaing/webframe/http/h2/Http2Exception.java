@@ -0,0 +1,43 @@
+package co.edu.escuelaing.webframe.http.h2;
+
+import java.io.IOException;
+
+/**
+ * Protocol violation detected on an HTTP/2 connection. Errors on stream 0 end the connection
+ * with GOAWAY; errors on another stream only reset that stream.
+ */
+public class Http2Exception extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int errorCode;
+    private final int streamId;
+
+    public Http2Exception(int errorCode, String message) {
+        this(errorCode, 0, message);
+    }
+
+    public Http2Exception(int errorCode, int streamId, String message) {
+        super(message);
+        this.errorCode = errorCode;
+        this.streamId = streamId;
+    }
+
+    /**
+     * Returns the error code sent to the peer, one of the {@code Http2Frames} error constants.
+     */
+    public int getErrorCode() {
+        return errorCode;
+    }
+
+    /**
+     * Returns the stream to reset, or 0 when the whole connection is in error.
+     */
+    public int getStreamId() {
+        return streamId;
+    }
+
+    public boolean isConnectionError() {
+        return streamId == 0;
+    }
+}
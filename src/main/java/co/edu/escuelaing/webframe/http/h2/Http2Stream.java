@@ -0,0 +1,29 @@
+package co.edu.escuelaing.webframe.http.h2;
+
+import co.edu.escuelaing.webframe.http.HttpRequest;
+
+/**
+ * One request and response exchange on an HTTP/2 connection. The send window is guarded by
+ * the connection's monitor; the other fields are only used by the thread reading frames.
+ */
+final class Http2Stream {
+
+    final int id;
+    /** Bytes of DATA the peer still accepts on this stream; may go negative after SETTINGS. */
+    int sendWindow;
+    HttpRequest request;
+    /** Response to send instead of dispatching, such as 431 for an oversized header list. */
+    int rejectStatus;
+    /** True once the request head is complete and handed to a worker. */
+    boolean dispatched;
+    /** True once the client has ended its side of the stream. */
+    volatile boolean endStreamReceived;
+    /** Body on its way to the worker, or null when the request has none or is refused. */
+    BodyPipe body;
+    volatile boolean reset;
+
+    Http2Stream(int id, int sendWindow) {
+        this.id = id;
+        this.sendWindow = sendWindow;
+    }
+}
@@ -0,0 +1,227 @@
+package co.edu.escuelaing.webframe.http.log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import co.edu.escuelaing.webframe.http.HttpRequest;
+import co.edu.escuelaing.webframe.http.HttpResponse;
+import co.edu.escuelaing.webframe.http.ServerConfig;
+
+/**
+ * Access log in Apache common or combined format, written off the request path.
+ * Request threads copy a few references into a preallocated slot of a lock-free ring buffer;
+ * a background thread formats the entries and appends them to a rotating file in batches.
+ * When the writer falls behind and the buffer is full, entries are dropped and counted rather
+ * than slowing requests down.
+ */
+public final class AccessLog implements Closeable {
+
+    private static final int BUFFER_CAPACITY = 16 * 1024;
+    private static final int BATCH_SIZE = 1024;
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.US).withZone(ZoneId.systemDefault());
+
+    private final RingBuffer<AccessLogRecord> buffer = new RingBuffer<>(BUFFER_CAPACITY, AccessLogRecord::new);
+    private final AccessLogFormat format;
+    private final RotatingFileWriter file;
+    private final Thread writer;
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean closed;
+
+    private byte[] line = new byte[64 * 1024];
+    private int lineLength;
+    private long cachedSecond = -1;
+    private String cachedDate;
+
+    public AccessLog(Path file, AccessLogFormat format, long maxFileBytes, int maxFiles) throws IOException {
+        this.format = format;
+        this.file = new RotatingFileWriter(file, maxFileBytes, maxFiles);
+        this.writer = new Thread(this::writeLoop, "access-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Creates the access log configured in {@code config}, or returns null when it is disabled.
+     */
+    public static AccessLog create(ServerConfig config) throws IOException {
+        if (config.getAccessLogPath() == null || config.getAccessLogPath().isEmpty()) {
+            return null;
+        }
+        return new AccessLog(Paths.get(config.getAccessLogPath()), config.getAccessLogFormat(),
+                config.getAccessLogMaxBytes(), config.getAccessLogMaxFiles());
+    }
+
+    /**
+     * Records a response. {@code request} is null when the request could not be parsed.
+     * Never blocks; safe to call from any thread.
+     */
+    public void log(String remoteAddress, HttpRequest request, HttpResponse response) {
+        long position = buffer.claim();
+        if (position < 0) {
+            dropped.increment();
+            return;
+        }
+        AccessLogRecord record = buffer.get(position);
+        record.remoteAddress = remoteAddress;
+        record.timeMillis = System.currentTimeMillis();
+        record.status = response.getStatusCode();
+        // %b counts the body actually sent, and responses to HEAD and 304s carry none
+        boolean noBody = response.getStatusCode() == 304 || (request != null && "HEAD".equals(request.getMethod()));
+        record.bytes = noBody ? 0 : response.getContentLength();
+        if (request != null) {
+            record.method = request.getMethod();
+            record.target = request.getTarget();
+            record.version = request.getVersion();
+            if (format == AccessLogFormat.COMBINED) {
+                record.referer = request.getHeader("Referer");
+                record.userAgent = request.getHeader("User-Agent");
+            }
+        }
+        buffer.publish(position);
+    }
+
+    /**
+     * Number of entries dropped because the writer could not keep up.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private void writeLoop() {
+        while (true) {
+            boolean stopping = closed;
+            int written = writeBatch();
+            if (written == 0) {
+                if (stopping) {
+                    break;
+                }
+                LockSupport.parkNanos(FLUSH_INTERVAL_NANOS);
+            }
+        }
+        try {
+            file.close();
+        } catch (IOException e) {
+            System.err.println("Error closing access log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Formats up to one batch of entries and writes them with a single call.
+     */
+    private int writeBatch() {
+        int count = 0;
+        lineLength = 0;
+        AccessLogRecord record;
+        while (count < BATCH_SIZE && (record = buffer.peek()) != null) {
+            format(record);
+            record.clear();
+            buffer.release();
+            count++;
+        }
+        if (lineLength > 0) {
+            try {
+                file.write(line, lineLength);
+            } catch (IOException e) {
+                System.err.println("Error writing access log: " + e.getMessage());
+            }
+        }
+        return count;
+    }
+
+    private void format(AccessLogRecord record) {
+        append(record.remoteAddress != null ? record.remoteAddress : "-");
+        append(" - - [");
+        append(date(record.timeMillis));
+        append("] \"");
+        if (record.method != null) {
+            appendEscaped(record.method);
+            append(' ');
+            appendEscaped(record.target);
+            append(' ');
+            appendEscaped(record.version);
+        } else {
+            append('-');
+        }
+        append("\" ");
+        append(Integer.toString(record.status));
+        append(' ');
+        append(record.bytes > 0 ? Long.toString(record.bytes) : "-");
+        if (format == AccessLogFormat.COMBINED) {
+            append(" \"");
+            appendEscaped(record.referer != null ? record.referer : "-");
+            append("\" \"");
+            appendEscaped(record.userAgent != null ? record.userAgent : "-");
+            append('"');
+        }
+        append('\n');
+    }
+
+    private String date(long timeMillis) {
+        long second = timeMillis / 1000;
+        if (second != cachedSecond) {
+            cachedSecond = second;
+            cachedDate = DATE_FORMAT.format(Instant.ofEpochSecond(second));
+        }
+        return cachedDate;
+    }
+
+    /**
+     * Appends a request value, escaping quotes, backslashes and control characters as Apache does.
+     */
+    private void appendEscaped(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                append('\\');
+                append(c);
+            } else if (c < 0x20 || c == 0x7F) {
+                append("\\x");
+                append(Character.forDigit(c >> 4, 16));
+                append(Character.forDigit(c & 0xF, 16));
+            } else {
+                append(c);
+            }
+        }
+    }
+
+    private void append(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            append(value.charAt(i));
+        }
+    }
+
+    private void append(char c) {
+        if (lineLength == line.length) {
+            byte[] grown = new byte[line.length * 2];
+            System.arraycopy(line, 0, grown, 0, lineLength);
+            line = grown;
+        }
+        // request values are decoded as ISO-8859-1, so each char maps back to one byte
+        line[lineLength++] = (byte) c;
+    }
+
+    /**
+     * Writes the pending entries and stops the writer thread.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
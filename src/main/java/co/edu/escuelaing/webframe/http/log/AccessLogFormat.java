@@ -0,0 +1,17 @@
+package co.edu.escuelaing.webframe.http.log;
+
+/**
+ * Apache access log formats.
+ */
+public enum AccessLogFormat {
+
+    /**
+     * {@code %h %l %u %t "%r" %>s %b}
+     */
+    COMMON,
+
+    /**
+     * {@code %h %l %u %t "%r" %>s %b "%{Referer}i" "%{User-Agent}i"}
+     */
+    COMBINED
+}
@@ -0,0 +1,26 @@
+package co.edu.escuelaing.webframe.http.log;
+
+/**
+ * One access log entry. Instances live in the ring buffer and are overwritten for every request.
+ */
+final class AccessLogRecord {
+
+    String remoteAddress;
+    long timeMillis;
+    String method;
+    String target;
+    String version;
+    int status;
+    long bytes;
+    String referer;
+    String userAgent;
+
+    void clear() {
+        remoteAddress = null;
+        method = null;
+        target = null;
+        version = null;
+        referer = null;
+        userAgent = null;
+    }
+}
@@ -0,0 +1,86 @@
+package co.edu.escuelaing.webframe.http.log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Bounded lock-free queue of preallocated, reusable slots for many producers and one consumer.
+ * Each slot carries a sequence number telling whose turn it is: producers claim a position with
+ * a compare-and-set on the tail, fill the slot and publish it by advancing its sequence; the
+ * consumer reads published slots in order and hands them back the same way. Nothing is allocated
+ * per element and a full buffer is reported to the producer instead of blocking it.
+ */
+final class RingBuffer<T> {
+
+    private final Object[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    RingBuffer(int capacity, Supplier<T> factory) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        slots = new Object[capacity];
+        sequences = new AtomicLongArray(capacity);
+        mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = factory.get();
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Claims the next free position for a producer.
+     *
+     * @return the position, or -1 when the buffer is full
+     */
+    long claim() {
+        while (true) {
+            long position = tail.get();
+            long difference = sequences.get((int) position & mask) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+            } else if (difference < 0) {
+                return -1;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    T get(long position) {
+        return (T) slots[(int) position & mask];
+    }
+
+    /**
+     * Makes a claimed and filled slot visible to the consumer.
+     */
+    void publish(long position) {
+        sequences.lazySet((int) position & mask, position + 1);
+    }
+
+    /**
+     * Returns the next published slot without removing it, or null when there is none.
+     * Only the consumer thread may call this and {@link #release()}.
+     */
+    @SuppressWarnings("unchecked")
+    T peek() {
+        int index = (int) head & mask;
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        return (T) slots[index];
+    }
+
+    /**
+     * Hands the slot returned by {@link #peek()} back to the producers.
+     */
+    void release() {
+        sequences.lazySet((int) head & mask, head + slots.length);
+        head++;
+    }
+}
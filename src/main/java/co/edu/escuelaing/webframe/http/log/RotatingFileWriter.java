@@ -0,0 +1,91 @@
+package co.edu.escuelaing.webframe.http.log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends to a file and rotates it once it would grow past a size limit.
+ * The current file is renamed to {@code name.1}, older ones shift to {@code name.2} and so on,
+ * and files beyond the configured count are dropped. When a rotation fails the writer keeps
+ * appending to the current file and tries again on the next write. Only used by the access log
+ * writer thread.
+ */
+final class RotatingFileWriter implements Closeable {
+
+    private final Path file;
+    private final long maxBytes;
+    private final int maxFiles;
+    private FileChannel channel;
+    private long size;
+    /** Set while rotations keep failing, so the error is reported once. */
+    private boolean rotationFailing;
+
+    RotatingFileWriter(Path file, long maxBytes, int maxFiles) throws IOException {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+        open();
+    }
+
+    void write(byte[] data, int length) throws IOException {
+        if (maxBytes > 0 && size > 0 && size + length > maxBytes) {
+            rotate();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        size += length;
+    }
+
+    private void rotate() throws IOException {
+        channel.close();
+        try {
+            if (maxFiles == 0) {
+                Files.delete(file);
+            } else {
+                Files.deleteIfExists(rotated(maxFiles));
+                for (int i = maxFiles - 1; i >= 1; i--) {
+                    Path older = rotated(i);
+                    if (Files.exists(older)) {
+                        Files.move(older, rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+                Files.move(file, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+            }
+            rotationFailing = false;
+        } catch (IOException e) {
+            if (!rotationFailing) {
+                System.err.println("Could not rotate access log " + file + ", appending to it: " + e);
+                rotationFailing = true;
+            }
+        }
+        // reopens the current file when the rotation failed, so later entries still get written
+        open();
+    }
+
+    private Path rotated(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    private void open() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        size = channel.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,129 @@
+package co.edu.escuelaing.webframe.http.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent log-linear histogram of nanosecond durations, in the style of HdrHistogram.
+ * Every power of two is split into 32 linear sub-buckets, so recorded values keep about 3%
+ * relative precision from one nanosecond up to two minutes; longer values land in the last bucket.
+ * Recording is a single atomic increment on a stripe chosen by thread, so threads rarely
+ * contend on the same counters; readers merge the stripes into a {@link Snapshot}.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 37;
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+    private static final int STRIPES = stripeCount();
+
+    private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPES];
+    private final LongAdder sum = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new AtomicLongArray(BUCKET_COUNT);
+        }
+    }
+
+    public void record(long nanos) {
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        stripes[stripe].incrementAndGet(index(Math.max(0, nanos)));
+        sum.add(nanos);
+    }
+
+    /**
+     * Merges the stripes. Concurrent recordings may or may not be included.
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long count = 0;
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                long value = stripe.get(i);
+                counts[i] += value;
+                count += value;
+            }
+        }
+        return new Snapshot(counts, count, sum.sum());
+    }
+
+    static int index(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int index = (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+        return Math.min(index, BUCKET_COUNT - 1);
+    }
+
+    /**
+     * Smallest value that falls in the bucket.
+     */
+    static long lowerBound(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        return (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+
+    private static int stripeCount() {
+        int processors = Math.min(8, Runtime.getRuntime().availableProcessors());
+        return Integer.highestOneBit(Math.max(1, processors * 2 - 1));
+    }
+
+    /**
+     * Point-in-time copy of a histogram.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+
+        Snapshot(long[] counts, long count, long sum) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Sum of all recorded values in nanoseconds.
+         */
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * Returns the value below which the given percentage of recordings fall,
+         * as the lower bound of its bucket; 0 when nothing was recorded.
+         */
+        public long percentile(double percentile) {
+            long target = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target) {
+                    return lowerBound(i);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Number of recordings whose bucket lies entirely at or below {@code nanos}.
+         */
+        public long countAtOrBelow(long nanos) {
+            long total = 0;
+            for (int i = 0; i < counts.length - 1 && lowerBound(i + 1) - 1 <= nanos; i++) {
+                total += counts[i];
+            }
+            return total;
+        }
+    }
+}
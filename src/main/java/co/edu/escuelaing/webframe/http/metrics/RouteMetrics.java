@@ -0,0 +1,39 @@
+package co.edu.escuelaing.webframe.http.metrics;
+
+/**
+ * Latency of one route, split into the phases of a request: finding the route, running the
+ * handler and writing the response to the socket.
+ */
+public final class RouteMetrics {
+
+    private final String method;
+    private final String route;
+    private final LatencyHistogram routing = new LatencyHistogram();
+    private final LatencyHistogram handler = new LatencyHistogram();
+    private final LatencyHistogram write = new LatencyHistogram();
+
+    RouteMetrics(String method, String route) {
+        this.method = method;
+        this.route = route;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public LatencyHistogram getRouting() {
+        return routing;
+    }
+
+    public LatencyHistogram getHandler() {
+        return handler;
+    }
+
+    public LatencyHistogram getWrite() {
+        return write;
+    }
+}
@@ -0,0 +1,202 @@
+package co.edu.escuelaing.webframe.http.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters, gauges and per-route latency histograms of one server, rendered in the Prometheus
+ * text exposition format. Counters are {@link LongAdder}s so request threads never contend on
+ * a single cache line.
+ */
+public final class ServerMetrics {
+
+    private static final double[] BUCKET_SECONDS = { 0.00001, 0.000025, 0.00005, 0.0001, 0.00025, 0.0005,
+        0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10 };
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private final LongAdder requests = new LongAdder();
+    private final AtomicReferenceArray<LongAdder> responsesByStatus = new AtomicReferenceArray<>(600);
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder connectionsAccepted = new LongAdder();
+    private final LongAdder activeConnections = new LongAdder();
+    private final Map<Object, RouteMetrics> routes = new ConcurrentHashMap<>();
+    private final RouteMetrics staticFiles = new RouteMetrics("GET", "static");
+    private final RouteMetrics unmatched = new RouteMetrics("*", "unmatched");
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the metrics of a route, creating them on first use.
+     *
+     * @param key identity of the route, compared with {@code equals}
+     */
+    public RouteMetrics route(Object key, String method, String pattern) {
+        RouteMetrics metrics = routes.get(key);
+        if (metrics == null) {
+            metrics = routes.computeIfAbsent(key, k -> new RouteMetrics(method, pattern));
+        }
+        return metrics;
+    }
+
+    /**
+     * Metrics shared by all static file requests.
+     */
+    public RouteMetrics staticFiles() {
+        return staticFiles;
+    }
+
+    /**
+     * Metrics shared by requests that matched no route.
+     */
+    public RouteMetrics unmatched() {
+        return unmatched;
+    }
+
+    public void connectionOpened() {
+        connectionsAccepted.increment();
+        activeConnections.increment();
+    }
+
+    public void connectionClosed() {
+        activeConnections.decrement();
+    }
+
+    /**
+     * Records a completed request.
+     *
+     * @param received bytes of the request head and body
+     * @param sent bytes of the response, or a negative value when unknown
+     */
+    public void requestCompleted(int status, long received, long sent) {
+        requests.increment();
+        if (status >= 0 && status < responsesByStatus.length()) {
+            LongAdder counter = responsesByStatus.get(status);
+            if (counter == null) {
+                responsesByStatus.compareAndSet(status, null, new LongAdder());
+                counter = responsesByStatus.get(status);
+            }
+            counter.increment();
+        }
+        bytesReceived.add(received);
+        if (sent > 0) {
+            bytesSent.add(sent);
+        }
+    }
+
+    /**
+     * Registers a gauge read when the metrics are rendered, such as the worker queue depth.
+     */
+    public void registerGauge(String name, String help, LongSupplier value) {
+        gauges.put(name, new Gauge(help, value));
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    public long getActiveConnections() {
+        return activeConnections.sum();
+    }
+
+    /**
+     * Renders all metrics in the Prometheus text format, version 0.0.4.
+     */
+    public String toPrometheusText() {
+        StringBuilder out = new StringBuilder(4096);
+        counter(out, "webframe_requests_total", "Requests served.", requests.sum());
+        out.append("# HELP webframe_responses_total Responses by status code.\n");
+        out.append("# TYPE webframe_responses_total counter\n");
+        for (int status = 0; status < responsesByStatus.length(); status++) {
+            LongAdder counter = responsesByStatus.get(status);
+            if (counter != null) {
+                out.append("webframe_responses_total{code=\"").append(status).append("\"} ")
+                        .append(counter.sum()).append('\n');
+            }
+        }
+        counter(out, "webframe_received_bytes_total", "Bytes of request heads and bodies.", bytesReceived.sum());
+        counter(out, "webframe_sent_bytes_total", "Bytes of response heads and bodies of known length.",
+                bytesSent.sum());
+        counter(out, "webframe_connections_total", "Connections accepted.", connectionsAccepted.sum());
+        gauge(out, "webframe_active_connections", "Open connections.", activeConnections.sum());
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            gauge(out, entry.getKey(), entry.getValue().help, entry.getValue().value.getAsLong());
+        }
+
+        List<RouteMetrics> all = new ArrayList<>(routes.values());
+        all.add(staticFiles);
+        all.add(unmatched);
+        out.append("# HELP webframe_route_phase_seconds Time spent per route in routing, handler and write.\n");
+        out.append("# TYPE webframe_route_phase_seconds histogram\n");
+        StringBuilder quantiles = new StringBuilder();
+        for (RouteMetrics route : all) {
+            phase(out, quantiles, route, "routing", route.getRouting().snapshot());
+            phase(out, quantiles, route, "handler", route.getHandler().snapshot());
+            phase(out, quantiles, route, "write", route.getWrite().snapshot());
+        }
+        out.append("# HELP webframe_route_phase_quantile_seconds Latency percentiles per route and phase.\n");
+        out.append("# TYPE webframe_route_phase_quantile_seconds gauge\n");
+        out.append(quantiles);
+        return out.toString();
+    }
+
+    private static void phase(StringBuilder out, StringBuilder quantiles, RouteMetrics route, String phase,
+            LatencyHistogram.Snapshot snapshot) {
+        if (snapshot.getCount() == 0) {
+            return;
+        }
+        String labels = "method=\"" + escape(route.getMethod()) + "\",route=\"" + escape(route.getRoute())
+                + "\",phase=\"" + phase + "\"";
+        for (double bucket : BUCKET_SECONDS) {
+            out.append("webframe_route_phase_seconds_bucket{").append(labels).append(",le=\"")
+                    .append(format(bucket)).append("\"} ")
+                    .append(snapshot.countAtOrBelow((long) (bucket * 1e9))).append('\n');
+        }
+        out.append("webframe_route_phase_seconds_bucket{").append(labels).append(",le=\"+Inf\"} ")
+                .append(snapshot.getCount()).append('\n');
+        out.append("webframe_route_phase_seconds_sum{").append(labels).append("} ")
+                .append(format(snapshot.getSum() / 1e9)).append('\n');
+        out.append("webframe_route_phase_seconds_count{").append(labels).append("} ")
+                .append(snapshot.getCount()).append('\n');
+        for (double quantile : QUANTILES) {
+            quantiles.append("webframe_route_phase_quantile_seconds{").append(labels).append(",quantile=\"")
+                    .append(format(quantile)).append("\"} ")
+                    .append(format(snapshot.percentile(quantile * 100) / 1e9)).append('\n');
+        }
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" gauge\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.9g", value).replaceAll("\\.?0+(e|$)", "$1");
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static final class Gauge {
+        final String help;
+        final LongSupplier value;
+
+        Gauge(String help, LongSupplier value) {
+            this.help = help;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package co.edu.escuelaing.webframe.http.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+
+import co.edu.escuelaing.webframe.http.HttpRequestHandler;
+import co.edu.escuelaing.webframe.http.ServerConfig;
+import co.edu.escuelaing.webframe.http.buffer.BufferPool;
+import co.edu.escuelaing.webframe.http.tls.TlsContext;
+
+/**
+ * Selector loop owning a set of connections.
+ * All channel operations of its connections happen on the loop thread; other threads
+ * hand work to it through {@link #execute(Runnable)}.
+ */
+final class EventLoop implements Runnable {
+
+    private static final long IDLE_CHECK_INTERVAL_MILLIS = 250;
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Set<NioConnection> connections = new HashSet<>();
+    private final int readBufferSize;
+    private final HttpRequestHandler requestHandler;
+    private final ExecutorService workers;
+    private final ServerConfig config;
+    private final TlsContext tls;
+    private volatile boolean running = true;
+    private volatile boolean draining;
+    private volatile int connectionCount;
+    private long lastIdleCheck;
+
+    /**
+     * @param tls TLS settings for new connections, or null to serve plain HTTP
+     */
+    EventLoop(HttpRequestHandler requestHandler, ExecutorService workers, ServerConfig config, TlsContext tls)
+            throws IOException {
+        this.selector = Selector.open();
+        this.requestHandler = requestHandler;
+        this.workers = workers;
+        this.config = config;
+        this.tls = tls;
+        this.readBufferSize = config.getMaxHeaderSize();
+    }
+
+    /**
+     * Registers an accepted channel with this loop. Safe to call from any thread; once the loop
+     * is stopping the channel is closed instead.
+     */
+    void register(SocketChannel channel) {
+        Runnable task = () -> {
+            if (!running) {
+                closeChannel(channel);
+                return;
+            }
+            try {
+                channel.configureBlocking(false);
+                // head and body may go out in separate writes; Nagle would hold the second one back
+                channel.socket().setTcpNoDelay(true);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                NioConnection connection = new NioConnection(this, channel, key);
+                key.attach(connection);
+                connections.add(connection);
+                connectionCount = connections.size();
+                requestHandler.getMetrics().connectionOpened();
+            } catch (IOException e) {
+                System.err.println("Error registering connection: " + e.getMessage());
+                closeChannel(channel);
+            }
+        };
+        execute(task);
+        // the loop may have drained its tasks for the last time already
+        if (!running && tasks.remove(task)) {
+            closeChannel(channel);
+        }
+    }
+
+    /**
+     * Runs a task on the loop thread.
+     */
+    void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select(IDLE_CHECK_INTERVAL_MILLIS);
+                runTasks();
+                processSelectedKeys();
+                closeIdleConnections();
+                if (draining) {
+                    closeConnectionsBetweenRequests();
+                }
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Event loop error: " + e.getMessage());
+                }
+            }
+        }
+        // registrations queued while stopping only close their channels
+        runTasks();
+        for (NioConnection connection : new ArrayList<>(connections)) {
+            connection.close();
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            System.err.println("Error closing selector: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops keeping connections alive: idle ones are closed now, busy ones once their response is written.
+     */
+    void startDraining() {
+        execute(() -> draining = true);
+    }
+
+    /**
+     * Returns the number of open connections. Safe to call from any thread.
+     */
+    int getConnectionCount() {
+        return connectionCount;
+    }
+
+    private void closeConnectionsBetweenRequests() {
+        for (NioConnection connection : new ArrayList<>(connections)) {
+            if (connection.isBetweenRequests()) {
+                connection.close();
+            }
+        }
+    }
+
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private void processSelectedKeys() {
+        Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+        while (selected.hasNext()) {
+            SelectionKey key = selected.next();
+            selected.remove();
+
+            NioConnection connection = (NioConnection) key.attachment();
+            if (!key.isValid()) {
+                connection.close();
+                continue;
+            }
+            if (key.isWritable()) {
+                connection.onWritable();
+            }
+            if (key.isValid() && key.isReadable()) {
+                connection.onReadable();
+            }
+        }
+    }
+
+    private void closeIdleConnections() {
+        long now = System.currentTimeMillis();
+        if (now - lastIdleCheck < IDLE_CHECK_INTERVAL_MILLIS) {
+            return;
+        }
+        lastIdleCheck = now;
+        int headerTimeout = config.getHeaderTimeoutMillis();
+        for (NioConnection connection : new ArrayList<>(connections)) {
+            if (headerTimeout > 0 && connection.isHandshakeStartedBefore(now - headerTimeout)) {
+                connection.close();
+            } else if (headerTimeout > 0 && connection.isHeadStartedBefore(now - headerTimeout)) {
+                connection.timeOutHead();
+            } else if (connection.isIdleSince(now - config.getKeepAliveTimeoutMillis())) {
+                connection.close();
+            }
+        }
+    }
+
+    void connectionClosed(NioConnection connection) {
+        connections.remove(connection);
+        connectionCount = connections.size();
+        requestHandler.getMetrics().connectionClosed();
+    }
+
+    /**
+     * Takes a read buffer from the shared pool. Heads are parsed in place, so it holds a whole
+     * head and is a heap buffer, whose array the parser reads.
+     */
+    ByteBuffer acquireReadBuffer() {
+        return BufferPool.shared().acquire(readBufferSize);
+    }
+
+    void releaseReadBuffer(ByteBuffer buffer) {
+        BufferPool.shared().release(buffer);
+    }
+
+    HttpRequestHandler getRequestHandler() {
+        return requestHandler;
+    }
+
+    ServerConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Returns the TLS settings, or null when connections are plain HTTP.
+     */
+    TlsContext getTlsContext() {
+        return tls;
+    }
+
+    ExecutorService getWorkers() {
+        return workers;
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    private static void closeChannel(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing channel: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,686 @@
+package co.edu.escuelaing.webframe.http.nio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.RejectedExecutionException;
+
+import co.edu.escuelaing.webframe.DebugLog;
+import co.edu.escuelaing.webframe.http.HttpParseException;
+import co.edu.escuelaing.webframe.http.HttpRequest;
+import co.edu.escuelaing.webframe.http.HttpRequestHandler;
+import co.edu.escuelaing.webframe.http.HttpResponse;
+import co.edu.escuelaing.webframe.http.RequestBodyStream;
+import co.edu.escuelaing.webframe.http.buffer.BufferPool;
+import co.edu.escuelaing.webframe.http.tls.TlsChannel;
+import co.edu.escuelaing.webframe.http.tls.TlsContext;
+
+/**
+ * State of one non-blocking connection.
+ * Request heads are accumulated in a pooled buffer that is only held while a request is
+ * partially read, so idle keep-alive connections cost no buffer memory, and are parsed into a
+ * request object reused for the life of the connection. One request is processed at a time;
+ * pipelined bytes stay in the buffer until the previous response is written.
+ * Streaming responses are produced on the worker thread, which blocks once too many bytes are
+ * queued for a slow client, so a response is never buffered whole. Request bodies are read by
+ * the worker straight from the read buffer; when it is empty the worker asks the loop for more
+ * and waits, so an upload is never buffered whole either.
+ * With TLS every read and write goes through a {@link TlsChannel}; the handshake is driven by
+ * the loop while its expensive steps run on the worker executor.
+ */
+final class NioConnection {
+
+    private static final long STREAM_HIGH_WATERMARK = 64 * 1024;
+
+    private final EventLoop loop;
+    private final SocketChannel channel;
+    /** TLS layer, or null for plain HTTP. */
+    private final TlsChannel tls;
+    /** Where request bytes are read from and responses written to: the TLS layer or the socket. */
+    private final ByteChannel transport;
+    private final SelectionKey key;
+    private final ArrayDeque<OutboundData> writeQueue = new ArrayDeque<>();
+    private final Object streamLock = new Object();
+    private long streamPendingBytes;
+    /**
+     * Guards the read buffer while a worker reads a request body from it.
+     */
+    private final Object bodyLock = new Object();
+    private final InputStream bodySource = new BodySource();
+    private volatile boolean bodyWaiting;
+    private boolean bodyEnded;
+
+    private final HttpRequest request = new HttpRequest();
+    private final String remoteAddress;
+    private ByteBuffer readBuffer;
+    private long discardRemaining;
+    private boolean unreadBody;
+    private boolean lingering;
+    private HttpResponse writing;
+    private HttpRequest writingRequest;
+    private long writeStart;
+    private boolean processing;
+    private boolean requestOpen;
+    private boolean responseComplete = true;
+    private boolean keepAlive = true;
+    private volatile boolean closed;
+    private int served;
+    private long lastActivity = System.currentTimeMillis();
+    private long headStartedAt;
+    private boolean handshaking;
+    private final long openedAt = System.currentTimeMillis();
+
+    NioConnection(EventLoop loop, SocketChannel channel, SelectionKey key) throws IOException {
+        this.loop = loop;
+        this.channel = channel;
+        this.key = key;
+        this.remoteAddress = channel.socket().getInetAddress().getHostAddress();
+        TlsContext tlsContext = loop.getTlsContext();
+        if (tlsContext != null) {
+            tls = new TlsChannel(tlsContext.newEngine(), channel, channel);
+            tls.setTaskExecutor(loop.getWorkers(), () -> loop.execute(this::continueHandshake));
+            transport = tls;
+            handshaking = true;
+        } else {
+            tls = null;
+            transport = channel;
+        }
+    }
+
+    void onReadable() {
+        if (handshaking) {
+            continueHandshake();
+            return;
+        }
+        if (lingering) {
+            drainLingering();
+            return;
+        }
+        if (processing) {
+            // only a worker reading a body wants bytes while a request is in progress
+            readBodyData();
+            return;
+        }
+        if (readBuffer == null) {
+            readBuffer = loop.acquireReadBuffer();
+        }
+        try {
+            int read;
+            do {
+                // TLS may hold decrypted bytes beyond what the last read took; the selector
+                // would not report them, so keep reading while there is room
+                read = transport.read(readBuffer);
+            } while (tls != null && read > 0 && readBuffer.hasRemaining());
+            if (read == -1) {
+                close();
+                return;
+            }
+        } catch (IOException e) {
+            close();
+            return;
+        }
+        lastActivity = System.currentTimeMillis();
+        processNextRequest();
+    }
+
+    void onWritable() {
+        if (handshaking) {
+            continueHandshake();
+            return;
+        }
+        flushWrites();
+    }
+
+    /**
+     * Advances the TLS handshake. It waits for the socket while the client has not answered and
+     * for the workers while they run key exchange and signature steps, so the loop never blocks
+     * on a handshake and the accept thread never sees one.
+     */
+    private void continueHandshake() {
+        if (closed) {
+            return;
+        }
+        try {
+            if (!tls.handshake()) {
+                key.interestOps(tls.isTaskRunning() ? 0
+                        : tls.hasPendingOutput() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+                return;
+            }
+        } catch (IOException e) {
+            close();
+            return;
+        }
+        handshaking = false;
+        lastActivity = System.currentTimeMillis();
+        key.interestOps(SelectionKey.OP_READ);
+        if (tls.hasBufferedInput()) {
+            onReadable();
+        }
+    }
+
+    /**
+     * Parses the next complete request head in the read buffer, if any, and hands it to a worker.
+     * The head is parsed in place; the pooled request copies it before the buffer is compacted.
+     */
+    private void processNextRequest() {
+        if (processing || closed || readBuffer == null) {
+            return;
+        }
+
+        readBuffer.flip();
+        if (discardRemaining > 0) {
+            int skipped = (int) Math.min(discardRemaining, readBuffer.remaining());
+            readBuffer.position(readBuffer.position() + skipped);
+            discardRemaining -= skipped;
+        }
+
+        HttpRequestHandler handler = loop.getRequestHandler();
+        int consumed;
+        try {
+            consumed = handler.getParser().parse(readBuffer.array(),
+                    readBuffer.arrayOffset() + readBuffer.position(), readBuffer.remaining(), request);
+            if (consumed < 0 && readBuffer.position() == 0 && readBuffer.limit() == readBuffer.capacity()) {
+                throw new HttpParseException(431, "Request header fields too large");
+            }
+        } catch (HttpParseException e) {
+            readBuffer.clear();
+            respondAndClose(HttpResponse.error(e.getStatusCode()), null);
+            return;
+        }
+        if (consumed < 0) {
+            readBuffer.compact();
+            releaseReadBufferIfEmpty();
+            if (readBuffer != null && headStartedAt == 0) {
+                headStartedAt = System.currentTimeMillis();
+            }
+            return;
+        }
+        headStartedAt = 0;
+        readBuffer.position(readBuffer.position() + consumed);
+        readBuffer.compact();
+        releaseReadBufferIfEmpty();
+
+        if (DebugLog.isEnabled()) {
+            DebugLog.log("Request: " + request.getMethod() + " " + request.getTarget() + " " + request.getVersion());
+        }
+        if (handler.isBodyTooLarge(request)) {
+            // refused before reading, so a client expecting 100-continue never sends it
+            respondAndClose(HttpResponse.error(413), request);
+            return;
+        }
+
+        served++;
+        int servedSoFar = served;
+        long queuedAt = System.nanoTime();
+        processing = true;
+        requestOpen = true;
+        // interim responses written meanwhile must not end the request
+        responseComplete = false;
+        bodyEnded = false;
+        handler.requestStarted();
+        key.interestOps(0);
+
+        try {
+            loop.getWorkers().execute(() -> {
+                RequestBodyStream body = handler.openBody(request, bodySource,
+                        () -> enqueueFromWorker(ByteBuffer.wrap(HttpResponse.encodeContinue()), false));
+                HttpResponse response = handler.admit(request, remoteAddress, System.nanoTime() - queuedAt);
+                boolean admitted = response == null;
+                if (admitted) {
+                    try {
+                        response = handler.handle(request);
+                    } catch (RuntimeException e) {
+                        System.err.println("Error handling request: " + e.getMessage());
+                        response = HttpResponse.error(500);
+                    }
+                }
+                // a drain that started while the handler ran closes the connection after this
+                // response, and shedding closes it so the load actually goes away
+                boolean keepAliveAfter = handler.shouldKeepAlive(request, servedSoFar) && loop.isRunning()
+                        && (admitted || response.getStatusCode() == 429);
+                handler.applyConnectionHeaders(response, keepAliveAfter, servedSoFar);
+                handler.logAccess(remoteAddress, request, response);
+                HttpResponse completed = response;
+                if (completed.isChunked()) {
+                    streamResponse(completed, keepAliveAfter, body);
+                } else {
+                    long unread = unreadLength(body);
+                    loop.execute(() -> {
+                        bodyFinished(unread);
+                        sendResponse(completed, request, keepAliveAfter);
+                    });
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            HttpResponse response = HttpResponse.error(503);
+            response.setHeader("Retry-After", String.valueOf(loop.getConfig().getRetryAfterSeconds()));
+            respondAndClose(response, request);
+        }
+    }
+
+    /**
+     * Returns the bytes of the body the handler left unread, or -1 when they are not known.
+     */
+    private long unreadLength(RequestBodyStream body) {
+        if (body == null) {
+            return request.hasBody() ? -1 : 0;
+        }
+        return body.getUnreadLength();
+    }
+
+    /**
+     * Records on the loop what is left of the body once the worker is done with it: a known
+     * rest is skipped before the next head, an unknown one means closing with a linger.
+     */
+    private void bodyFinished(long unread) {
+        discardRemaining = Math.max(0, unread);
+        unreadBody = unread != 0;
+    }
+
+    /**
+     * @param forRequest the request being answered, or null when it could not be parsed
+     */
+    private void respondAndClose(HttpResponse response, HttpRequest forRequest) {
+        processing = true;
+        unreadBody = true;
+        loop.getRequestHandler().applyConnectionHeaders(response, false, served);
+        loop.getRequestHandler().logAccess(remoteAddress, forRequest, response);
+        sendResponse(response, forRequest, false);
+    }
+
+    private void sendResponse(HttpResponse response, HttpRequest forRequest, boolean keepAliveAfter) {
+        if (closed) {
+            return;
+        }
+        keepAlive = keepAliveAfter;
+        responseComplete = true;
+        startWrite(response, forRequest);
+        writeQueue.add(OutboundData.of(ByteBuffer.wrap(response.encodeHead())));
+        if (forRequest != null && "HEAD".equals(forRequest.getMethod())) {
+            // the head describes a body that is not sent
+            flushWrites();
+            return;
+        }
+        if (response.getBufferBody() != null) {
+            writeQueue.add(OutboundData.of(response.getBufferBody().duplicate()));
+        } else if (response.getFileBody() != null) {
+            writeQueue.add(OutboundData.of(response.getFileBody()));
+        } else if (response.getBody().length > 0) {
+            writeQueue.add(OutboundData.of(ByteBuffer.wrap(response.getBody())));
+        }
+        flushWrites();
+    }
+
+    /**
+     * Writes a streaming response from the calling worker thread through a {@link NioOutputStream}.
+     */
+    private void streamResponse(HttpResponse response, boolean keepAliveAfter, RequestBodyStream body) {
+        loop.execute(() -> {
+            keepAlive = keepAliveAfter;
+            responseComplete = false;
+            startWrite(response, request);
+        });
+        NioOutputStream out = new NioOutputStream(this);
+        try {
+            response.writeTo(out, null, !"HEAD".equals(request.getMethod()));
+            out.flush();
+            // the body may have been read while the response was produced
+            long unread = unreadLength(body);
+            loop.execute(() -> {
+                bodyFinished(unread);
+                responseComplete = true;
+                if (!closed) {
+                    flushWrites();
+                }
+            });
+        } catch (IOException e) {
+            loop.execute(this::close);
+        } catch (RuntimeException e) {
+            // the head is already out, so the truncated chunked body is the only error signal left
+            System.err.println("Error streaming response: " + e.getMessage());
+            loop.execute(this::close);
+        } finally {
+            out.release();
+        }
+    }
+
+    private void startWrite(HttpResponse response, HttpRequest forRequest) {
+        writing = response;
+        writingRequest = forRequest;
+        writeStart = System.nanoTime();
+    }
+
+    /**
+     * Queues bytes produced by a worker, blocking while the client has not drained earlier ones.
+     *
+     * @param pooled whether the buffer comes from the buffer pool; it is then given back once
+     *               written or dropped, including when this method fails
+     */
+    void enqueueFromWorker(ByteBuffer data, boolean pooled) throws IOException {
+        int size = data.remaining();
+        synchronized (streamLock) {
+            while (streamPendingBytes > STREAM_HIGH_WATERMARK && !closed) {
+                try {
+                    streamLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    releaseIfPooled(data, pooled);
+                    throw new InterruptedIOException("Interrupted while streaming response");
+                }
+            }
+            if (closed) {
+                releaseIfPooled(data, pooled);
+                throw new IOException("Connection closed");
+            }
+            streamPendingBytes += size;
+        }
+
+        OutboundData queued = new OutboundData.BufferData(data) {
+            @Override
+            public void release() {
+                streamDrained(size);
+                releaseIfPooled(data, pooled);
+            }
+        };
+        loop.execute(() -> {
+            if (closed) {
+                // the queue was already released
+                queued.release();
+                return;
+            }
+            writeQueue.add(queued);
+            flushWrites();
+        });
+    }
+
+    private static void releaseIfPooled(ByteBuffer data, boolean pooled) {
+        if (pooled) {
+            BufferPool.shared().release(data);
+        }
+    }
+
+    private void streamDrained(long bytes) {
+        synchronized (streamLock) {
+            streamPendingBytes -= bytes;
+            streamLock.notifyAll();
+        }
+    }
+
+    private void flushWrites() {
+        try {
+            while (!writeQueue.isEmpty()) {
+                OutboundData data = writeQueue.peekFirst();
+                if (!data.writeTo(transport)) {
+                    key.interestOps(SelectionKey.OP_WRITE | bodyInterest());
+                    return;
+                }
+                writeQueue.pollFirst().release();
+            }
+            if (tls != null && !tls.flush()) {
+                key.interestOps(SelectionKey.OP_WRITE | bodyInterest());
+                return;
+            }
+        } catch (IOException e) {
+            close();
+            return;
+        }
+
+        lastActivity = System.currentTimeMillis();
+        if (!responseComplete) {
+            // the worker is still handling the request or producing a streaming response
+            key.interestOps(bodyInterest());
+            return;
+        }
+        if (writing != null) {
+            loop.getRequestHandler().recordResponse(writingRequest, writing, System.nanoTime() - writeStart);
+            writing = null;
+            writingRequest = null;
+        }
+        processing = false;
+        if (requestOpen) {
+            requestOpen = false;
+            loop.getRequestHandler().requestFinished(true);
+        }
+        if (!keepAlive) {
+            if (unreadBody || discardRemaining > 0) {
+                startLingeringClose();
+            } else {
+                close();
+            }
+            return;
+        }
+        key.interestOps(SelectionKey.OP_READ);
+        processNextRequest();
+        if (tls != null && !processing && !closed && tls.hasBufferedInput()) {
+            onReadable();
+        }
+    }
+
+    private int bodyInterest() {
+        return bodyWaiting ? SelectionKey.OP_READ : 0;
+    }
+
+    /**
+     * Reads more of a request body for the worker waiting on it. Runs on the loop, which owns
+     * the transport; the worker is woken once there are bytes or the client has closed.
+     */
+    private void readBodyData() {
+        if (closed) {
+            return;
+        }
+        synchronized (bodyLock) {
+            if (bodyWaiting) {
+                if (readBuffer == null) {
+                    readBuffer = loop.acquireReadBuffer();
+                }
+                int read;
+                try {
+                    do {
+                        read = transport.read(readBuffer);
+                    } while (tls != null && read > 0 && readBuffer.hasRemaining());
+                } catch (IOException e) {
+                    read = -1;
+                }
+                if (read < 0) {
+                    bodyEnded = true;
+                }
+                if (bodyEnded || readBuffer.position() > 0) {
+                    lastActivity = System.currentTimeMillis();
+                    bodyWaiting = false;
+                    bodyLock.notifyAll();
+                }
+            }
+        }
+        key.interestOps((writeQueue.isEmpty() ? 0 : SelectionKey.OP_WRITE) | bodyInterest());
+    }
+
+    /**
+     * The request body as the worker sees it: bytes taken from the read buffer, which the loop
+     * refills on request. Bytes beyond what is asked for stay in the buffer for the next head.
+     */
+    private final class BodySource extends InputStream {
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            long deadline = System.currentTimeMillis() + loop.getConfig().getKeepAliveTimeoutMillis();
+            synchronized (bodyLock) {
+                while (true) {
+                    if (closed) {
+                        throw new IOException("Connection closed");
+                    }
+                    if (readBuffer != null && readBuffer.position() > 0) {
+                        readBuffer.flip();
+                        int count = Math.min(len, readBuffer.remaining());
+                        readBuffer.get(b, off, count);
+                        readBuffer.compact();
+                        return count;
+                    }
+                    if (bodyEnded) {
+                        return -1;
+                    }
+                    if (!bodyWaiting) {
+                        bodyWaiting = true;
+                        loop.execute(NioConnection.this::readBodyData);
+                    }
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new SocketTimeoutException("Timed out reading the request body");
+                    }
+                    try {
+                        bodyLock.wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while reading the request body");
+                    }
+                }
+            }
+        }
+
+        @Override
+        public int available() {
+            synchronized (bodyLock) {
+                return readBuffer != null ? readBuffer.position() : 0;
+            }
+        }
+    }
+
+    /**
+     * Closes our side first and keeps reading what the client still sends until it closes or the
+     * idle timeout expires. Closing with unread bytes would reset the connection and could
+     * destroy the response before the client has read it.
+     */
+    private void startLingeringClose() {
+        try {
+            if (tls != null) {
+                tls.close();
+            }
+            channel.shutdownOutput();
+        } catch (IOException e) {
+            close();
+            return;
+        }
+        lingering = true;
+        if (readBuffer != null) {
+            loop.releaseReadBuffer(readBuffer);
+            readBuffer = null;
+        }
+        key.interestOps(SelectionKey.OP_READ);
+    }
+
+    private void drainLingering() {
+        ByteBuffer scratch = loop.acquireReadBuffer();
+        try {
+            int read;
+            while ((read = channel.read(scratch)) > 0) {
+                scratch.clear();
+            }
+            if (read < 0) {
+                close();
+            }
+        } catch (IOException e) {
+            close();
+        } finally {
+            loop.releaseReadBuffer(scratch);
+        }
+    }
+
+    /**
+     * Returns true when a TLS handshake has been running since before the cutoff.
+     */
+    boolean isHandshakeStartedBefore(long cutoff) {
+        return handshaking && openedAt < cutoff;
+    }
+
+    /**
+     * Returns true when a request head has been arriving since before the cutoff.
+     */
+    boolean isHeadStartedBefore(long cutoff) {
+        return !processing && headStartedAt != 0 && headStartedAt < cutoff;
+    }
+
+    /**
+     * Answers a client too slow to send its request head with 408 and closes the connection
+     * without waiting for more bytes from it.
+     */
+    void timeOutHead() {
+        processing = true;
+        headStartedAt = 0;
+        unreadBody = false;
+        discardRemaining = 0;
+        HttpResponse response = HttpResponse.error(408);
+        loop.getRequestHandler().applyConnectionHeaders(response, false, served);
+        loop.getRequestHandler().logAccess(remoteAddress, null, response);
+        sendResponse(response, null, false);
+    }
+
+    /**
+     * Returns true when the connection has no request in progress and no activity since the cutoff.
+     */
+    boolean isIdleSince(long cutoff) {
+        return !processing && lastActivity < cutoff;
+    }
+
+    /**
+     * Returns true when the connection can be closed without cutting off a request or a response.
+     */
+    boolean isBetweenRequests() {
+        return !processing && !lingering;
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (requestOpen) {
+            requestOpen = false;
+            loop.getRequestHandler().requestFinished(false);
+        }
+        key.cancel();
+        if (tls != null && !handshaking) {
+            tls.close();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing channel: " + e.getMessage());
+        }
+        synchronized (bodyLock) {
+            if (readBuffer != null) {
+                loop.releaseReadBuffer(readBuffer);
+                readBuffer = null;
+            }
+            bodyLock.notifyAll();
+        }
+        for (OutboundData data : writeQueue) {
+            data.release();
+        }
+        writeQueue.clear();
+        synchronized (streamLock) {
+            streamLock.notifyAll();
+        }
+        loop.connectionClosed(this);
+    }
+
+    private void releaseReadBufferIfEmpty() {
+        if (readBuffer.position() == 0) {
+            loop.releaseReadBuffer(readBuffer);
+            readBuffer = null;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package co.edu.escuelaing.webframe.http.nio;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import co.edu.escuelaing.webframe.http.DrainReport;
+import co.edu.escuelaing.webframe.http.HttpRequestHandler;
+import co.edu.escuelaing.webframe.http.RequestDispatcher;
+import co.edu.escuelaing.webframe.http.ServerConfig;
+import co.edu.escuelaing.webframe.http.ServerEngine;
+import co.edu.escuelaing.webframe.http.WorkerExecutors;
+import co.edu.escuelaing.webframe.http.tls.TlsContext;
+import co.edu.escuelaing.webframe.ioc.SimpleIoCContainer;
+
+/**
+ * Non-blocking HTTP server built on {@link java.nio.channels.Selector}.
+ * A dedicated thread accepts connections and spreads them over a small set of event loops;
+ * request handling runs on the worker executor so slow handlers never stall a loop.
+ */
+public class NioHttpServer implements ServerEngine {
+
+    private final int port;
+    private final ServerConfig config;
+    private final HttpRequestHandler requestHandler;
+    private ServerSocketChannel serverChannel;
+    private ExecutorService workers;
+    private EventLoop[] loops;
+    private Thread[] loopThreads;
+    private volatile boolean running = false;
+    private DrainReport drainReport;
+
+    private static final long DRAIN_POLL_MILLIS = 10;
+
+    public NioHttpServer(int port, SimpleIoCContainer container, ServerConfig config) {
+        this.port = port;
+        this.config = config;
+        this.requestHandler = new HttpRequestHandler(new RequestDispatcher(container), config);
+    }
+
+    @Override
+    public void start() throws IOException {
+        TlsContext tls = TlsContext.create(config, "http/1.1");
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        workers = WorkerExecutors.create(config);
+        WorkerExecutors.registerGauges(workers, requestHandler.getMetrics());
+
+        loops = new EventLoop[config.getIoThreads()];
+        loopThreads = new Thread[loops.length];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop(requestHandler, workers, config, tls);
+            loopThreads[i] = new Thread(loops[i], "nio-loop-" + (i + 1));
+            loopThreads[i].setDaemon(true);
+            loopThreads[i].start();
+        }
+        running = true;
+
+        System.out.println("NIO server started on port: " + getLocalPort() + " with " + loops.length + " event loops");
+        System.out.println("Server running on: " + (tls != null ? "https" : "http") + "://localhost:" + getLocalPort());
+
+        int next = 0;
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                loops[next].register(channel);
+                next = (next + 1) % loops.length;
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Error accepting connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        shutdown(config.getDrainTimeoutMillis());
+    }
+
+    @Override
+    public synchronized DrainReport shutdown(long drainTimeoutMillis) {
+        if (drainReport != null) {
+            return drainReport;
+        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMillis);
+        running = false;
+        requestHandler.startDraining();
+        if (serverChannel != null && serverChannel.isOpen()) {
+            try {
+                serverChannel.close();
+            } catch (IOException e) {
+                System.err.println("Error stopping server: " + e.getMessage());
+            }
+        }
+        if (loops != null) {
+            for (EventLoop loop : loops) {
+                loop.startDraining();
+            }
+            while (openConnections() > 0 && System.nanoTime() < deadline) {
+                try {
+                    Thread.sleep(DRAIN_POLL_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            // loops close whatever is still open when they stop
+            for (EventLoop loop : loops) {
+                loop.shutdown();
+            }
+            for (Thread loopThread : loopThreads) {
+                try {
+                    loopThread.join(5000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        if (workers != null) {
+            workers.shutdown();
+            try {
+                workers.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        drainReport = requestHandler.drainReport(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        try {
+            requestHandler.close();
+        } catch (IOException e) {
+            System.err.println("Error releasing request handler: " + e.getMessage());
+        }
+        System.out.println("Server stopped: " + drainReport);
+        return drainReport;
+    }
+
+    private int openConnections() {
+        int open = 0;
+        for (EventLoop loop : loops) {
+            open += loop.getConnectionCount();
+        }
+        return open;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getLocalPort() {
+        try {
+            if (serverChannel != null && serverChannel.isOpen()) {
+                return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading local address: " + e.getMessage());
+        }
+        return port;
+    }
+
+    public RequestDispatcher getDispatcher() {
+        return requestHandler.getDispatcher();
+    }
+
+    public void setDispatcher(RequestDispatcher dispatcher) {
+        requestHandler.setDispatcher(dispatcher);
+    }
+}
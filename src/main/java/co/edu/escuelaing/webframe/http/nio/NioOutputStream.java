@@ -0,0 +1,76 @@
+package co.edu.escuelaing.webframe.http.nio;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import co.edu.escuelaing.webframe.http.buffer.BufferPool;
+
+/**
+ * Output stream used by worker threads to write a streaming response to a non-blocking connection.
+ * Bytes are collected in a pooled direct buffer, which the socket writes without another copy,
+ * and handed to the connection's event loop in blocks; the loop gives each block back to the
+ * pool once it is written.
+ */
+final class NioOutputStream extends OutputStream {
+
+    private static final int BLOCK_SIZE = 8192;
+
+    private final NioConnection connection;
+    private ByteBuffer block;
+
+    NioOutputStream(NioConnection connection) {
+        this.connection = connection;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        block().put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        while (length > 0) {
+            ByteBuffer current = block();
+            int copied = Math.min(length, current.remaining());
+            current.put(data, offset, copied);
+            offset += copied;
+            length -= copied;
+        }
+    }
+
+    /**
+     * Hands the buffered block to the event loop; may block while the client is slow.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (block == null || block.position() == 0) {
+            return;
+        }
+        ByteBuffer data = block;
+        block = null;
+        data.flip();
+        connection.enqueueFromWorker(data, true);
+    }
+
+    /**
+     * Gives back a block that was never handed to the loop, for a response that failed.
+     */
+    void release() {
+        if (block != null) {
+            BufferPool.shared().release(block);
+            block = null;
+        }
+    }
+
+    private ByteBuffer block() throws IOException {
+        if (block != null && !block.hasRemaining()) {
+            flush();
+        }
+        if (block == null) {
+            block = BufferPool.shared().acquireDirect(BLOCK_SIZE);
+            block.limit(BLOCK_SIZE);
+        }
+        return block;
+    }
+}
@@ -0,0 +1,100 @@
+package co.edu.escuelaing.webframe.http.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import co.edu.escuelaing.webframe.http.FileRegion;
+
+/**
+ * Data queued for a non-blocking channel, written incrementally as the socket accepts it.
+ */
+interface OutboundData {
+
+    /**
+     * Writes as much as the channel accepts without blocking.
+     *
+     * @return true once everything has been written
+     */
+    boolean writeTo(WritableByteChannel channel) throws IOException;
+
+    /**
+     * Frees resources held by the data, whether or not it was fully written.
+     */
+    void release();
+
+    static OutboundData of(ByteBuffer buffer) {
+        return new BufferData(buffer);
+    }
+
+    static OutboundData of(FileRegion region) {
+        return new FileData(region);
+    }
+
+    class BufferData implements OutboundData {
+        private final ByteBuffer buffer;
+
+        BufferData(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public boolean writeTo(WritableByteChannel channel) throws IOException {
+            channel.write(buffer);
+            return !buffer.hasRemaining();
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+
+    /**
+     * File region sent with {@link FileChannel#transferTo}, keeping track of the position
+     * between partial transfers. Over TLS the transfer copies through a buffer, as the bytes
+     * must be encrypted.
+     */
+    final class FileData implements OutboundData {
+        private final FileRegion region;
+        private FileChannel file;
+        private long position;
+        private long end;
+
+        FileData(FileRegion region) {
+            this.region = region;
+        }
+
+        @Override
+        public boolean writeTo(WritableByteChannel channel) throws IOException {
+            if (file == null) {
+                file = region.open();
+                position = region.getPosition();
+                end = position + region.getCount();
+            }
+            while (position < end) {
+                long sent = file.transferTo(position, end - position, channel);
+                if (sent == 0) {
+                    if (position >= file.size()) {
+                        throw new IOException("File truncated while sending: " + region.getFile());
+                    }
+                    return false;
+                }
+                position += sent;
+            }
+            return true;
+        }
+
+        @Override
+        public void release() {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing file: " + e.getMessage());
+                }
+                file = null;
+            }
+        }
+    }
+}
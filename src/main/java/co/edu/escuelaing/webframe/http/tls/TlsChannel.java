@@ -0,0 +1,367 @@
+package co.edu.escuelaing.webframe.http.tls;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+
+/**
+ * TLS over a pair of byte channels, driven by an {@link SSLEngine}, so the same code serves
+ * blocking connections and selector based ones.
+ * <p>
+ * Over blocking channels every call completes before returning. Over non-blocking channels calls
+ * return early instead: {@link #read} and {@link #write} return 0, and the caller waits for the
+ * socket to become readable, or writable when {@link #hasPendingOutput()} is true, and retries.
+ * The handshake runs implicitly on the first read or write, or explicitly with {@link #handshake()};
+ * its CPU heavy steps can be handed to an executor with {@link #setTaskExecutor}.
+ */
+public final class TlsChannel implements ByteChannel {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final SSLEngine engine;
+    private final ReadableByteChannel in;
+    private final WritableByteChannel out;
+
+    /** Ciphertext received but not yet decrypted, in write mode. */
+    private ByteBuffer netIn;
+    /** Ciphertext waiting to be sent, in read mode. Guarded by {@link #outputLock}. */
+    private ByteBuffer netOut;
+    /** Plaintext decrypted but not yet read, in write mode. */
+    private ByteBuffer appIn;
+
+    /**
+     * Serializes encryption and sending: over HTTP/2 one thread reads while others write, and a
+     * read may itself have to answer post-handshake messages.
+     */
+    private final Object outputLock = new Object();
+
+    private Executor taskExecutor;
+    private Runnable afterTasks;
+    private volatile boolean taskRunning;
+    private boolean handshakeComplete;
+    /** Set once the initial handshake is done; later handshake messages are left to the reader. */
+    private volatile boolean established;
+    private boolean inputClosed;
+    private boolean closed;
+
+    public TlsChannel(SSLEngine engine, ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        this.engine = engine;
+        this.in = in;
+        this.out = out;
+        int packetSize = engine.getSession().getPacketBufferSize();
+        this.netIn = ByteBuffer.allocate(packetSize);
+        this.netOut = ByteBuffer.allocate(packetSize);
+        this.netOut.flip();
+        this.appIn = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
+        engine.beginHandshake();
+    }
+
+    /**
+     * Runs the handshake's delegated tasks (key exchange and certificate work) on an executor
+     * instead of the calling thread. While they run the channel makes no progress; once they are
+     * done {@code afterTasks} is called so the owner can resume the handshake.
+     */
+    public void setTaskExecutor(Executor taskExecutor, Runnable afterTasks) {
+        this.taskExecutor = taskExecutor;
+        this.afterTasks = afterTasks;
+    }
+
+    /**
+     * Advances the handshake as far as possible.
+     *
+     * @return true once the handshake is complete and its last messages are sent
+     * @throws IOException if the handshake fails or the peer closes the connection
+     */
+    public boolean handshake() throws IOException {
+        while (!handshakeComplete) {
+            if (taskRunning || !flush()) {
+                return false;
+            }
+            switch (engine.getHandshakeStatus()) {
+                case NEED_TASK:
+                    if (!runDelegatedTasks()) {
+                        return false;
+                    }
+                    break;
+                case NEED_WRAP:
+                    if (wrap(EMPTY).getStatus() == SSLEngineResult.Status.CLOSED) {
+                        throw new SSLException("TLS handshake aborted");
+                    }
+                    break;
+                case NEED_UNWRAP:
+                case NEED_UNWRAP_AGAIN:
+                    int progress = unwrap(true);
+                    if (progress < 0) {
+                        throw new EOFException("Connection closed during TLS handshake");
+                    }
+                    if (progress == 0) {
+                        return false;
+                    }
+                    break;
+                default:
+                    handshakeComplete = true;
+            }
+        }
+        if (!flush()) {
+            return false;
+        }
+        established = true;
+        return true;
+    }
+
+    /**
+     * Returns true while delegated handshake tasks run on the task executor.
+     */
+    public boolean isTaskRunning() {
+        return taskRunning;
+    }
+
+    /**
+     * Returns the protocol chosen by ALPN, or null when the client did not ask for one.
+     */
+    public String getApplicationProtocol() {
+        String protocol = engine.getApplicationProtocol();
+        return protocol == null || protocol.isEmpty() ? null : protocol;
+    }
+
+    /**
+     * Reads decrypted bytes. Records already received are decrypted until {@code dst} is full;
+     * the underlying channel is only read when nothing was available.
+     *
+     * @return the number of bytes read, or -1 once the peer has closed
+     */
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if ((!established || !handshakeComplete) && !handshake()) {
+            return 0;
+        }
+        int total = 0;
+        while (dst.hasRemaining()) {
+            if (appIn.position() > 0) {
+                total += drainPlaintext(dst);
+                continue;
+            }
+            if (inputClosed) {
+                break;
+            }
+            int progress = unwrap(total == 0);
+            if (progress < 0) {
+                break;
+            }
+            if (engine.getHandshakeStatus() != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING) {
+                // post-handshake messages, such as a TLS 1.3 key update, may need an answer
+                handshakeComplete = false;
+                if (!handshake()) {
+                    break;
+                }
+            }
+            if (progress == 0) {
+                break;
+            }
+        }
+        return total == 0 && inputClosed && appIn.position() == 0 ? -1 : total;
+    }
+
+    /**
+     * Returns true when received bytes are buffered, so a read may return data even though
+     * the socket has nothing new to read.
+     */
+    public boolean hasBufferedInput() {
+        return appIn.position() > 0 || netIn.position() > 0;
+    }
+
+    private int drainPlaintext(ByteBuffer dst) {
+        appIn.flip();
+        int count = Math.min(dst.remaining(), appIn.remaining());
+        ByteBuffer chunk = appIn.duplicate();
+        chunk.limit(chunk.position() + count);
+        dst.put(chunk);
+        appIn.position(appIn.position() + count);
+        appIn.compact();
+        return count;
+    }
+
+    /**
+     * Encrypts and sends bytes. Over a non-blocking channel the bytes accepted may still be
+     * waiting in the channel's own buffer; see {@link #flush()}.
+     */
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+        if (!established && !handshake()) {
+            return 0;
+        }
+        synchronized (outputLock) {
+            int written = 0;
+            while (src.hasRemaining() && flush()) {
+                SSLEngineResult result = wrap(src);
+                if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+                    throw new SSLException("TLS session closed");
+                }
+                written += result.bytesConsumed();
+            }
+            flush();
+            return written;
+        }
+    }
+
+    /**
+     * Sends encrypted bytes still buffered.
+     *
+     * @return true when nothing is left to send
+     */
+    public boolean flush() throws IOException {
+        synchronized (outputLock) {
+            while (netOut.hasRemaining()) {
+                if (out.write(netOut) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    public boolean hasPendingOutput() {
+        synchronized (outputLock) {
+            return netOut.hasRemaining();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    /**
+     * Sends close_notify, as far as the channel accepts it without blocking. The underlying
+     * channels are left open.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        synchronized (outputLock) {
+            engine.closeOutbound();
+            try {
+                while (!engine.isOutboundDone() && flush()) {
+                    wrap(EMPTY);
+                }
+                flush();
+            } catch (IOException e) {
+                // the peer is already gone
+            }
+        }
+    }
+
+    private SSLEngineResult wrap(ByteBuffer src) throws IOException {
+        synchronized (outputLock) {
+            netOut.compact();
+            try {
+                while (true) {
+                    SSLEngineResult result = engine.wrap(src, netOut);
+                    if (result.getStatus() != SSLEngineResult.Status.BUFFER_OVERFLOW) {
+                        return result;
+                    }
+                    netOut = enlarge(netOut, engine.getSession().getPacketBufferSize());
+                }
+            } finally {
+                netOut.flip();
+            }
+        }
+    }
+
+    /**
+     * Decrypts one record from {@code netIn} into {@code appIn}.
+     *
+     * @param mayRead whether the channel may be read when no whole record is buffered
+     * @return 1 after progress, 0 when more bytes are needed and none could be read, -1 when the
+     *         peer has closed
+     */
+    private int unwrap(boolean mayRead) throws IOException {
+        netIn.flip();
+        SSLEngineResult result;
+        try {
+            result = engine.unwrap(netIn, appIn);
+        } finally {
+            netIn.compact();
+        }
+        switch (result.getStatus()) {
+            case OK:
+                return 1;
+            case BUFFER_OVERFLOW:
+                appIn = enlarge(appIn, engine.getSession().getApplicationBufferSize());
+                return 1;
+            case BUFFER_UNDERFLOW:
+                if (!mayRead) {
+                    return 0;
+                }
+                if (!netIn.hasRemaining()) {
+                    netIn = enlarge(netIn, engine.getSession().getPacketBufferSize());
+                }
+                int read = in.read(netIn);
+                if (read < 0) {
+                    inputClosed = true;
+                    return -1;
+                }
+                return read > 0 ? 1 : 0;
+            default:
+                inputClosed = true;
+                return -1;
+        }
+    }
+
+    private boolean runDelegatedTasks() {
+        if (taskExecutor == null) {
+            runTasks();
+            return true;
+        }
+        taskRunning = true;
+        try {
+            taskExecutor.execute(() -> {
+                try {
+                    runTasks();
+                } finally {
+                    taskRunning = false;
+                    afterTasks.run();
+                }
+            });
+            return false;
+        } catch (RejectedExecutionException e) {
+            taskRunning = false;
+            runTasks();
+            return true;
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = engine.getDelegatedTask()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * Returns a buffer in write mode with the contents of {@code buffer} and at least
+     * {@code minFree} bytes free.
+     */
+    private static ByteBuffer enlarge(ByteBuffer buffer, int minFree) {
+        ByteBuffer larger = ByteBuffer.allocate(buffer.position() + Math.max(minFree, buffer.capacity()));
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+}
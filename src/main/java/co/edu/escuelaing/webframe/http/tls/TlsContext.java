@@ -0,0 +1,112 @@
+package co.edu.escuelaing.webframe.http.tls;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSessionContext;
+
+import co.edu.escuelaing.webframe.http.ServerConfig;
+
+/**
+ * Server side TLS settings shared by all connections: the key store, the session cache that lets
+ * returning clients resume instead of running a full handshake, and the ALPN protocols offered.
+ * Session tickets are the exception: the JDK only has a JVM-wide switch for them, so they are
+ * set once per process by the first server that starts with TLS.
+ */
+public final class TlsContext {
+
+    /**
+     * JDK switch for stateless resumption with session tickets (TLS 1.2 and 1.3). It is read when
+     * the JDK's TLS classes initialize, so it only takes effect if set before the first TLS use.
+     * Neither {@link SSLContext} nor {@link SSLParameters} can override it per server.
+     */
+    static final String SESSION_TICKETS_PROPERTY = "jdk.tls.server.enableSessionTicketExtension";
+
+    /** Set once the session ticket switch has been decided for this JVM. Guarded by the class. */
+    private static boolean sessionTicketsApplied;
+
+    private final SSLContext context;
+    private final String[] applicationProtocols;
+
+    private TlsContext(SSLContext context, String[] applicationProtocols) {
+        this.context = context;
+        this.applicationProtocols = applicationProtocols;
+    }
+
+    /**
+     * Loads the configured key store.
+     *
+     * @param applicationProtocols ALPN protocols in order of preference
+     * @return the context, or null when no key store is configured and TLS is off
+     */
+    public static TlsContext create(ServerConfig config, String... applicationProtocols) throws IOException {
+        if (config.getKeyStore() == null) {
+            return null;
+        }
+        applySessionTickets(config.isTlsSessionTickets());
+        char[] password = config.getKeyStorePassword() != null ? config.getKeyStorePassword().toCharArray() : null;
+        try (InputStream in = Files.newInputStream(Paths.get(config.getKeyStore()))) {
+            KeyStore keyStore = KeyStore.getInstance(config.getKeyStoreType());
+            keyStore.load(in, password);
+            KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keyManagers.init(keyStore, password);
+
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(keyManagers.getKeyManagers(), null, null);
+            SSLSessionContext sessions = context.getServerSessionContext();
+            sessions.setSessionCacheSize(config.getTlsSessionCacheSize());
+            sessions.setSessionTimeout(config.getTlsSessionTimeoutSeconds());
+            return new TlsContext(context, applicationProtocols);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Cannot load key store " + config.getKeyStore() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Sets the JVM-wide session ticket switch the first time a TLS server starts, unless it was
+     * already given on the command line. Later servers cannot change it; when they ask for the
+     * other value they are told so instead of silently changing every SSLContext in the process.
+     */
+    static synchronized void applySessionTickets(boolean enabled) {
+        String current = System.getProperty(SESSION_TICKETS_PROPERTY);
+        if (!sessionTicketsApplied) {
+            sessionTicketsApplied = true;
+            if (current == null) {
+                System.setProperty(SESSION_TICKETS_PROPERTY, String.valueOf(enabled));
+                return;
+            }
+        }
+        if (current != null && Boolean.parseBoolean(current) != enabled) {
+            System.err.println("Session tickets are a JVM-wide setting already " + (enabled ? "disabled" : "enabled")
+                    + " by " + SESSION_TICKETS_PROPERTY + "=" + current + "; server.tlsSessionTickets=" + enabled
+                    + " is ignored");
+        }
+    }
+
+    /**
+     * Creates the engine for one accepted connection.
+     */
+    public SSLEngine newEngine() {
+        SSLEngine engine = context.createSSLEngine();
+        engine.setUseClientMode(false);
+        SSLParameters parameters = engine.getSSLParameters();
+        parameters.setApplicationProtocols(applicationProtocols);
+        engine.setSSLParameters(parameters);
+        return engine;
+    }
+
+    /**
+     * Returns the cache of server sessions available for resumption.
+     */
+    public SSLSessionContext getSessionContext() {
+        return context.getServerSessionContext();
+    }
+}
@@ -0,0 +1,157 @@
+package co.edu.escuelaing.webframe.ioc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import co.edu.escuelaing.webframe.json.JsonBinder;
+import co.edu.escuelaing.webframe.json.JsonReader;
+
+/**
+ * Turns a request body into the value of a {@code @RequestBody} parameter, and form bodies into
+ * fields for {@code @RequestParam} parameters. Everything is decoded as it is read from the
+ * connection; only the resulting values are kept.
+ */
+final class BodyBinder {
+
+    private static final String FORM_TYPE = "application/x-www-form-urlencoded";
+
+    private BodyBinder() {
+    }
+
+    /**
+     * Binds a body to a parameter of the given type, as described on {@code @RequestBody}.
+     *
+     * @param contentType the request's Content-Type, or null
+     */
+    static Object bind(InputStream body, String contentType, Class<?> type, Type genericType) throws IOException {
+        if (type == InputStream.class) {
+            return body;
+        }
+        Charset charset = charset(contentType);
+        if (type == Reader.class) {
+            return new InputStreamReader(body, charset);
+        }
+        if (type == byte[].class) {
+            return body.readAllBytes();
+        }
+        if (type == String.class && !isJson(contentType)) {
+            return new String(body.readAllBytes(), charset);
+        }
+        if (Map.class.isAssignableFrom(type) && isForm(contentType)) {
+            return formFields(body, charset);
+        }
+        PushbackInputStream input = new PushbackInputStream(body);
+        int first = input.read();
+        if (first < 0) {
+            // an empty body binds like JSON null
+            return JsonBinder.convert(null, genericType);
+        }
+        input.unread(first);
+        Object value = new JsonReader(new InputStreamReader(input, charset)).readDocument();
+        return JsonBinder.convert(value, genericType);
+    }
+
+    static boolean isForm(String contentType) {
+        return hasMediaType(contentType, FORM_TYPE);
+    }
+
+    private static boolean isJson(String contentType) {
+        return hasMediaType(contentType, "application/json");
+    }
+
+    private static boolean hasMediaType(String contentType, String mediaType) {
+        if (contentType == null) {
+            return false;
+        }
+        int end = contentType.indexOf(';');
+        return (end >= 0 ? contentType.substring(0, end) : contentType).trim().equalsIgnoreCase(mediaType);
+    }
+
+    /**
+     * Returns the charset parameter of a Content-Type, UTF-8 when it is absent or unknown.
+     */
+    static Charset charset(String contentType) {
+        if (contentType != null) {
+            for (String parameter : contentType.split(";")) {
+                int equals = parameter.indexOf('=');
+                if (equals > 0 && parameter.substring(0, equals).trim().equalsIgnoreCase("charset")) {
+                    String name = parameter.substring(equals + 1).trim().replace("\"", "");
+                    try {
+                        return Charset.forName(name);
+                    } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+                        break;
+                    }
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Decodes an {@code application/x-www-form-urlencoded} body as it is read. Repeated
+     * names keep their last value, as query parameters do.
+     */
+    static Map<String, String> formFields(InputStream body, Charset charset) throws IOException {
+        Map<String, String> fields = new LinkedHashMap<>();
+        ByteArrayOutputStream token = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        String name = null;
+        int escapeDigits = -1;
+        int escaped = 0;
+        int read;
+        while ((read = body.read(buffer)) >= 0) {
+            for (int i = 0; i < read; i++) {
+                int b = buffer[i];
+                if (escapeDigits >= 0) {
+                    int digit = Character.digit(b, 16);
+                    if (digit < 0) {
+                        throw new IOException("Malformed percent escape in form body");
+                    }
+                    escaped = escaped * 16 + digit;
+                    if (++escapeDigits == 2) {
+                        token.write(escaped);
+                        escapeDigits = -1;
+                    }
+                } else if (b == '&') {
+                    addField(fields, name, token, charset);
+                    name = null;
+                } else if (b == '=' && name == null) {
+                    name = token.toString(charset);
+                    token.reset();
+                } else if (b == '%') {
+                    escapeDigits = 0;
+                    escaped = 0;
+                } else {
+                    token.write(b == '+' ? ' ' : b);
+                }
+            }
+        }
+        if (escapeDigits >= 0) {
+            throw new IOException("Malformed percent escape in form body");
+        }
+        addField(fields, name, token, charset);
+        return fields;
+    }
+
+    private static void addField(Map<String, String> fields, String name, ByteArrayOutputStream token,
+            Charset charset) {
+        String text = token.toString(charset);
+        token.reset();
+        if (name != null) {
+            fields.put(name, text);
+        } else if (!text.isEmpty()) {
+            fields.put(text, "");
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package co.edu.escuelaing.webframe.ioc;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import co.edu.escuelaing.webframe.processor.ControllerIndexProcessor;
+
+/**
+ * Controllers and routes recorded at compile time by {@link ControllerIndexProcessor}, merged from
+ * every index on the classpath (one per jar or class folder).
+ */
+final class ControllerIndex {
+
+    /**
+     * A mapped handler method as recorded in the index.
+     */
+    static final class Entry {
+        final String httpMethod;
+        final String path;
+        final String methodName;
+        final String[] parameterTypes;
+
+        Entry(String httpMethod, String path, String methodName, String[] parameterTypes) {
+            this.httpMethod = httpMethod;
+            this.path = path;
+            this.methodName = methodName;
+            this.parameterTypes = parameterTypes;
+        }
+    }
+
+    private final Map<String, List<Entry>> controllers;
+
+    private ControllerIndex(Map<String, List<Entry>> controllers) {
+        this.controllers = controllers;
+    }
+
+    /**
+     * Reads all indexes visible to the class loader; the result is empty when there are none.
+     */
+    static ControllerIndex load(ClassLoader loader) throws IOException {
+        Map<String, List<Entry>> controllers = new LinkedHashMap<>();
+        Enumeration<URL> indexes = loader.getResources(ControllerIndexProcessor.INDEX);
+        while (indexes.hasMoreElements()) {
+            URL index = indexes.nextElement();
+            try (InputStream in = index.openStream()) {
+                read(in, controllers);
+            }
+        }
+        return new ControllerIndex(controllers);
+    }
+
+    static ControllerIndex read(InputStream in) throws IOException {
+        Map<String, List<Entry>> controllers = new LinkedHashMap<>();
+        read(in, controllers);
+        return new ControllerIndex(controllers);
+    }
+
+    private static void read(InputStream in, Map<String, List<Entry>> controllers) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\t");
+            List<Entry> routes = controllers.computeIfAbsent(fields[0], name -> new ArrayList<>());
+            if (fields.length >= 4) {
+                routes.add(new Entry(fields[1], fields[2], fields[3], Arrays.copyOfRange(fields, 4, fields.length)));
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return controllers.isEmpty();
+    }
+
+    /**
+     * Returns the indexed controllers in a package or its subpackages.
+     */
+    List<String> controllersIn(String packageName) {
+        String prefix = packageName.isEmpty() ? "" : packageName + ".";
+        List<String> names = new ArrayList<>();
+        for (String name : controllers.keySet()) {
+            if (name.startsWith(prefix)) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Returns the routes recorded for a controller, or null if the controller is not indexed.
+     */
+    List<Entry> routes(String controllerClassName) {
+        List<Entry> routes = controllers.get(controllerClassName);
+        return routes != null ? Collections.unmodifiableList(routes) : null;
+    }
+}
@@ -0,0 +1,171 @@
+package co.edu.escuelaing.webframe.ioc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.Type;
+import java.util.Map;
+
+import co.edu.escuelaing.webframe.annotations.PathVariable;
+import co.edu.escuelaing.webframe.annotations.RequestBody;
+import co.edu.escuelaing.webframe.annotations.RequestParam;
+
+/**
+ * Precompiled call of a handler method: a {@link MethodHandle} bound to the controller
+ * instance plus a binding plan saying where each argument comes from. Everything that
+ * needs reflection or annotation lookups happens once, when the route is registered.
+ */
+public final class HandlerInvoker {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final MethodHandle handle;
+    private final Binding[] bindings;
+    /** True when form fields in the body may stand in for query parameters. */
+    private final boolean readsForm;
+    private final boolean bindsBody;
+
+    /**
+     * Source of one handler argument.
+     */
+    private static final class Binding {
+        final String queryName;
+        final String defaultValue;
+        final int pathIndex;
+        /** Type of the parameter bound to the request body, or null for other sources. */
+        final Class<?> bodyType;
+        /** Generic type of the body parameter, resolved once like {@link #bodyType}. */
+        final Type bodyGenericType;
+
+        Binding(String queryName, String defaultValue, int pathIndex, Parameter body) {
+            this.queryName = queryName;
+            this.defaultValue = defaultValue;
+            this.pathIndex = pathIndex;
+            this.bodyType = body != null ? body.getType() : null;
+            this.bodyGenericType = body != null ? body.getParameterizedType() : null;
+        }
+
+        Object resolve(Map<String, String> queryParams, RouteMatch match) {
+            if (pathIndex >= 0) {
+                return match.getVariable(pathIndex);
+            }
+            if (queryName == null) {
+                return null;
+            }
+            String value = queryParams.get(queryName);
+            return value == null || value.isEmpty() ? defaultValue : value;
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException when the method is not accessible or a path variable
+     *                                  is not part of the route pattern
+     */
+    HandlerInvoker(Object controller, Method method, Route route) {
+        try {
+            this.handle = LOOKUP.unreflect(method)
+                    .bindTo(controller)
+                    .asSpreader(Object[].class, method.getParameterCount())
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Handler " + method + " is not accessible", e);
+        }
+
+        Parameter[] parameters = method.getParameters();
+        bindings = new Binding[parameters.length];
+        boolean hasRequestParams = false;
+        boolean hasBody = false;
+        for (int i = 0; i < parameters.length; i++) {
+            RequestParam requestParam = parameters[i].getAnnotation(RequestParam.class);
+            PathVariable pathVariable = parameters[i].getAnnotation(PathVariable.class);
+            if (parameters[i].isAnnotationPresent(RequestBody.class)) {
+                if (hasBody) {
+                    throw new IllegalArgumentException("Handler " + method + " has more than one @RequestBody");
+                }
+                hasBody = true;
+                bindings[i] = new Binding(null, null, -1, parameters[i]);
+            } else if (requestParam != null) {
+                String defaultValue = requestParam.defaultValue();
+                bindings[i] = new Binding(requestParam.value(), defaultValue.isEmpty() ? null : defaultValue, -1, null);
+                hasRequestParams = true;
+            } else if (pathVariable != null) {
+                int index = route.variableIndex(pathVariable.value());
+                if (index < 0) {
+                    throw new IllegalArgumentException("Path variable '" + pathVariable.value()
+                            + "' is not declared in " + route.getPattern());
+                }
+                bindings[i] = new Binding(null, null, index, null);
+            } else {
+                bindings[i] = new Binding(null, null, -1, null);
+            }
+        }
+        readsForm = hasRequestParams && !hasBody;
+        bindsBody = hasBody;
+    }
+
+    /**
+     * Returns true when a parameter is bound to the request body with {@code @RequestBody}.
+     */
+    boolean bindsBody() {
+        return bindsBody;
+    }
+
+    /**
+     * Builds the argument array for a request from its query parameters and path variables.
+     * A {@code @RequestBody} parameter, if any, is bound to null.
+     */
+    public Object[] bindArguments(Map<String, String> queryParams, RouteMatch match) {
+        Object[] args = new Object[bindings.length];
+        for (int i = 0; i < bindings.length; i++) {
+            args[i] = bindings[i].resolve(queryParams, match);
+        }
+        return args;
+    }
+
+    /**
+     * Builds the argument array for a request that may have a body. The body is bound to the
+     * {@code @RequestBody} parameter; without one, the fields of a form body are used for
+     * {@code @RequestParam} parameters the query string does not provide.
+     *
+     * @param body        the request body, or null when there is none
+     * @param contentType the request's Content-Type, or null
+     * @throws IOException when the body cannot be read or does not fit its parameter
+     */
+    public Object[] bindArguments(Map<String, String> queryParams, RouteMatch match, InputStream body,
+            String contentType) throws IOException {
+        if (body == null) {
+            return bindArguments(queryParams, match);
+        }
+        if (readsForm && BodyBinder.isForm(contentType)) {
+            Map<String, String> fields = BodyBinder.formFields(body, BodyBinder.charset(contentType));
+            if (!fields.isEmpty()) {
+                fields.putAll(queryParams);
+                queryParams = fields;
+            }
+        }
+        Object[] args = new Object[bindings.length];
+        for (int i = 0; i < bindings.length; i++) {
+            Binding binding = bindings[i];
+            args[i] = binding.bodyType != null
+                    ? BodyBinder.bind(body, contentType, binding.bodyType, binding.bodyGenericType)
+                    : binding.resolve(queryParams, match);
+        }
+        return args;
+    }
+
+    /**
+     * Calls the handler, wrapping anything it throws like {@link Method#invoke} does.
+     */
+    public Object invoke(Object[] args) throws InvocationTargetException {
+        try {
+            return (Object) handle.invokeExact(args);
+        } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package co.edu.escuelaing.webframe.ioc;
+
+import java.lang.reflect.Method;
+
+import co.edu.escuelaing.webframe.annotations.DeleteMapping;
+import co.edu.escuelaing.webframe.annotations.GetMapping;
+import co.edu.escuelaing.webframe.annotations.PostMapping;
+import co.edu.escuelaing.webframe.annotations.PutMapping;
+
+/**
+ * The HTTP method, path and response type a handler is mapped to by one of the
+ * {@code @GetMapping}, {@code @PostMapping}, {@code @PutMapping} or {@code @DeleteMapping} annotations.
+ */
+final class Mapping {
+
+    final String httpMethod;
+    final String path;
+    /** Declared Content-Type, or null to derive it from the result. */
+    final String produces;
+
+    private Mapping(String httpMethod, String path, String produces) {
+        this.httpMethod = httpMethod;
+        this.path = path;
+        this.produces = produces.isEmpty() ? null : produces;
+    }
+
+    /**
+     * Returns the mapping of a method, or null when it is not a handler.
+     */
+    static Mapping of(Method method) {
+        GetMapping get = method.getAnnotation(GetMapping.class);
+        if (get != null) {
+            return new Mapping("GET", get.value(), get.produces());
+        }
+        PostMapping post = method.getAnnotation(PostMapping.class);
+        if (post != null) {
+            return new Mapping("POST", post.value(), post.produces());
+        }
+        PutMapping put = method.getAnnotation(PutMapping.class);
+        if (put != null) {
+            return new Mapping("PUT", put.value(), put.produces());
+        }
+        DeleteMapping delete = method.getAnnotation(DeleteMapping.class);
+        if (delete != null) {
+            return new Mapping("DELETE", delete.value(), delete.produces());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,115 @@
+package co.edu.escuelaing.webframe.ioc;
+
+import java.lang.reflect.Method;
+
+import co.edu.escuelaing.webframe.annotations.Cacheable;
+import co.edu.escuelaing.webframe.annotations.ETag;
+
+/**
+ * A registered handler: the controller instance, its method and the pattern it was mapped to,
+ * together with the precompiled invoker and the handler's ETag and caching settings.
+ */
+public final class Route {
+
+    private final String httpMethod;
+    private final String pattern;
+    private final Object controller;
+    private final Method handlerMethod;
+    private final String[] variableNames;
+    private final HandlerInvoker invoker;
+    private final ETag etag;
+    private final String produces;
+    private final Cacheable cacheable;
+    private final String description;
+
+    /**
+     * @throws IllegalArgumentException for malformed patterns, handlers that cannot be bound, and
+     *                                  {@link Cacheable} handlers that are not side-effect free GETs
+     */
+    public Route(String httpMethod, String pattern, Object controller, Method handlerMethod) {
+        this.httpMethod = httpMethod;
+        this.pattern = pattern;
+        this.controller = controller;
+        this.handlerMethod = handlerMethod;
+        this.variableNames = RouteIndex.variableNames(pattern);
+        this.invoker = new HandlerInvoker(controller, handlerMethod, this);
+
+        ETag methodETag = handlerMethod.getAnnotation(ETag.class);
+        this.etag = methodETag != null ? methodETag : handlerMethod.getDeclaringClass().getAnnotation(ETag.class);
+
+        Mapping mapping = Mapping.of(handlerMethod);
+        this.produces = mapping != null ? mapping.produces : null;
+        this.cacheable = handlerMethod.getAnnotation(Cacheable.class);
+        if (cacheable != null && (!"GET".equals(httpMethod) || invoker.bindsBody())) {
+            // a cached answer would skip the handler's side effects, and a body in the key never hits
+            throw new IllegalArgumentException("@Cacheable handler " + handlerMethod
+                    + " must be mapped to GET and must not bind the request body");
+        }
+        this.description = httpMethod + " " + pattern;
+    }
+
+    public String getHttpMethod() {
+        return httpMethod;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public Object getController() {
+        return controller;
+    }
+
+    public Method getHandlerMethod() {
+        return handlerMethod;
+    }
+
+    public HandlerInvoker getInvoker() {
+        return invoker;
+    }
+
+    /**
+     * Returns the ETag settings of the handler or its controller, or null if it did not opt in.
+     */
+    public ETag getETag() {
+        return etag;
+    }
+
+    /**
+     * Returns the Content-Type declared on the mapping, or null to derive it from the result.
+     */
+    public String getProduces() {
+        return produces;
+    }
+
+    /**
+     * Returns the response caching settings of the handler, or null if its responses are not cached.
+     */
+    public Cacheable getCacheable() {
+        return cacheable;
+    }
+
+    /**
+     * Returns the position of a path variable in the pattern, or -1 if the pattern has no such variable.
+     */
+    public int variableIndex(String name) {
+        for (int i = 0; i < variableNames.length; i++) {
+            if (variableNames[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    int variableCount() {
+        return variableNames.length;
+    }
+
+    /**
+     * Returns the method and pattern, such as {@code GET /items/{id}}.
+     */
+    @Override
+    public String toString() {
+        return description;
+    }
+}
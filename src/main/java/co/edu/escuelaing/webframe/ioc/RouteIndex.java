@@ -0,0 +1,286 @@
+package co.edu.escuelaing.webframe.ioc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Trie of routes keyed by path segment, with one handler slot per HTTP method at each node.
+ * Patterns may contain {@code {name}} variables, {@code *} (any single segment) and a trailing
+ * {@code **} (any remaining segments). Static segments win over variables, and variables over
+ * wildcards, backtracking when a more specific branch does not lead to a route. HEAD requests
+ * use the GET route of a path unless a HEAD route of their own is registered.
+ * <p>
+ * Lookups walk the path in place: segments are hashed and compared on the request string
+ * without substrings, and variables are recorded as offsets in a caller-supplied
+ * {@link RouteMatch}, so a lookup allocates nothing. An index is filled and then only read:
+ * {@link SimpleIoCContainer} publishes a new index when routes change instead of adding to one
+ * that requests may be reading, so lookups need no locking.
+ */
+public final class RouteIndex {
+
+    private static final String[] METHODS = { "GET", "HEAD", "POST", "PUT", "DELETE", "PATCH", "OPTIONS" };
+    private static final int GET = 0;
+    private static final int HEAD = 1;
+
+    private final Node root = new Node(null, 0);
+    private int size;
+    private int maxVariables;
+
+    private static final class Node {
+        final String segment;
+        final int hash;
+        final Route[] routes = new Route[METHODS.length];
+        Node[] children = new Node[4];
+        int childCount;
+        Node variableChild;
+        Node wildcardChild;
+        Node catchAllChild;
+
+        Node(String segment, int hash) {
+            this.segment = segment;
+            this.hash = hash;
+        }
+
+        Node findChild(String path, int start, int end, int hash) {
+            int mask = children.length - 1;
+            for (int i = hash & mask; children[i] != null; i = (i + 1) & mask) {
+                Node child = children[i];
+                if (child.hash == hash && child.segment.length() == end - start
+                        && path.regionMatches(start, child.segment, 0, end - start)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        Node addChild(String segment) {
+            int hash = hash(segment, 0, segment.length());
+            Node existing = findChild(segment, 0, segment.length(), hash);
+            if (existing != null) {
+                return existing;
+            }
+            if ((childCount + 1) * 2 > children.length) {
+                Node[] old = children;
+                children = new Node[old.length * 2];
+                for (Node child : old) {
+                    if (child != null) {
+                        insert(child);
+                    }
+                }
+            }
+            Node child = new Node(segment, hash);
+            insert(child);
+            childCount++;
+            return child;
+        }
+
+        private void insert(Node child) {
+            int mask = children.length - 1;
+            int i = child.hash & mask;
+            while (children[i] != null) {
+                i = (i + 1) & mask;
+            }
+            children[i] = child;
+        }
+    }
+
+    /**
+     * Adds a route, replacing any route already registered for the same method and pattern.
+     *
+     * @throws IllegalArgumentException for unsupported methods or malformed patterns
+     */
+    public void add(Route route) {
+        int method = methodIndex(route.getHttpMethod());
+        if (method < 0) {
+            throw new IllegalArgumentException("Unsupported HTTP method: " + route.getHttpMethod());
+        }
+
+        Node node = root;
+        List<String> segments = segments(route.getPattern());
+        for (int i = 0; i < segments.size(); i++) {
+            String segment = segments.get(i);
+            if (segment.equals("**")) {
+                if (i != segments.size() - 1) {
+                    throw new IllegalArgumentException("** must be the last segment: " + route.getPattern());
+                }
+                if (node.catchAllChild == null) {
+                    node.catchAllChild = new Node(segment, 0);
+                }
+                node = node.catchAllChild;
+            } else if (segment.equals("*")) {
+                if (node.wildcardChild == null) {
+                    node.wildcardChild = new Node(segment, 0);
+                }
+                node = node.wildcardChild;
+            } else if (isVariable(segment)) {
+                if (node.variableChild == null) {
+                    node.variableChild = new Node(segment, 0);
+                }
+                node = node.variableChild;
+            } else {
+                node = node.addChild(segment);
+            }
+        }
+
+        if (node.routes[method] == null) {
+            size++;
+        }
+        node.routes[method] = route;
+        maxVariables = Math.max(maxVariables, route.variableCount());
+    }
+
+    /**
+     * Finds the route for a method and path (a query string, if present, is ignored).
+     * Returns false when no route matches; the match then holds no route.
+     */
+    public boolean find(String httpMethod, String path, RouteMatch match) {
+        match.reset(path, maxVariables);
+        int method = methodIndex(httpMethod);
+        if (method < 0) {
+            return false;
+        }
+        int end = path.indexOf('?');
+        end = end < 0 ? path.length() : end;
+        if (match(root, path, 0, end, method, match, 0)) {
+            return true;
+        }
+        if (method == HEAD) {
+            match.reset(path, maxVariables);
+            return match(root, path, 0, end, GET, match, 0);
+        }
+        return false;
+    }
+
+    /**
+     * Returns the methods a path is routed for, as an {@code Allow} header value, or null when
+     * no route matches the path at all. Only used for requests that found no route, so it may
+     * allocate.
+     */
+    public String allowedMethods(String path) {
+        int end = path.indexOf('?');
+        end = end < 0 ? path.length() : end;
+        RouteMatch match = newMatch();
+        StringBuilder allowed = new StringBuilder();
+        for (int method = 0; method < METHODS.length; method++) {
+            match.reset(path, maxVariables);
+            boolean routed = match(root, path, 0, end, method, match, 0);
+            if (!routed && method == HEAD) {
+                match.reset(path, maxVariables);
+                routed = match(root, path, 0, end, GET, match, 0);
+            }
+            if (routed) {
+                if (allowed.length() > 0) {
+                    allowed.append(", ");
+                }
+                allowed.append(METHODS[method]);
+            }
+        }
+        return allowed.length() > 0 ? allowed.toString() : null;
+    }
+
+    /**
+     * Returns a match object sized for the variables of the registered routes.
+     */
+    public RouteMatch newMatch() {
+        return new RouteMatch(Math.max(1, maxVariables));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static boolean match(Node node, String path, int position, int end, int method,
+            RouteMatch match, int captured) {
+        while (position < end && path.charAt(position) == '/') {
+            position++;
+        }
+        if (position == end) {
+            Route route = node.routes[method];
+            if (route == null && node.catchAllChild != null) {
+                route = node.catchAllChild.routes[method];
+            }
+            if (route != null) {
+                match.complete(route);
+                return true;
+            }
+            return false;
+        }
+
+        int segmentEnd = path.indexOf('/', position);
+        if (segmentEnd < 0 || segmentEnd > end) {
+            segmentEnd = end;
+        }
+
+        Node child = node.findChild(path, position, segmentEnd, hash(path, position, segmentEnd));
+        if (child != null && match(child, path, segmentEnd, end, method, match, captured)) {
+            return true;
+        }
+        if (node.variableChild != null) {
+            match.capture(captured, position, segmentEnd);
+            if (match(node.variableChild, path, segmentEnd, end, method, match, captured + 1)) {
+                return true;
+            }
+        }
+        if (node.wildcardChild != null && match(node.wildcardChild, path, segmentEnd, end, method, match, captured)) {
+            return true;
+        }
+        if (node.catchAllChild != null && node.catchAllChild.routes[method] != null) {
+            match.complete(node.catchAllChild.routes[method]);
+            return true;
+        }
+        return false;
+    }
+
+    private static int hash(String text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        // spread high bits so small tables use them too
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int methodIndex(String httpMethod) {
+        for (int i = 0; i < METHODS.length; i++) {
+            if (METHODS[i].equals(httpMethod)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isVariable(String segment) {
+        return segment.length() > 2 && segment.charAt(0) == '{' && segment.charAt(segment.length() - 1) == '}';
+    }
+
+    private static List<String> segments(String pattern) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : pattern.split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            if ((segment.indexOf('{') >= 0 || segment.indexOf('}') >= 0) && !isVariable(segment)) {
+                throw new IllegalArgumentException("Malformed path variable '" + segment + "' in " + pattern);
+            }
+            segments.add(segment);
+        }
+        return segments;
+    }
+
+    /**
+     * Returns the names of the {@code {name}} variables of a pattern, in order.
+     */
+    static String[] variableNames(String pattern) {
+        List<String> names = new ArrayList<>();
+        for (String segment : segments(pattern)) {
+            if (isVariable(segment)) {
+                String name = segment.substring(1, segment.length() - 1);
+                if (names.contains(name)) {
+                    throw new IllegalArgumentException("Duplicate path variable '" + name + "' in " + pattern);
+                }
+                names.add(name);
+            }
+        }
+        return names.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,60 @@
+package co.edu.escuelaing.webframe.ioc;
+
+/**
+ * Result of a route lookup, meant to be reused across lookups by one thread.
+ * Path variables are kept as offsets into the request path and only turned into
+ * strings when asked for.
+ */
+public final class RouteMatch {
+
+    private Route route;
+    private String path;
+    private int[] starts;
+    private int[] ends;
+
+    public RouteMatch() {
+        this(4);
+    }
+
+    RouteMatch(int capacity) {
+        starts = new int[capacity];
+        ends = new int[capacity];
+    }
+
+    public Route getRoute() {
+        return route;
+    }
+
+    /**
+     * Returns the value of the path variable at a position of the route pattern.
+     */
+    public String getVariable(int index) {
+        return path.substring(starts[index], ends[index]);
+    }
+
+    /**
+     * Returns the value of a named path variable, or null if the route has no such variable.
+     */
+    public String getVariable(String name) {
+        int index = route != null ? route.variableIndex(name) : -1;
+        return index >= 0 ? getVariable(index) : null;
+    }
+
+    void reset(String path, int capacity) {
+        this.route = null;
+        this.path = path;
+        if (starts.length < capacity) {
+            starts = new int[capacity];
+            ends = new int[capacity];
+        }
+    }
+
+    void capture(int index, int start, int end) {
+        starts[index] = start;
+        ends[index] = end;
+    }
+
+    void complete(Route route) {
+        this.route = route;
+    }
+}
@@ -2,37 +2,83 @@ package co.edu.escuelaing.webframe.ioc;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 
-import co.edu.escuelaing.webframe.annotations.GetMapping;
+import co.edu.escuelaing.webframe.DebugLog;
 import co.edu.escuelaing.webframe.annotations.RestController;
+import co.edu.escuelaing.webframe.processor.ControllerIndexProcessor;
 
 /**
  * IoC container for managing controllers and routes.
+ * <p>
+ * Controllers and their routes are kept in an immutable snapshot published through a volatile
+ * field. Requests read the current snapshot without locking; registering or unregistering a
+ * controller builds a new snapshot and route index and swaps it in, so controllers can be added
+ * and removed while the server runs. A request that already found its route finishes on the
+ * controller it found.
  */
 public class SimpleIoCContainer {
 
-    private final Map<String, Object> controllers = new HashMap<>();
-    private final Map<String, RouteMapping> routes = new HashMap<>();
+    private final Object registrationLock = new Object();
+    private volatile Registry registry = Registry.EMPTY;
 
-    private static class RouteMapping {
-        final Object controllerInstance;
-        final Method handlerMethod;
+    private static final Map<String, Class<?>> PRIMITIVES = new HashMap<>();
 
-        RouteMapping(Object controllerInstance, Method handlerMethod) {
-            this.controllerInstance = controllerInstance;
-            this.handlerMethod = handlerMethod;
+    static {
+        for (Class<?> type : new Class<?>[] { boolean.class, byte.class, char.class, short.class, int.class,
+                long.class, float.class, double.class }) {
+            PRIMITIVES.put(type.getName(), type);
+        }
+    }
+
+    /**
+     * Controllers by name, the routes each one contributed, and the index built from them.
+     * Never modified once published.
+     */
+    private static final class Registry {
+        static final Registry EMPTY = new Registry(Collections.emptyMap(), Collections.emptyMap());
+
+        final Map<String, Object> controllers;
+        final Map<String, List<Route>> routesByController;
+        final RouteIndex routes = new RouteIndex();
+
+        Registry(Map<String, Object> controllers, Map<String, List<Route>> routesByController) {
+            this.controllers = controllers;
+            this.routesByController = routesByController;
+            // in registration order, so a later controller's route replaces an earlier one on the same pattern
+            for (List<Route> controllerRoutes : routesByController.values()) {
+                for (Route route : controllerRoutes) {
+                    routes.add(route);
+                }
+            }
         }
     }
 
     public void registerController(String controllerClassName) throws Exception {
+        registerController(controllerClassName, null);
+    }
+
+    /**
+     * Registers a controller, taking its routes from the compile-time index when they are given
+     * and still match the class, and from reflection otherwise. A controller already registered
+     * under the same name is replaced together with its routes.
+     */
+    void registerController(String controllerClassName, List<ControllerIndex.Entry> indexedRoutes)
+            throws Exception {
         System.out.println("Registering controller: " + controllerClassName);
 
         try {
@@ -46,9 +92,16 @@ public class SimpleIoCContainer {
             Object controllerInstance = controllerClass.getDeclaredConstructor().newInstance();
             String controllerKey = controllerClass.getSimpleName();
 
-            controllers.put(controllerKey, controllerInstance);
-
-            scanControllerMethods(controllerInstance, controllerClass);
+            List<Route> controllerRoutes = indexedRoutes != null
+                    ? indexedRoutes(controllerInstance, controllerClass, indexedRoutes)
+                    : null;
+            if (controllerRoutes == null) {
+                controllerRoutes = scanControllerMethods(controllerInstance, controllerClass);
+            }
+            publish(controllerKey, controllerInstance, controllerRoutes);
+            for (Route route : controllerRoutes) {
+                logRoute(route, controllerClass);
+            }
 
             System.out.println("Controller registered successfully: " + controllerClassName);
 
@@ -59,10 +112,31 @@ public class SimpleIoCContainer {
         }
     }
 
+    /**
+     * Registers the controllers of a package and its subpackages. Controllers are read from the
+     * index written by {@link ControllerIndexProcessor} when the package has indexed controllers,
+     * so only controller classes are loaded; otherwise the package is scanned, in folders and jars.
+     */
     public void scanAndRegisterControllers(String packageName) throws Exception {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        ControllerIndex index = ControllerIndex.load(classLoader);
+        List<String> indexed = index.controllersIn(packageName);
+        if (!indexed.isEmpty()) {
+            System.out.println("Loading " + indexed.size() + " indexed controllers for package: " + packageName);
+            for (String controllerClassName : indexed) {
+                try {
+                    registerController(controllerClassName, index.routes(controllerClassName));
+                } catch (Exception e) {
+                    System.err.println("Failed to register controller: " + controllerClassName);
+                }
+            }
+            System.out.println("Index load completed. Registered " + getControllerCount() + " controllers.");
+            return;
+        }
+
         System.out.println("Scanning package for controllers: " + packageName);
 
-        List<Class<?>> controllerClasses = findControllerClasses(packageName);
+        List<Class<?>> controllerClasses = findControllerClasses(packageName, classLoader);
 
         if (controllerClasses.isEmpty()) {
             System.out.println("No controllers found in package: " + packageName);
@@ -80,94 +154,228 @@ public class SimpleIoCContainer {
         System.out.println("Package scan completed. Registered " + controllerClasses.size() + " controllers.");
     }
 
-    private List<Class<?>> findControllerClasses(String packageName) {
+    private List<Class<?>> findControllerClasses(String packageName, ClassLoader classLoader) {
         List<Class<?>> controllerClasses = new ArrayList<>();
 
         try {
             String packagePath = packageName.replace('.', '/');
-            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
             Enumeration<URL> resources = classLoader.getResources(packagePath);
 
             while (resources.hasMoreElements()) {
                 URL resource = resources.nextElement();
-                File directory = new File(resource.getFile());
-
-                if (directory.exists() && directory.isDirectory()) {
-                    scanDirectoryForControllers(directory, packageName, controllerClasses);
+                if (resource.getProtocol().equals("jar")) {
+                    scanJarForControllers(resource, packagePath, classLoader, controllerClasses);
+                } else if (resource.getProtocol().equals("file")) {
+                    File directory = new File(resource.toURI());
+                    if (directory.isDirectory()) {
+                        scanDirectoryForControllers(directory, packageName, classLoader, controllerClasses);
+                    }
                 }
             }
-        } catch (IOException e) {
+        } catch (IOException | URISyntaxException e) {
             System.err.println("Error scanning for controllers: " + e.getMessage());
         }
 
         return controllerClasses;
     }
 
-    private void scanDirectoryForControllers(File directory, String packageName, List<Class<?>> controllerClasses) {
+    private void scanDirectoryForControllers(File directory, String packageName, ClassLoader classLoader,
+            List<Class<?>> controllerClasses) {
         File[] files = directory.listFiles();
         if (files == null)
             return;
 
         for (File file : files) {
             if (file.isDirectory()) {
-                scanDirectoryForControllers(file, packageName + "." + file.getName(), controllerClasses);
+                scanDirectoryForControllers(file, packageName + "." + file.getName(), classLoader, controllerClasses);
             } else if (file.getName().endsWith(".class")) {
                 String className = packageName + "." + file.getName().substring(0, file.getName().length() - 6);
+                addIfController(className, classLoader, controllerClasses);
+            }
+        }
+    }
 
-                try {
-                    Class<?> clazz = Class.forName(className);
-                    if (clazz.isAnnotationPresent(RestController.class)) {
-                        controllerClasses.add(clazz);
-                        System.out.println("Found controller class: " + className);
-                    }
-                } catch (ClassNotFoundException e) {
-                    System.err.println("Could not load class: " + className);
+    private void scanJarForControllers(URL resource, String packagePath, ClassLoader classLoader,
+            List<Class<?>> controllerClasses) throws IOException {
+        JarURLConnection connection = (JarURLConnection) resource.openConnection();
+        connection.setUseCaches(false);
+        try (JarFile jar = connection.getJarFile()) {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (name.startsWith(packagePath + "/") && name.endsWith(".class")) {
+                    addIfController(name.substring(0, name.length() - 6).replace('/', '.'), classLoader, controllerClasses);
                 }
             }
         }
     }
 
-    private void scanControllerMethods(Object controllerInstance, Class<?> controllerClass) {
-        Method[] methods = controllerClass.getDeclaredMethods();
+    /**
+     * Loads a class without initializing it and keeps it if it is a controller; only controllers
+     * are initialized, when they are registered.
+     */
+    private void addIfController(String className, ClassLoader classLoader, List<Class<?>> controllerClasses) {
+        try {
+            Class<?> clazz = Class.forName(className, false, classLoader);
+            if (clazz.isAnnotationPresent(RestController.class)) {
+                controllerClasses.add(clazz);
+                System.out.println("Found controller class: " + className);
+            }
+        } catch (ClassNotFoundException | LinkageError e) {
+            System.err.println("Could not load class: " + className);
+        }
+    }
 
-        for (Method method : methods) {
-            GetMapping getMapping = method.getAnnotation(GetMapping.class);
+    /**
+     * Unregisters a controller and its routes. New requests stop reaching it at once; requests
+     * already routed to it complete.
+     *
+     * @param controllerName the simple class name the controller was registered under
+     * @return false if no controller was registered under that name
+     */
+    public boolean unregisterController(String controllerName) {
+        synchronized (registrationLock) {
+            Registry current = registry;
+            if (!current.controllers.containsKey(controllerName)) {
+                return false;
+            }
+            Map<String, Object> controllers = new HashMap<>(current.controllers);
+            Map<String, List<Route>> routesByController = new LinkedHashMap<>(current.routesByController);
+            controllers.remove(controllerName);
+            routesByController.remove(controllerName);
+            registry = new Registry(Collections.unmodifiableMap(controllers),
+                    Collections.unmodifiableMap(routesByController));
+        }
+        System.out.println("Controller unregistered: " + controllerName);
+        return true;
+    }
+
+    /**
+     * Publishes a snapshot with the controller added or replaced. The index is rebuilt rather than
+     * modified, since requests may be reading the current one.
+     */
+    private void publish(String controllerKey, Object controllerInstance, List<Route> controllerRoutes) {
+        synchronized (registrationLock) {
+            Registry current = registry;
+            Map<String, Object> controllers = new HashMap<>(current.controllers);
+            Map<String, List<Route>> routesByController = new LinkedHashMap<>(current.routesByController);
+            controllers.put(controllerKey, controllerInstance);
+            // re-registered controllers move to the end, so their routes win over older ones
+            routesByController.remove(controllerKey);
+            routesByController.put(controllerKey, Collections.unmodifiableList(new ArrayList<>(controllerRoutes)));
+            registry = new Registry(Collections.unmodifiableMap(controllers),
+                    Collections.unmodifiableMap(routesByController));
+        }
+    }
+
+    /**
+     * Resolves the indexed routes of a controller. Returns null when an indexed method no longer
+     * exists or is mapped differently, so the caller can fall back to reflection.
+     */
+    private List<Route> indexedRoutes(Object controllerInstance, Class<?> controllerClass,
+            List<ControllerIndex.Entry> indexedRoutes) {
+        List<Route> resolved = new ArrayList<>();
+        try {
+            for (ControllerIndex.Entry entry : indexedRoutes) {
+                Class<?>[] parameterTypes = new Class<?>[entry.parameterTypes.length];
+                for (int i = 0; i < parameterTypes.length; i++) {
+                    parameterTypes[i] = resolveType(entry.parameterTypes[i], controllerClass.getClassLoader());
+                }
+                Method method = controllerClass.getDeclaredMethod(entry.methodName, parameterTypes);
+                Mapping mapping = Mapping.of(method);
+                if (mapping == null || !mapping.httpMethod.equals(entry.httpMethod) || !mapping.path.equals(entry.path)) {
+                    return null;
+                }
+                resolved.add(new Route(entry.httpMethod, entry.path, controllerInstance, method));
+            }
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            System.err.println("Stale controller index for " + controllerClass.getName() + ", using reflection");
+            return null;
+        }
+        return resolved;
+    }
+
+    private static Class<?> resolveType(String name, ClassLoader classLoader) throws ClassNotFoundException {
+        if (name.endsWith("[]")) {
+            return Array.newInstance(resolveType(name.substring(0, name.length() - 2), classLoader), 0).getClass();
+        }
+        Class<?> primitive = PRIMITIVES.get(name);
+        return primitive != null ? primitive : Class.forName(name, false, classLoader);
+    }
 
-            if (getMapping != null) {
-                String path = getMapping.value();
-                String routeKey = "GET:" + path;
+    private List<Route> scanControllerMethods(Object controllerInstance, Class<?> controllerClass) {
+        List<Route> controllerRoutes = new ArrayList<>();
+        Method[] methods = controllerClass.getDeclaredMethods();
 
-                RouteMapping mapping = new RouteMapping(controllerInstance, method);
-                routes.put(routeKey, mapping);
+        for (Method method : methods) {
+            Mapping mapping = Mapping.of(method);
 
-                System.out.println("Registered route: GET " + path + " -> " +
-                        controllerClass.getSimpleName() + "." + method.getName());
+            if (mapping != null) {
+                controllerRoutes.add(new Route(mapping.httpMethod, mapping.path, controllerInstance, method));
             }
         }
+        return controllerRoutes;
     }
 
-    public Object[] findRouteHandler(String path, String httpMethod) {
-        String routeKey = httpMethod + ":" + path;
-        RouteMapping mapping = routes.get(routeKey);
+    private void logRoute(Route route, Class<?> controllerClass) {
+        System.out.println("Registered route: " + route.getHttpMethod() + " " + route.getPattern() + " -> " +
+                controllerClass.getSimpleName() + "." + route.getHandlerMethod().getName()
+                + (route.getCacheable() != null ? " (cached " + route.getCacheable().ttlSeconds() + "s)" : ""));
+    }
 
-        if (mapping != null) {
-            System.out.println("Route handler found: " + routeKey);
-            return new Object[] { mapping.controllerInstance, mapping.handlerMethod };
+    /**
+     * Looks up the handler for a path, returning the controller instance and handler method.
+     * Allocates a match per call; request processing uses {@link #findRoute} instead.
+     */
+    public Object[] findRouteHandler(String path, String httpMethod) {
+        RouteIndex routes = registry.routes;
+        RouteMatch match = routes.newMatch();
+        if (routes.find(httpMethod, path, match)) {
+            if (DebugLog.isEnabled()) {
+                DebugLog.log("Route handler found: " + httpMethod + " " + path);
+            }
+            Route route = match.getRoute();
+            return new Object[] { route.getController(), route.getHandlerMethod() };
         }
 
-        System.out.println("No route handler found for: " + routeKey);
+        if (DebugLog.isEnabled()) {
+            DebugLog.log("No route handler found for: " + httpMethod + " " + path);
+        }
         return null;
     }
 
+    /**
+     * Finds the route for a request into a reusable match, without allocating or locking.
+     */
+    public boolean findRoute(String httpMethod, String path, RouteMatch match) {
+        return registry.routes.find(httpMethod, path, match);
+    }
+
+    /**
+     * Returns the methods a path is routed for as an {@code Allow} header value, or null when
+     * no route matches the path.
+     */
+    public String findAllowedMethods(String path) {
+        return registry.routes.allowedMethods(path);
+    }
+
+    /**
+     * Returns a match object sized for the registered routes; it grows if routes with more
+     * variables are registered later.
+     */
+    public RouteMatch newRouteMatch() {
+        return registry.routes.newMatch();
+    }
+
     public Object getController(String controllerName) {
-        return controllers.get(controllerName);
+        return registry.controllers.get(controllerName);
     }
 
     public int getControllerCount() {
-        return controllers.size();
+        return registry.controllers.size();
     }
 
     public int getRouteCount() {
-        return routes.size();
+        return registry.routes.size();
     }
 }
@@ -0,0 +1,219 @@
+package co.edu.escuelaing.webframe.json;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts values produced by {@link JsonReader} to the declared type of a handler parameter:
+ * maps, lists, arrays, strings, numbers, booleans, enums, and plain objects with a public
+ * no-argument constructor, whose public fields are set from the members of the same name.
+ */
+public final class JsonBinder {
+
+    /**
+     * Constructor and settable fields of a plain object type, looked up once per class.
+     */
+    private static final class ObjectType {
+        final Constructor<?> constructor;
+        final Map<String, Field> fields = new HashMap<>();
+
+        ObjectType(Class<?> type) {
+            Constructor<?> noArguments;
+            try {
+                noArguments = type.getConstructor();
+            } catch (NoSuchMethodException e) {
+                noArguments = null;
+            }
+            constructor = noArguments;
+            for (Field field : type.getFields()) {
+                int modifiers = field.getModifiers();
+                if (!Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers)) {
+                    fields.put(field.getName(), field);
+                }
+            }
+        }
+    }
+
+    private static final ClassValue<ObjectType> OBJECT_TYPES = new ClassValue<ObjectType>() {
+        @Override
+        protected ObjectType computeValue(Class<?> type) {
+            return new ObjectType(type);
+        }
+    };
+
+    private JsonBinder() {
+    }
+
+    /**
+     * Converts a parsed value to {@code type}.
+     *
+     * @throws JsonException when the value does not fit the type
+     */
+    public static Object convert(Object value, Type type) throws JsonException {
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterized = (ParameterizedType) type;
+            Type[] arguments = parameterized.getActualTypeArguments();
+            Class<?> raw = (Class<?>) parameterized.getRawType();
+            if (Map.class.isAssignableFrom(raw)) {
+                return convertMap(value, arguments[1]);
+            }
+            if (Collection.class.isAssignableFrom(raw)) {
+                return convertList(value, arguments[0]);
+            }
+            return convert(value, raw);
+        }
+        if (!(type instanceof Class)) {
+            return value;
+        }
+        Class<?> target = (Class<?>) type;
+        if (value == null) {
+            if (target.isPrimitive()) {
+                throw new JsonException("null for " + target.getName());
+            }
+            return null;
+        }
+        if (target == Object.class) {
+            return value;
+        }
+        if (target == String.class) {
+            return expect(value, String.class, target);
+        }
+        if (target == boolean.class || target == Boolean.class) {
+            return expect(value, Boolean.class, target);
+        }
+        if (target.isPrimitive() || Number.class.isAssignableFrom(target)) {
+            return convertNumber((Number) expect(value, Number.class, target), target);
+        }
+        if (target.isEnum()) {
+            return convertEnum((String) expect(value, String.class, target), target);
+        }
+        if (Map.class.isAssignableFrom(target)) {
+            return convertMap(value, Object.class);
+        }
+        if (Collection.class.isAssignableFrom(target)) {
+            return convertList(value, Object.class);
+        }
+        if (target.isArray()) {
+            List<?> elements = (List<?>) expect(value, List.class, target);
+            Object array = Array.newInstance(target.getComponentType(), elements.size());
+            for (int i = 0; i < elements.size(); i++) {
+                Array.set(array, i, convert(elements.get(i), target.getComponentType()));
+            }
+            return array;
+        }
+        return convertObject((Map<?, ?>) expect(value, Map.class, target), target);
+    }
+
+    private static Map<String, Object> convertMap(Object value, Type valueType) throws JsonException {
+        if (value == null) {
+            return null;
+        }
+        Map<?, ?> members = (Map<?, ?>) expect(value, Map.class, Map.class);
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> member : members.entrySet()) {
+            map.put((String) member.getKey(), convert(member.getValue(), valueType));
+        }
+        return map;
+    }
+
+    private static List<Object> convertList(Object value, Type elementType) throws JsonException {
+        if (value == null) {
+            return null;
+        }
+        List<?> elements = (List<?>) expect(value, List.class, List.class);
+        List<Object> list = new ArrayList<>(elements.size());
+        for (Object element : elements) {
+            list.add(convert(element, elementType));
+        }
+        return list;
+    }
+
+    private static Object convertNumber(Number number, Class<?> target) throws JsonException {
+        boolean integral = number instanceof Long;
+        if (target == long.class || target == Long.class) {
+            return integral ? number.longValue() : inexact(number, target);
+        }
+        if (target == int.class || target == Integer.class) {
+            return integral && number.longValue() == number.intValue() ? number.intValue() : inexact(number, target);
+        }
+        if (target == short.class || target == Short.class) {
+            return integral && number.longValue() == number.shortValue() ? number.shortValue() : inexact(number, target);
+        }
+        if (target == byte.class || target == Byte.class) {
+            return integral && number.longValue() == number.byteValue() ? number.byteValue() : inexact(number, target);
+        }
+        if (target == double.class || target == Double.class || target == Number.class) {
+            return number.doubleValue();
+        }
+        if (target == float.class || target == Float.class) {
+            return number.floatValue();
+        }
+        throw new JsonException("Cannot bind a number to " + target.getName());
+    }
+
+    private static Object inexact(Number number, Class<?> target) throws JsonException {
+        throw new JsonException(number + " does not fit " + target.getName());
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object convertEnum(String name, Class<?> target) throws JsonException {
+        try {
+            return Enum.valueOf((Class) target, name);
+        } catch (IllegalArgumentException e) {
+            throw new JsonException("No " + target.getSimpleName() + " named " + name);
+        }
+    }
+
+    private static Object convertObject(Map<?, ?> members, Class<?> target) throws JsonException {
+        ObjectType objectType = OBJECT_TYPES.get(target);
+        if (objectType.constructor == null) {
+            throw new JsonException(target.getName() + " has no public no-argument constructor");
+        }
+        Object object;
+        try {
+            object = objectType.constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new JsonException("Cannot create " + target.getName() + ": " + e);
+        }
+        for (Map.Entry<?, ?> member : members.entrySet()) {
+            Field field = objectType.fields.get(member.getKey());
+            if (field == null) {
+                // unknown members are ignored, so clients may send more than a handler reads
+                continue;
+            }
+            try {
+                field.set(object, convert(member.getValue(), field.getGenericType()));
+            } catch (IllegalAccessException e) {
+                throw new JsonException("Cannot set " + field + ": " + e);
+            }
+        }
+        return object;
+    }
+
+    private static Object expect(Object value, Class<?> kind, Class<?> target) throws JsonException {
+        if (!kind.isInstance(value)) {
+            throw new JsonException("Cannot bind " + describe(value) + " to " + target.getName());
+        }
+        return value;
+    }
+
+    private static String describe(Object value) {
+        if (value instanceof Map) {
+            return "an object";
+        }
+        if (value instanceof List) {
+            return "an array";
+        }
+        return value instanceof String ? "a string" : String.valueOf(value);
+    }
+}
@@ -0,0 +1,15 @@
+package co.edu.escuelaing.webframe.json;
+
+import java.io.IOException;
+
+/**
+ * Signals JSON that is malformed or does not fit the type it is bound to.
+ */
+public class JsonException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public JsonException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,259 @@
+package co.edu.escuelaing.webframe.json;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses JSON as it is read, so a document is never held as text before it is turned into
+ * values. Objects become {@link LinkedHashMap}s, arrays {@link ArrayList}s, integral numbers
+ * {@link Long}s, other numbers {@link Double}s, and {@code true}, {@code false} and {@code null}
+ * their Java counterparts.
+ */
+public final class JsonReader {
+
+    private static final int MAX_DEPTH = 256;
+
+    private final Reader in;
+    private final char[] buffer = new char[1024];
+    private int position;
+    private int limit;
+    private long offset;
+    private int depth;
+
+    public JsonReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads a whole document: one value followed by nothing but whitespace.
+     */
+    public Object readDocument() throws IOException {
+        Object value = readValue();
+        int c = nextNonWhitespace();
+        if (c >= 0) {
+            throw error("Unexpected '" + (char) c + "' after the document");
+        }
+        return value;
+    }
+
+    /**
+     * Reads the next value.
+     */
+    public Object readValue() throws IOException {
+        int c = nextNonWhitespace();
+        switch (c) {
+            case '{':
+                return readObject();
+            case '[':
+                return readArray();
+            case '"':
+                return readString();
+            case 't':
+                expect("rue");
+                return Boolean.TRUE;
+            case 'f':
+                expect("alse");
+                return Boolean.FALSE;
+            case 'n':
+                expect("ull");
+                return null;
+            case -1:
+                throw error("Unexpected end of input");
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return readNumber((char) c);
+                }
+                throw error("Unexpected '" + (char) c + "'");
+        }
+    }
+
+    private Map<String, Object> readObject() throws IOException {
+        enter();
+        Map<String, Object> object = new LinkedHashMap<>();
+        int c = nextNonWhitespace();
+        if (c != '}') {
+            while (true) {
+                if (c != '"') {
+                    throw error("Expected a member name");
+                }
+                String name = readString();
+                if (nextNonWhitespace() != ':') {
+                    throw error("Expected ':' after \"" + name + "\"");
+                }
+                object.put(name, readValue());
+                c = nextNonWhitespace();
+                if (c == '}') {
+                    break;
+                }
+                if (c != ',') {
+                    throw error("Expected ',' or '}' in an object");
+                }
+                c = nextNonWhitespace();
+            }
+        }
+        depth--;
+        return object;
+    }
+
+    private List<Object> readArray() throws IOException {
+        enter();
+        List<Object> array = new ArrayList<>();
+        int c = nextNonWhitespace();
+        if (c != ']') {
+            if (c < 0) {
+                throw error("Unterminated array");
+            }
+            unread();
+            while (true) {
+                array.add(readValue());
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    break;
+                }
+                if (c != ',') {
+                    throw error("Expected ',' or ']' in an array");
+                }
+            }
+        }
+        depth--;
+        return array;
+    }
+
+    private void enter() throws JsonException {
+        if (++depth > MAX_DEPTH) {
+            throw error("Nesting deeper than " + MAX_DEPTH);
+        }
+    }
+
+    private String readString() throws IOException {
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            int c = next();
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c < 0) {
+                throw error("Unterminated string");
+            }
+            if (c < 0x20) {
+                throw error("Control character in a string");
+            }
+            if (c != '\\') {
+                value.append((char) c);
+                continue;
+            }
+            c = next();
+            switch (c) {
+                case '"':
+                case '\\':
+                case '/':
+                    value.append((char) c);
+                    break;
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'u':
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(next(), 16);
+                        if (digit < 0) {
+                            throw error("Malformed \\u escape");
+                        }
+                        code = code * 16 + digit;
+                    }
+                    value.append((char) code);
+                    break;
+                default:
+                    throw error("Invalid escape");
+            }
+        }
+    }
+
+    private Number readNumber(char first) throws IOException {
+        StringBuilder text = new StringBuilder().append(first);
+        boolean integral = true;
+        while (true) {
+            int c = next();
+            if (c >= '0' && c <= '9' || c == '-' || c == '+') {
+                text.append((char) c);
+            } else if (c == '.' || c == 'e' || c == 'E') {
+                integral = false;
+                text.append((char) c);
+            } else {
+                if (c >= 0) {
+                    unread();
+                }
+                break;
+            }
+        }
+        try {
+            if (integral) {
+                try {
+                    return Long.parseLong(text.toString());
+                } catch (NumberFormatException e) {
+                    // too large for a long, kept as a double like other readers do
+                }
+            }
+            return Double.parseDouble(text.toString());
+        } catch (NumberFormatException e) {
+            throw error("Malformed number " + text);
+        }
+    }
+
+    private void expect(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            if (next() != rest.charAt(i)) {
+                throw error("Unexpected literal");
+            }
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (true) {
+            int c = next();
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return c;
+            }
+        }
+    }
+
+    private int next() throws IOException {
+        if (position == limit) {
+            offset += limit;
+            position = 0;
+            limit = in.read(buffer, 0, buffer.length);
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+
+    /**
+     * Steps back over the last character returned, which is always still in the buffer.
+     */
+    private void unread() {
+        position--;
+    }
+
+    private JsonException error(String message) {
+        return new JsonException(message + " at offset " + (offset + position));
+    }
+}
@@ -0,0 +1,194 @@
+package co.edu.escuelaing.webframe.processor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Writes {@value #INDEX} at compile time: one line per {@code @RestController} class, followed by
+ * one line per mapped method ({@code @GetMapping}, {@code @PostMapping}, {@code @PutMapping} or
+ * {@code @DeleteMapping}) with its HTTP method, path and parameter types, tab separated.
+ * The container registers controllers and routes from this index instead of scanning the
+ * classpath, so startup does not depend on the number of classes and works from jars.
+ * <p>
+ * The processor references the framework annotations by name only, so it can be compiled before
+ * them; see the {@code compile-processor} execution in the pom.
+ */
+@SupportedAnnotationTypes(ControllerIndexProcessor.REST_CONTROLLER)
+public class ControllerIndexProcessor extends AbstractProcessor {
+
+    public static final String INDEX = "META-INF/webframe/controllers.idx";
+
+    static final String REST_CONTROLLER = "co.edu.escuelaing.webframe.annotations.RestController";
+    private static final String ANNOTATIONS = "co.edu.escuelaing.webframe.annotations.";
+    private static final String[][] MAPPINGS = {
+            { ANNOTATIONS + "GetMapping", "GET" }, { ANNOTATIONS + "PostMapping", "POST" },
+            { ANNOTATIONS + "PutMapping", "PUT" }, { ANNOTATIONS + "DeleteMapping", "DELETE" } };
+
+    /**
+     * Index lines per controller class, collected over all rounds.
+     */
+    private final Map<String, List<String>> controllers = new TreeMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        TypeElement restController = processingEnv.getElementUtils().getTypeElement(REST_CONTROLLER);
+        if (restController != null) {
+            for (Element element : round.getElementsAnnotatedWith(restController)) {
+                if (element.getKind() == ElementKind.CLASS) {
+                    TypeElement type = (TypeElement) element;
+                    controllers.put(binaryName(type), routeLines(type));
+                }
+            }
+        }
+        if (round.processingOver() && !controllers.isEmpty()) {
+            writeIndex();
+        }
+        return false;
+    }
+
+    private List<String> routeLines(TypeElement type) {
+        String className = binaryName(type);
+        List<String> lines = new ArrayList<>();
+        lines.add(className);
+        for (Element member : type.getEnclosedElements()) {
+            if (member.getKind() != ElementKind.METHOD) {
+                continue;
+            }
+            String[] mapping = mapping(member);
+            if (mapping == null) {
+                continue;
+            }
+            ExecutableElement method = (ExecutableElement) member;
+            StringBuilder line = new StringBuilder(className).append('\t').append(mapping[0])
+                    .append('\t').append(mapping[1]).append('\t').append(method.getSimpleName());
+            for (VariableElement parameter : method.getParameters()) {
+                line.append('\t').append(typeName(parameter.asType()));
+            }
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    /**
+     * Returns the HTTP method and path a method is mapped to, or null when it is not a handler.
+     */
+    private static String[] mapping(Element method) {
+        for (AnnotationMirror annotation : method.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+            for (String[] mapping : MAPPINGS) {
+                if (!annotationType.getQualifiedName().contentEquals(mapping[0])) {
+                    continue;
+                }
+                for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value
+                        : annotation.getElementValues().entrySet()) {
+                    if (value.getKey().getSimpleName().contentEquals("value")) {
+                        return new String[] { mapping[1], (String) value.getValue().getValue() };
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the name {@link Class#forName} understands for an erased parameter type, or the
+     * primitive's keyword.
+     */
+    private String typeName(TypeMirror type) {
+        TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+        if (erased.getKind().isPrimitive()) {
+            return erased.toString();
+        }
+        if (erased.getKind() == TypeKind.ARRAY) {
+            return typeName(((ArrayType) erased).getComponentType()) + "[]";
+        }
+        if (erased.getKind() == TypeKind.DECLARED) {
+            return binaryName((TypeElement) ((DeclaredType) erased).asElement());
+        }
+        return erased.toString();
+    }
+
+    private String binaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    /**
+     * Writes the index, keeping entries of an existing index for classes not compiled in this run
+     * so incremental compilation does not lose controllers. Entries of deleted classes are skipped
+     * by the container when it loads the index.
+     */
+    private void writeIndex() {
+        Map<String, List<String>> merged = new LinkedHashMap<>();
+        readExistingIndex(merged);
+        merged.putAll(controllers);
+
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX);
+            try (Writer writer = file.openWriter()) {
+                writer.write("# Generated by " + ControllerIndexProcessor.class.getName() + "\n");
+                for (List<String> lines : new TreeMap<>(merged).values()) {
+                    for (String line : lines) {
+                        writer.write(line);
+                        writer.write('\n');
+                    }
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Could not write " + INDEX + ": " + e.getMessage());
+        }
+    }
+
+    private void readExistingIndex(Map<String, List<String>> into) {
+        try {
+            FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", INDEX);
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(existing.openInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    int tab = line.indexOf('\t');
+                    String className = tab < 0 ? line : line.substring(0, tab);
+                    into.computeIfAbsent(className, name -> new ArrayList<>()).add(line);
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // no previous index
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package co.edu.escuelaing.webframe.template;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A template compiled into UTF-8 literal segments separated by slots.
+ * {@code {{name}}} inserts a value HTML-escaped and {@code {{{name}}}} inserts it as is.
+ * Literals are encoded once at compile time, so rendering only writes precomputed bytes and
+ * encodes the slot values, straight into the output stream.
+ */
+public final class Template {
+
+    private static final int BUFFER_SIZE = 2048;
+
+    private final String name;
+    private final byte[][] literals;
+    private final int[] slots;
+    private final boolean[] escaped;
+    private final String[] variables;
+    private final ByteBuffer staticContent;
+
+    private Template(String name, byte[][] literals, int[] slots, boolean[] escaped, String[] variables) {
+        this.name = name;
+        this.literals = literals;
+        this.slots = slots;
+        this.escaped = escaped;
+        this.variables = variables;
+        this.staticContent = slots.length == 0 ? ByteBuffer.wrap(literals[0]).asReadOnlyBuffer() : null;
+    }
+
+    /**
+     * Compiles template source.
+     *
+     * @throws IllegalArgumentException for unclosed tags or invalid variable names
+     */
+    public static Template compile(String name, String source) {
+        List<byte[]> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        List<Boolean> escaped = new ArrayList<>();
+
+        int position = 0;
+        int open;
+        while ((open = source.indexOf("{{", position)) >= 0) {
+            boolean raw = source.startsWith("{{{", open);
+            String close = raw ? "}}}" : "}}";
+            int start = open + (raw ? 3 : 2);
+            int end = source.indexOf(close, start);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unclosed tag in " + name + " at line " + lineOf(source, open));
+            }
+            String variable = source.substring(start, end).trim();
+            if (!isIdentifier(variable)) {
+                throw new IllegalArgumentException("Invalid variable '" + variable + "' in " + name
+                        + " at line " + lineOf(source, open));
+            }
+
+            literals.add(source.substring(position, open).getBytes(StandardCharsets.UTF_8));
+            int index = variables.indexOf(variable);
+            if (index < 0) {
+                index = variables.size();
+                variables.add(variable);
+            }
+            slots.add(index);
+            escaped.add(!raw);
+            position = end + close.length();
+        }
+        literals.add(source.substring(position).getBytes(StandardCharsets.UTF_8));
+
+        int[] slotArray = new int[slots.size()];
+        boolean[] escapedArray = new boolean[slots.size()];
+        for (int i = 0; i < slotArray.length; i++) {
+            slotArray[i] = slots.get(i);
+            escapedArray[i] = escaped.get(i);
+        }
+        return new Template(name, literals.toArray(new byte[0][]), slotArray, escapedArray,
+                variables.toArray(new String[0]));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns true when the template has no slots, so every rendering is the same bytes.
+     */
+    public boolean isStatic() {
+        return staticContent != null;
+    }
+
+    /**
+     * Returns a read-only view of the content of a template without slots.
+     *
+     * @throws IllegalStateException if the template has slots
+     */
+    public ByteBuffer staticContent() {
+        if (staticContent == null) {
+            throw new IllegalStateException("Template " + name + " has variables");
+        }
+        return staticContent.duplicate();
+    }
+
+    /**
+     * Returns a view to fill with this template's variables.
+     */
+    public View view() {
+        return new View(this);
+    }
+
+    int variableCount() {
+        return variables.length;
+    }
+
+    int variableIndex(String variable) {
+        for (int i = 0; i < variables.length; i++) {
+            if (variables[i].equals(variable)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the template with the given values, indexed like the template's variables; null values render empty.
+     */
+    void render(Object[] values, OutputStream out) throws IOException {
+        if (slots.length == 0) {
+            out.write(literals[0]);
+            return;
+        }
+        Utf8Buffer buffer = new Utf8Buffer(out);
+        for (int i = 0; i < slots.length; i++) {
+            buffer.write(literals[i]);
+            Object value = values[slots[i]];
+            if (value != null) {
+                buffer.write(value.toString(), escaped[i]);
+            }
+        }
+        buffer.write(literals[slots.length]);
+        buffer.flush();
+    }
+
+    private static boolean isIdentifier(String variable) {
+        if (variable.isEmpty() || !Character.isJavaIdentifierStart(variable.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < variable.length(); i++) {
+            if (!Character.isJavaIdentifierPart(variable.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int lineOf(String source, int offset) {
+        int line = 1;
+        for (int i = 0; i < offset; i++) {
+            if (source.charAt(i) == '\n') {
+                line++;
+            }
+        }
+        return line;
+    }
+
+    /**
+     * Collects small writes and encodes values to UTF-8 without intermediate strings.
+     */
+    private static final class Utf8Buffer {
+        private final OutputStream out;
+        private final byte[] bytes = new byte[BUFFER_SIZE];
+        private int count;
+
+        Utf8Buffer(OutputStream out) {
+            this.out = out;
+        }
+
+        void write(byte[] literal) throws IOException {
+            if (literal.length > bytes.length - count) {
+                flush();
+                if (literal.length > bytes.length) {
+                    out.write(literal);
+                    return;
+                }
+            }
+            System.arraycopy(literal, 0, bytes, count, literal.length);
+            count += literal.length;
+        }
+
+        void write(String value, boolean escape) throws IOException {
+            for (int i = 0; i < value.length(); i++) {
+                // room for the longest escape sequence or a 4-byte character
+                if (count > bytes.length - 6) {
+                    flush();
+                }
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    if (escape) {
+                        switch (c) {
+                            case '&':
+                                append("&amp;");
+                                continue;
+                            case '<':
+                                append("&lt;");
+                                continue;
+                            case '>':
+                                append("&gt;");
+                                continue;
+                            case '"':
+                                append("&quot;");
+                                continue;
+                            case '\'':
+                                append("&#39;");
+                                continue;
+                            default:
+                                break;
+                        }
+                    }
+                    bytes[count++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[count++] = (byte) (0xC0 | (c >> 6));
+                    bytes[count++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    bytes[count++] = (byte) (0xF0 | (codePoint >> 18));
+                    bytes[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    bytes[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    bytes[count++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    bytes[count++] = '?';
+                } else {
+                    bytes[count++] = (byte) (0xE0 | (c >> 12));
+                    bytes[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[count++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+        }
+
+        private void append(String ascii) {
+            for (int i = 0; i < ascii.length(); i++) {
+                bytes[count++] = (byte) ascii.charAt(i);
+            }
+        }
+
+        void flush() throws IOException {
+            if (count > 0) {
+                out.write(bytes, 0, count);
+                count = 0;
+            }
+        }
+    }
+}
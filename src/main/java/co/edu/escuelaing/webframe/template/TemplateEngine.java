@@ -0,0 +1,147 @@
+package co.edu.escuelaing.webframe.template;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Loads and compiles the templates below a folder. All templates found there are compiled when
+ * the engine is created, so syntax errors show up at startup and requests never parse; names not
+ * found in the folder are looked up on the classpath under {@code templates/}. In reload mode,
+ * meant for development, a template is recompiled when its file changes.
+ */
+public final class TemplateEngine {
+
+    private static final String CLASSPATH_PREFIX = "templates/";
+    private static volatile TemplateEngine defaultEngine;
+
+    private final Path root;
+    private final boolean reload;
+    private final ConcurrentHashMap<String, Compiled> templates = new ConcurrentHashMap<>();
+
+    private static final class Compiled {
+        final Template template;
+        final long lastModified;
+
+        Compiled(Template template, long lastModified) {
+            this.template = template;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * @param root   folder holding the templates; it may not exist
+     * @param reload whether changed template files are recompiled
+     * @throws IllegalArgumentException if a template in the folder does not compile
+     */
+    public TemplateEngine(Path root, boolean reload) {
+        this.root = root.toAbsolutePath().normalize();
+        this.reload = reload;
+        if (Files.isDirectory(this.root)) {
+            try (Stream<Path> files = Files.walk(this.root)) {
+                files.filter(Files::isRegularFile).forEach(file -> {
+                    String name = this.root.relativize(file).toString().replace('\\', '/');
+                    templates.put(name, compileFile(name, file));
+                });
+            } catch (IOException | UncheckedIOException e) {
+                System.err.println("Could not load templates from " + this.root + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the engine configured by {@code server.templateRoot} (default
+     * {@code src/main/resources/templates}) and {@code server.templateReload}.
+     */
+    public static TemplateEngine getDefault() {
+        TemplateEngine engine = defaultEngine;
+        if (engine == null) {
+            synchronized (TemplateEngine.class) {
+                engine = defaultEngine;
+                if (engine == null) {
+                    engine = new TemplateEngine(
+                            Paths.get(System.getProperty("server.templateRoot", "src/main/resources/templates")),
+                            Boolean.getBoolean("server.templateReload"));
+                    defaultEngine = engine;
+                }
+            }
+        }
+        return engine;
+    }
+
+    /**
+     * Returns a compiled template by its path relative to the template folder.
+     *
+     * @throws IllegalArgumentException if there is no such template or it does not compile
+     */
+    public Template get(String name) {
+        Compiled compiled = templates.get(name);
+        if (compiled == null || (reload && compiled.lastModified >= 0)) {
+            compiled = load(name, compiled);
+        }
+        return compiled.template;
+    }
+
+    /**
+     * Returns a view of a template, to fill with its variables.
+     */
+    public View view(String name) {
+        return get(name).view();
+    }
+
+    public boolean isReloading() {
+        return reload;
+    }
+
+    private Compiled load(String name, Compiled previous) {
+        Path file = root.resolve(name).normalize();
+        if (!file.startsWith(root)) {
+            throw new IllegalArgumentException("Template outside the template folder: " + name);
+        }
+        try {
+            long lastModified = Files.getLastModifiedTime(file).toMillis();
+            if (previous != null && previous.lastModified == lastModified) {
+                return previous;
+            }
+            Compiled compiled = compileFile(name, file);
+            templates.put(name, compiled);
+            return compiled;
+        } catch (NoSuchFileException e) {
+            return templates.computeIfAbsent(name, TemplateEngine::loadResource);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read template " + name, e);
+        }
+    }
+
+    private static Compiled compileFile(String name, Path file) {
+        try {
+            long lastModified = Files.getLastModifiedTime(file).toMillis();
+            String source = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            return new Compiled(Template.compile(name, source), lastModified);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read template " + name, e);
+        }
+    }
+
+    /**
+     * Loads a template packaged with the application; such templates never change, so they are not reloaded.
+     */
+    private static Compiled loadResource(String name) {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        try (InputStream in = loader.getResourceAsStream(CLASSPATH_PREFIX + name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Template not found: " + name);
+            }
+            return new Compiled(Template.compile(name, new String(in.readAllBytes(), StandardCharsets.UTF_8)), -1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read template " + name, e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package co.edu.escuelaing.webframe.template;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A template together with the values of its variables, returned by handlers to render an
+ * HTML page. Templates without variables are sent from their precompiled bytes with a
+ * Content-Length; the others are rendered while the response is written.
+ */
+public final class View {
+
+    private final Template template;
+    private final Object[] values;
+
+    View(Template template) {
+        this.template = template;
+        this.values = new Object[template.variableCount()];
+    }
+
+    /**
+     * Sets a variable; values are rendered with {@code toString()}.
+     *
+     * @throws IllegalArgumentException if the template does not use the variable
+     */
+    public View set(String variable, Object value) {
+        int index = template.variableIndex(variable);
+        if (index < 0) {
+            throw new IllegalArgumentException("Template " + template.getName() + " has no variable '" + variable + "'");
+        }
+        values[index] = value;
+        return this;
+    }
+
+    public Template getTemplate() {
+        return template;
+    }
+
+    public void renderTo(OutputStream out) throws IOException {
+        template.render(values, out);
+    }
+}
@@ -0,0 +1,189 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.InputStream;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import co.edu.escuelaing.webframe.annotations.GetMapping;
+import co.edu.escuelaing.webframe.annotations.RequestParam;
+import co.edu.escuelaing.webframe.annotations.RestController;
+
+/**
+ * Tests for rate limiting, load shedding and the request head timeout, run against every engine.
+ */
+@RunWith(Parameterized.class)
+public class AdmissionControlTest {
+
+    private static volatile CountDownLatch slowStarted;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> engines() {
+        return Arrays.asList(new Object[][] { { EngineType.BLOCKING }, { EngineType.NIO } });
+    }
+
+    private final EngineType engine;
+    private ServerEngine server;
+
+    public AdmissionControlTest(EngineType engine) {
+        this.engine = engine;
+    }
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    private void start(ServerConfig config) throws Exception {
+        slowStarted = new CountDownLatch(1);
+        config.setEngine(engine);
+        server = TestServers.start(config, AdmissionController.class);
+    }
+
+    @Test
+    public void testClientOverItsRateGets429AndKeepsConnection() throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setRateLimit(0.5);
+        config.setRateLimitBurst(2);
+        start(config);
+
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            socket.setSoTimeout(5000);
+            InputStream in = socket.getInputStream();
+            for (int i = 0; i < 2; i++) {
+                RawHttpClient.write(socket, RawHttpClient.get("/fast"));
+                assertEquals(200, RawHttpClient.read(in).status);
+            }
+            RawHttpClient.write(socket, RawHttpClient.get("/fast"));
+            RawHttpClient.Response limited = RawHttpClient.read(in);
+            assertEquals(429, limited.status);
+            assertEquals("2", limited.header("Retry-After"));
+            assertEquals("keep-alive", limited.header("Connection"));
+
+            RawHttpClient.write(socket, RawHttpClient.get("/metrics"));
+            RawHttpClient.Response metrics = RawHttpClient.read(in);
+            assertEquals(200, metrics.status);
+            assertTrue(metrics.bodyText().contains("webframe_requests_rate_limited 1"));
+        }
+    }
+
+    @Test
+    public void testRequestsOverTheConcurrencyCapAreShed() throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setMaxConcurrentRequests(1);
+        config.setRetryAfterSeconds(3);
+        start(config);
+
+        try (Socket slow = new Socket("localhost", server.getLocalPort())) {
+            slow.setSoTimeout(5000);
+            RawHttpClient.write(slow, RawHttpClient.get("/slow?millis=500"));
+            assertTrue(slowStarted.await(5, TimeUnit.SECONDS));
+
+            try (Socket shed = new Socket("localhost", server.getLocalPort())) {
+                shed.setSoTimeout(5000);
+                RawHttpClient.write(shed, RawHttpClient.get("/fast"));
+                RawHttpClient.Response response = RawHttpClient.read(shed.getInputStream());
+                assertEquals(503, response.status);
+                assertEquals("3", response.header("Retry-After"));
+                assertEquals("close", response.header("Connection"));
+                assertEquals(-1, shed.getInputStream().read());
+            }
+            assertEquals(200, RawHttpClient.read(slow.getInputStream()).status);
+        }
+        // the slow request counts until its worker has finished writing, which can be a moment
+        // after the client has read the response
+        long deadline = System.currentTimeMillis() + 2000;
+        RawHttpClient.Response after;
+        do {
+            after = RawHttpClient.exchange(server.getLocalPort(), RawHttpClient.get("/fast"));
+        } while (after.status == 503 && System.currentTimeMillis() < deadline);
+        assertEquals(200, after.status);
+    }
+
+    @Test
+    public void testRequestsQueuedTooLongAreShed() throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setWorkerThreads(1);
+        config.setMaxQueueTimeMillis(100);
+        start(config);
+
+        try (Socket slow = new Socket("localhost", server.getLocalPort());
+                Socket queued = new Socket("localhost", server.getLocalPort())) {
+            slow.setSoTimeout(5000);
+            queued.setSoTimeout(5000);
+            RawHttpClient.write(slow, RawHttpClient.get("/slow?millis=400", "Connection: close"));
+            assertTrue(slowStarted.await(5, TimeUnit.SECONDS));
+            RawHttpClient.write(queued, RawHttpClient.get("/fast"));
+
+            assertEquals(200, RawHttpClient.read(slow.getInputStream()).status);
+            RawHttpClient.Response response = RawHttpClient.read(queued.getInputStream());
+            assertEquals(503, response.status);
+            assertEquals("1", response.header("Retry-After"));
+        }
+    }
+
+    @Test
+    public void testSlowRequestHeadGets408() throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setHeaderTimeoutMillis(200);
+        start(config);
+
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            socket.setSoTimeout(5000);
+            long start = System.nanoTime();
+            RawHttpClient.write(socket, "GET /fast HTTP/1.1\r\nHost: local");
+            Thread.sleep(100);
+            RawHttpClient.write(socket, "host\r\nX-Slow: 1");
+
+            InputStream in = socket.getInputStream();
+            RawHttpClient.Response response = RawHttpClient.read(in);
+            assertEquals(408, response.status);
+            assertEquals(-1, in.read());
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(3));
+        }
+    }
+
+    @Test
+    public void testIdleConnectionIsNotSubjectToHeadTimeout() throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setHeaderTimeoutMillis(200);
+        start(config);
+
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            socket.setSoTimeout(5000);
+            InputStream in = socket.getInputStream();
+            RawHttpClient.write(socket, RawHttpClient.get("/fast"));
+            assertEquals(200, RawHttpClient.read(in).status);
+            Thread.sleep(600);
+            RawHttpClient.write(socket, RawHttpClient.get("/fast"));
+            assertEquals(200, RawHttpClient.read(in).status);
+        }
+    }
+
+    @RestController
+    public static class AdmissionController {
+
+        @GetMapping("/slow")
+        public String slow(@RequestParam(value = "millis", defaultValue = "0") String millis) throws InterruptedException {
+            slowStarted.countDown();
+            Thread.sleep(Long.parseLong(millis));
+            return "slow";
+        }
+
+        @GetMapping("/fast")
+        public String fast() {
+            return "fast";
+        }
+    }
+}
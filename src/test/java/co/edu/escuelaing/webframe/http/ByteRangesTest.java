@@ -0,0 +1,59 @@
+package co.edu.escuelaing.webframe.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Unit tests for Range header parsing.
+ */
+public class ByteRangesTest {
+
+    @Test
+    public void testResolvesRangeForms() {
+        ByteRanges ranges = ByteRanges.parse("bytes=0-99", 1000);
+        assertEquals(1, ranges.count());
+        assertEquals("bytes 0-99/1000", ranges.contentRange(0));
+
+        assertEquals("bytes 900-999/1000", ByteRanges.parse("bytes=900-", 1000).contentRange(0));
+        assertEquals("bytes 800-999/1000", ByteRanges.parse("bytes=-200", 1000).contentRange(0));
+        assertEquals("bytes 0-999/1000", ByteRanges.parse("bytes=-5000", 1000).contentRange(0));
+        assertEquals("bytes 990-999/1000", ByteRanges.parse("BYTES=990-5000", 1000).contentRange(0));
+        assertEquals(10, ByteRanges.parse("bytes=990-5000", 1000).count(0));
+    }
+
+    @Test
+    public void testMergesOverlappingAndAdjacentRanges() {
+        ByteRanges ranges = ByteRanges.parse("bytes=500-599, 0-9, 10-19, 5-14, 550-", 1000);
+        assertEquals(2, ranges.count());
+        assertEquals("bytes 0-19/1000", ranges.contentRange(0));
+        assertEquals("bytes 500-999/1000", ranges.contentRange(1));
+    }
+
+    @Test
+    public void testUnsatisfiableRanges() {
+        ByteRanges ranges = ByteRanges.parse("bytes=1000-1100, -0", 1000);
+        assertFalse(ranges.isSatisfiable());
+        assertEquals("bytes */1000", ranges.unsatisfiedRange());
+        assertFalse(ByteRanges.parse("bytes=-10", 0).isSatisfiable());
+        assertTrue(ByteRanges.parse("bytes=1000-1100, 5-6", 1000).isSatisfiable());
+    }
+
+    @Test
+    public void testMalformedHeadersAreIgnored() {
+        assertNull(ByteRanges.parse(null, 10));
+        assertNull(ByteRanges.parse("items=0-1", 10));
+        assertNull(ByteRanges.parse("bytes=5-1", 10));
+        assertNull(ByteRanges.parse("bytes=a-b", 10));
+        assertNull(ByteRanges.parse("bytes=0-1,,2-3", 10));
+        assertNull(ByteRanges.parse("bytes=-", 10));
+        assertNull(ByteRanges.parse("bytes=99999999999999999999-", 10));
+        StringBuilder many = new StringBuilder("bytes=0-0");
+        for (int i = 1; i <= ByteRanges.MAX_RANGES; i++) {
+            many.append(',').append(i * 2).append('-').append(i * 2);
+        }
+        assertNull(ByteRanges.parse(many.toString(), 1000));
+    }
+}
@@ -0,0 +1,163 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import co.edu.escuelaing.webframe.annotations.GetMapping;
+import co.edu.escuelaing.webframe.annotations.RequestParam;
+import co.edu.escuelaing.webframe.annotations.RestController;
+
+/**
+ * Tests for gzip/deflate negotiation of static and dynamic responses, run against every engine.
+ */
+@RunWith(Parameterized.class)
+public class CompressionTest {
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> engines() {
+        return Arrays.asList(new Object[][] { { EngineType.BLOCKING }, { EngineType.NIO } });
+    }
+
+    private final EngineType engine;
+    private Path root;
+    private ServerEngine server;
+
+    public CompressionTest(EngineType engine) {
+        this.engine = engine;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("compression-test");
+        ServerConfig config = new ServerConfig();
+        config.setEngine(engine);
+        config.setStaticRoot(root.toString());
+        server = TestServers.start(config, TextController.class);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+        try (Stream<Path> files = Files.walk(root)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testStaticFileIsSentInNegotiatedEncoding() throws Exception {
+        byte[] content = repeat("body { color: red; }\n", 200);
+        Files.write(root.resolve("site.css"), content);
+
+        RawHttpClient.Response gzip = RawHttpClient.exchange(server.getLocalPort(),
+                RawHttpClient.get("/site.css", "Accept-Encoding: gzip, deflate"));
+        RawHttpClient.Response deflate = RawHttpClient.exchange(server.getLocalPort(),
+                RawHttpClient.get("/site.css", "Accept-Encoding: gzip;q=0.5, deflate"));
+
+        assertEquals("gzip", gzip.header("Content-Encoding"));
+        assertEquals("Accept-Encoding", gzip.header("Vary"));
+        assertArrayEquals(content, gunzip(gzip.body));
+        assertEquals("deflate", deflate.header("Content-Encoding"));
+        assertArrayEquals(content, inflate(deflate.body));
+    }
+
+    @Test
+    public void testIdentityWithoutAcceptEncoding() throws Exception {
+        byte[] content = repeat("var x = 1;\n", 300);
+        Files.write(root.resolve("app.js"), content);
+
+        RawHttpClient.Response response = RawHttpClient.exchange(server.getLocalPort(), RawHttpClient.get("/app.js"));
+
+        assertNull(response.header("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.header("Vary"));
+        assertArrayEquals(content, response.body);
+    }
+
+    @Test
+    public void testLargeDynamicResponseIsStreamedCompressed() throws Exception {
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            InputStream in = socket.getInputStream();
+            for (int i = 0; i < 2; i++) {
+                RawHttpClient.write(socket, RawHttpClient.get("/text?size=200000", "Accept-Encoding: gzip"));
+                RawHttpClient.Response response = RawHttpClient.read(in);
+
+                assertEquals(200, response.status);
+                assertEquals("gzip", response.header("Content-Encoding"));
+                assertEquals("chunked", response.header("Transfer-Encoding"));
+                assertNull(response.header("Content-Length"));
+                assertEquals(TextController.text(200000), new String(gunzip(response.body), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    public void testSmallDynamicResponseIsNotCompressed() throws Exception {
+        RawHttpClient.Response response = RawHttpClient.exchange(server.getLocalPort(),
+                RawHttpClient.get("/text?size=10", "Accept-Encoding: gzip"));
+
+        assertNull(response.header("Content-Encoding"));
+        assertEquals(TextController.text(10), response.bodyText());
+    }
+
+    private static byte[] repeat(String text, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(text);
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gunzip(byte[] data) throws IOException {
+        return readAll(new GZIPInputStream(new ByteArrayInputStream(data)));
+    }
+
+    private static byte[] inflate(byte[] data) throws IOException {
+        return readAll(new InflaterInputStream(new ByteArrayInputStream(data)));
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    @RestController
+    public static class TextController {
+
+        @GetMapping("/text")
+        public String text(@RequestParam("size") String size) {
+            return text(Integer.parseInt(size));
+        }
+
+        static String text(int size) {
+            StringBuilder builder = new StringBuilder(size);
+            for (int i = 0; i < size; i++) {
+                builder.append((char) ('a' + i % 7));
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import co.edu.escuelaing.webframe.annotations.ETag;
+import co.edu.escuelaing.webframe.annotations.GetMapping;
+import co.edu.escuelaing.webframe.annotations.RestController;
+
+/**
+ * Tests for ETag / Last-Modified validators and 304 responses, run against every engine.
+ */
+@RunWith(Parameterized.class)
+public class ConditionalGetTest {
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> engines() {
+        return Arrays.asList(new Object[][] { { EngineType.BLOCKING }, { EngineType.NIO } });
+    }
+
+    private final EngineType engine;
+    private Path root;
+    private ServerEngine server;
+
+    public ConditionalGetTest(EngineType engine) {
+        this.engine = engine;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("conditional-test");
+        ServerConfig config = new ServerConfig();
+        config.setEngine(engine);
+        config.setStaticRoot(root.toString());
+        config.setStaticCacheMaxFileSize(16 * 1024);
+        config.setStaticMaxAgeSeconds(60);
+        server = TestServers.start(config, TaggedController.class);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+        try (Stream<Path> files = Files.walk(root)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testCachedFileRevalidatesWithETag() throws Exception {
+        Files.write(root.resolve("style.css"), "h1 { color: blue; }".getBytes(StandardCharsets.UTF_8));
+
+        RawHttpClient.Response first = get("/style.css");
+        String etag = first.header("ETag");
+        assertNotNull(etag);
+        assertEquals("public, max-age=60", first.header("Cache-Control"));
+        assertNotNull(first.header("Last-Modified"));
+
+        RawHttpClient.Response second = get("/style.css", "If-None-Match: " + etag);
+        assertEquals(304, second.status);
+        assertEquals(etag, second.header("ETag"));
+        assertNull(second.header("Content-Length"));
+        assertEquals(0, second.body.length);
+
+        RawHttpClient.Response byDate = get("/style.css", "If-Modified-Since: " + first.header("Last-Modified"));
+        assertEquals(304, byDate.status);
+    }
+
+    @Test
+    public void testCompressedVariantHasItsOwnTag() throws Exception {
+        StringBuilder css = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            css.append("p.item").append(i).append(" { margin: 0; }\n");
+        }
+        Files.write(root.resolve("list.css"), css.toString().getBytes(StandardCharsets.UTF_8));
+
+        String identityTag = get("/list.css").header("ETag");
+        RawHttpClient.Response gzip = get("/list.css", "Accept-Encoding: gzip");
+
+        assertEquals("gzip", gzip.header("Content-Encoding"));
+        assertNotEquals(identityTag, gzip.header("ETag"));
+        assertEquals(200, get("/list.css", "Accept-Encoding: gzip", "If-None-Match: " + identityTag).status);
+        assertEquals(304, get("/list.css", "Accept-Encoding: gzip", "If-None-Match: " + gzip.header("ETag")).status);
+    }
+
+    @Test
+    public void testLargeFileValidatorsFollowModification() throws Exception {
+        Path file = root.resolve("photo.jpg");
+        Files.write(file, new byte[64 * 1024]);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1_600_000_000_000L));
+
+        RawHttpClient.Response first = get("/photo.jpg");
+        String etag = first.header("ETag");
+        assertEquals("Sun, 13 Sep 2020 12:26:40 GMT", first.header("Last-Modified"));
+        assertEquals(304, get("/photo.jpg", "If-None-Match: W/" + etag).status);
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1_700_000_000_000L));
+        RawHttpClient.Response changed = get("/photo.jpg", "If-None-Match: " + etag);
+        assertEquals(200, changed.status);
+        assertNotEquals(etag, changed.header("ETag"));
+        assertEquals(64 * 1024, changed.body.length);
+    }
+
+    @Test
+    public void testControllerOptsInToETags() throws Exception {
+        RawHttpClient.Response tagged = get("/tagged");
+        assertNotNull(tagged.header("ETag"));
+        assertEquals("no-cache", tagged.header("Cache-Control"));
+
+        RawHttpClient.Response revalidated = get("/tagged", "If-None-Match: \"other\", " + tagged.header("ETag"));
+        assertEquals(304, revalidated.status);
+        assertEquals(0, revalidated.body.length);
+
+        assertNull(get("/untagged").header("ETag"));
+    }
+
+    private RawHttpClient.Response get(String path, String... headers) throws Exception {
+        return RawHttpClient.exchange(server.getLocalPort(), RawHttpClient.get(path, headers));
+    }
+
+    @RestController
+    public static class TaggedController {
+
+        @ETag
+        @GetMapping("/tagged")
+        public String tagged() {
+            return "stable content";
+        }
+
+        @GetMapping("/untagged")
+        public String untagged() {
+            return "plain content";
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package co.edu.escuelaing.webframe.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Unit tests for Accept-Encoding negotiation in the ContentEncoding enum.
+ */
+public class ContentEncodingTest {
+
+    @Test
+    public void testNegotiateHonoursQualityValues() {
+        assertEquals(ContentEncoding.IDENTITY, ContentEncoding.negotiate(null));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("gzip, deflate"));
+        assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0.2, deflate;q=0.8"));
+        assertEquals(ContentEncoding.IDENTITY, ContentEncoding.negotiate("gzip;q=0, br"));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("*"));
+        assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0, *"));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("x-gzip"));
+    }
+
+    @Test
+    public void testCompressibleTypes() {
+        assertTrue(ContentEncoding.isCompressible("text/html; charset=UTF-8"));
+        assertTrue(ContentEncoding.isCompressible("application/javascript"));
+        assertFalse(ContentEncoding.isCompressible("image/png"));
+        assertFalse(ContentEncoding.isCompressible(null));
+    }
+}
@@ -0,0 +1,133 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.InputStream;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import co.edu.escuelaing.webframe.annotations.GetMapping;
+import co.edu.escuelaing.webframe.annotations.RequestParam;
+import co.edu.escuelaing.webframe.annotations.RestController;
+
+/**
+ * Tests for draining in-flight requests on shutdown, run against every engine.
+ */
+@RunWith(Parameterized.class)
+public class GracefulShutdownTest {
+
+    private static volatile CountDownLatch slowStarted;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> engines() {
+        return Arrays.asList(new Object[][] { { EngineType.BLOCKING }, { EngineType.NIO } });
+    }
+
+    private final EngineType engine;
+    private ServerEngine server;
+
+    public GracefulShutdownTest(EngineType engine) {
+        this.engine = engine;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        slowStarted = new CountDownLatch(1);
+        ServerConfig config = new ServerConfig();
+        config.setEngine(engine);
+        server = TestServers.start(config, SlowController.class);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testInFlightRequestCompletesAndConnectionCloses() throws Exception {
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            socket.setSoTimeout(5000);
+            RawHttpClient.write(socket, RawHttpClient.get("/slow?millis=300"));
+            assertTrue(slowStarted.await(5, TimeUnit.SECONDS));
+
+            DrainReport report = server.shutdown(5000);
+
+            InputStream in = socket.getInputStream();
+            RawHttpClient.Response response = RawHttpClient.read(in);
+            assertEquals(200, response.status);
+            assertEquals("done", response.bodyText());
+            assertEquals("close", response.header("Connection"));
+            assertEquals(-1, in.read());
+
+            assertEquals(1, report.getCompleted());
+            assertEquals(0, report.getAborted());
+            assertTrue(report.isClean());
+            assertFalse(server.isRunning());
+        }
+    }
+
+    @Test
+    public void testIdleKeepAliveConnectionIsClosedImmediately() throws Exception {
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            socket.setSoTimeout(5000);
+            RawHttpClient.write(socket, RawHttpClient.get("/fast"));
+            InputStream in = socket.getInputStream();
+            assertEquals(200, RawHttpClient.read(in).status);
+
+            DrainReport report = server.shutdown(5000);
+
+            assertEquals(-1, in.read());
+            assertTrue(report.isClean());
+            assertTrue("Idle connections should not hold the drain: " + report, report.getElapsedMillis() < 2000);
+        }
+    }
+
+    @Test
+    public void testRequestsPastTheDeadlineAreAborted() throws Exception {
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            socket.setSoTimeout(5000);
+            RawHttpClient.write(socket, RawHttpClient.get("/slow?millis=3000"));
+            assertTrue(slowStarted.await(5, TimeUnit.SECONDS));
+
+            DrainReport report = server.shutdown(100);
+
+            assertEquals(0, report.getCompleted());
+            assertEquals(1, report.getAborted());
+            assertFalse(report.isClean());
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+    @Test
+    public void testShutdownIsIdempotent() {
+        DrainReport first = server.shutdown(1000);
+        assertTrue(first.isClean());
+        assertTrue(first == server.shutdown(1000));
+    }
+
+    @RestController
+    public static class SlowController {
+
+        @GetMapping("/slow")
+        public String slow(@RequestParam(value = "millis", defaultValue = "0") String millis) throws InterruptedException {
+            slowStarted.countDown();
+            Thread.sleep(Long.parseLong(millis));
+            return "done";
+        }
+
+        @GetMapping("/fast")
+        public String fast() {
+            return "fast";
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Unit tests for the byte-level request head parser.
+ */
+public class HttpRequestParserTest {
+
+    private final HttpRequestParser parser = new HttpRequestParser(64, 256, 4);
+    private final HttpRequest request = new HttpRequest();
+
+    @Test
+    public void testParsesRequestLineAndHeaders() throws Exception {
+        String head = "GET /greeting?name=Ada HTTP/1.1\r\nHost: localhost\r\nAccept-Encoding:  gzip \r\n\r\n";
+        byte[] data = bytes(head);
+
+        assertEquals(data.length, parser.parse(data, 0, data.length, request));
+        assertSame("GET", request.getMethod());
+        assertEquals("/greeting?name=Ada", request.getTarget());
+        assertSame("HTTP/1.1", request.getVersion());
+        assertEquals("localhost", request.getHeader("host"));
+        assertEquals("gzip", request.getHeader("ACCEPT-ENCODING"));
+        assertNull(request.getHeader("Cookie"));
+        assertFalse(request.hasBody());
+    }
+
+    @Test
+    public void testIncompleteHeadNeedsMoreBytes() throws Exception {
+        byte[] data = bytes("GET / HTTP/1.1\r\nHost: localhost\r\n");
+        assertEquals(-1, parser.parse(data, 0, data.length, request));
+    }
+
+    @Test
+    public void testParsesFromOffsetAndSkipsLeadingBlankLines() throws Exception {
+        byte[] data = bytes("xx\r\nGET /a HTTP/1.0\nConnection: keep-alive\n\nGET /b HTTP/1.1\r\n\r\n");
+
+        int consumed = parser.parse(data, 2, data.length - 2, request);
+        assertEquals("/a", request.getTarget());
+        assertTrue(request.isKeepAliveRequested());
+
+        parser.parse(data, 2 + consumed, data.length - 2 - consumed, request);
+        assertEquals("/b", request.getTarget());
+        assertNull("headers of the previous request must be cleared", request.getHeader("Connection"));
+    }
+
+    @Test
+    public void testRepeatedHeadersAreJoined() throws Exception {
+        byte[] data = bytes("GET / HTTP/1.1\r\nAccept: text/html\r\naccept: */*\r\n\r\n");
+        parser.parse(data, 0, data.length, request);
+        assertEquals("text/html, */*", request.getHeader("Accept"));
+    }
+
+    @Test
+    public void testBodyFraming() throws Exception {
+        byte[] data = bytes("POST /form HTTP/1.1\r\nContent-Length: 12\r\n\r\n");
+        parser.parse(data, 0, data.length, request);
+        assertEquals(12, request.getContentLength());
+        assertTrue(request.hasBody());
+
+        data = bytes("POST /form HTTP/1.1\r\nTransfer-Encoding: Chunked\r\n\r\n");
+        parser.parse(data, 0, data.length, request);
+        assertTrue(request.isChunked());
+        assertEquals(-1, request.getContentLength());
+    }
+
+    @Test
+    public void testLimits() {
+        assertStatus(414, "GET /" + repeat('a', 80) + " HTTP/1.1\r\n\r\n");
+        assertStatus(414, "GET /" + repeat('a', 80));
+        assertStatus(431, "GET / HTTP/1.1\r\nCookie: " + repeat('c', 300) + "\r\n\r\n");
+        assertStatus(431, "GET / HTTP/1.1\r\nCookie: " + repeat('c', 300));
+        assertStatus(431, "GET / HTTP/1.1\r\nA: 1\r\nB: 2\r\nC: 3\r\nD: 4\r\nE: 5\r\n\r\n");
+    }
+
+    @Test
+    public void testMalformedHeads() {
+        assertStatus(400, "GET /\r\n\r\n");
+        assertStatus(400, "GET  / HTTP/1.1\r\n\r\n");
+        assertStatus(400, "GET / HTTP/1.1 extra\r\n\r\n");
+        assertStatus(400, "GET / FTP/1.1\r\n\r\n");
+        assertStatus(400, "GET / HTTP/1.1\r\nHost : localhost\r\n\r\n");
+        assertStatus(400, "GET / HTTP/1.1\r\nNoColon\r\n\r\n");
+        assertStatus(400, "GET / HTTP/1.1\r\nX-A: 1\r\n continued\r\n\r\n");
+        assertStatus(400, "POST / HTTP/1.1\r\nContent-Length: 1x\r\n\r\n");
+        assertStatus(400, "POST / HTTP/1.1\r\nContent-Length: 1\r\nContent-Length: 2\r\n\r\n");
+        assertStatus(400, "POST / HTTP/1.1\r\nContent-Length: 1\r\nTransfer-Encoding: chunked\r\n\r\n");
+        assertStatus(501, "POST / HTTP/1.1\r\nTransfer-Encoding: gzip, chunked\r\n\r\n");
+    }
+
+    private void assertStatus(int status, String head) {
+        byte[] data = bytes(head);
+        try {
+            parser.parse(data, 0, data.length, request);
+            fail("Expected " + status + " for " + head);
+        } catch (HttpParseException e) {
+            assertEquals(head, status, e.getStatusCode());
+        }
+    }
+
+    private static String repeat(char c, int count) {
+        return String.valueOf(c).repeat(count);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,198 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import co.edu.escuelaing.webframe.annotations.GetMapping;
+import co.edu.escuelaing.webframe.annotations.RequestParam;
+import co.edu.escuelaing.webframe.annotations.RestController;
+
+/**
+ * Tests for persistent connections and request pipelining, run against every engine.
+ */
+@RunWith(Parameterized.class)
+public class HttpServerKeepAliveTest {
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> engines() {
+        return Arrays.asList(new Object[][] { { EngineType.BLOCKING }, { EngineType.NIO } });
+    }
+
+    private final EngineType engine;
+    private ServerEngine server;
+
+    public HttpServerKeepAliveTest(EngineType engine) {
+        this.engine = engine;
+    }
+
+    private ServerConfig newConfig() {
+        ServerConfig config = new ServerConfig();
+        config.setEngine(engine);
+        return config;
+    }
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testSequentialRequestsReuseConnection() throws Exception {
+        server = TestServers.start(newConfig(), EchoController.class);
+
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            InputStream in = socket.getInputStream();
+            for (int i = 0; i < 3; i++) {
+                RawHttpClient.write(socket, RawHttpClient.get("/echo?value=" + i));
+                RawHttpClient.Response response = RawHttpClient.read(in);
+
+                assertEquals(200, response.status);
+                assertEquals("keep-alive", response.header("Connection"));
+                assertEquals("echo-" + i, response.bodyText());
+            }
+        }
+    }
+
+    @Test
+    public void testPipelinedRequestsAreAnsweredInOrder() throws Exception {
+        server = TestServers.start(newConfig(), EchoController.class);
+
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            RawHttpClient.write(socket, RawHttpClient.get("/echo?value=a")
+                    + RawHttpClient.get("/echo?value=b")
+                    + RawHttpClient.get("/echo?value=c", "Connection: close"));
+
+            InputStream in = socket.getInputStream();
+            assertEquals("echo-a", RawHttpClient.read(in).bodyText());
+            assertEquals("echo-b", RawHttpClient.read(in).bodyText());
+            RawHttpClient.Response last = RawHttpClient.read(in);
+            assertEquals("echo-c", last.bodyText());
+            assertEquals("close", last.header("Connection"));
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void testHeadResponseHasNoBodyOnKeepAliveConnection() throws Exception {
+        Path root = Files.createTempDirectory("head-test");
+        try {
+            // one file small enough for the static cache and one sent from disk
+            Files.write(root.resolve("small.css"), "body { color: red; }".getBytes("UTF-8"));
+            Files.write(root.resolve("large.css"), new byte[64 * 1024]);
+            ServerConfig config = newConfig();
+            config.setStaticRoot(root.toString());
+            config.setStaticCacheMaxFileSize(1024);
+            server = TestServers.start(config, EchoController.class);
+
+            try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+                InputStream in = socket.getInputStream();
+                for (String file : new String[] { "/small.css", "/large.css" }) {
+                    RawHttpClient.write(socket, "HEAD " + file + " HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                            + RawHttpClient.get("/echo?value=after"));
+                    RawHttpClient.Response head = RawHttpClient.readHead(in);
+                    assertEquals(200, head.status);
+                    assertEquals(String.valueOf(Files.size(root.resolve(file.substring(1)))), head.header("Content-Length"));
+                    assertEquals("keep-alive", head.header("Connection"));
+
+                    RawHttpClient.Response next = RawHttpClient.read(in);
+                    assertEquals(200, next.status);
+                    assertEquals("echo-after", next.bodyText());
+                }
+            }
+        } finally {
+            server.stop();
+            server = null;
+            for (String file : new String[] { "small.css", "large.css" }) {
+                Files.deleteIfExists(root.resolve(file));
+            }
+            Files.delete(root);
+        }
+    }
+
+    @Test
+    public void testHeadIsRoutedToGetHandlerAndOtherMethodsAreRefused() throws Exception {
+        server = TestServers.start(newConfig(), EchoController.class);
+
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            InputStream in = socket.getInputStream();
+            RawHttpClient.write(socket, "HEAD /echo?value=x HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "POST /echo HTTP/1.1\r\nHost: localhost\r\nContent-Length: 0\r\n\r\n"
+                    + RawHttpClient.get("/missing") + RawHttpClient.get("/echo?value=after"));
+            RawHttpClient.Response head = RawHttpClient.readHead(in);
+            assertEquals(200, head.status);
+            assertEquals("6", head.header("Content-Length"));
+
+            RawHttpClient.Response post = RawHttpClient.read(in);
+            assertEquals(405, post.status);
+            assertEquals("GET, HEAD", post.header("Allow"));
+
+            assertEquals(404, RawHttpClient.read(in).status);
+            assertEquals("echo-after", RawHttpClient.read(in).bodyText());
+        }
+    }
+
+    @Test
+    public void testMaxRequestsPerConnection() throws Exception {
+        ServerConfig config = newConfig();
+        config.setMaxKeepAliveRequests(2);
+        server = TestServers.start(config, EchoController.class);
+
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            InputStream in = socket.getInputStream();
+            RawHttpClient.write(socket, RawHttpClient.get("/echo?value=1"));
+            assertEquals("keep-alive", RawHttpClient.read(in).header("Connection"));
+            RawHttpClient.write(socket, RawHttpClient.get("/echo?value=2"));
+            assertEquals("close", RawHttpClient.read(in).header("Connection"));
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void testHttp10ClosesByDefault() throws Exception {
+        server = TestServers.start(newConfig(), EchoController.class);
+
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            RawHttpClient.write(socket, "GET /echo?value=x HTTP/1.0\r\n\r\n");
+            InputStream in = socket.getInputStream();
+            assertEquals("close", RawHttpClient.read(in).header("Connection"));
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void testIdleConnectionIsClosedAfterTimeout() throws Exception {
+        ServerConfig config = newConfig();
+        config.setKeepAliveTimeoutMillis(200);
+        server = TestServers.start(config, EchoController.class);
+
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            socket.setSoTimeout(5000);
+            InputStream in = socket.getInputStream();
+            RawHttpClient.write(socket, RawHttpClient.get("/echo?value=1"));
+            assertEquals(200, RawHttpClient.read(in).status);
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @RestController
+    public static class EchoController {
+
+        @GetMapping("/echo")
+        public String echo(@RequestParam("value") String value) {
+            return "echo-" + value;
+        }
+    }
+}
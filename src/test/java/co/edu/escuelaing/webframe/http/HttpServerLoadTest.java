@@ -0,0 +1,165 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Test;
+
+import co.edu.escuelaing.webframe.annotations.GetMapping;
+import co.edu.escuelaing.webframe.annotations.RestController;
+
+/**
+ * Load tests for the concurrent connection handling of HttpServer.
+ */
+public class HttpServerLoadTest {
+
+    private static final int CLIENTS = Math.max(16, Runtime.getRuntime().availableProcessors() * 2);
+    private static final int REQUESTS_PER_CLIENT = 4;
+    /** Share of one worker's throughput each core must keep once all cores are busy. */
+    private static final double MIN_PER_CORE_EFFICIENCY = 0.5;
+
+    private ServerEngine server;
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testThroughputScalesWithCores() throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        Set<Integer> workerCounts = new TreeSet<>(Arrays.asList(1, Math.max(1, cores / 2), cores));
+
+        double singleWorker = 0;
+        StringBuilder results = new StringBuilder();
+        for (int workers : workerCounts) {
+            ServerConfig config = new ServerConfig();
+            config.setWorkerThreads(workers);
+            config.setQueueCapacity(CLIENTS * REQUESTS_PER_CLIENT);
+            double throughput = measureThroughput(config);
+            results.append(String.format(" workers=%d: %.1f req/s", workers, throughput));
+            if (workers == 1) {
+                singleWorker = throughput;
+            }
+            // each worker runs on its own core, so it should keep most of what one worker alone does
+            double perCore = throughput / workers;
+            assertTrue("cores=" + cores + results, perCore >= singleWorker * MIN_PER_CORE_EFFICIENCY);
+        }
+    }
+
+    @Test
+    public void testVirtualModeServesRequests() throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setExecutionMode(ExecutionMode.VIRTUAL);
+        server = startServer(config);
+
+        assertEquals(200, sendRequest(server.getLocalPort(), "/fast"));
+    }
+
+    @Test
+    public void testFullQueueIsRejectedWithServiceUnavailable() throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setWorkerThreads(1);
+        config.setQueueCapacity(1);
+        server = startServer(config);
+        int port = server.getLocalPort();
+
+        ExecutorService clients = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> busy = clients.submit(() -> sendRequest(port, "/blocking"));
+            Thread.sleep(SlowController.DELAY_MILLIS / 4);
+            Future<Integer> queued = clients.submit(() -> sendRequest(port, "/blocking"));
+            Thread.sleep(SlowController.DELAY_MILLIS / 4);
+
+            assertEquals(503, sendRequest(port, "/fast"));
+            assertEquals(200, (int) busy.get());
+            assertEquals(200, (int) queued.get());
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private double measureThroughput(ServerConfig config) throws Exception {
+        server = startServer(config);
+        int port = server.getLocalPort();
+
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int i = 0; i < CLIENTS; i++) {
+                tasks.add(() -> {
+                    int ok = 0;
+                    for (int r = 0; r < REQUESTS_PER_CLIENT; r++) {
+                        if (sendRequest(port, "/compute") == 200) {
+                            ok++;
+                        }
+                    }
+                    return ok;
+                });
+            }
+
+            long start = System.nanoTime();
+            int completed = 0;
+            for (Future<Integer> result : clients.invokeAll(tasks)) {
+                completed += result.get();
+            }
+            long elapsed = System.nanoTime() - start;
+
+            assertEquals(CLIENTS * REQUESTS_PER_CLIENT, completed);
+            return completed / (elapsed / 1_000_000_000.0);
+        } finally {
+            clients.shutdownNow();
+            server.stop();
+            server = null;
+        }
+    }
+
+    private static ServerEngine startServer(ServerConfig config) throws Exception {
+        return TestServers.start(config, SlowController.class);
+    }
+
+    private static int sendRequest(int port, String path) throws IOException {
+        return RawHttpClient.exchange(port, RawHttpClient.get(path, "Connection: close")).status;
+    }
+
+    @RestController
+    public static class SlowController {
+
+        static final long DELAY_MILLIS = 200;
+        static final int COMPUTE_ROUNDS = 5_000_000;
+
+        @GetMapping("/compute")
+        public String compute() {
+            // a few milliseconds of work that keeps its core busy and cannot be optimized away
+            long value = 1;
+            for (int i = 0; i < COMPUTE_ROUNDS; i++) {
+                value = value * 6364136223846793005L + 1442695040888963407L;
+            }
+            return Long.toString(value);
+        }
+
+        @GetMapping("/blocking")
+        public String blocking() throws InterruptedException {
+            Thread.sleep(DELAY_MILLIS);
+            return "blocking";
+        }
+
+        @GetMapping("/fast")
+        public String fast() {
+            return "fast";
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import co.edu.escuelaing.webframe.annotations.GetMapping;
+import co.edu.escuelaing.webframe.annotations.PostMapping;
+import co.edu.escuelaing.webframe.annotations.RequestBody;
+import co.edu.escuelaing.webframe.annotations.RestController;
+import co.edu.escuelaing.webframe.http.buffer.BufferPool;
+
+/**
+ * Tests that every buffer taken from the shared pool while serving goes back to it, on
+ * completed, failed and abandoned exchanges, run against every engine with leak detection.
+ */
+@RunWith(Parameterized.class)
+public class PooledBuffersTest {
+
+    private static final int STREAM_ROWS = 5_000;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> engines() {
+        return Arrays.asList(new Object[][] { { EngineType.BLOCKING }, { EngineType.NIO } });
+    }
+
+    private final EngineType engine;
+    private final BufferPool pool = BufferPool.shared();
+    private ServerEngine server;
+    private Set<Throwable> outstandingBefore;
+
+    public PooledBuffersTest(EngineType engine) {
+        this.engine = engine;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        assertTrue("the test build enables leak detection", pool.isLeakDetectionEnabled());
+        // buffers of other tests' servers may still be on their way back
+        outstandingBefore = Collections.newSetFromMap(new IdentityHashMap<>());
+        outstandingBefore.addAll(pool.getOutstandingAcquisitions());
+        ServerConfig config = new ServerConfig();
+        config.setEngine(engine);
+        config.setCompressionEnabled(false);
+        server = TestServers.start(config, BufferController.class);
+    }
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testCompletedExchangesReturnTheirBuffers() throws Exception {
+        long allocatedBefore = pool.getAllocationCount();
+        long acquiredBefore = pool.getAcquireCount();
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            InputStream in = socket.getInputStream();
+            for (int i = 0; i < 20; i++) {
+                RawHttpClient.write(socket, RawHttpClient.get("/stream") + RawHttpClient.get("/buffer")
+                        + "POST /count HTTP/1.1\r\nHost: localhost\r\nContent-Length: 5\r\n\r\nhello"
+                        + "POST /ignore HTTP/1.1\r\nHost: localhost\r\nContent-Length: 3\r\n\r\nabc");
+                assertEquals(STREAM_ROWS, RawHttpClient.read(in).bodyText().split("\n").length);
+                assertEquals(3, RawHttpClient.read(in).body.length);
+                assertEquals("5", RawHttpClient.read(in).bodyText());
+                assertEquals("ignored", RawHttpClient.read(in).bodyText());
+            }
+        }
+        server.stop();
+
+        assertNoLeaks();
+        long acquired = pool.getAcquireCount() - acquiredBefore;
+        long allocated = pool.getAllocationCount() - allocatedBefore;
+        assertTrue("allocated " + allocated + " of " + acquired, allocated < acquired / 2);
+    }
+
+    @Test
+    public void testFailedAndAbandonedExchangesReturnTheirBuffers() throws Exception {
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            // the handler fails mid-stream, so the server cuts the chunked response short
+            RawHttpClient.write(socket, RawHttpClient.get("/broken"));
+            InputStream in = socket.getInputStream();
+            while (in.read(new byte[8192]) >= 0) {
+                // drain until the server closes
+            }
+        }
+
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            // a body is announced but never sent, and the client leaves mid-response
+            RawHttpClient.write(socket, RawHttpClient.get("/stream")
+                    + "POST /count HTTP/1.1\r\nHost: localhost\r\nContent-Length: 100\r\n\r\npartial");
+            socket.getInputStream().read(new byte[16]);
+        }
+        server.stop();
+
+        assertNoLeaks();
+    }
+
+    private void assertNoLeaks() throws InterruptedException {
+        List<Throwable> leaked = new ArrayList<>();
+        for (long deadline = System.currentTimeMillis() + 2000;;) {
+            leaked.clear();
+            for (Throwable acquisition : pool.getOutstandingAcquisitions()) {
+                if (!outstandingBefore.contains(acquisition)) {
+                    leaked.add(acquisition);
+                }
+            }
+            if (leaked.isEmpty() || System.currentTimeMillis() > deadline) {
+                break;
+            }
+            Thread.sleep(20);
+        }
+        if (!leaked.isEmpty()) {
+            StringWriter traces = new StringWriter();
+            for (Throwable acquisition : leaked) {
+                acquisition.printStackTrace(new PrintWriter(traces));
+            }
+            fail(leaked.size() + " buffers were not released:\n" + traces);
+        }
+    }
+
+    @RestController
+    public static class BufferController {
+
+        @GetMapping("/stream")
+        public StreamingTextBody stream() {
+            return out -> {
+                for (int i = 0; i < STREAM_ROWS; i++) {
+                    out.write(i + ",row-" + i + "\n");
+                }
+            };
+        }
+
+        @GetMapping("/broken")
+        public StreamingTextBody broken() {
+            return out -> {
+                out.write("x".repeat(20_000));
+                throw new IOException("Export failed");
+            };
+        }
+
+        @GetMapping("/buffer")
+        public ByteBuffer buffer() {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(3);
+            buffer.put(new byte[] { 1, 2, 3 }).flip();
+            return buffer;
+        }
+
+        @PostMapping("/count")
+        public String count(@RequestBody InputStream body) throws IOException {
+            long total = 0;
+            while (body.read() >= 0) {
+                total++;
+            }
+            return String.valueOf(total);
+        }
+
+        @PostMapping("/ignore")
+        public String ignore() {
+            return "ignored";
+        }
+    }
+}
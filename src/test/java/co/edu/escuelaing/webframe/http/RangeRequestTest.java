@@ -0,0 +1,154 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+/**
+ * Tests for Range and If-Range on cached and transferred static files, run against every engine.
+ */
+@RunWith(Parameterized.class)
+public class RangeRequestTest {
+
+    private static final int CACHED_SIZE = 4000;
+    private static final int LARGE_SIZE = 256 * 1024 + 3;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> engines() {
+        return Arrays.asList(new Object[][] { { EngineType.BLOCKING }, { EngineType.NIO } });
+    }
+
+    private final EngineType engine;
+    private Path root;
+    private ServerEngine server;
+    private byte[] cached;
+    private byte[] large;
+
+    public RangeRequestTest(EngineType engine) {
+        this.engine = engine;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("range-test");
+        Random random = new Random(7);
+        cached = new byte[CACHED_SIZE];
+        large = new byte[LARGE_SIZE];
+        random.nextBytes(cached);
+        random.nextBytes(large);
+        Files.write(root.resolve("small.png"), cached);
+        Files.write(root.resolve("large.png"), large);
+
+        ServerConfig config = new ServerConfig();
+        config.setEngine(engine);
+        config.setStaticRoot(root.toString());
+        config.setStaticCacheMaxFileSize(16 * 1024);
+        server = TestServers.start(config);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+        try (Stream<Path> files = Files.walk(root)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testSingleRangeFromCacheAndFromFile() throws Exception {
+        for (String file : new String[] { "/small.png", "/large.png" }) {
+            byte[] content = file.equals("/small.png") ? cached : large;
+            RawHttpClient.Response response = get(file, "Range: bytes=100-1099");
+            assertEquals(206, response.status);
+            assertEquals("bytes 100-1099/" + content.length, response.header("Content-Range"));
+            assertEquals("1000", response.header("Content-Length"));
+            assertEquals("image/png", response.header("Content-Type"));
+            assertArrayEquals(Arrays.copyOfRange(content, 100, 1100), response.body);
+
+            RawHttpClient.Response suffix = get(file, "Range: bytes=-10");
+            assertEquals(206, suffix.status);
+            assertArrayEquals(Arrays.copyOfRange(content, content.length - 10, content.length), suffix.body);
+        }
+    }
+
+    @Test
+    public void testFullResponsesAdvertiseRanges() throws Exception {
+        assertEquals("bytes", get("/small.png").header("Accept-Ranges"));
+        assertEquals("bytes", get("/large.png").header("Accept-Ranges"));
+    }
+
+    @Test
+    public void testMultipleRangesAreSentAsMultipart() throws Exception {
+        RawHttpClient.Response response = get("/large.png", "Range: bytes=0-9, 200000-200009");
+        assertEquals(206, response.status);
+        String contentType = response.header("Content-Type");
+        assertTrue(contentType, contentType.startsWith("multipart/byteranges; boundary="));
+        String boundary = contentType.substring(contentType.indexOf('=') + 1);
+
+        String body = new String(response.body, StandardCharsets.ISO_8859_1);
+        String[] parts = body.split("\r\n--" + boundary);
+        assertTrue(body.startsWith("--" + boundary + "\r\n"));
+        assertTrue(body.endsWith("\r\n--" + boundary + "--\r\n"));
+        assertEquals(3, parts.length);
+        assertTrue(parts[0].contains("Content-Range: bytes 0-9/" + LARGE_SIZE));
+        assertTrue(parts[1].contains("Content-Range: bytes 200000-200009/" + LARGE_SIZE));
+        assertEquals(new String(Arrays.copyOfRange(large, 200000, 200010), StandardCharsets.ISO_8859_1),
+                parts[1].substring(parts[1].indexOf("\r\n\r\n") + 4));
+
+        RawHttpClient.Response fromCache = get("/small.png", "Range: bytes=0-0,-1");
+        assertEquals(206, fromCache.status);
+        assertTrue(fromCache.header("Content-Type").startsWith("multipart/byteranges"));
+    }
+
+    @Test
+    public void testUnsatisfiableRangeGets416() throws Exception {
+        RawHttpClient.Response response = get("/small.png", "Range: bytes=5000-");
+        assertEquals(416, response.status);
+        assertEquals("bytes */" + CACHED_SIZE, response.header("Content-Range"));
+
+        assertEquals(416, get("/large.png", "Range: bytes=" + LARGE_SIZE + "-").status);
+    }
+
+    @Test
+    public void testMalformedRangeIsIgnored() throws Exception {
+        RawHttpClient.Response response = get("/small.png", "Range: bytes=9-1");
+        assertEquals(200, response.status);
+        assertArrayEquals(cached, response.body);
+    }
+
+    @Test
+    public void testIfRangeWithStaleValidatorSendsWholeFile() throws Exception {
+        for (String file : new String[] { "/small.png", "/large.png" }) {
+            String etag = get(file).header("ETag");
+
+            RawHttpClient.Response current = get(file, "Range: bytes=0-4", "If-Range: " + etag);
+            assertEquals(206, current.status);
+            assertEquals(5, current.body.length);
+
+            RawHttpClient.Response stale = get(file, "Range: bytes=0-4", "If-Range: \"stale\"");
+            assertEquals(200, stale.status);
+            assertNull(stale.header("Content-Range"));
+
+            String lastModified = get(file).header("Last-Modified");
+            assertEquals(206, get(file, "Range: bytes=0-4", "If-Range: " + lastModified).status);
+        }
+    }
+
+    private RawHttpClient.Response get(String path, String... headers) throws Exception {
+        return RawHttpClient.exchange(server.getLocalPort(), RawHttpClient.get(path, headers));
+    }
+}
@@ -0,0 +1,139 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal HTTP/1.1 client working on raw sockets, so tests control framing and pipelining.
+ */
+public final class RawHttpClient {
+
+    private RawHttpClient() {
+    }
+
+    /**
+     * Response read from the wire.
+     */
+    public static final class Response {
+        public final int status;
+        public final Map<String, String> headers;
+        public final byte[] body;
+
+        Response(int status, Map<String, String> headers, byte[] body) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        public String header(String name) {
+            return headers.get(name.toLowerCase());
+        }
+
+        public String bodyText() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    public static void write(Socket socket, String rawRequest) throws IOException {
+        socket.getOutputStream().write(rawRequest.getBytes(StandardCharsets.ISO_8859_1));
+        socket.getOutputStream().flush();
+    }
+
+    public static String get(String path, String... extraHeaders) {
+        StringBuilder request = new StringBuilder("GET ").append(path).append(" HTTP/1.1\r\nHost: localhost\r\n");
+        for (String header : extraHeaders) {
+            request.append(header).append("\r\n");
+        }
+        return request.append("\r\n").toString();
+    }
+
+    /**
+     * Reads one response framed by Content-Length or chunked encoding.
+     * Without either, the body extends to the end of the stream.
+     */
+    public static Response read(InputStream in) throws IOException {
+        Response head = readHead(in);
+        int status = head.status;
+        Map<String, String> headers = head.headers;
+        String line;
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        String length = headers.get("content-length");
+        if ("chunked".equalsIgnoreCase(headers.get("transfer-encoding"))) {
+            int size;
+            while ((size = Integer.parseInt(readLine(in).trim(), 16)) > 0) {
+                body.write(readFully(in, size));
+                readLine(in);
+            }
+            while ((line = readLine(in)) != null && !line.isEmpty()) {
+                // trailers
+            }
+        } else if (length != null) {
+            body.write(readFully(in, Integer.parseInt(length)));
+        } else if (status >= 200 && status != 204 && status != 304) {
+            int b;
+            while ((b = in.read()) != -1) {
+                body.write(b);
+            }
+        }
+        return new Response(status, headers, body.toByteArray());
+    }
+
+    /**
+     * Reads the status line and headers of a response that has no body, such as one to HEAD.
+     */
+    public static Response readHead(InputStream in) throws IOException {
+        String statusLine = readLine(in);
+        if (statusLine == null) {
+            throw new EOFException("Connection closed before the status line");
+        }
+        int status = Integer.parseInt(statusLine.split(" ")[1]);
+
+        Map<String, String> headers = new HashMap<>();
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+        }
+        return new Response(status, headers, new byte[0]);
+    }
+
+    public static Response exchange(int port, String rawRequest) throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            write(socket, rawRequest);
+            return read(socket.getInputStream());
+        }
+    }
+
+    private static byte[] readFully(InputStream in, int length) throws IOException {
+        byte[] data = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int read = in.read(data, offset, length - offset);
+            if (read == -1) {
+                throw new EOFException("Expected " + length + " bytes, got " + offset);
+            }
+            offset += read;
+        }
+        return data;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                int end = line.length();
+                return end > 0 && line.charAt(end - 1) == '\r' ? line.substring(0, end - 1) : line.toString();
+            }
+            line.append((char) b);
+        }
+        return line.length() > 0 ? line.toString() : null;
+    }
+}
@@ -0,0 +1,105 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Tests for body framing: reads stop exactly at the end of the body, chunked encoding is
+ * decoded, and limits and 100-continue are applied.
+ */
+public class RequestBodyStreamTest {
+
+    @Test
+    public void testFixedLengthStopsAtTheEndOfTheBody() throws Exception {
+        InputStream source = source("helloGET / HTTP/1.1");
+        RequestBodyStream body = new RequestBodyStream(source, 5, false, 0, null);
+
+        assertEquals("hello", new String(body.readAllBytes(), StandardCharsets.US_ASCII));
+        assertTrue(body.isComplete());
+        assertEquals('G', source.read());
+    }
+
+    @Test
+    public void testChunkedBodyIsDecodedAndTrailersSkipped() throws Exception {
+        InputStream source = source("3;name=value\r\nabc\r\n10\r\n0123456789abcdef\r\n0\r\nX-Sum: 1\r\n\r\nNEXT");
+        RequestBodyStream body = new RequestBodyStream(source, -1, true, 0, null);
+
+        assertEquals("abc0123456789abcdef", new String(body.readAllBytes(), StandardCharsets.US_ASCII));
+        assertTrue(body.isComplete());
+        assertEquals('N', source.read());
+    }
+
+    @Test
+    public void testMalformedChunkSizeIsBadRequest() throws Exception {
+        RequestBodyStream body = new RequestBodyStream(source("zz\r\nabc\r\n0\r\n\r\n"), -1, true, 0, null);
+        try {
+            body.readAllBytes();
+            fail("Expected a malformed chunk");
+        } catch (RequestBodyException e) {
+            assertEquals(400, e.getStatusCode());
+        }
+        assertTrue(body.isFailed());
+        assertEquals(-1, body.getUnreadLength());
+    }
+
+    @Test
+    public void testLimitIsEnforcedBeforeAChunkIsRead() throws Exception {
+        RequestBodyStream body = new RequestBodyStream(source("8\r\n01234567\r\n0\r\n\r\n"), -1, true, 4, null);
+        try {
+            body.read(new byte[16]);
+            fail("Expected the body to be too large");
+        } catch (RequestBodyException e) {
+            assertEquals(413, e.getStatusCode());
+        }
+    }
+
+    @Test
+    public void testTruncatedBodyFails() throws Exception {
+        RequestBodyStream body = new RequestBodyStream(source("abc"), 10, false, 0, null);
+        try {
+            body.readAllBytes();
+            fail("Expected the body to end early");
+        } catch (EOFException e) {
+            assertTrue(body.isFailed());
+        }
+    }
+
+    @Test
+    public void testContinueIsSentOnFirstReadOnly() throws Exception {
+        AtomicInteger sent = new AtomicInteger();
+        RequestBodyStream body = new RequestBodyStream(source("abcdef"), 6, false, 0, sent::incrementAndGet);
+
+        assertTrue(body.isContinuePending());
+        assertEquals(6, body.getUnreadLength());
+        body.read();
+        body.discardRemaining();
+        assertEquals(1, sent.get());
+        assertFalse(body.isContinuePending());
+        assertEquals(0, body.getUnreadLength());
+    }
+
+    @Test
+    public void testDeclinedContinueMakesTheRestUnknown() throws IOException {
+        AtomicInteger sent = new AtomicInteger();
+        RequestBodyStream body = new RequestBodyStream(source("abcdef"), 6, false, 0, sent::incrementAndGet);
+
+        body.declineContinue();
+
+        assertEquals(-1, body.getUnreadLength());
+        assertEquals(0, sent.get());
+    }
+
+    private static InputStream source(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII));
+    }
+}
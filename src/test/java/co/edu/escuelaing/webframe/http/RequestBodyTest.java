@@ -0,0 +1,273 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import co.edu.escuelaing.webframe.annotations.DeleteMapping;
+import co.edu.escuelaing.webframe.annotations.GetMapping;
+import co.edu.escuelaing.webframe.annotations.PathVariable;
+import co.edu.escuelaing.webframe.annotations.PostMapping;
+import co.edu.escuelaing.webframe.annotations.PutMapping;
+import co.edu.escuelaing.webframe.annotations.RequestBody;
+import co.edu.escuelaing.webframe.annotations.RequestParam;
+import co.edu.escuelaing.webframe.annotations.RestController;
+
+/**
+ * Tests for POST, PUT and DELETE handlers and request bodies: form and JSON binding, streamed
+ * uploads, chunked bodies, size limits and 100-continue, run against every engine.
+ */
+@RunWith(Parameterized.class)
+public class RequestBodyTest {
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> engines() {
+        return Arrays.asList(new Object[][] { { EngineType.BLOCKING }, { EngineType.NIO } });
+    }
+
+    private final EngineType engine;
+    private ServerEngine server;
+
+    public RequestBodyTest(EngineType engine) {
+        this.engine = engine;
+    }
+
+    private ServerConfig newConfig() {
+        ServerConfig config = new ServerConfig();
+        config.setEngine(engine);
+        return config;
+    }
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testFormBodyBindsRequestParams() throws Exception {
+        server = TestServers.start(newConfig(), BodyController.class);
+
+        RawHttpClient.Response response = RawHttpClient.exchange(server.getLocalPort(),
+                request("POST", "/greet", "name=Jane+Doe%21&other=1", "Content-Type: application/x-www-form-urlencoded"));
+
+        assertEquals(200, response.status);
+        assertEquals("Hello, Jane Doe!", response.bodyText());
+    }
+
+    @Test
+    public void testJsonBodyBindsObjectAndMap() throws Exception {
+        server = TestServers.start(newConfig(), BodyController.class);
+
+        RawHttpClient.Response item = RawHttpClient.exchange(server.getLocalPort(), request("POST", "/items",
+                "{\"name\": \"pen\", \"quantity\": 3, \"tags\": [\"a\", \"b\"], \"extra\": {\"x\": null}}",
+                "Content-Type: application/json"));
+        assertEquals(200, item.status);
+        assertEquals("pen:3:[a, b]", item.bodyText());
+
+        RawHttpClient.Response map = RawHttpClient.exchange(server.getLocalPort(), request("PUT", "/map",
+                "{\"b\": 1.5, \"a\": \"\\u00e9\"}", "Content-Type: application/json; charset=utf-8"));
+        assertEquals(200, map.status);
+        assertEquals("{a=\u00e9, b=1.5}", map.bodyText());
+    }
+
+    @Test
+    public void testMalformedJsonIsBadRequest() throws Exception {
+        server = TestServers.start(newConfig(), BodyController.class);
+
+        RawHttpClient.Response response = RawHttpClient.exchange(server.getLocalPort(),
+                request("POST", "/items", "{\"name\": ", "Content-Type: application/json"));
+
+        assertEquals(400, response.status);
+    }
+
+    @Test
+    public void testDeleteMapping() throws Exception {
+        server = TestServers.start(newConfig(), BodyController.class);
+
+        RawHttpClient.Response response = RawHttpClient.exchange(server.getLocalPort(), request("DELETE", "/items/42", ""));
+
+        assertEquals(200, response.status);
+        assertEquals("deleted 42", response.bodyText());
+    }
+
+    @Test
+    public void testChunkedBodyKeepsConnectionOpen() throws Exception {
+        server = TestServers.start(newConfig(), BodyController.class);
+
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            RawHttpClient.write(socket, "POST /count HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n"
+                    + "5;ext=1\r\nhello\r\n"
+                    + "6\r\n world\r\n"
+                    + "0\r\nX-Trailer: yes\r\n\r\n"
+                    + RawHttpClient.get("/ping"));
+
+            InputStream in = socket.getInputStream();
+            RawHttpClient.Response counted = RawHttpClient.read(in);
+            assertEquals("11", counted.bodyText());
+            assertEquals("keep-alive", counted.header("Connection"));
+            assertEquals("pong", RawHttpClient.read(in).bodyText());
+        }
+    }
+
+    @Test
+    public void testLargeUploadIsStreamedToHandler() throws Exception {
+        server = TestServers.start(newConfig(), BodyController.class);
+        int size = 4 * 1024 * 1024 + 3;
+
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("POST /count HTTP/1.1\r\nHost: localhost\r\nContent-Length: " + size + "\r\n\r\n")
+                    .getBytes(StandardCharsets.ISO_8859_1));
+            byte[] block = new byte[64 * 1024];
+            for (int sent = 0; sent < size; sent += block.length) {
+                out.write(block, 0, Math.min(block.length, size - sent));
+            }
+            out.flush();
+
+            RawHttpClient.Response response = RawHttpClient.read(socket.getInputStream());
+            assertEquals(200, response.status);
+            assertEquals(String.valueOf(size), response.bodyText());
+            assertEquals("keep-alive", response.header("Connection"));
+        }
+    }
+
+    @Test
+    public void testDeclaredBodyOverLimitIsRefusedBeforeReading() throws Exception {
+        ServerConfig config = newConfig();
+        config.setMaxBodySize(1024);
+        server = TestServers.start(config, BodyController.class);
+
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            RawHttpClient.write(socket, "POST /count HTTP/1.1\r\nHost: localhost\r\nContent-Length: 2048\r\n"
+                    + "Expect: 100-continue\r\n\r\n");
+
+            RawHttpClient.Response response = RawHttpClient.read(socket.getInputStream());
+            assertEquals(413, response.status);
+            assertEquals("close", response.header("Connection"));
+        }
+    }
+
+    @Test
+    public void testChunkedBodyOverLimitIsRefused() throws Exception {
+        ServerConfig config = newConfig();
+        config.setMaxBodySize(1024);
+        server = TestServers.start(config, BodyController.class);
+        String chunk = "400\r\n" + "x".repeat(1024) + "\r\n";
+
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            RawHttpClient.write(socket, "POST /count HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n"
+                    + chunk + chunk + "0\r\n\r\n");
+
+            RawHttpClient.Response response = RawHttpClient.read(socket.getInputStream());
+            assertEquals(413, response.status);
+            assertEquals("close", response.header("Connection"));
+        }
+    }
+
+    @Test
+    public void testExpectContinueIsAnsweredWhenTheHandlerReads() throws Exception {
+        server = TestServers.start(newConfig(), BodyController.class);
+
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            RawHttpClient.write(socket, "POST /count HTTP/1.1\r\nHost: localhost\r\nContent-Length: 5\r\n"
+                    + "Expect: 100-continue\r\n\r\n");
+            InputStream in = socket.getInputStream();
+
+            // nothing of the body has been sent: the interim response must come first
+            assertEquals(100, RawHttpClient.read(in).status);
+            RawHttpClient.write(socket, "12345");
+            RawHttpClient.Response response = RawHttpClient.read(in);
+            assertEquals(200, response.status);
+            assertEquals("5", response.bodyText());
+            assertEquals("keep-alive", response.header("Connection"));
+        }
+    }
+
+    @Test
+    public void testExpectContinueIsNotSentWhenTheBodyIsNotRead() throws Exception {
+        server = TestServers.start(newConfig(), BodyController.class);
+
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            RawHttpClient.write(socket, "POST /greet HTTP/1.1\r\nHost: localhost\r\nContent-Length: 10\r\n"
+                    + "Expect: 100-continue\r\n\r\n");
+
+            // the client may never send the body, so the connection cannot be reused
+            RawHttpClient.Response response = RawHttpClient.read(socket.getInputStream());
+            assertEquals(200, response.status);
+            assertEquals("Hello, World", response.bodyText());
+            assertEquals("close", response.header("Connection"));
+        }
+    }
+
+    private static String request(String method, String path, String body, String... headers) {
+        StringBuilder request = new StringBuilder(method).append(' ').append(path)
+                .append(" HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n");
+        for (String header : headers) {
+            request.append(header).append("\r\n");
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        request.append("Content-Length: ").append(bytes.length).append("\r\n\r\n");
+        return request.append(new String(bytes, StandardCharsets.ISO_8859_1)).toString();
+    }
+
+    @RestController
+    public static class BodyController {
+
+        public static class Item {
+            public String name;
+            public int quantity;
+            public List<String> tags;
+        }
+
+        @GetMapping("/ping")
+        public String ping() {
+            return "pong";
+        }
+
+        @PostMapping("/greet")
+        public String greet(@RequestParam(value = "name", defaultValue = "World") String name) {
+            return "Hello, " + name;
+        }
+
+        @PostMapping("/items")
+        public String createItem(@RequestBody Item item) {
+            return item.name + ":" + item.quantity + ":" + item.tags;
+        }
+
+        @PutMapping("/map")
+        public String putMap(@RequestBody Map<String, Object> body) {
+            return new TreeMap<>(body).toString();
+        }
+
+        @DeleteMapping("/items/{id}")
+        public String deleteItem(@PathVariable("id") String id) {
+            return "deleted " + id;
+        }
+
+        @PostMapping("/count")
+        public String count(@RequestBody InputStream body) throws IOException {
+            byte[] buffer = new byte[8192];
+            long total = 0;
+            int read;
+            while ((read = body.read(buffer)) >= 0) {
+                total += read;
+            }
+            return String.valueOf(total);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package co.edu.escuelaing.webframe.http;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.Test;
+
+import co.edu.escuelaing.webframe.annotations.GetMapping;
+import co.edu.escuelaing.webframe.annotations.PathVariable;
+import co.edu.escuelaing.webframe.annotations.RequestParam;
+import co.edu.escuelaing.webframe.annotations.RestController;
+import co.edu.escuelaing.webframe.ioc.SimpleIoCContainer;
+
+/**
+ * Unit tests for argument binding in the RequestDispatcher class.
+ */
+public class RequestDispatcherTest {
+
+    private RequestDispatcher dispatcher;
+
+    @Before
+    public void setUp() throws Exception {
+        SimpleIoCContainer container = new SimpleIoCContainer();
+        container.registerController(UserController.class.getName());
+        dispatcher = new RequestDispatcher(container);
+    }
+
+    @Test
+    public void testPathVariablesAndQueryParameters() {
+        assertEquals("user 7 orders page 3", dispatcher.processRequest("GET", "/users/7/orders?page=3"));
+        assertEquals("user abc orders page 1", dispatcher.processRequest("GET", "/users/abc/orders"));
+    }
+
+    @RestController
+    public static class UserController {
+
+        @GetMapping("/users/{id}/orders")
+        public String orders(@PathVariable("id") String id, @RequestParam(value = "page", defaultValue = "1") String page) {
+            return "user " + id + " orders page " + page;
+        }
+    }
+}
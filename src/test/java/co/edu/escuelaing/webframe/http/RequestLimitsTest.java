@@ -0,0 +1,120 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.InputStream;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import co.edu.escuelaing.webframe.annotations.GetMapping;
+import co.edu.escuelaing.webframe.annotations.RequestParam;
+import co.edu.escuelaing.webframe.annotations.RestController;
+
+/**
+ * Tests for request head limits and unread request bodies, run against every engine.
+ */
+@RunWith(Parameterized.class)
+public class RequestLimitsTest {
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> engines() {
+        return Arrays.asList(new Object[][] { { EngineType.BLOCKING }, { EngineType.NIO } });
+    }
+
+    private final EngineType engine;
+    private ServerEngine server;
+
+    public RequestLimitsTest(EngineType engine) {
+        this.engine = engine;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setEngine(engine);
+        config.setMaxRequestLineLength(256);
+        config.setMaxHeaderSize(1024);
+        config.setMaxHeaderCount(10);
+        server = TestServers.start(config, EchoController.class);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testLongRequestLineIsRejected() throws Exception {
+        RawHttpClient.Response response = RawHttpClient.exchange(server.getLocalPort(),
+                RawHttpClient.get("/echo?value=" + "a".repeat(300)));
+        assertEquals(414, response.status);
+        assertEquals("close", response.header("Connection"));
+    }
+
+    @Test
+    public void testLargeHeadersAreRejected() throws Exception {
+        RawHttpClient.Response response = RawHttpClient.exchange(server.getLocalPort(),
+                RawHttpClient.get("/echo", "Cookie: " + "c".repeat(2000)));
+        assertEquals(431, response.status);
+
+        String[] headers = new String[11];
+        for (int i = 0; i < headers.length; i++) {
+            headers[i] = "X-Header-" + i + ": " + i;
+        }
+        response = RawHttpClient.exchange(server.getLocalPort(), RawHttpClient.get("/echo", headers));
+        assertEquals(431, response.status);
+    }
+
+    @Test
+    public void testMalformedRequestIsRejected() throws Exception {
+        RawHttpClient.Response response = RawHttpClient.exchange(server.getLocalPort(),
+                "GET /echo HTTP/1.1\r\nHost localhost\r\n\r\n");
+        assertEquals(400, response.status);
+        assertEquals("close", response.header("Connection"));
+    }
+
+    @Test
+    public void testSmallBodyIsSkippedOnKeepAlive() throws Exception {
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            InputStream in = socket.getInputStream();
+            RawHttpClient.write(socket, "GET /echo?value=first HTTP/1.1\r\nHost: localhost\r\n"
+                    + "Content-Length: 19\r\n\r\nGET /echo HTTP/1.1\r\n"
+                    + RawHttpClient.get("/echo?value=second"));
+
+            RawHttpClient.Response first = RawHttpClient.read(in);
+            assertEquals("first", first.bodyText());
+            assertEquals("keep-alive", first.header("Connection"));
+
+            RawHttpClient.Response second = RawHttpClient.read(in);
+            assertEquals("second", second.bodyText());
+        }
+    }
+
+    @Test
+    public void testLargeBodyClosesConnectionAfterResponse() throws Exception {
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            RawHttpClient.write(socket, "GET /echo?value=big HTTP/1.1\r\nHost: localhost\r\n"
+                    + "Content-Length: 1000000\r\n\r\n" + "x".repeat(100_000));
+
+            RawHttpClient.Response response = RawHttpClient.read(socket.getInputStream());
+            assertEquals(200, response.status);
+            assertEquals("big", response.bodyText());
+            assertEquals("close", response.header("Connection"));
+        }
+    }
+
+    @RestController
+    public static class EchoController {
+
+        @GetMapping("/echo")
+        public String echo(@RequestParam(value = "value", defaultValue = "none") String value) {
+            return value;
+        }
+    }
+}
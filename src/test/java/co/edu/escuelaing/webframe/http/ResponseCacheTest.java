@@ -0,0 +1,269 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import co.edu.escuelaing.webframe.annotations.Cacheable;
+import co.edu.escuelaing.webframe.annotations.ETag;
+import co.edu.escuelaing.webframe.annotations.GetMapping;
+import co.edu.escuelaing.webframe.annotations.RequestParam;
+import co.edu.escuelaing.webframe.annotations.RestController;
+import co.edu.escuelaing.webframe.ioc.SimpleIoCContainer;
+
+/**
+ * Tests for the response cache of {@code @Cacheable} handlers.
+ */
+public class ResponseCacheTest {
+
+    private static final AtomicInteger calls = new AtomicInteger();
+    private static volatile CountDownLatch release;
+
+    private HttpRequestHandler handler;
+    private ResponseCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        calls.set(0);
+        release = null;
+        ServerConfig config = new ServerConfig();
+        config.setResponseCacheEntries(2);
+        handler = newHandler(config);
+        cache = handler.getResponseCache();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        handler.close();
+    }
+
+    private static HttpRequestHandler newHandler(ServerConfig config) throws Exception {
+        SimpleIoCContainer container = new SimpleIoCContainer();
+        container.registerController(CachedController.class.getName());
+        return new HttpRequestHandler(new RequestDispatcher(container), config);
+    }
+
+    @Test
+    public void testHitDoesNotCallHandler() throws Exception {
+        assertEquals("page World", body(get("/page")));
+        assertEquals("page World", body(get("/page")));
+        assertEquals(1, calls.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testHeadIsAnsweredFromCachedGet() throws Exception {
+        HttpResponse full = get("/page");
+        HttpResponse head = handler.handle(new HttpRequest("HEAD", "/page", "HTTP/1.1"));
+        assertEquals(200, head.getStatusCode());
+        assertNotNull(header(head, "Content-Length"));
+        assertEquals(header(full, "Content-Length"), header(head, "Content-Length"));
+        assertEquals(1, calls.get());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testKeyUsesBoundArguments() throws Exception {
+        get("/page?name=Ana");
+        get("/page?utm=x&name=Ana");
+        assertEquals(1, calls.get());
+
+        // an empty value binds the default, so it shares the entry of the bare path
+        get("/page");
+        get("/page?name=");
+        assertEquals(2, calls.get());
+        assertEquals("page Luis", body(get("/page?name=Luis")));
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void testExpiredEntriesAreReloaded() throws Exception {
+        get("/expiring");
+        get("/expiring");
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() throws Exception {
+        get("/page?name=a");
+        get("/page?name=b");
+        get("/page?name=a");
+        get("/page?name=c");
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+
+        get("/page?name=a");
+        assertEquals(3, calls.get());
+        get("/page?name=b");
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    public void testByteBudgetIsEnforced() throws Exception {
+        handler.close();
+        ServerConfig config = new ServerConfig();
+        config.setResponseCacheBytes(6000);
+        handler = newHandler(config);
+        cache = handler.getResponseCache();
+
+        get("/large?name=a");
+        get("/large?name=b");
+        get("/large?name=c");
+        assertTrue(cache.getCurrentBytes() <= 6000);
+        assertTrue(cache.getEvictionCount() > 0);
+    }
+
+    @Test
+    public void testStreamingResultsAreNotCached() throws Exception {
+        assertEquals("streamed", body(get("/streamed")));
+        assertEquals("streamed", body(get("/streamed")));
+        assertEquals(2, calls.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testConcurrentMissesCallHandlerOnce() throws Exception {
+        release = new CountDownLatch(1);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<HttpResponse>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> get("/slow")));
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (cache.getCoalescedCount() < threads - 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            for (Future<HttpResponse> result : results) {
+                assertEquals("slow", body(result.get(5, TimeUnit.SECONDS)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, calls.get());
+        assertEquals(threads - 1, cache.getCoalescedCount());
+    }
+
+    @Test
+    public void testCompressedVariantAndRevalidation() throws Exception {
+        HttpResponse identity = get("/large");
+        String identityTag = header(identity, "ETag");
+        assertNotNull(identityTag);
+        assertEquals("Accept-Encoding", header(identity, "Vary"));
+
+        HttpResponse gzip = get("/large", "Accept-Encoding", "gzip");
+        assertEquals("gzip", header(gzip, "Content-Encoding"));
+        assertTrue(gzip.getContentLength() < identity.getContentLength());
+        assertArrayEquals(bytes(identity), gunzip(bytes(gzip)));
+        assertEquals(1, calls.get());
+
+        HttpResponse notModified = get("/large", "If-None-Match", identityTag);
+        assertEquals(304, notModified.getStatusCode());
+        HttpResponse gzipNotModified = get("/large", "Accept-Encoding", "gzip", "If-None-Match", header(gzip, "ETag"));
+        assertEquals(304, gzipNotModified.getStatusCode());
+        assertEquals(1, calls.get());
+    }
+
+    private HttpResponse get(String target, String... headers) {
+        HttpRequest request = new HttpRequest("GET", target, "HTTP/1.1");
+        for (int i = 0; i < headers.length; i += 2) {
+            request.addHeader(headers[i], headers[i + 1]);
+        }
+        return handler.handle(request);
+    }
+
+    private static byte[] bytes(HttpResponse response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.asStreamingBody().writeTo(out);
+        return out.toByteArray();
+    }
+
+    private static String body(HttpResponse response) throws IOException {
+        return new String(bytes(response), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a header from the encoded head, which includes the precomputed lines of cached responses.
+     */
+    private static String header(HttpResponse response, String name) {
+        String head = new String(response.encodeHead(), StandardCharsets.ISO_8859_1);
+        for (String line : head.split("\r\n")) {
+            if (line.regionMatches(true, 0, name + ":", 0, name.length() + 1)) {
+                return line.substring(name.length() + 1).trim();
+            }
+        }
+        return null;
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return in.readAllBytes();
+        }
+    }
+
+    @RestController
+    public static class CachedController {
+
+        @Cacheable
+        @GetMapping("/page")
+        public String page(@RequestParam(value = "name", defaultValue = "World") String name) {
+            calls.incrementAndGet();
+            return "page " + name;
+        }
+
+        @Cacheable(ttlSeconds = 0)
+        @GetMapping("/expiring")
+        public String expiring() {
+            calls.incrementAndGet();
+            return "expiring";
+        }
+
+        @Cacheable
+        @ETag
+        @GetMapping("/large")
+        public String large(@RequestParam(value = "name", defaultValue = "x") String name) {
+            calls.incrementAndGet();
+            StringBuilder html = new StringBuilder();
+            for (int i = 0; i < 200; i++) {
+                html.append("<p>row ").append(name).append(' ').append(i).append("</p>");
+            }
+            return html.toString();
+        }
+
+        @Cacheable
+        @GetMapping("/streamed")
+        public StreamingBody streamed() {
+            calls.incrementAndGet();
+            return out -> out.write("streamed".getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Cacheable
+        @GetMapping("/slow")
+        public String slow() throws InterruptedException {
+            calls.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+            return "slow";
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the StaticContentCache class.
+ */
+public class StaticContentCacheTest {
+
+    private Path root;
+    private StaticContentCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("cache-test");
+        cache = new StaticContentCache(300, 200);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        cache.close();
+        try (Stream<Path> files = Files.walk(root)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testLoadedEntryIsDirectAndCountsHits() throws Exception {
+        Path file = write("a.css", 100);
+        assertNull(cache.get(file));
+
+        cache.load(file, attributes(file), false, "Content-Type: text/css");
+        StaticContentCache.Entry entry = cache.get(file);
+
+        assertNotNull(entry);
+        assertTrue(entry.content().isDirect());
+        assertEquals(100, entry.content().remaining());
+        assertEquals("Content-Type: text/css\r\nETag: " + entry.etag() + "\r\n",
+                new String(entry.headers(), "ISO-8859-1"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvictedOverBudget() throws Exception {
+        Path a = write("a.js", 120);
+        Path b = write("b.js", 120);
+        Path c = write("c.js", 120);
+
+        cache.load(a, attributes(a), false);
+        cache.load(b, attributes(b), false);
+        cache.get(a);
+        cache.load(c, attributes(c), false);
+
+        assertNotNull(cache.get(a));
+        assertNull(cache.get(b));
+        assertNotNull(cache.get(c));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(240, cache.getCurrentBytes());
+    }
+
+    @Test
+    public void testOversizedFilesAreNotAccepted() {
+        assertTrue(cache.accepts(200));
+        assertFalse(cache.accepts(201));
+        assertFalse(new StaticContentCache(0, 0).accepts(0));
+    }
+
+    @Test
+    public void testWatcherInvalidatesModifiedFile() throws Exception {
+        Path file = write("page.html", 10);
+        cache.startWatching(root);
+        cache.load(file, attributes(file), false);
+
+        Files.write(file, new byte[20]);
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (cache.size() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getInvalidationCount());
+    }
+
+    @Test
+    public void testCompressedVariantIsBuiltOnceAndAccounted() throws Exception {
+        Path file = write("b.css", 150);
+        StaticContentCache.Entry entry = cache.load(file, attributes(file), true, "Content-Type: text/css");
+
+        StaticContentCache.Variant gzip = cache.variant(entry, ContentEncoding.GZIP);
+
+        assertNotNull(gzip);
+        assertTrue(gzip.content().remaining() < 150);
+        assertTrue(new String(gzip.headers(), "ISO-8859-1").endsWith("Content-Encoding: gzip\r\nETag: " + gzip.etag() + "\r\n"));
+        assertEquals(ConditionalRequests.encodedTag(entry.etag(), ContentEncoding.GZIP), gzip.etag());
+        assertSame(gzip, cache.variant(entry, ContentEncoding.GZIP));
+        assertEquals(150 + gzip.content().remaining(), cache.getCurrentBytes());
+        assertNull(cache.variant(entry, ContentEncoding.IDENTITY));
+    }
+
+    @Test
+    public void testVariantWithoutGainIsNotUsed() throws Exception {
+        byte[] random = new byte[150];
+        new Random(42).nextBytes(random);
+        Path file = Files.write(root.resolve("noise.js"), random);
+        StaticContentCache.Entry entry = cache.load(file, attributes(file), true);
+
+        assertNull(cache.variant(entry, ContentEncoding.DEFLATE));
+        assertEquals(150, cache.getCurrentBytes());
+    }
+
+    private Path write(String name, int size) throws Exception {
+        return Files.write(root.resolve(name), ByteBuffer.allocate(size).array());
+    }
+
+    private static BasicFileAttributes attributes(Path file) throws Exception {
+        return Files.readAttributes(file, BasicFileAttributes.class);
+    }
+}
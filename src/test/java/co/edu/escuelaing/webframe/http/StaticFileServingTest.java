@@ -0,0 +1,118 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+/**
+ * Tests for static file serving from the content cache and through transferTo, run against every engine.
+ */
+@RunWith(Parameterized.class)
+public class StaticFileServingTest {
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> engines() {
+        return Arrays.asList(new Object[][] { { EngineType.BLOCKING }, { EngineType.NIO } });
+    }
+
+    private final EngineType engine;
+    private Path root;
+    private ServerEngine server;
+
+    public StaticFileServingTest(EngineType engine) {
+        this.engine = engine;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("static-test");
+        ServerConfig config = new ServerConfig();
+        config.setEngine(engine);
+        config.setStaticRoot(root.toString());
+        config.setStaticCacheMaxFileSize(16 * 1024);
+        server = TestServers.start(config);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+        try (Stream<Path> files = Files.walk(root)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testSmallFileIsServedFromCache() throws Exception {
+        byte[] content = randomBytes(1000);
+        Files.write(root.resolve("small.js"), content);
+
+        RawHttpClient.Response response = RawHttpClient.exchange(server.getLocalPort(), RawHttpClient.get("/small.js"));
+
+        assertEquals(200, response.status);
+        assertEquals("application/javascript", response.header("Content-Type"));
+        assertArrayEquals(content, response.body);
+    }
+
+    @Test
+    public void testLargeFileIsTransferredOnKeepAliveConnection() throws Exception {
+        byte[] content = randomBytes(4 * 1024 * 1024 + 17);
+        Files.write(root.resolve("large.png"), content);
+
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            InputStream in = socket.getInputStream();
+            for (int i = 0; i < 2; i++) {
+                RawHttpClient.write(socket, RawHttpClient.get("/large.png"));
+                RawHttpClient.Response response = RawHttpClient.read(in);
+                assertEquals(200, response.status);
+                assertEquals(String.valueOf(content.length), response.header("Content-Length"));
+                assertArrayEquals(content, response.body);
+            }
+        }
+    }
+
+    @Test
+    public void testModifiedFileIsReloaded() throws Exception {
+        Path file = root.resolve("page.html");
+        Files.write(file, "first".getBytes());
+        assertEquals("first", RawHttpClient.exchange(server.getLocalPort(), RawHttpClient.get("/page.html")).bodyText());
+
+        Files.write(file, "second version".getBytes());
+        String body = null;
+        long deadline = System.currentTimeMillis() + 10000;
+        while (System.currentTimeMillis() < deadline && !"second version".equals(body)) {
+            Thread.sleep(20);
+            body = RawHttpClient.exchange(server.getLocalPort(), RawHttpClient.get("/page.html")).bodyText();
+        }
+        assertEquals("second version", body);
+    }
+
+    @Test
+    public void testPathOutsideRootIsNotServed() throws Exception {
+        Files.write(root.getParent().resolve("outside-" + root.getFileName() + ".html"), "secret".getBytes());
+
+        RawHttpClient.Response response = RawHttpClient.exchange(server.getLocalPort(),
+                RawHttpClient.get("/../outside-" + root.getFileName() + ".html"));
+
+        assertEquals(404, response.status);
+        Files.delete(root.getParent().resolve("outside-" + root.getFileName() + ".html"));
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,165 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import co.edu.escuelaing.webframe.annotations.GetMapping;
+import co.edu.escuelaing.webframe.annotations.RequestParam;
+import co.edu.escuelaing.webframe.annotations.RestController;
+
+/**
+ * Tests for handlers returning bytes, buffers, files and streaming bodies, run against every engine.
+ */
+@RunWith(Parameterized.class)
+public class StreamingResponseTest {
+
+    private static final int EXPORT_ROWS = 20_000;
+    private static final long SLOW_STREAM_BYTES = 32L * 1024 * 1024;
+    private static final AtomicLong produced = new AtomicLong();
+    private static Path file;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> engines() {
+        return Arrays.asList(new Object[][] { { EngineType.BLOCKING }, { EngineType.NIO } });
+    }
+
+    private final EngineType engine;
+    private ServerEngine server;
+
+    public StreamingResponseTest(EngineType engine) {
+        this.engine = engine;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        file = Files.createTempFile("streaming-test", ".txt");
+        Files.write(file, "file contents".getBytes(StandardCharsets.UTF_8));
+        produced.set(0);
+        ServerConfig config = new ServerConfig();
+        config.setEngine(engine);
+        config.setCompressionEnabled(false);
+        server = TestServers.start(config, ExportController.class);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testTextStreamIsChunked() throws Exception {
+        RawHttpClient.Response response = RawHttpClient.exchange(server.getLocalPort(), RawHttpClient.get("/export"));
+        assertEquals(200, response.status);
+        assertEquals("chunked", response.header("Transfer-Encoding"));
+        assertNull(response.header("Content-Length"));
+        assertEquals("text/csv; charset=UTF-8", response.header("Content-Type"));
+
+        String body = response.bodyText();
+        assertTrue(body.startsWith("id,name\n0,row-0\n"));
+        assertTrue(body.endsWith((EXPORT_ROWS - 1) + ",row-" + (EXPORT_ROWS - 1) + "\n"));
+        assertEquals(EXPORT_ROWS + 1, body.split("\n").length);
+    }
+
+    @Test
+    public void testKnownLengthBodies() throws Exception {
+        RawHttpClient.Response bytes = RawHttpClient.exchange(server.getLocalPort(), RawHttpClient.get("/bytes"));
+        assertEquals("application/octet-stream", bytes.header("Content-Type"));
+        assertEquals("3", bytes.header("Content-Length"));
+        assertArrayEquals(new byte[] { 1, 2, 3 }, bytes.body);
+
+        RawHttpClient.Response buffer = RawHttpClient.exchange(server.getLocalPort(), RawHttpClient.get("/buffer"));
+        assertEquals("image/png", buffer.header("Content-Type"));
+        assertArrayEquals(new byte[] { 5, 6 }, buffer.body);
+
+        RawHttpClient.Response fileResponse = RawHttpClient.exchange(server.getLocalPort(), RawHttpClient.get("/file"));
+        assertEquals(200, fileResponse.status);
+        assertTrue(fileResponse.header("Content-Type").startsWith("text/plain"));
+        assertEquals("file contents", fileResponse.bodyText());
+
+        RawHttpClient.Response missing = RawHttpClient.exchange(server.getLocalPort(),
+                RawHttpClient.get("/file?missing=true"));
+        assertEquals(404, missing.status);
+    }
+
+    @Test
+    public void testSlowClientDoesNotBufferWholeStream() throws Exception {
+        try (Socket socket = new Socket()) {
+            socket.setReceiveBufferSize(64 * 1024);
+            socket.connect(new InetSocketAddress("localhost", server.getLocalPort()));
+            RawHttpClient.write(socket, RawHttpClient.get("/large"));
+
+            // the client reads nothing for a while; the handler must stall on the full socket
+            long stalled = -1;
+            for (int i = 0; i < 100 && stalled != produced.get(); i++) {
+                stalled = produced.get();
+                Thread.sleep(50);
+            }
+            assertTrue("produced " + produced.get(), produced.get() < SLOW_STREAM_BYTES / 2);
+
+            InputStream in = socket.getInputStream();
+            RawHttpClient.Response response = RawHttpClient.read(in);
+            assertEquals(SLOW_STREAM_BYTES, response.body.length);
+        }
+    }
+
+    @RestController
+    public static class ExportController {
+
+        @GetMapping(value = "/export", produces = "text/csv; charset=UTF-8")
+        public StreamingTextBody export() {
+            return out -> {
+                out.write("id,name\n");
+                for (int i = 0; i < EXPORT_ROWS; i++) {
+                    out.write(i + ",row-" + i + "\n");
+                }
+            };
+        }
+
+        @GetMapping("/large")
+        public StreamingBody large() {
+            return out -> {
+                byte[] block = new byte[64 * 1024];
+                for (long written = 0; written < SLOW_STREAM_BYTES; written += block.length) {
+                    out.write(block);
+                    produced.addAndGet(block.length);
+                }
+            };
+        }
+
+        @GetMapping("/bytes")
+        public byte[] bytes() {
+            return new byte[] { 1, 2, 3 };
+        }
+
+        @GetMapping(value = "/buffer", produces = "image/png")
+        public ByteBuffer buffer() {
+            ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 4, 5, 6 });
+            buffer.position(1);
+            return buffer;
+        }
+
+        @GetMapping("/file")
+        public Path file(@RequestParam(value = "missing", defaultValue = "false") String missing) {
+            return Boolean.parseBoolean(missing) ? file.resolveSibling("does-not-exist.txt") : file;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package co.edu.escuelaing.webframe.http;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertTrue;
+
+import co.edu.escuelaing.webframe.ioc.SimpleIoCContainer;
+
+/**
+ * Starts servers on an ephemeral port for integration tests.
+ */
+public final class TestServers {
+
+    private TestServers() {
+    }
+
+    public static ServerEngine start(ServerConfig config, Class<?>... controllers) throws Exception {
+        SimpleIoCContainer container = new SimpleIoCContainer();
+        for (Class<?> controller : controllers) {
+            container.registerController(controller.getName());
+        }
+        ServerEngine server = ServerEngine.create(0, container, config);
+
+        Thread serverThread = new Thread(() -> {
+            try {
+                server.start();
+            } catch (IOException e) {
+                System.err.println("Test server failed: " + e.getMessage());
+            }
+        });
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!server.isRunning() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue("Server should start", server.isRunning());
+        return server;
+    }
+}
@@ -0,0 +1,57 @@
+package co.edu.escuelaing.webframe.http.admission;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Unit tests for the per-client token buckets.
+ */
+public class ClientRateLimiterTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testAllowsBurstThenRefillsAtRate() {
+        ClientRateLimiter limiter = new ClientRateLimiter(10, 3);
+        long now = 1_000_000_000L;
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("a", now));
+        }
+        long wait = limiter.tryAcquire("a", now);
+        assertEquals(100 * MILLIS, wait);
+
+        assertTrue(limiter.tryAcquire("a", now + 50 * MILLIS) > 0);
+        assertEquals(0, limiter.tryAcquire("a", now + 100 * MILLIS));
+        assertTrue(limiter.tryAcquire("a", now + 100 * MILLIS) > 0);
+    }
+
+    @Test
+    public void testClientsHaveSeparateBuckets() {
+        ClientRateLimiter limiter = new ClientRateLimiter(1, 1);
+        long now = 1_000_000_000L;
+        assertEquals(0, limiter.tryAcquire("a", now));
+        assertTrue(limiter.tryAcquire("a", now) > 0);
+        assertEquals(0, limiter.tryAcquire("b", now));
+        assertEquals(2, limiter.size());
+    }
+
+    @Test
+    public void testSweepEvictsOnlyRefilledBuckets() {
+        ClientRateLimiter limiter = new ClientRateLimiter(10, 2);
+        long now = 1_000_000_000L;
+        limiter.tryAcquire("idle", now);
+        limiter.tryAcquire("busy", now + 500 * MILLIS);
+        limiter.tryAcquire("busy", now + 500 * MILLIS);
+
+        limiter.sweep(now + 550 * MILLIS);
+        assertEquals(1, limiter.size());
+        assertTrue("An evicted client starts again with a full bucket",
+                limiter.tryAcquire("busy", now + 550 * MILLIS) > 0);
+
+        limiter.sweep(now + 1000 * MILLIS);
+        assertEquals(0, limiter.size());
+    }
+}
@@ -0,0 +1,165 @@
+package co.edu.escuelaing.webframe.http.buffer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+import org.junit.Test;
+
+import co.edu.escuelaing.webframe.http.ExecutionMode;
+import co.edu.escuelaing.webframe.http.ServerConfig;
+import co.edu.escuelaing.webframe.http.WorkerExecutors;
+
+/**
+ * Tests for size classes, reuse through thread caches and the shared stacks, leak detection
+ * and the pooled output stream.
+ */
+public class BufferPoolTest {
+
+    private final BufferPool pool = new BufferPool(true);
+
+    @Test
+    public void testSizesAreRoundedUpToTheirClass() {
+        assertEquals(1024, pool.acquire(0).capacity());
+        assertEquals(1024, pool.acquire(1024).capacity());
+        assertEquals(2048, pool.acquire(1025).capacity());
+        assertEquals(65536, pool.acquire(40000).capacity());
+        assertEquals(70000, pool.acquire(70000).capacity());
+        assertTrue(pool.acquireDirect(3000).isDirect());
+        assertEquals(4096, pool.acquireDirect(3000).capacity());
+    }
+
+    @Test
+    public void testReleasedBufferIsReusedCleared() {
+        ByteBuffer first = pool.acquire(8192);
+        first.put((byte) 1).flip();
+        pool.release(first);
+
+        ByteBuffer second = pool.acquire(5000);
+
+        assertSame(first, second);
+        assertEquals(0, second.position());
+        assertEquals(second.capacity(), second.limit());
+        // heap and direct buffers are kept apart
+        assertFalse(pool.acquireDirect(8192) == first);
+        assertEquals(3, pool.getAcquireCount());
+        assertEquals(2, pool.getAllocationCount());
+    }
+
+    @Test
+    public void testBuffersReleasedOnOneThreadReachOthers() throws Exception {
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            // more than a thread cache holds, so the rest go to the shared stack
+            ByteBuffer[] buffers = new ByteBuffer[4];
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = pool.acquire(16 * 1024);
+            }
+            other.submit(() -> {
+                for (ByteBuffer buffer : buffers) {
+                    pool.release(buffer);
+                }
+            }).get();
+
+            ByteBuffer reused = pool.acquire(16 * 1024);
+
+            assertTrue(reused == buffers[0] || reused == buffers[1] || reused == buffers[2] || reused == buffers[3]);
+            assertTrue(pool.getPooledBytes() > 0);
+        } finally {
+            other.shutdown();
+            assertTrue(other.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testVirtualThreadsReuseBuffersThroughTheSharedStacks() throws Exception {
+        assumeTrue("virtual threads need Java 21", WorkerExecutors.virtualThreadsAvailable());
+        ServerConfig config = new ServerConfig();
+        config.setExecutionMode(ExecutionMode.VIRTUAL);
+        ExecutorService virtual = WorkerExecutors.create(config);
+        try {
+            // a new thread per task, as requests get in virtual mode: a thread cache would lose every buffer
+            for (int i = 0; i < 1000; i++) {
+                virtual.submit(() -> pool.release(pool.acquireDirect(8192))).get();
+            }
+        } finally {
+            virtual.shutdown();
+        }
+
+        assertEquals(1, pool.getAllocationCount());
+        assertEquals(8192, pool.getPooledBytes());
+    }
+
+    @Test
+    public void testOversizedBuffersAreNotPooled() {
+        ByteBuffer large = pool.acquire(BufferPool.MAX_CLASS_SIZE + 1);
+        pool.release(large);
+
+        assertNotSame(large, pool.acquire(BufferPool.MAX_CLASS_SIZE + 1));
+        assertEquals(0, pool.getPooledBytes());
+    }
+
+    @Test
+    public void testLeakDetectionReportsOutstandingAndDoubleReleases() {
+        ByteBuffer kept = pool.acquire(100);
+        ByteBuffer returned = pool.acquire(100);
+        pool.release(returned);
+
+        assertEquals(1, pool.getOutstandingCount());
+        assertEquals(1, pool.getOutstandingAcquisitions().size());
+        boolean recordsCaller = false;
+        for (StackTraceElement frame : pool.getOutstandingAcquisitions().get(0).getStackTrace()) {
+            recordsCaller |= frame.getMethodName().equals("testLeakDetectionReportsOutstandingAndDoubleReleases");
+        }
+        assertTrue(recordsCaller);
+        try {
+            pool.release(returned);
+            fail("Expected the second release to fail");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            pool.release(ByteBuffer.allocate(1024));
+            fail("Expected a foreign buffer to be refused");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        pool.release(kept);
+        assertTrue(pool.getOutstandingAcquisitions().isEmpty());
+    }
+
+    @Test
+    public void testPooledOutputStreamBuffersAndFailsOnceReleased() throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        PooledOutputStream out = new PooledOutputStream(target, pool, 8);
+
+        out.write(new byte[] { 1, 2, 3 });
+        out.write(4);
+        assertEquals(0, target.size());
+        out.write(new byte[2048]);
+        out.flush();
+        assertEquals(4 + 2048, target.size());
+        assertArrayEquals(new byte[] { 1, 2, 3, 4 }, java.util.Arrays.copyOf(target.toByteArray(), 4));
+
+        out.release();
+        out.release();
+        assertEquals(0, pool.getOutstandingCount());
+        try {
+            out.write(5);
+            fail("Expected writes after release to fail");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
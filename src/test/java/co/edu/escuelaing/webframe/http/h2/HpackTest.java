@@ -0,0 +1,142 @@
+package co.edu.escuelaing.webframe.http.h2;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Tests for HPACK against the examples of RFC 7541, appendix C, and for encoder and decoder
+ * staying in sync across header blocks.
+ */
+public class HpackTest {
+
+    @Test
+    public void testIntegerExamples() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HpackEncoder.writeInteger(out, 0, 5, 10);
+        HpackEncoder.writeInteger(out, 0, 5, 1337);
+        HpackEncoder.writeInteger(out, 0, 8, 42);
+        byte[] encoded = out.toByteArray();
+        assertArrayEquals(bytes("0a 1f9a0a 2a"), encoded);
+
+        int[] position = { 0 };
+        assertEquals(10, HpackDecoder.readInteger(encoded, position, encoded.length, 5));
+        assertEquals(1337, HpackDecoder.readInteger(encoded, position, encoded.length, 5));
+        assertEquals(42, HpackDecoder.readInteger(encoded, position, encoded.length, 8));
+    }
+
+    @Test
+    public void testRequestsWithoutHuffmanCoding() throws Exception {
+        HpackDecoder decoder = new HpackDecoder(4096);
+        assertEquals(Arrays.asList(":method: GET", ":scheme: http", ":path: /", ":authority: www.example.com"),
+                decode(decoder, "828684410f7777772e6578616d706c652e636f6d"));
+        assertEquals(Arrays.asList(":method: GET", ":scheme: http", ":path: /", ":authority: www.example.com",
+                "cache-control: no-cache"),
+                decode(decoder, "828684be58086e6f2d6361636865"));
+        assertEquals(Arrays.asList(":method: GET", ":scheme: https", ":path: /index.html",
+                ":authority: www.example.com", "custom-key: custom-value"),
+                decode(decoder, "828785bf400a637573746f6d2d6b65790c637573746f6d2d76616c7565"));
+    }
+
+    @Test
+    public void testRequestsWithHuffmanCoding() throws Exception {
+        HpackDecoder decoder = new HpackDecoder(4096);
+        assertEquals(Arrays.asList(":method: GET", ":scheme: http", ":path: /", ":authority: www.example.com"),
+                decode(decoder, "828684418cf1e3c2e5f23a6ba0ab90f4ff"));
+        assertEquals(Arrays.asList(":method: GET", ":scheme: http", ":path: /", ":authority: www.example.com",
+                "cache-control: no-cache"),
+                decode(decoder, "828684be5886a8eb10649cbf"));
+        assertEquals(Arrays.asList(":method: GET", ":scheme: https", ":path: /index.html",
+                ":authority: www.example.com", "custom-key: custom-value"),
+                decode(decoder, "828785bf408825a849e95ba97d7f8925a849e95bb8e8b4bf"));
+    }
+
+    @Test
+    public void testHuffmanRoundTrip() throws Exception {
+        String value = "text/html; charset=UTF-8 ~{}|\\^`ÿ";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Huffman.encode(value, out);
+        byte[] encoded = out.toByteArray();
+        assertEquals(Huffman.encodedLength(value), encoded.length);
+        assertEquals(value, Huffman.decode(encoded, 0, encoded.length));
+    }
+
+    @Test
+    public void testRepeatedHeadersAreSentAsIndexes() throws Exception {
+        HpackEncoder encoder = new HpackEncoder();
+        HpackDecoder decoder = new HpackDecoder(4096);
+        String[][] response = {
+                { ":status", "200" }, { "content-type", "application/json" },
+                { "cache-control", "max-age=60" }, { "content-length", "123" }, { "set-cookie", "id=1" } };
+
+        byte[] first = encode(encoder, response);
+        byte[] second = encode(encoder, response);
+        assertTrue("Second block should be smaller: " + second.length, second.length < first.length);
+
+        List<String> expected = new ArrayList<>();
+        for (String[] field : response) {
+            expected.add(field[0] + ": " + field[1]);
+        }
+        assertEquals(expected, decode(decoder, first));
+        assertEquals(expected, decode(decoder, second));
+    }
+
+    @Test
+    public void testTableSizeUpdateIsAnnouncedAndEvicts() throws Exception {
+        HpackEncoder encoder = new HpackEncoder();
+        HpackDecoder decoder = new HpackDecoder(4096);
+        String[][] fields = { { "x-first", "a" }, { "x-second", "b" } };
+        decode(decoder, encode(encoder, fields));
+
+        encoder.setMaxTableSize(0);
+        byte[] block = encode(encoder, fields);
+        assertEquals(0x20, block[0] & 0xFF);
+        assertEquals(Arrays.asList("x-first: a", "x-second: b"), decode(decoder, block));
+    }
+
+    @Test
+    public void testInvalidIndexIsCompressionError() {
+        try {
+            decode(new HpackDecoder(4096), "be");
+            fail("Expected a compression error");
+        } catch (Http2Exception e) {
+            assertEquals(Http2Frames.COMPRESSION_ERROR, e.getErrorCode());
+            assertTrue(e.isConnectionError());
+        }
+    }
+
+    private static byte[] encode(HpackEncoder encoder, String[][] fields) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.beginBlock(out);
+        for (String[] field : fields) {
+            encoder.encode(field[0], field[1], out);
+        }
+        return out.toByteArray();
+    }
+
+    private static List<String> decode(HpackDecoder decoder, String hex) throws Http2Exception {
+        return decode(decoder, bytes(hex));
+    }
+
+    private static List<String> decode(HpackDecoder decoder, byte[] block) throws Http2Exception {
+        List<String> fields = new ArrayList<>();
+        decoder.decode(block, 0, block.length, (name, value) -> fields.add(name + ": " + value));
+        return fields;
+    }
+
+    private static byte[] bytes(String hex) {
+        hex = hex.replace(" ", "");
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,408 @@
+package co.edu.escuelaing.webframe.http.h2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Test;
+
+import co.edu.escuelaing.webframe.annotations.GetMapping;
+import co.edu.escuelaing.webframe.annotations.PostMapping;
+import co.edu.escuelaing.webframe.annotations.RequestBody;
+import co.edu.escuelaing.webframe.annotations.RequestParam;
+import co.edu.escuelaing.webframe.annotations.RestController;
+import co.edu.escuelaing.webframe.http.ServerConfig;
+import co.edu.escuelaing.webframe.http.ServerEngine;
+import co.edu.escuelaing.webframe.http.StreamingBody;
+import co.edu.escuelaing.webframe.http.TestServers;
+import co.edu.escuelaing.webframe.http.tls.TestKeyStores;
+
+/**
+ * Tests for HTTP/2 on the blocking engine: h2c by Upgrade and by prior knowledge, h2 over TLS,
+ * multiplexing, flow control and draining.
+ */
+public class Http2Test {
+
+    private static final int LARGE_SIZE = 1024 * 1024 + 7;
+    private static final int SLOW_MILLIS = 300;
+
+    private ServerEngine server;
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testUpgradeFromHttp11() throws Exception {
+        server = TestServers.start(new ServerConfig(), StreamController.class);
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build();
+
+        for (int i = 0; i < 3; i++) {
+            HttpResponse<String> response = client.send(request("http", "/hello"), HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, response.statusCode());
+            assertEquals(HttpClient.Version.HTTP_2, response.version());
+            assertEquals("hello", response.body());
+        }
+        assertEquals(1, scrape(client, "http", "webframe_connections_total"));
+    }
+
+    @Test
+    public void testH2OverTls() throws Exception {
+        ServerConfig config = new ServerConfig();
+        TestKeyStores.configure(config);
+        server = TestServers.start(config, StreamController.class);
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2)
+                .sslContext(TestKeyStores.clientContext()).build();
+
+        HttpResponse<String> response = client.send(request("https", "/hello"), HttpResponse.BodyHandlers.ofString());
+        assertEquals(HttpClient.Version.HTTP_2, response.version());
+        assertEquals("hello", response.body());
+
+        HttpResponse<byte[]> large = client.send(request("https", "/large"), HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(HttpClient.Version.HTTP_2, large.version());
+        assertArrayEquals(StreamController.LARGE, large.body());
+    }
+
+    @Test
+    public void testRequestBodyLargerThanTheWindowIsStreamedToTheHandler() throws Exception {
+        ServerConfig config = new ServerConfig();
+        TestKeyStores.configure(config);
+        server = TestServers.start(config, StreamController.class);
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2)
+                .sslContext(TestKeyStores.clientContext()).build();
+
+        HttpRequest upload = HttpRequest.newBuilder(URI.create("https://localhost:" + server.getLocalPort() + "/checksum"))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(StreamController.LARGE)).build();
+        HttpResponse<String> response = client.send(upload, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(HttpClient.Version.HTTP_2, response.version());
+        assertEquals(200, response.statusCode());
+        assertEquals(LARGE_SIZE + ":" + StreamController.checksum(StreamController.LARGE, LARGE_SIZE), response.body());
+    }
+
+    @Test
+    public void testConcurrentRequestsAreMultiplexedOnOneConnection() throws Exception {
+        server = TestServers.start(new ServerConfig(), StreamController.class);
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build();
+        client.send(request("http", "/hello"), HttpResponse.BodyHandlers.ofString());
+
+        int count = 6;
+        long start = System.nanoTime();
+        List<CompletableFuture<HttpResponse<String>>> slow = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            slow.add(client.sendAsync(request("http", "/slow?millis=" + SLOW_MILLIS), HttpResponse.BodyHandlers.ofString()));
+        }
+        // a large response is interleaved with the others instead of waiting for them
+        HttpResponse<byte[]> large = client.send(request("http", "/large"), HttpResponse.BodyHandlers.ofByteArray());
+        assertArrayEquals(StreamController.LARGE, large.body());
+        for (CompletableFuture<HttpResponse<String>> future : slow) {
+            HttpResponse<String> response = future.get(10, TimeUnit.SECONDS);
+            assertEquals(HttpClient.Version.HTTP_2, response.version());
+            assertEquals("slept", response.body());
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("Streams should run concurrently, took " + elapsed + " ms", elapsed < count * SLOW_MILLIS);
+        assertEquals(1, scrape(client, "http", "webframe_connections_total"));
+    }
+
+    @Test
+    public void testPriorKnowledge() throws Exception {
+        server = TestServers.start(new ServerConfig(), StreamController.class);
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            RawHttp2 http2 = new RawHttp2(socket);
+            http2.start();
+            http2.get(1, "/hello");
+            http2.get(3, "/slow");
+            http2.writeFrame(Http2Frames.PING, 0, 0, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+
+            Map<Integer, Map<String, String>> heads = new LinkedHashMap<>();
+            Map<Integer, ByteArrayOutputStream> bodies = new LinkedHashMap<>();
+            boolean pinged = false;
+            while (heads.size() < 2 || bodies.size() < 2 || !pinged) {
+                Frame frame = http2.readFrame();
+                if (frame.type == Http2Frames.HEADERS) {
+                    heads.put(frame.streamId, http2.decode(frame.payload));
+                } else if (frame.type == Http2Frames.DATA) {
+                    bodies.computeIfAbsent(frame.streamId, id -> new ByteArrayOutputStream()).write(frame.payload);
+                } else if (frame.type == Http2Frames.PING) {
+                    assertEquals(Http2Frames.FLAG_ACK, frame.flags);
+                    assertArrayEquals(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }, frame.payload);
+                    pinged = true;
+                }
+            }
+            assertEquals("200", heads.get(1).get(":status"));
+            assertEquals("5", heads.get(1).get("content-length"));
+            assertEquals("hello", bodies.get(1).toString("UTF-8"));
+            assertEquals("200", heads.get(3).get(":status"));
+            assertEquals("slept", bodies.get(3).toString("UTF-8"));
+        }
+    }
+
+    @Test
+    public void testMoreConnectionsThanWorkersAreAllAnswered() throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setWorkerThreads(2);
+        server = TestServers.start(config, StreamController.class);
+        List<Socket> sockets = new ArrayList<>();
+        try {
+            // every worker holds a connection's reading thread, so streams need threads of their own
+            List<RawHttp2> connections = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                Socket socket = new Socket("localhost", server.getLocalPort());
+                sockets.add(socket);
+                RawHttp2 http2 = new RawHttp2(socket);
+                http2.start();
+                connections.add(http2);
+            }
+            for (RawHttp2 http2 : connections.subList(0, 2)) {
+                http2.get(1, "/hello");
+                assertEquals("hello", http2.readBody(1));
+            }
+            // the third connection waits for a worker; closing one of the others frees it
+            sockets.get(0).close();
+            connections.get(2).get(1, "/hello");
+            assertEquals("hello", connections.get(2).readBody(1));
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    public void testMalformedRequestResetsOnlyItsStream() throws Exception {
+        server = TestServers.start(new ServerConfig(), StreamController.class);
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            RawHttp2 http2 = new RawHttp2(socket);
+            http2.start();
+            http2.writeHeaders(1, new String[][] { { ":method", "GET" }, { ":scheme", "http" } });
+            http2.writeHeaders(3, new String[][] {
+                    { ":method", "GET" }, { ":scheme", "http" }, { ":path", "/hello" }, { "connection", "close" } });
+            http2.get(5, "/hello");
+
+            Frame frame;
+            List<Integer> reset = new ArrayList<>();
+            do {
+                frame = http2.readFrame();
+                if (frame.type == Http2Frames.RST_STREAM) {
+                    assertEquals(Http2Frames.PROTOCOL_ERROR, Http2Frames.readInt(frame.payload, 0));
+                    reset.add(frame.streamId);
+                }
+            } while (frame.type != Http2Frames.DATA);
+            assertEquals(5, frame.streamId);
+            assertEquals(List.of(1, 3), reset);
+        }
+    }
+
+    @Test
+    public void testShutdownAnswersOpenStreamsAfterGoAway() throws Exception {
+        server = TestServers.start(new ServerConfig(), StreamController.class);
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            RawHttp2 http2 = new RawHttp2(socket);
+            StreamController.sleeping = new CountDownLatch(1);
+            http2.start();
+            http2.get(1, "/slow?millis=" + SLOW_MILLIS);
+            assertTrue(StreamController.sleeping.await(5, TimeUnit.SECONDS));
+
+            Thread stopper = new Thread(server::stop);
+            stopper.start();
+            boolean goAway = false;
+            boolean answered = false;
+            Frame frame;
+            while ((frame = http2.readFrame()) != null) {
+                if (frame.type == Http2Frames.GOAWAY) {
+                    assertEquals(1, Http2Frames.readInt(frame.payload, 0));
+                    assertEquals(Http2Frames.NO_ERROR, Http2Frames.readInt(frame.payload, 4));
+                    goAway = true;
+                } else if (frame.type == Http2Frames.DATA && (frame.flags & Http2Frames.FLAG_END_STREAM) != 0) {
+                    answered = true;
+                }
+            }
+            stopper.join();
+            assertTrue("GOAWAY should be sent", goAway);
+            assertTrue("Open stream should be answered", answered);
+            server = null;
+        }
+    }
+
+    private HttpRequest request(String scheme, String path) {
+        return HttpRequest.newBuilder(URI.create(scheme + "://localhost:" + server.getLocalPort() + path)).build();
+    }
+
+    private long scrape(HttpClient client, String scheme, String metric) throws Exception {
+        String body = client.send(request(scheme, "/metrics"), HttpResponse.BodyHandlers.ofString()).body();
+        for (String line : body.split("\n")) {
+            if (line.startsWith(metric + " ")) {
+                return Long.parseLong(line.substring(metric.length() + 1).trim());
+            }
+        }
+        throw new AssertionError("Metric " + metric + " not found");
+    }
+
+    private static final class Frame {
+        int type;
+        int flags;
+        int streamId;
+        byte[] payload;
+    }
+
+    /**
+     * Minimal HTTP/2 client over a socket, speaking prior knowledge.
+     */
+    private static final class RawHttp2 {
+
+        private final DataInputStream in;
+        private final OutputStream out;
+        private final HpackEncoder encoder = new HpackEncoder();
+        private final HpackDecoder decoder = new HpackDecoder(4096);
+
+        RawHttp2(Socket socket) throws IOException {
+            socket.setSoTimeout(5000);
+            this.in = new DataInputStream(socket.getInputStream());
+            this.out = socket.getOutputStream();
+        }
+
+        void start() throws IOException {
+            out.write(Http2Connection.PREFACE);
+            writeFrame(Http2Frames.SETTINGS, 0, 0, new byte[0]);
+        }
+
+        void get(int streamId, String path) throws IOException {
+            writeHeaders(streamId, new String[][] {
+                    { ":method", "GET" }, { ":scheme", "http" }, { ":authority", "localhost" }, { ":path", path } });
+        }
+
+        void writeHeaders(int streamId, String[][] fields) throws IOException {
+            ByteArrayOutputStream block = new ByteArrayOutputStream();
+            encoder.beginBlock(block);
+            for (String[] field : fields) {
+                encoder.encode(field[0], field[1], block);
+            }
+            writeFrame(Http2Frames.HEADERS, Http2Frames.FLAG_END_HEADERS | Http2Frames.FLAG_END_STREAM,
+                    streamId, block.toByteArray());
+        }
+
+        void writeFrame(int type, int flags, int streamId, byte[] payload) throws IOException {
+            Http2Frames.writeHeader(out, payload.length, type, flags, streamId);
+            out.write(payload);
+            out.flush();
+        }
+
+        /**
+         * Reads the next frame, or returns null when the server closed the connection.
+         */
+        Frame readFrame() throws IOException {
+            byte[] header = new byte[Http2Frames.HEADER_LENGTH];
+            int first = in.read();
+            if (first < 0) {
+                return null;
+            }
+            header[0] = (byte) first;
+            in.readFully(header, 1, header.length - 1);
+            Frame frame = new Frame();
+            int length = (header[0] & 0xFF) << 16 | (header[1] & 0xFF) << 8 | (header[2] & 0xFF);
+            frame.type = header[3] & 0xFF;
+            frame.flags = header[4] & 0xFF;
+            frame.streamId = Http2Frames.readInt(header, 5) & 0x7FFFFFFF;
+            frame.payload = new byte[length];
+            in.readFully(frame.payload);
+            return frame;
+        }
+
+        /**
+         * Reads frames until the end of the stream's response and returns its body.
+         */
+        String readBody(int streamId) throws IOException {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            Frame frame;
+            do {
+                frame = readFrame();
+                assertTrue("Connection closed before stream " + streamId + " was answered", frame != null);
+                if (frame.type == Http2Frames.DATA && frame.streamId == streamId) {
+                    body.write(frame.payload);
+                }
+            } while (frame.type != Http2Frames.DATA || frame.streamId != streamId
+                    || (frame.flags & Http2Frames.FLAG_END_STREAM) == 0);
+            return body.toString(StandardCharsets.UTF_8);
+        }
+
+        Map<String, String> decode(byte[] block) throws Http2Exception {
+            Map<String, String> fields = new LinkedHashMap<>();
+            decoder.decode(block, 0, block.length, fields::put);
+            return fields;
+        }
+    }
+
+    @RestController
+    public static class StreamController {
+
+        static final byte[] LARGE = new byte[LARGE_SIZE];
+        static volatile CountDownLatch sleeping = new CountDownLatch(1);
+
+        static {
+            for (int i = 0; i < LARGE.length; i++) {
+                LARGE[i] = (byte) (i * 31);
+            }
+        }
+
+        @GetMapping("/hello")
+        public String hello() {
+            return "hello";
+        }
+
+        @GetMapping("/slow")
+        public String slow(@RequestParam(value = "millis", defaultValue = "0") String millis) throws InterruptedException {
+            sleeping.countDown();
+            Thread.sleep(Long.parseLong(millis));
+            return "slept";
+        }
+
+        @GetMapping("/large")
+        public StreamingBody large() {
+            return out -> out.write(LARGE);
+        }
+
+        @PostMapping("/checksum")
+        public String checksum(@RequestBody InputStream body) throws IOException {
+            byte[] buffer = new byte[5000];
+            long total = 0;
+            long sum = 0;
+            int read;
+            while ((read = body.read(buffer)) >= 0) {
+                total += read;
+                sum += checksum(buffer, read);
+            }
+            return total + ":" + sum;
+        }
+
+        static long checksum(byte[] data, int length) {
+            long sum = 0;
+            for (int i = 0; i < length; i++) {
+                sum += data[i] & 0xFF;
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package co.edu.escuelaing.webframe.http.log;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import co.edu.escuelaing.webframe.annotations.GetMapping;
+import co.edu.escuelaing.webframe.annotations.RestController;
+import co.edu.escuelaing.webframe.http.EngineType;
+import co.edu.escuelaing.webframe.http.HttpRequest;
+import co.edu.escuelaing.webframe.http.HttpResponse;
+import co.edu.escuelaing.webframe.http.RawHttpClient;
+import co.edu.escuelaing.webframe.http.ServerConfig;
+import co.edu.escuelaing.webframe.http.ServerEngine;
+import co.edu.escuelaing.webframe.http.TestServers;
+
+/**
+ * Tests for access log formatting and rotation.
+ */
+public class AccessLogTest {
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("access-log-test");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testCommonFormat() throws Exception {
+        Path file = directory.resolve("access.log");
+        AccessLog log = new AccessLog(file, AccessLogFormat.COMMON, 0, 0);
+        log.log("127.0.0.1", new HttpRequest("GET", "/greeting?name=Ada", "HTTP/1.1"), HttpResponse.html(200, "Hola"));
+        log.log("10.0.0.2", null, HttpResponse.error(400));
+        log.close();
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.ISO_8859_1);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0), lines.get(0).matches(
+                "127\\.0\\.0\\.1 - - \\[\\d{2}/\\w{3}/\\d{4}:\\d{2}:\\d{2}:\\d{2} [+-]\\d{4}\\] "
+                        + "\"GET /greeting\\?name=Ada HTTP/1\\.1\" 200 4"));
+        assertTrue(lines.get(1), lines.get(1).startsWith("10.0.0.2 - - ["));
+        assertTrue(lines.get(1), lines.get(1).endsWith("] \"-\" 400 " + HttpResponse.error(400).getContentLength()));
+    }
+
+    @Test
+    public void testCombinedFormatEscapesValues() throws Exception {
+        Path file = directory.resolve("access.log");
+        AccessLog log = new AccessLog(file, AccessLogFormat.COMBINED, 0, 0);
+        HttpRequest request = new HttpRequest("GET", "/a\"b", "HTTP/1.1");
+        request.addHeader("User-Agent", "curl/8.0 \"test\"\t");
+        log.log("127.0.0.1", request, new HttpResponse(304));
+        log.close();
+
+        String line = Files.readAllLines(file, StandardCharsets.ISO_8859_1).get(0);
+        assertTrue(line, line.endsWith("\"GET /a\\\"b HTTP/1.1\" 304 - \"-\" \"curl/8.0 \\\"test\\\"\\x09\""));
+    }
+
+    @Test
+    public void testHeadResponseLogsNoBodyBytes() throws Exception {
+        Path file = directory.resolve("access.log");
+        AccessLog log = new AccessLog(file, AccessLogFormat.COMMON, 0, 0);
+        log.log("127.0.0.1", new HttpRequest("HEAD", "/greeting", "HTTP/1.1"), HttpResponse.html(200, "Hola"));
+        log.close();
+
+        String line = Files.readAllLines(file, StandardCharsets.ISO_8859_1).get(0);
+        assertTrue(line, line.endsWith("\"HEAD /greeting HTTP/1.1\" 200 -"));
+    }
+
+    @Test
+    public void testRotatesBySize() throws Exception {
+        Path file = directory.resolve("access.log");
+        AccessLog log = new AccessLog(file, AccessLogFormat.COMMON, 1000, 2);
+        HttpRequest request = new HttpRequest("GET", "/", "HTTP/1.1");
+        for (int i = 0; i < 100; i++) {
+            log.log("127.0.0.1", request, HttpResponse.html(200, "x"));
+            // spread the entries over several batches so rotation happens between writes
+            Thread.sleep(1);
+        }
+        log.close();
+
+        assertTrue(Files.exists(file));
+        assertTrue(Files.exists(directory.resolve("access.log.1")));
+        assertTrue(Files.exists(directory.resolve("access.log.2")));
+        assertFalse(Files.exists(directory.resolve("access.log.3")));
+    }
+
+    @Test
+    public void testFailedRotationKeepsAppending() throws Exception {
+        Path file = directory.resolve("access.log");
+        // a non-empty directory where the rotated file should go makes the rotation fail
+        Path blocker = Files.createDirectory(directory.resolve("access.log.1"));
+        Files.createFile(blocker.resolve("keep"));
+        byte[] entry = "0123456789\n".getBytes(StandardCharsets.ISO_8859_1);
+        try (RotatingFileWriter writer = new RotatingFileWriter(file, 15, 1)) {
+            writer.write(entry, entry.length);
+            writer.write(entry, entry.length);
+            writer.write(entry, entry.length);
+            assertEquals(3 * entry.length, Files.size(file));
+
+            Files.delete(blocker.resolve("keep"));
+            Files.delete(blocker);
+            writer.write(entry, entry.length);
+        }
+        assertEquals(entry.length, Files.size(file));
+        assertEquals(3 * entry.length, Files.size(blocker));
+    }
+
+    @Test
+    public void testEnginesWriteEntries() throws Exception {
+        for (EngineType engine : EngineType.values()) {
+            Path file = directory.resolve(engine + ".log");
+            ServerConfig config = new ServerConfig();
+            config.setEngine(engine);
+            config.setAccessLogPath(file.toString());
+            ServerEngine server = TestServers.start(config, PingController.class);
+            try {
+                RawHttpClient.exchange(server.getLocalPort(), RawHttpClient.get("/ping", "Referer: http://example.com/"));
+                RawHttpClient.exchange(server.getLocalPort(), "BROKEN\r\n\r\n");
+            } finally {
+                server.stop();
+            }
+
+            List<String> lines = Files.readAllLines(file, StandardCharsets.ISO_8859_1);
+            assertEquals(engine.toString(), 2, lines.size());
+            assertTrue(lines.get(0), lines.get(0).contains("\"GET /ping HTTP/1.1\" 200 4 \"http://example.com/\" \"-\""));
+            assertTrue(lines.get(1), lines.get(1).contains("\"-\" 400 "));
+        }
+    }
+
+    @RestController
+    public static class PingController {
+
+        @GetMapping("/ping")
+        public String ping() {
+            return "pong";
+        }
+    }
+}
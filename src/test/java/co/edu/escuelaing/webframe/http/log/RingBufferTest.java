@@ -0,0 +1,108 @@
+package co.edu.escuelaing.webframe.http.log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Unit tests for the multi-producer ring buffer behind the access log.
+ */
+public class RingBufferTest {
+
+    private static final class Slot {
+        int value;
+    }
+
+    @Test
+    public void testReportsFullAndReusesSlots() {
+        RingBuffer<Slot> buffer = new RingBuffer<>(4, Slot::new);
+        for (int i = 0; i < 4; i++) {
+            long position = buffer.claim();
+            buffer.get(position).value = i;
+            buffer.publish(position);
+        }
+        assertEquals(-1, buffer.claim());
+
+        assertEquals(0, buffer.peek().value);
+        buffer.release();
+        long position = buffer.claim();
+        assertEquals(4, position);
+        buffer.get(position).value = 4;
+        buffer.publish(position);
+
+        for (int expected = 1; expected <= 4; expected++) {
+            assertEquals(expected, buffer.peek().value);
+            buffer.release();
+        }
+        assertNull(buffer.peek());
+    }
+
+    @Test
+    public void testUnpublishedSlotIsNotVisible() {
+        RingBuffer<Slot> buffer = new RingBuffer<>(4, Slot::new);
+        long first = buffer.claim();
+        long second = buffer.claim();
+        buffer.publish(second);
+        assertNull("the consumer must wait for the first slot", buffer.peek());
+        buffer.publish(first);
+        buffer.peek();
+        buffer.release();
+        assertTrue(buffer.peek() != null);
+    }
+
+    @Test
+    public void testConcurrentProducersDeliverEveryValueOnce() throws Exception {
+        RingBuffer<Slot> buffer = new RingBuffer<>(64, Slot::new);
+        int producers = 4;
+        int perProducer = 20_000;
+        AtomicInteger finished = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    long position;
+                    while ((position = buffer.claim()) < 0) {
+                        Thread.yield();
+                    }
+                    buffer.get(position).value = base + i;
+                    buffer.publish(position);
+                }
+                finished.incrementAndGet();
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        boolean[] seen = new boolean[producers * perProducer];
+        int[] lastPerProducer = new int[producers];
+        Arrays.fill(lastPerProducer, -1);
+        int received = 0;
+        while (received < seen.length) {
+            Slot slot = buffer.peek();
+            if (slot == null) {
+                Thread.yield();
+                continue;
+            }
+            int value = slot.value;
+            buffer.release();
+            assertTrue("duplicate " + value, !seen[value]);
+            seen[value] = true;
+            int producer = value / perProducer;
+            assertTrue("out of order for producer " + producer, value > lastPerProducer[producer]);
+            lastPerProducer[producer] = value;
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(producers, finished.get());
+        assertNull(buffer.peek());
+    }
+}
@@ -0,0 +1,61 @@
+package co.edu.escuelaing.webframe.http.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Unit tests for the striped log-linear latency histogram.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsKeepRelativePrecision() {
+        for (long value = 1; value < (1L << 37); value = value * 3 + 1) {
+            long lower = LatencyHistogram.lowerBound(LatencyHistogram.index(value));
+            assertTrue(value + " -> " + lower, lower <= value);
+            assertTrue(value + " -> " + lower, value - lower <= Math.max(1, value / 32));
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.index(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentilesCountAndSum() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500_500_000L, snapshot.getSum());
+        assertWithin(500_000, snapshot.percentile(50));
+        assertWithin(990_000, snapshot.percentile(99));
+        assertWithin(1_000_000, snapshot.percentile(100));
+        assertEquals(snapshot.getCount(), snapshot.countAtOrBelow(2_000_000));
+        long belowQuarter = snapshot.countAtOrBelow(250_000);
+        assertTrue(String.valueOf(belowQuarter), belowQuarter >= 240 && belowQuarter <= 250);
+    }
+
+    @Test
+    public void testConcurrentRecording() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    histogram.record(1234);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(200_000, histogram.snapshot().getCount());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(expected + " vs " + actual, Math.abs(expected - actual) <= expected / 32 + 1);
+    }
+}
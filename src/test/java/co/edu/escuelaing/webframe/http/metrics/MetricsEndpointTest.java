@@ -0,0 +1,116 @@
+package co.edu.escuelaing.webframe.http.metrics;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import co.edu.escuelaing.webframe.annotations.GetMapping;
+import co.edu.escuelaing.webframe.annotations.PathVariable;
+import co.edu.escuelaing.webframe.annotations.RestController;
+import co.edu.escuelaing.webframe.http.EngineType;
+import co.edu.escuelaing.webframe.http.RawHttpClient;
+import co.edu.escuelaing.webframe.http.ServerConfig;
+import co.edu.escuelaing.webframe.http.ServerEngine;
+import co.edu.escuelaing.webframe.http.TestServers;
+
+/**
+ * Tests for the Prometheus metrics endpoint, run against every engine.
+ */
+@RunWith(Parameterized.class)
+public class MetricsEndpointTest {
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> engines() {
+        return Arrays.asList(new Object[][] { { EngineType.BLOCKING }, { EngineType.NIO } });
+    }
+
+    private final EngineType engine;
+    private ServerEngine server;
+
+    public MetricsEndpointTest(EngineType engine) {
+        this.engine = engine;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setEngine(engine);
+        server = TestServers.start(config, ItemController.class);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testCountsRequestsAndRouteLatency() throws Exception {
+        int port = server.getLocalPort();
+        RawHttpClient.exchange(port, RawHttpClient.get("/items/1"));
+        RawHttpClient.exchange(port, RawHttpClient.get("/items/2"));
+        RawHttpClient.exchange(port, RawHttpClient.get("/missing"));
+        RawHttpClient.exchange(port, "BROKEN\r\n\r\n");
+
+        // responses are recorded once written, which may be just after the client has read them
+        String text = scrapeUntil(port, "webframe_responses_total{code=\"400\"} 1\n",
+                "webframe_route_phase_seconds_count{method=\"GET\",route=\"/items/{id}\",phase=\"write\"} 2\n",
+                "webframe_route_phase_seconds_count{method=\"*\",route=\"unmatched\",phase=\"write\"} 1\n");
+        assertTrue(text, counter(text, "webframe_requests_total") >= 4);
+        assertTrue(text, counter(text, "webframe_responses_total{code=\"200\"}") >= 2);
+        assertTrue(text, text.contains("webframe_responses_total{code=\"404\"} 1\n"));
+        assertTrue(text, counter(text, "webframe_connections_total") >= 5);
+        assertTrue(text, counter(text, "webframe_sent_bytes_total") > 0);
+        assertTrue(text, counter(text, "webframe_received_bytes_total") > 0);
+        assertTrue(text, text.contains("webframe_active_connections "));
+        for (String phase : new String[] { "routing", "handler", "write" }) {
+            assertTrue(text, text.contains("webframe_route_phase_seconds_count{method=\"GET\",route=\"/items/{id}\","
+                    + "phase=\"" + phase + "\"} 2\n"));
+            assertTrue(text, text.contains("webframe_route_phase_seconds_bucket{method=\"GET\",route=\"/items/{id}\","
+                    + "phase=\"" + phase + "\",le=\"+Inf\"} 2\n"));
+        }
+        assertTrue(text, text.contains("webframe_route_phase_seconds_count{method=\"*\",route=\"unmatched\","
+                + "phase=\"routing\"} 1\n"));
+        assertTrue(text, text.contains("webframe_route_phase_quantile_seconds{method=\"GET\",route=\"/items/{id}\","
+                + "phase=\"handler\",quantile=\"0.99\"} "));
+        assertTrue(text, text.contains("# TYPE webframe_worker_queue_depth gauge\nwebframe_worker_queue_depth "));
+    }
+
+    private static String scrapeUntil(int port, String... expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (true) {
+            RawHttpClient.Response response = RawHttpClient.exchange(port, RawHttpClient.get("/metrics"));
+            assertEquals(200, response.status);
+            assertTrue(response.header("Content-Type").startsWith("text/plain; version=0.0.4"));
+            String text = response.bodyText();
+            boolean complete = Arrays.stream(expected).allMatch(text::contains);
+            if (complete || System.currentTimeMillis() > deadline) {
+                for (String line : expected) {
+                    assertTrue(text, text.contains(line));
+                }
+                return text;
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static long counter(String text, String name) {
+        int start = text.indexOf("\n" + name + " ") + name.length() + 2;
+        return Long.parseLong(text.substring(start, text.indexOf('\n', start)));
+    }
+
+    @RestController
+    public static class ItemController {
+
+        @GetMapping("/items/{id}")
+        public String item(@PathVariable("id") String id) {
+            return "Item " + id;
+        }
+    }
+}
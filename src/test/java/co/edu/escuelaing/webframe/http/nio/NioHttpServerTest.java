@@ -0,0 +1,127 @@
+package co.edu.escuelaing.webframe.http.nio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import org.junit.After;
+import org.junit.Test;
+
+import co.edu.escuelaing.webframe.annotations.GetMapping;
+import co.edu.escuelaing.webframe.annotations.RestController;
+import co.edu.escuelaing.webframe.http.EngineType;
+import co.edu.escuelaing.webframe.http.HttpRequestHandler;
+import co.edu.escuelaing.webframe.http.RawHttpClient;
+import co.edu.escuelaing.webframe.http.RequestDispatcher;
+import co.edu.escuelaing.webframe.http.ServerConfig;
+import co.edu.escuelaing.webframe.http.ServerEngine;
+import co.edu.escuelaing.webframe.http.TestServers;
+import co.edu.escuelaing.webframe.ioc.SimpleIoCContainer;
+
+/**
+ * Tests for the selector-based engine.
+ */
+public class NioHttpServerTest {
+
+    private ServerEngine server;
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testIdleConnectionsDoNotBlockNewClients() throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setEngine(EngineType.NIO);
+        config.setIoThreads(1);
+        config.setWorkerThreads(2);
+        server = TestServers.start(config, PingController.class);
+
+        List<Socket> idle = new ArrayList<>();
+        try {
+            for (int i = 0; i < 300; i++) {
+                Socket socket = new Socket("localhost", server.getLocalPort());
+                RawHttpClient.write(socket, RawHttpClient.get("/ping"));
+                assertEquals(200, RawHttpClient.read(socket.getInputStream()).status);
+                idle.add(socket);
+            }
+
+            RawHttpClient.Response response = RawHttpClient.exchange(server.getLocalPort(),
+                    RawHttpClient.get("/ping", "Connection: close"));
+            assertEquals("pong", response.bodyText());
+        } finally {
+            for (Socket socket : idle) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    public void testRequestHeadSplitAcrossWrites() throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setEngine(EngineType.NIO);
+        server = TestServers.start(config, PingController.class);
+
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            socket.setTcpNoDelay(true);
+            RawHttpClient.write(socket, "GET /pi");
+            Thread.sleep(50);
+            RawHttpClient.write(socket, "ng HTTP/1.1\r\nHost: local");
+            Thread.sleep(50);
+            RawHttpClient.write(socket, "host\r\n\r\n");
+
+            InputStream in = socket.getInputStream();
+            assertEquals("pong", RawHttpClient.read(in).bodyText());
+        }
+    }
+
+    @Test
+    public void testChannelsRegisteredWhileStoppingAreClosed() throws Exception {
+        ServerConfig config = new ServerConfig();
+        HttpRequestHandler handler = new HttpRequestHandler(new RequestDispatcher(new SimpleIoCContainer()), config);
+        ExecutorService workers = Executors.newSingleThreadExecutor();
+        try (ServerSocketChannel listener = ServerSocketChannel.open()) {
+            listener.bind(new InetSocketAddress("localhost", 0));
+            EventLoop loop = new EventLoop(handler, workers, config, null);
+            SocketChannel queued = connect(listener);
+            loop.register(queued);
+            loop.shutdown();
+            SocketChannel late = connect(listener);
+            loop.register(late);
+            assertFalse(late.isOpen());
+
+            loop.run();
+            assertFalse(queued.isOpen());
+        } finally {
+            workers.shutdownNow();
+            handler.close();
+        }
+    }
+
+    private static SocketChannel connect(ServerSocketChannel listener) throws IOException {
+        SocketChannel client = SocketChannel.open(listener.getLocalAddress());
+        client.close();
+        return listener.accept();
+    }
+
+    @RestController
+    public static class PingController {
+
+        @GetMapping("/ping")
+        public String ping() {
+            return "pong";
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package co.edu.escuelaing.webframe.http.tls;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+import co.edu.escuelaing.webframe.http.ServerConfig;
+
+/**
+ * Self-signed key store for localhost, generated once per JVM with the JDK's keytool.
+ */
+public final class TestKeyStores {
+
+    public static final String PASSWORD = "changeit";
+
+    private static Path keyStore;
+
+    private TestKeyStores() {
+    }
+
+    public static synchronized Path keyStore() throws IOException, InterruptedException {
+        if (keyStore == null) {
+            Path dir = Files.createTempDirectory("tls-test");
+            Path file = dir.resolve("localhost.p12");
+            String keytool = Paths.get(System.getProperty("java.home"), "bin", "keytool").toString();
+            Process process = new ProcessBuilder(keytool, "-genkeypair", "-alias", "localhost",
+                    "-keyalg", "EC", "-groupname", "secp256r1", "-validity", "30",
+                    "-dname", "CN=localhost", "-ext", "SAN=dns:localhost,ip:127.0.0.1",
+                    "-storetype", "PKCS12", "-keystore", file.toString(),
+                    "-storepass", PASSWORD, "-keypass", PASSWORD)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (process.waitFor() != 0) {
+                throw new IOException("keytool failed with exit code " + process.exitValue());
+            }
+            file.toFile().deleteOnExit();
+            dir.toFile().deleteOnExit();
+            keyStore = file;
+        }
+        return keyStore;
+    }
+
+    /**
+     * Points a configuration at the test key store.
+     */
+    public static void configure(ServerConfig config) throws IOException, InterruptedException {
+        config.setKeyStore(keyStore().toString());
+        config.setKeyStorePassword(PASSWORD);
+    }
+
+    /**
+     * Returns a client context trusting the test certificate. Each context keeps its own session
+     * cache, so resumption can be observed per context.
+     */
+    public static SSLContext clientContext() throws IOException, InterruptedException, GeneralSecurityException {
+        KeyStore trusted = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(keyStore())) {
+            trusted.load(in, PASSWORD.toCharArray());
+        }
+        TrustManagerFactory trust = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trust.init(trusted);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, trust.getTrustManagers(), null);
+        return context;
+    }
+}
@@ -0,0 +1,224 @@
+package co.edu.escuelaing.webframe.http.tls;
+
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import co.edu.escuelaing.webframe.annotations.GetMapping;
+import co.edu.escuelaing.webframe.annotations.RestController;
+import co.edu.escuelaing.webframe.http.EngineType;
+import co.edu.escuelaing.webframe.http.RawHttpClient;
+import co.edu.escuelaing.webframe.http.ServerConfig;
+import co.edu.escuelaing.webframe.http.ServerEngine;
+import co.edu.escuelaing.webframe.http.TestServers;
+
+/**
+ * Tests for HTTPS: requests, keep-alive, file bodies, ALPN and session resumption, run against
+ * every engine.
+ */
+@RunWith(Parameterized.class)
+public class TlsTest {
+
+    private static final int LARGE_SIZE = 300 * 1024 + 5;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> engines() {
+        return Arrays.asList(new Object[][] { { EngineType.BLOCKING }, { EngineType.NIO } });
+    }
+
+    private final EngineType engine;
+    private Path root;
+    private byte[] large;
+    private ServerEngine server;
+    private SSLContext client;
+
+    public TlsTest(EngineType engine) {
+        this.engine = engine;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("tls-test");
+        large = new byte[LARGE_SIZE];
+        new Random(3).nextBytes(large);
+        Files.write(root.resolve("large.png"), large);
+
+        ServerConfig config = new ServerConfig();
+        config.setEngine(engine);
+        config.setStaticRoot(root.toString());
+        config.setStaticCacheMaxFileSize(16 * 1024);
+        TestKeyStores.configure(config);
+        server = TestServers.start(config, SecureController.class);
+        client = TestKeyStores.clientContext();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+        try (Stream<Path> files = Files.walk(root)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private SSLSocket connect(String... protocols) throws Exception {
+        SSLSocket socket = (SSLSocket) client.getSocketFactory().createSocket("localhost", server.getLocalPort());
+        socket.setSoTimeout(5000);
+        if (protocols.length > 0) {
+            socket.setEnabledProtocols(protocols);
+        }
+        return socket;
+    }
+
+    @Test
+    public void testRequestsShareOneConnection() throws Exception {
+        try (SSLSocket socket = connect()) {
+            InputStream in = socket.getInputStream();
+            for (int i = 0; i < 3; i++) {
+                RawHttpClient.write(socket, RawHttpClient.get("/secure"));
+                RawHttpClient.Response response = RawHttpClient.read(in);
+                assertEquals(200, response.status);
+                assertEquals("secure", response.bodyText());
+                assertEquals("keep-alive", response.header("Connection"));
+            }
+        }
+    }
+
+    @Test
+    public void testPipelinedRequestsAreAnsweredInOrder() throws Exception {
+        try (SSLSocket socket = connect()) {
+            InputStream in = socket.getInputStream();
+            RawHttpClient.write(socket, RawHttpClient.get("/secure") + RawHttpClient.get("/large.png")
+                    + RawHttpClient.get("/secure", "Connection: close"));
+            assertEquals("secure", RawHttpClient.read(in).bodyText());
+            assertArrayEquals(large, RawHttpClient.read(in).body);
+            assertEquals("secure", RawHttpClient.read(in).bodyText());
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void testFileBodyAndRangeAreEncrypted() throws Exception {
+        try (SSLSocket socket = connect()) {
+            InputStream in = socket.getInputStream();
+            RawHttpClient.write(socket, RawHttpClient.get("/large.png"));
+            RawHttpClient.Response whole = RawHttpClient.read(in);
+            assertEquals(200, whole.status);
+            assertArrayEquals(large, whole.body);
+
+            RawHttpClient.write(socket, RawHttpClient.get("/large.png", "Range: bytes=1000-1999"));
+            RawHttpClient.Response range = RawHttpClient.read(in);
+            assertEquals(206, range.status);
+            assertArrayEquals(Arrays.copyOfRange(large, 1000, 2000), range.body);
+        }
+    }
+
+    @Test
+    public void testAlpnSelectsHttp11() throws Exception {
+        try (SSLSocket socket = connect()) {
+            SSLParameters parameters = socket.getSSLParameters();
+            parameters.setApplicationProtocols(new String[] { "spdy/3.1", "http/1.1" });
+            socket.setSSLParameters(parameters);
+            socket.startHandshake();
+            assertEquals("http/1.1", socket.getApplicationProtocol());
+
+            RawHttpClient.write(socket, RawHttpClient.get("/secure"));
+            assertEquals(200, RawHttpClient.read(socket.getInputStream()).status);
+        }
+    }
+
+    @Test
+    public void testAlpnSelectsH2OnlyWhereTheEngineSpeaksIt() throws Exception {
+        try (SSLSocket socket = connect()) {
+            SSLParameters parameters = socket.getSSLParameters();
+            parameters.setApplicationProtocols(new String[] { "h2", "http/1.1" });
+            socket.setSSLParameters(parameters);
+            socket.startHandshake();
+            assertEquals(engine == EngineType.BLOCKING ? "h2" : "http/1.1", socket.getApplicationProtocol());
+        }
+    }
+
+    @Test
+    public void testSessionIsResumedOnNextConnection() throws Exception {
+        for (String protocol : new String[] { "TLSv1.2", "TLSv1.3" }) {
+            client = TestKeyStores.clientContext();
+            byte[] first;
+            long created;
+            try (SSLSocket socket = connect(protocol)) {
+                RawHttpClient.write(socket, RawHttpClient.get("/secure", "Connection: close"));
+                assertEquals(200, RawHttpClient.read(socket.getInputStream()).status);
+                first = socket.getSession().getId();
+                created = socket.getSession().getCreationTime();
+            }
+            Thread.sleep(20);
+            try (SSLSocket socket = connect(protocol)) {
+                RawHttpClient.write(socket, RawHttpClient.get("/secure", "Connection: close"));
+                assertEquals(200, RawHttpClient.read(socket.getInputStream()).status);
+                assertEquals(protocol, socket.getSession().getProtocol());
+                // a resumed session keeps the identity of the one negotiated in full
+                if (protocol.equals("TLSv1.2")) {
+                    assertArrayEquals(first, socket.getSession().getId());
+                }
+                assertEquals(created, socket.getSession().getCreationTime());
+            }
+        }
+    }
+
+    @Test
+    public void testLaterServerDoesNotChangeTheSessionTicketSwitch() throws Exception {
+        String before = System.getProperty(TlsContext.SESSION_TICKETS_PROPERTY);
+        ServerConfig config = new ServerConfig();
+        config.setEngine(engine);
+        config.setTlsSessionTickets(!Boolean.parseBoolean(before));
+        TestKeyStores.configure(config);
+        ServerEngine other = TestServers.start(config, SecureController.class);
+        try {
+            assertEquals(before, System.getProperty(TlsContext.SESSION_TICKETS_PROPERTY));
+        } finally {
+            other.stop();
+        }
+    }
+
+    @Test
+    public void testPlainHttpOnTlsPortDoesNotStopServer() throws Exception {
+        try (Socket plain = new Socket("localhost", server.getLocalPort())) {
+            plain.setSoTimeout(5000);
+            RawHttpClient.write(plain, RawHttpClient.get("/secure"));
+            InputStream in = plain.getInputStream();
+            while (in.read() >= 0) {
+                // whatever alert the server sends, it then closes
+            }
+        }
+        try (SSLSocket socket = connect()) {
+            RawHttpClient.write(socket, RawHttpClient.get("/secure"));
+            assertEquals(200, RawHttpClient.read(socket.getInputStream()).status);
+        }
+        assertTrue(server.isRunning());
+    }
+
+    @RestController
+    public static class SecureController {
+
+        @GetMapping("/secure")
+        public String secure() {
+            return "secure";
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package co.edu.escuelaing.webframe.ioc;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+import co.edu.escuelaing.webframe.annotations.PathVariable;
+import co.edu.escuelaing.webframe.annotations.RequestParam;
+
+/**
+ * Unit tests for the HandlerInvoker class.
+ */
+public class HandlerInvokerTest {
+
+    @Test
+    public void testArgumentsAreBoundFromPlan() throws Exception {
+        Route route = new Route("GET", "/shop/{category}", new ShopHandler(),
+                ShopHandler.class.getMethod("list", String.class, String.class, String.class));
+        RouteIndex index = new RouteIndex();
+        index.add(route);
+        RouteMatch match = index.newMatch();
+        index.find("GET", "/shop/books", match);
+
+        Map<String, String> query = new HashMap<>();
+        query.put("sort", "price");
+        HandlerInvoker invoker = route.getInvoker();
+
+        assertEquals("books/price/null", invoker.invoke(invoker.bindArguments(query, match)));
+        assertEquals("books/name/null", invoker.invoke(invoker.bindArguments(Collections.emptyMap(), match)));
+    }
+
+    @Test
+    public void testHandlerExceptionsAreWrapped() throws Exception {
+        Route route = new Route("GET", "/fail", new ShopHandler(), ShopHandler.class.getMethod("fail"));
+        try {
+            route.getInvoker().invoke(new Object[0]);
+            fail("Expected InvocationTargetException");
+        } catch (InvocationTargetException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUndeclaredPathVariableIsRejected() throws Exception {
+        new Route("GET", "/shop", new ShopHandler(),
+                ShopHandler.class.getMethod("list", String.class, String.class, String.class));
+    }
+
+    public static class ShopHandler {
+
+        public String list(@PathVariable("category") String category,
+                @RequestParam(value = "sort", defaultValue = "name") String sort, String unbound) {
+            return category + "/" + sort + "/" + unbound;
+        }
+
+        public String fail() {
+            throw new IllegalStateException("boom");
+        }
+    }
+}
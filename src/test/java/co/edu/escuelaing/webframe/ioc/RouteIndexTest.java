@@ -0,0 +1,128 @@
+package co.edu.escuelaing.webframe.ioc;
+
+import java.lang.reflect.Method;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the RouteIndex trie.
+ */
+public class RouteIndexTest {
+
+    private RouteIndex index;
+    private RouteMatch match;
+    private Method handler;
+
+    @Before
+    public void setUp() throws Exception {
+        index = new RouteIndex();
+        handler = Object.class.getMethod("toString");
+    }
+
+    private Route add(String method, String pattern) {
+        Route route = new Route(method, pattern, this, handler);
+        index.add(route);
+        match = index.newMatch();
+        return route;
+    }
+
+    @Test
+    public void testStaticRoutesMatchExactly() {
+        Route root = add("GET", "/");
+        Route users = add("GET", "/users");
+        Route active = add("GET", "/users/active");
+
+        assertTrue(index.find("GET", "/", match));
+        assertSame(root, match.getRoute());
+        assertTrue(index.find("GET", "/users", match));
+        assertSame(users, match.getRoute());
+        assertTrue(index.find("GET", "/users/active?page=2", match));
+        assertSame(active, match.getRoute());
+        assertFalse(index.find("GET", "/users/active/extra", match));
+        assertFalse(index.find("POST", "/users", match));
+        assertNull(match.getRoute());
+    }
+
+    @Test
+    public void testHeadUsesGetRouteAndAllowedMethodsAreListed() {
+        Route get = add("GET", "/users/{id}");
+        Route post = add("POST", "/users/{id}");
+        Route head = add("HEAD", "/status");
+
+        assertTrue(index.find("HEAD", "/users/7", match));
+        assertSame(get, match.getRoute());
+        assertEquals("7", match.getVariable("id"));
+        assertTrue(index.find("POST", "/users/7", match));
+        assertSame(post, match.getRoute());
+        assertTrue(index.find("HEAD", "/status", match));
+        assertSame(head, match.getRoute());
+        assertFalse(index.find("GET", "/status", match));
+
+        assertEquals("GET, HEAD, POST", index.allowedMethods("/users/7?full=true"));
+        assertEquals("HEAD", index.allowedMethods("/status"));
+        assertNull(index.allowedMethods("/orders"));
+    }
+
+    @Test
+    public void testPathVariablesAreCaptured() {
+        Route order = add("GET", "/users/{id}/orders/{orderId}");
+
+        assertTrue(index.find("GET", "/users/42/orders/7", match));
+        assertSame(order, match.getRoute());
+        assertEquals("42", match.getVariable("id"));
+        assertEquals("7", match.getVariable("orderId"));
+        assertEquals("42", match.getVariable(0));
+        assertNull(match.getVariable("missing"));
+    }
+
+    @Test
+    public void testStaticSegmentsWinAndBacktrack() {
+        Route byId = add("GET", "/users/{id}/profile");
+        Route me = add("GET", "/users/me");
+
+        assertTrue(index.find("GET", "/users/me", match));
+        assertSame(me, match.getRoute());
+        assertTrue(index.find("GET", "/users/me/profile", match));
+        assertSame(byId, match.getRoute());
+        assertEquals("me", match.getVariable("id"));
+    }
+
+    @Test
+    public void testWildcards() {
+        Route single = add("GET", "/files/*/meta");
+        Route rest = add("GET", "/assets/**");
+
+        assertTrue(index.find("GET", "/files/report.pdf/meta", match));
+        assertSame(single, match.getRoute());
+        assertFalse(index.find("GET", "/files/a/b/meta", match));
+        assertTrue(index.find("GET", "/assets/css/site/main.css", match));
+        assertSame(rest, match.getRoute());
+        assertTrue(index.find("GET", "/assets", match));
+        assertSame(rest, match.getRoute());
+    }
+
+    @Test
+    public void testManyRoutesAndReplacement() {
+        for (int i = 0; i < 500; i++) {
+            add("GET", "/resource" + i + "/{id}");
+        }
+        Route replacement = add("GET", "/resource250/{key}");
+
+        assertEquals(500, index.size());
+        assertTrue(index.find("GET", "/resource250/x", match));
+        assertSame(replacement, match.getRoute());
+        assertEquals("x", match.getVariable("key"));
+        assertFalse(index.find("GET", "/resource500/x", match));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedVariableIsRejected() {
+        add("GET", "/users/{id");
+    }
+}
@@ -1,15 +1,33 @@
 package co.edu.escuelaing.webframe.ioc;
 
+import java.io.ByteArrayInputStream;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import org.junit.Before;
 import org.junit.Test;
 
+import co.edu.escuelaing.webframe.annotations.Cacheable;
 import co.edu.escuelaing.webframe.annotations.GetMapping;
+import co.edu.escuelaing.webframe.annotations.PathVariable;
+import co.edu.escuelaing.webframe.annotations.PostMapping;
+import co.edu.escuelaing.webframe.annotations.RequestBody;
 import co.edu.escuelaing.webframe.annotations.RestController;
 
 /**
@@ -62,11 +80,159 @@ public class SimpleIoCContainerTest {
         assertNull("Non-existent route should return null", handlerInfo);
     }
     
+    @Test
+    public void testPathVariableRoute() throws Exception {
+        container.registerController(TestController.class.getName());
+        
+        Object[] handlerInfo = container.findRouteHandler("/items/15", "GET");
+        assertNotNull("Route with path variable should be found", handlerInfo);
+        assertEquals("Method name should be 'item'", "item", ((Method) handlerInfo[1]).getName());
+        
+        RouteMatch match = container.newRouteMatch();
+        assertTrue(container.findRoute("GET", "/items/15", match));
+        assertEquals("15", match.getVariable("id"));
+    }
+    
     @Test(expected = ClassNotFoundException.class)
     public void testRegisterInvalidController() throws Exception {
         container.registerController("co.invalid.NonExistentController");
     }
     
+    @Test
+    public void testScanLoadsControllersFromIndex() throws Exception {
+        container.scanAndRegisterControllers("co.edu.escuelaing.webframe.examples");
+
+        assertNotNull(container.getController("GreetingController"));
+        assertEquals(5, container.getRouteCount());
+        assertEquals("greeting", ((Method) container.findRouteHandler("/greeting", "GET")[1]).getName());
+        assertEquals("submitGreeting", ((Method) container.findRouteHandler("/greeting", "POST")[1]).getName());
+    }
+    
+    @Test
+    public void testIndexIncludesNestedControllers() throws Exception {
+        container.scanAndRegisterControllers("co.edu.escuelaing.webframe.ioc");
+        
+        assertNotNull(container.getController("TestController"));
+        assertEquals("item", ((Method) container.findRouteHandler("/items/15", "GET")[1]).getName());
+    }
+    
+    @Test
+    public void testStaleIndexFallsBackToReflection() throws Exception {
+        List<ControllerIndex.Entry> stale = Arrays.asList(
+                new ControllerIndex.Entry("GET", "/test", "renamedMethod", new String[0]));
+        container.registerController(TestController.class.getName(), stale);
+        
+        assertEquals(2, container.getRouteCount());
+        assertNotNull(container.findRouteHandler("/test", "GET"));
+    }
+    
+    @Test
+    public void testUnregisterRemovesControllerAndRoutes() throws Exception {
+        container.registerController(TestController.class.getName());
+        container.registerController(HotController.class.getName());
+
+        assertTrue(container.unregisterController("HotController"));
+
+        assertNull(container.getController("HotController"));
+        assertNull(container.findRouteHandler("/hot/1", "GET"));
+        assertNotNull(container.findRouteHandler("/test", "GET"));
+        assertEquals(2, container.getRouteCount());
+        assertFalse(container.unregisterController("HotController"));
+    }
+
+    @Test
+    public void testReregistrationReplacesRoutesAndUnregistrationRestoresShadowed() throws Exception {
+        container.registerController(TestController.class.getName());
+        Object first = container.getController("TestController");
+        container.registerController(TestController.class.getName());
+
+        assertEquals(1, container.getControllerCount());
+        assertEquals(2, container.getRouteCount());
+        assertSame(container.getController("TestController"), container.findRouteHandler("/test", "GET")[0]);
+        assertFalse(first == container.getController("TestController"));
+
+        // HotController also maps /test; the later registration wins until it is removed
+        container.registerController(HotController.class.getName());
+        assertEquals("shadow", ((Method) container.findRouteHandler("/test", "GET")[1]).getName());
+        container.unregisterController("HotController");
+        assertEquals("testMethod", ((Method) container.findRouteHandler("/test", "GET")[1]).getName());
+    }
+
+    @Test
+    public void testLookupsDuringRegistrationAlwaysSeeACompleteRouteTable() throws Exception {
+        container.registerController(TestController.class.getName());
+        int readers = 4;
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService pool = Executors.newFixedThreadPool(readers);
+        List<Future<?>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < readers; i++) {
+                results.add(pool.submit(() -> {
+                    RouteMatch match = container.newRouteMatch();
+                    while (running.get()) {
+                        // routes that are never unregistered must be found in every snapshot
+                        assertTrue(container.findRoute("GET", "/items/15", match));
+                        assertEquals("15", match.getVariable("id"));
+                        if (container.findRoute("GET", "/hot/7/leaf", match)) {
+                            // a route is only visible once fully built
+                            assertTrue(match.getRoute().getController() instanceof HotController);
+                            assertEquals("leaf", match.getRoute().getHandlerMethod().getName());
+                            assertEquals("7", match.getVariable("id"));
+                            assertEquals("leaf", match.getVariable("name"));
+                        }
+                    }
+                }));
+            }
+
+            for (int i = 0; i < 500; i++) {
+                container.registerController(HotController.class.getName());
+                container.unregisterController("HotController");
+            }
+            container.registerController(HotController.class.getName());
+            Thread.sleep(50);
+        } finally {
+            running.set(false);
+            pool.shutdown();
+        }
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        for (Future<?> result : results) {
+            result.get(); // rethrows any failed assertion of a reader
+        }
+        assertEquals("hot", ((Method) container.findRouteHandler("/hot/1", "GET")[1]).getName());
+        assertEquals(2, container.getControllerCount());
+    }
+    
+    @Test
+    public void testCacheableOnlyOnGetHandlersWithoutBody() throws Exception {
+        for (Class<?> controller : new Class<?>[] { CachedPostController.class, CachedBodyController.class }) {
+            try {
+                container.registerController(controller.getName());
+                fail("Expected " + controller.getSimpleName() + " to be refused");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains("@Cacheable"));
+            }
+        }
+        assertEquals(0, container.getControllerCount());
+        assertNull(container.findRouteHandler("/orders", "POST"));
+    }
+    
+    @Test
+    public void testReadIndex() throws Exception {
+        String lines = "# comment\n"
+                + "a.B\n"
+                + "a.B\tGET\t/x/{id}\tx\tjava.lang.String\tint[]\n"
+                + "a.C\n";
+        ControllerIndex index = ControllerIndex.read(new ByteArrayInputStream(lines.getBytes(StandardCharsets.UTF_8)));
+        
+        assertEquals(Arrays.asList("a.B", "a.C"), index.controllersIn("a"));
+        assertTrue(index.controllersIn("b").isEmpty());
+        ControllerIndex.Entry entry = index.routes("a.B").get(0);
+        assertEquals("/x/{id}", entry.path);
+        assertEquals("x", entry.methodName);
+        assertArrayEquals(new String[] { "java.lang.String", "int[]" }, entry.parameterTypes);
+        assertTrue(index.routes("a.C").isEmpty());
+    }
+    
     @RestController
     public static class TestController {
         
@@ -74,5 +240,49 @@ public class SimpleIoCContainerTest {
         public String testMethod() {
             return "Test response";
         }
+        
+        @GetMapping("/items/{id}")
+        public String item(@PathVariable("id") String id) {
+            return "Item " + id;
+        }
+    }
+
+    @RestController
+    public static class CachedPostController {
+
+        @Cacheable
+        @PostMapping("/orders")
+        public String create() {
+            return "created";
+        }
+    }
+
+    @RestController
+    public static class CachedBodyController {
+
+        @Cacheable
+        @GetMapping("/search")
+        public String search(@RequestBody String query) {
+            return query;
+        }
+    }
+
+    @RestController
+    public static class HotController {
+
+        @GetMapping("/hot/{id}")
+        public String hot(@PathVariable("id") String id) {
+            return "Hot " + id;
+        }
+
+        @GetMapping("/hot/{id}/{name}")
+        public String leaf(@PathVariable("id") String id, @PathVariable("name") String name) {
+            return id + "/" + name;
+        }
+
+        @GetMapping("/test")
+        public String shadow() {
+            return "Shadow";
+        }
     }
 }
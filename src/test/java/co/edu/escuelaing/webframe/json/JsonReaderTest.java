@@ -0,0 +1,93 @@
+package co.edu.escuelaing.webframe.json;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Tests for parsing JSON and binding it to handler parameter types.
+ */
+public class JsonReaderTest {
+
+    public static class Order {
+        public String id;
+        public long total;
+        public boolean paid;
+        public List<Line> lines;
+    }
+
+    public static class Line {
+        public String sku;
+        public double price;
+    }
+
+    @Test
+    public void testParsesAllValueTypes() throws Exception {
+        Object value = read("{\"s\": \"a\\\"b\\u0041\\n\", \"i\": -12, \"d\": 2.5e2, \"t\": true, \"f\": false,"
+                + " \"n\": null, \"a\": [1, [], {}]}");
+
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("s", "a\"bA\n");
+        expected.put("i", -12L);
+        expected.put("d", 250.0);
+        expected.put("t", true);
+        expected.put("f", false);
+        expected.put("n", null);
+        expected.put("a", Arrays.asList(1L, Arrays.asList(), new LinkedHashMap<>()));
+        assertEquals(expected, value);
+    }
+
+    @Test
+    public void testRejectsMalformedDocuments() throws IOException {
+        for (String json : new String[] { "", "{", "[1,]", "{\"a\" 1}", "tru", "\"open", "1 2", "{\"a\":1,}" }) {
+            try {
+                read(json);
+                fail("Expected an error for " + json);
+            } catch (JsonException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testBindsNestedObjects() throws Exception {
+        Object value = read("{\"id\": \"o-1\", \"total\": 30, \"paid\": true, \"unknown\": [1],"
+                + " \"lines\": [{\"sku\": \"a\", \"price\": 10}, {\"sku\": \"b\", \"price\": 20.5}]}");
+
+        Order order = (Order) JsonBinder.convert(value, Order.class);
+
+        assertEquals("o-1", order.id);
+        assertEquals(30, order.total);
+        assertEquals(true, order.paid);
+        assertEquals(2, order.lines.size());
+        assertEquals("b", order.lines.get(1).sku);
+        assertEquals(20.5, order.lines.get(1).price, 0);
+    }
+
+    @Test
+    public void testBindsArraysAndRejectsMismatches() throws Exception {
+        assertArrayEquals(new int[] { 1, 2 }, (int[]) JsonBinder.convert(read("[1, 2]"), int[].class));
+        assertNull(JsonBinder.convert(null, Order.class));
+        for (Object[] mismatch : new Object[][] { { "1.5", int.class }, { "\"x\"", Order.class }, { "null", int.class } }) {
+            try {
+                JsonBinder.convert(read((String) mismatch[0]), (Class<?>) mismatch[1]);
+                fail("Expected " + mismatch[0] + " not to bind to " + mismatch[1]);
+            } catch (JsonException e) {
+                // expected
+            }
+        }
+    }
+
+    private static Object read(String json) throws IOException {
+        return new JsonReader(new StringReader(json)).readDocument();
+    }
+}
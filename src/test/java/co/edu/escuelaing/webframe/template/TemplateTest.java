@@ -0,0 +1,134 @@
+package co.edu.escuelaing.webframe.template;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+import co.edu.escuelaing.webframe.examples.GreetingController;
+import co.edu.escuelaing.webframe.http.RequestDispatcher;
+import co.edu.escuelaing.webframe.ioc.SimpleIoCContainer;
+
+/**
+ * Tests for template compilation, rendering and reloading.
+ */
+public class TemplateTest {
+
+    @Test
+    public void testRendersEscapedAndRawSlots() throws IOException {
+        Template template = Template.compile("t", "<p>{{ name }}</p><div>{{{html}}}</div><i>{{name}}</i>");
+        View view = template.view().set("name", "<b>\"Tom\" & 'Jerry'</b>").set("html", "<b>bold</b>");
+
+        assertEquals("<p>&lt;b&gt;&quot;Tom&quot; &amp; &#39;Jerry&#39;&lt;/b&gt;</p><div><b>bold</b></div>"
+                + "<i>&lt;b&gt;&quot;Tom&quot; &amp; &#39;Jerry&#39;&lt;/b&gt;</i>", render(view));
+    }
+
+    @Test
+    public void testEncodesValuesAsUtf8() throws IOException {
+        Template template = Template.compile("t", "¡{{value}}!");
+        String value = "año ✓ 😀";
+        assertEquals("¡" + value + "!", render(template.view().set("value", value)));
+    }
+
+    @Test
+    public void testLongValuesAndMissingValues() throws IOException {
+        StringBuilder longValue = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            longValue.append(i % 10 == 0 ? '<' : 'x');
+        }
+        Template template = Template.compile("t", "[{{a}}][{{b}}]");
+        String rendered = render(template.view().set("a", longValue));
+        assertEquals("[" + longValue.toString().replace("<", "&lt;") + "][]", rendered);
+    }
+
+    @Test
+    public void testTemplateWithoutVariablesIsStatic() {
+        Template template = Template.compile("t", "<h1>static</h1>");
+        assertTrue(template.isStatic());
+        assertEquals(15, template.staticContent().remaining());
+        assertFalse(Template.compile("t", "{{x}}").isStatic());
+    }
+
+    @Test
+    public void testInvalidTemplatesAreRejected() {
+        try {
+            Template.compile("broken.html", "<p>\n{{name</p>");
+            fail("Unclosed tag should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("broken.html at line 2"));
+        }
+        try {
+            Template.compile("t", "{{a b}}");
+            fail("Invalid variable should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("Invalid variable"));
+        }
+        try {
+            Template.compile("t", "{{a}}").view().set("b", 1);
+            fail("Unknown variable should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("no variable 'b'"));
+        }
+    }
+
+    @Test
+    public void testReloadRecompilesChangedFiles() throws IOException {
+        Path root = Files.createTempDirectory("templates");
+        Path file = root.resolve("page.html");
+        try {
+            Files.write(file, "v1 {{x}}".getBytes(StandardCharsets.UTF_8));
+            TemplateEngine reloading = new TemplateEngine(root, true);
+            TemplateEngine fixed = new TemplateEngine(root, false);
+            assertEquals("v1 a", render(reloading.view("page.html").set("x", "a")));
+
+            Files.write(file, "v2 {{x}}".getBytes(StandardCharsets.UTF_8));
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+            assertEquals("v2 a", render(reloading.view("page.html").set("x", "a")));
+            assertEquals("v1 a", render(fixed.view("page.html").set("x", "a")));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(root);
+        }
+    }
+
+    @Test
+    public void testFallsBackToClasspathTemplates() throws IOException {
+        Path empty = Files.createTempDirectory("templates");
+        TemplateEngine engine = new TemplateEngine(empty.resolve("missing"), false);
+        Files.delete(empty);
+        assertTrue(engine.get("index.html").isStatic());
+        try {
+            engine.get("nope.html");
+            fail("Missing template should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("nope.html"));
+        }
+    }
+
+    @Test
+    public void testGreetingControllerEscapesName() throws Exception {
+        SimpleIoCContainer container = new SimpleIoCContainer();
+        container.registerController(GreetingController.class.getName());
+        RequestDispatcher dispatcher = new RequestDispatcher(container);
+
+        String page = dispatcher.processRequest("GET", "/greeting?name=<script>");
+        assertTrue(page.contains("<p>Hello, &lt;script&gt;!</p>"));
+        assertTrue(page.contains("Request #1"));
+        assertTrue(dispatcher.processRequest("GET", "/counter").contains("Total requests processed: 1"));
+        assertTrue(dispatcher.processRequest("GET", "/").contains("<h1>Web Framework</h1>"));
+    }
+
+    private static String render(View view) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        view.renderTo(out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}